@@ -36,6 +36,25 @@ class TracingClassLoaderTest {
     }
   }
 
+  @Test void unloadable_afterRecyclingSpans() {
+    assertRunIsUnloadable(RecyclesSpans.class, getClass().getClassLoader());
+  }
+
+  static class RecyclesSpans implements Runnable {
+    @Override public void run() {
+      try (Tracing tracing = Tracing.newBuilder()
+        .addSpanHandler(new SpanHandler() {
+          @Override public boolean referencesSpanAfterEnd() {
+            return false;
+          }
+        })
+        .recycleSpans()
+        .build()) {
+        tracing.tracer().newTrace().start().tag("foo", "bar").annotate("baz").finish();
+      }
+    }
+  }
+
   @Test void unloadable_forgetClose() {
     assertRunIsUnloadable(ForgetClose.class, getClass().getClassLoader());
   }
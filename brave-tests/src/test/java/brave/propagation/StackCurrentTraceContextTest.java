@@ -0,0 +1,120 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import brave.test.propagation.CurrentTraceContextTest;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static brave.propagation.StackCurrentTraceContext.DEFAULT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StackCurrentTraceContextTest extends CurrentTraceContextTest {
+  @Override protected Class<? extends Supplier<CurrentTraceContext.Builder>> builderSupplier() {
+    return BuilderSupplier.class;
+  }
+
+  @BeforeEach void ensureNoOtherTestsTaint() {
+    DEFAULT.remove();
+  }
+
+  @Test void clear_unleaks() {
+    currentTraceContext.newScope(context); // leak a scope
+
+    assertThat(currentTraceContext.get()).isEqualTo(context);
+
+    ((StackCurrentTraceContext) currentTraceContext).clear();
+
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test void newScope_reusesScopes() {
+    Scope first, second;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      first = scope;
+    }
+    try (Scope scope = currentTraceContext.newScope(unsampledContext)) {
+      second = scope;
+    }
+
+    assertThat(first).isSameAs(second);
+  }
+
+  @Test void newScope_deep() {
+    int depth = StackCurrentTraceContext.SHARED_SCOPES + 1;
+    Scope[] scopes = new Scope[depth];
+    for (int i = 0; i < depth; i++) {
+      scopes[i] = currentTraceContext.newScope(i % 2 == 0 ? context : unsampledContext);
+    }
+    assertThat(currentTraceContext.get()).isEqualTo(context);
+
+    for (int i = depth - 1; i > 0; i--) {
+      scopes[i].close();
+      assertThat(currentTraceContext.get()).isEqualTo(i % 2 == 0 ? unsampledContext : context);
+    }
+    scopes[0].close();
+
+    assertThat(currentTraceContext.get()).isNull();
+    assertThat((Object[]) DEFAULT.get()).containsOnly(0, null);
+  }
+
+  /** An inner scope closed after its enclosing one must not restore a stale context. */
+  @Test void close_outOfOrder_doesntResurrect() {
+    Scope outer = currentTraceContext.newScope(context);
+    Scope inner = currentTraceContext.newScope(unsampledContext);
+
+    outer.close();
+    assertThat(currentTraceContext.get()).isNull();
+
+    inner.close();
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test void strictScopeDecorator_closeOnDifferentThread() throws Exception {
+    StrictScopeDecorator strict = StrictScopeDecorator.create();
+    CurrentTraceContext currentTraceContext = StackCurrentTraceContext.newBuilder()
+      .addScopeDecorator(strict)
+      .build();
+
+    try (Scope outer = currentTraceContext.newScope(context)) {
+      Scope inner = currentTraceContext.newScope(unsampledContext);
+
+      RuntimeException[] thrown = new RuntimeException[1];
+      Thread thread = new Thread(() -> {
+        try {
+          inner.close();
+        } catch (RuntimeException e) {
+          thrown[0] = e;
+        }
+      });
+      thread.start();
+      thread.join();
+
+      assertThat(thrown[0]).isInstanceOf(IllegalStateException.class);
+      assertThat(currentTraceContext.get()).isEqualTo(unsampledContext); // not popped
+    }
+    strict.close(); // no leak, as a scope is marked closed even when it throws
+  }
+
+  @Test void strictScopeDecorator_leak() {
+    StrictScopeDecorator strict = StrictScopeDecorator.create();
+    CurrentTraceContext currentTraceContext = StackCurrentTraceContext.newBuilder()
+      .addScopeDecorator(strict)
+      .build();
+
+    currentTraceContext.newScope(context); // leak a scope
+
+    assertThatThrownBy(strict::close).isInstanceOf(AssertionError.class);
+  }
+
+  static class BuilderSupplier implements Supplier<CurrentTraceContext.Builder> {
+    @Override public CurrentTraceContext.Builder get() {
+      return StackCurrentTraceContext.newBuilder();
+    }
+  }
+}
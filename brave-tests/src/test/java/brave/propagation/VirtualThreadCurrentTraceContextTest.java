@@ -0,0 +1,81 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import brave.test.propagation.CurrentTraceContextTest;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static brave.propagation.StackCurrentTraceContext.DEFAULT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+class VirtualThreadCurrentTraceContextTest extends CurrentTraceContextTest {
+  @Override protected Class<? extends Supplier<CurrentTraceContext.Builder>> builderSupplier() {
+    return BuilderSupplier.class;
+  }
+
+  @BeforeEach void ensureNoOtherTestsTaint() {
+    DEFAULT.remove();
+  }
+
+  @Test void clear_unleaks() {
+    currentTraceContext.newScope(context); // leak a scope
+
+    assertThat(currentTraceContext.get()).isEqualTo(context);
+
+    ((VirtualThreadCurrentTraceContext) currentTraceContext).clear();
+
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test void wrap_nestedScopes() throws Exception {
+    TraceContext[] seen = new TraceContext[3];
+    Runnable task;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      task = currentTraceContext.wrap(() -> {
+        seen[0] = currentTraceContext.get();
+        try (Scope nested = currentTraceContext.newScope(unsampledContext)) {
+          seen[1] = currentTraceContext.get();
+        }
+        seen[2] = currentTraceContext.get();
+      });
+    }
+
+    Thread thread = new Thread(task);
+    thread.start();
+    thread.join();
+
+    assertThat(seen).containsExactly(context, unsampledContext, context);
+  }
+
+  @Test void wrap_doesntUseThreadLocal() throws Exception {
+    assumeThat(Runtime.version().feature()).isGreaterThanOrEqualTo(25);
+
+    Object[][] stack = new Object[1][];
+    Runnable task;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      task = currentTraceContext.wrap(() -> {
+        try (Scope nested = currentTraceContext.newScope(unsampledContext)) {
+          stack[0] = DEFAULT.get();
+        }
+      });
+    }
+
+    Thread thread = new Thread(task);
+    thread.start();
+    thread.join();
+
+    assertThat(stack[0]).isNull();
+  }
+
+  static class BuilderSupplier implements Supplier<CurrentTraceContext.Builder> {
+    @Override public CurrentTraceContext.Builder get() {
+      return VirtualThreadCurrentTraceContext.newBuilder();
+    }
+  }
+}
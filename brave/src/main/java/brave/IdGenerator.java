@@ -0,0 +1,169 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave;
+
+import brave.internal.Platform;
+
+/**
+ * Provisions span IDs and the high bits of {@linkplain Tracing.Builder#traceId128Bit(boolean)
+ * 128-bit trace IDs}. The lower 64 bits of a new trace ID are the span ID of its root.
+ *
+ * <p>IDs only need to be unique within a trace, and the trace ID unique enough to not collide in
+ * storage. Hence, these generators optimize for speed over statistical quality.
+ *
+ * @see Tracing.Builder#idGenerator(IdGenerator)
+ * @since 6.1
+ */
+public abstract class IdGenerator {
+  /**
+   * Uses the platform random number generator, which is {@link
+   * java.util.concurrent.ThreadLocalRandom} except on Java 6. This is the default.
+   *
+   * @since 6.1
+   */
+  public static IdGenerator platform() {
+    return PlatformIdGenerator.INSTANCE;
+  }
+
+  /**
+   * Uses a {@link java.util.SplittableRandom} per thread, each split from a common root. Requires
+   * Java 8.
+   *
+   * @since 6.1
+   */
+  public static IdGenerator splittableRandom() {
+    return new SplittableRandomIdGenerator();
+  }
+
+  /**
+   * Uses a per-thread <a href="https://en.wikipedia.org/wiki/Xorshift#xorshift*">xorshift64*</a>
+   * generator. This is a few arithmetic operations on a long, so it is also fast on Java 6.
+   *
+   * @since 6.1
+   */
+  public static IdGenerator xorShift() {
+    return new XorShiftIdGenerator();
+  }
+
+  /**
+   * Like {@link #platform()}, except the high bits of 128-bit trace IDs start with 48 bits of epoch
+   * milliseconds, instead of 32 bits of epoch seconds. This orders trace IDs by creation time at
+   * millisecond resolution, which improves index locality in storage.
+   *
+   * <p>Note: Unlike the default, these trace IDs are not convertible to Amazon X-Ray format.
+   *
+   * @since 6.1
+   */
+  public static IdGenerator timeOrdered() {
+    return TimeOrderedIdGenerator.INSTANCE;
+  }
+
+  /**
+   * Returns a non-zero ID for a new span, or the lower 64 bits of a new trace ID.
+   *
+   * @since 6.1
+   */
+  public abstract long nextSpanId();
+
+  /**
+   * Returns the high 64 bits of a new 128-bit trace ID. Defaults to epoch seconds in the upper 32
+   * bits, with random lower 32 bits.
+   *
+   * @since 6.1
+   */
+  public long nextTraceIdHigh() {
+    return Platform.get().nextTraceIdHigh();
+  }
+
+  static final class PlatformIdGenerator extends IdGenerator {
+    static final IdGenerator INSTANCE = new PlatformIdGenerator();
+
+    @Override public long nextSpanId() {
+      long nextId = Platform.get().randomLong();
+      while (nextId == 0L) {
+        nextId = Platform.get().randomLong();
+      }
+      return nextId;
+    }
+
+    @Override public String toString() {
+      return "PlatformIdGenerator{}";
+    }
+  }
+
+  static final class SplittableRandomIdGenerator extends IdGenerator {
+    final java.util.SplittableRandom root = new java.util.SplittableRandom();
+    final ThreadLocal<java.util.SplittableRandom> random =
+      new ThreadLocal<java.util.SplittableRandom>() {
+        @Override protected java.util.SplittableRandom initialValue() {
+          synchronized (root) {
+            return root.split();
+          }
+        }
+      };
+
+    @Override public long nextSpanId() {
+      java.util.SplittableRandom random = this.random.get();
+      long nextId = random.nextLong();
+      while (nextId == 0L) {
+        nextId = random.nextLong();
+      }
+      return nextId;
+    }
+
+    @Override public long nextTraceIdHigh() {
+      long epochSeconds = Platform.get().currentTimeMicroseconds() / 1000000;
+      return (epochSeconds & 0xffffffffL) << 32 | (random.get().nextInt() & 0xffffffffL);
+    }
+
+    @Override public String toString() {
+      return "SplittableRandomIdGenerator{}";
+    }
+  }
+
+  static final class XorShiftIdGenerator extends IdGenerator {
+    final ThreadLocal<long[]> state = new ThreadLocal<long[]>() {
+      @Override protected long[] initialValue() {
+        long seed = Platform.get().randomLong();
+        return new long[] {seed != 0L ? seed : 0x9E3779B97F4A7C15L};
+      }
+    };
+
+    @Override public long nextSpanId() {
+      long[] state = this.state.get();
+      long x = state[0];
+      x ^= x >>> 12;
+      x ^= x << 25;
+      x ^= x >>> 27;
+      state[0] = x; // never zero when seeded non-zero
+      return x * 0x2545F4914F6CDD1DL; // odd multiplier, so the result is also never zero
+    }
+
+    @Override public String toString() {
+      return "XorShiftIdGenerator{}";
+    }
+  }
+
+  static final class TimeOrderedIdGenerator extends IdGenerator {
+    static final IdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+    @Override public long nextSpanId() {
+      return PlatformIdGenerator.INSTANCE.nextSpanId();
+    }
+
+    @Override public long nextTraceIdHigh() {
+      return nextTraceIdHigh(Platform.get().currentTimeMicroseconds() / 1000,
+        Platform.get().randomLong());
+    }
+
+    static long nextTraceIdHigh(long epochMillis, long random) {
+      return (epochMillis & 0xffffffffffffL) << 16 | (random & 0xffffL);
+    }
+
+    @Override public String toString() {
+      return "TimeOrderedIdGenerator{}";
+    }
+  }
+}
@@ -8,7 +8,6 @@ import brave.handler.MutableSpan;
 import brave.handler.SpanHandler;
 import brave.internal.InternalPropagation;
 import brave.internal.Nullable;
-import brave.internal.Platform;
 import brave.internal.recorder.PendingSpan;
 import brave.internal.recorder.PendingSpans;
 import brave.propagation.CurrentTraceContext;
@@ -81,6 +80,7 @@ public class Tracer {
   final SpanHandler spanHandler; // only for toString
   final PendingSpans pendingSpans;
   final Sampler sampler;
+  final IdGenerator idGenerator;
   final CurrentTraceContext currentTraceContext;
   final boolean traceId128Bit, supportsJoin, alwaysSampleLocal;
   final AtomicBoolean noop;
@@ -90,6 +90,7 @@ public class Tracer {
     SpanHandler spanHandler,
     PendingSpans pendingSpans,
     Sampler sampler,
+    IdGenerator idGenerator,
     CurrentTraceContext currentTraceContext,
     boolean traceId128Bit,
     boolean supportsJoin,
@@ -100,6 +101,7 @@ public class Tracer {
     this.spanHandler = spanHandler;
     this.pendingSpans = pendingSpans;
     this.sampler = sampler;
+    this.idGenerator = idGenerator;
     this.currentTraceContext = currentTraceContext;
     this.traceId128Bit = traceId128Bit;
     this.supportsJoin = supportsJoin;
@@ -238,7 +240,7 @@ public class Tracer {
     if (spanId == 0L) spanId = nextId();
 
     if (traceId == 0L) { // make a new trace ID
-      traceIdHigh = traceId128Bit ? Platform.get().nextTraceIdHigh() : 0L;
+      traceIdHigh = traceId128Bit ? idGenerator.nextTraceIdHigh() : 0L;
       traceId = spanId;
     }
 
@@ -610,9 +612,9 @@ public class Tracer {
 
   /** Generates a new 64-bit ID, taking care to dodge zero which can be confused with absent */
   long nextId() {
-    long nextId = Platform.get().randomLong();
-    while (nextId == 0L) {
-      nextId = Platform.get().randomLong();
+    long nextId = idGenerator.nextSpanId();
+    while (nextId == 0L) { // in case a custom generator doesn't
+      nextId = idGenerator.nextSpanId();
     }
     return nextId;
   }
@@ -9,6 +9,7 @@ import brave.internal.Nullable;
 import brave.internal.baggage.BaggageCodec;
 import brave.internal.baggage.BaggageFields;
 import brave.internal.collect.Lists;
+import brave.internal.propagation.Utf8Getter;
 import brave.propagation.Propagation;
 import brave.propagation.TraceContext;
 import brave.propagation.TraceContext.Extractor;
@@ -91,6 +92,7 @@ public final class BaggagePropagation<K> implements Propagation<K> {
     final Propagation.Factory delegate;
     final List<String> extractKeyNames = new ArrayList<String>();
     final Set<BaggagePropagationConfig> configs = new LinkedHashSet<BaggagePropagationConfig>();
+    boolean decodeLazily;
 
     FactoryBuilder(Propagation.Factory delegate) {
       if (delegate == null) throw new NullPointerException("delegate == null");
@@ -138,6 +140,25 @@ public final class BaggagePropagation<K> implements Propagation<K> {
       return this;
     }
 
+    /**
+     * When true, remote baggage values are read on extraction, but only decoded when first used,
+     * such as by {@link BaggageField#getValue(TraceContext)}. Until then, injection copies the
+     * values as they were received. This saves overhead when most requests forward baggage, but
+     * don't read it.
+     *
+     * <p>This differs from eager decoding when a {@linkplain BaggagePropagationConfig config} has
+     * multiple key names. Eager decoding tries each present value until one decodes. Lazy decoding
+     * keeps only the first value present, without checking it. If that value later fails to
+     * decode, the config's fields are unset, even if another key held a valid value. Until then,
+     * the value is injected as received. Defaults to false.
+     *
+     * @since 6.1
+     */
+    public FactoryBuilder decodeLazily(boolean decodeLazily) {
+      this.decodeLazily = decodeLazily;
+      return this;
+    }
+
     /** Returns the delegate if there are no fields to propagate. */
     public Propagation.Factory build() {
       if (configs.isEmpty()) return delegate;
@@ -159,7 +180,9 @@ public final class BaggagePropagation<K> implements Propagation<K> {
     final Propagation<String> delegate;
     final BaggageFields.Factory baggageFactory;
     final BaggagePropagationConfig[] configs;
+    final BaggageCodec[] remoteCodecs;
     final String[] localFieldNames;
+    final boolean decodeLazily;
     @Nullable final Extra extra;
 
     Factory(FactoryBuilder factoryBuilder) {
@@ -174,10 +197,12 @@ public final class BaggagePropagation<K> implements Propagation<K> {
       this.configs = factoryBuilder.configs.toArray(new BaggagePropagationConfig[0]);
 
       List<BaggageField> fields = new ArrayList<BaggageField>();
+      List<BaggageCodec> remoteCodecs = new ArrayList<BaggageCodec>();
       Set<String> localFieldNames = new LinkedHashSet<String>();
       int maxDynamicFields = 0;
       for (BaggagePropagationConfig config : factoryBuilder.configs) {
         maxDynamicFields += config.maxDynamicFields;
+        if (config.baggageCodec != BaggageCodec.NOOP) remoteCodecs.add(config.baggageCodec);
         if (config instanceof SingleBaggageField) {
           BaggageField field = ((SingleBaggageField) config).field;
           fields.add(field);
@@ -186,6 +211,8 @@ public final class BaggagePropagation<K> implements Propagation<K> {
       }
       this.baggageFactory = BaggageFields.newFactory(fields, maxDynamicFields);
       this.localFieldNames = localFieldNames.toArray(new String[0]);
+      this.remoteCodecs = remoteCodecs.toArray(new BaggageCodec[0]);
+      this.decodeLazily = factoryBuilder.decodeLazily;
     }
 
     @Override public BaggagePropagation<String> get() {
@@ -214,7 +241,13 @@ public final class BaggagePropagation<K> implements Propagation<K> {
     }
 
     @Override public <R> Extractor<R> extractor(Getter<R, String> getter) {
-      return new BaggageExtractor<R>(this, getter);
+      return new BaggageExtractor<R>(this, delegate.extractor(getter), getter);
+    }
+
+    /** The trace context is extracted from bytes, when supported by the delegate. */
+    @Override public <R> Extractor<R> bytesExtractor(BytesGetter<R, String> getter) {
+      Extractor<R> delegate = delegateFactory.bytesExtractor(getter);
+      return new BaggageExtractor<R>(this, delegate, new Utf8Getter<R>(getter));
     }
   }
 
@@ -307,6 +340,19 @@ public final class BaggagePropagation<K> implements Propagation<K> {
       delegate.inject(context, request);
       BaggageFields extra = context.findExtra(BaggageFields.class);
       if (extra == null) return;
+
+      String[] undecoded = extra.undecodedValues(factory.remoteCodecs);
+      if (undecoded != null) { // unchanged since extraction, so pass values through
+        for (int i = 0; i < undecoded.length; i++) {
+          if (undecoded[i] == null) continue;
+          List<String> keys = factory.remoteCodecs[i].injectKeyNames();
+          for (int j = 0, length = keys.size(); j < length; j++) {
+            setter.put(request, keys.get(j), undecoded[i]);
+          }
+        }
+        return;
+      }
+
       Map<String, String> values =
           extra.toMapFilteringFieldNames(factory.localFieldNames);
       if (values.isEmpty()) return;
@@ -330,8 +376,8 @@ public final class BaggagePropagation<K> implements Propagation<K> {
     final Extractor<R> delegate;
     final Getter<R, String> getter;
 
-    BaggageExtractor(Factory factory, Getter<R, String> getter) {
-      this.delegate = factory.delegate.extractor(getter);
+    BaggageExtractor(Factory factory, Extractor<R> delegate, Getter<R, String> getter) {
+      this.delegate = delegate;
       this.factory = factory;
       this.getter = getter;
     }
@@ -343,6 +389,11 @@ public final class BaggagePropagation<K> implements Propagation<K> {
 
       if (factory.extra == null) return builder.build();
 
+      if (factory.decodeLazily) {
+        extractLazily(request, extra);
+        return builder.addExtra(factory.extra).build();
+      }
+
       for (BaggagePropagationConfig config : factory.configs) {
         if (config.baggageCodec == BaggageCodec.NOOP) continue; // local field
 
@@ -357,5 +408,21 @@ public final class BaggagePropagation<K> implements Propagation<K> {
 
       return builder.addExtra(factory.extra).build();
     }
+
+    void extractLazily(R request, BaggageFields extra) {
+      BaggageCodec[] codecs = factory.remoteCodecs;
+      String[] values = null;
+      for (int i = 0; i < codecs.length; i++) {
+        List<String> keys = codecs[i].injectKeyNames();
+        for (int j = 0, length = keys.size(); j < length; j++) {
+          String value = getter.get(request, keys.get(j));
+          if (value == null) continue;
+          if (values == null) values = new String[codecs.length];
+          values[i] = value;
+          break; // unlike eager extraction, the first value is kept even if it won't decode
+        }
+      }
+      if (values != null) extra.decodeLazily(codecs, values);
+    }
   }
 }
@@ -11,7 +11,9 @@ import brave.propagation.CurrentTraceContext.Scope;
 import brave.propagation.CurrentTraceContext.ScopeDecorator;
 import brave.propagation.TraceContext;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -65,6 +67,7 @@ public abstract class CorrelationScopeDecorator implements ScopeDecorator {
     // Don't allow mixed case of the same name!
     final Set<String> allNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
     final Set<SingleCorrelationField> fields = new LinkedHashSet<SingleCorrelationField>();
+    boolean skipUnchangedContexts;
 
     /** Internal constructor used by subtypes. */
     protected Builder(CorrelationContext context) {
@@ -121,31 +124,86 @@ public abstract class CorrelationScopeDecorator implements ScopeDecorator {
       return this;
     }
 
+    /**
+     * When true, each thread remembers the last trace context written to the correlation context.
+     * When that same context is scoped again, such as by re-entrant instrumentation, {@linkplain
+     * SingleCorrelationField#readOnly() read-only} fields like {@link BaggageFields#TRACE_ID} are
+     * neither read nor written.
+     *
+     * <p>Only enable this when nothing else updates these fields in the correlation context, for
+     * example by clearing the MDC at the end of a request. Otherwise, stale values may remain.
+     * Defaults to false.
+     *
+     * @since 6.1
+     */
+    public Builder skipUnchangedContexts(boolean skipUnchangedContexts) {
+      this.skipUnchangedContexts = skipUnchangedContexts;
+      return this;
+    }
+
     /** @return {@link ScopeDecorator#NOOP} if no baggage fields were added. */
     public final ScopeDecorator build() {
       int fieldCount = fields.size();
       if (fieldCount == 0) return ScopeDecorator.NOOP;
-      if (fieldCount == 1) return new Single(context, fields.iterator().next());
+      if (fieldCount == 1) {
+        return new Single(context, skipUnchangedContexts, fields.iterator().next());
+      }
       if (fieldCount > 32) throw new IllegalArgumentException("over 32 baggage fields");
-      return new Multiple(context, fields.toArray(new SingleCorrelationField[0]));
+      return new Multiple(
+        context, skipUnchangedContexts, fields.toArray(new SingleCorrelationField[0]));
     }
   }
 
   final CorrelationContext context;
+  /** The last trace context written to {@link #context}, when skipping unchanged contexts. */
+  @Nullable final ThreadLocal<TraceContext> lastContext;
 
-  CorrelationScopeDecorator(CorrelationContext context) {
+  CorrelationScopeDecorator(CorrelationContext context, boolean skipUnchangedContexts) {
     this.context = context;
+    this.lastContext = skipUnchangedContexts ? new ThreadLocal<TraceContext>() : null;
+  }
+
+  /** Returns true if read-only fields in the correlation context already match this context. */
+  boolean isLastContext(@Nullable TraceContext traceContext) {
+    return lastContext != null && traceContext != null && traceContext == lastContext.get();
+  }
+
+  /** Records the trace context just written, which the update scope reverts on close. */
+  void trackLastContext(@Nullable TraceContext traceContext, CorrelationUpdateScope updateScope) {
+    if (lastContext == null) return;
+    updateScope.revertLastContext(lastContext, lastContext.get());
+    setLastContext(lastContext, traceContext);
+  }
+
+  static void setLastContext(ThreadLocal<TraceContext> lastContext, @Nullable TraceContext value) {
+    if (value != null) {
+      lastContext.set(value);
+    } else {
+      lastContext.remove(); // don't retain the thread local when there's no context
+    }
+  }
+
+  /** Returns true if the field can't change within the same trace context. */
+  static boolean skippable(SingleCorrelationField field) {
+    return field.readOnly && !field.dirty && !field.flushOnUpdate;
   }
 
   static final class Single extends CorrelationScopeDecorator {
     final SingleCorrelationField field;
+    final boolean skippable;
 
-    Single(CorrelationContext context, SingleCorrelationField field) {
-      super(context);
+    Single(
+      CorrelationContext context, boolean skipUnchangedContexts, SingleCorrelationField field) {
+      super(context, skipUnchangedContexts);
       this.field = field;
+      this.skippable = skippable(field);
     }
 
     @Override public Scope decorateScope(@Nullable TraceContext traceContext, Scope scope) {
+      // Skip reading the correlation context when the value can't have changed.
+      boolean sameContext = isLastContext(traceContext);
+      if (skippable && (scope == Scope.NOOP || sameContext)) return scope;
+
       String valueToRevert = context.getValue(field.name);
       String currentValue = field.baggageField.getValue(traceContext);
 
@@ -163,31 +221,49 @@ public abstract class CorrelationScopeDecorator implements ScopeDecorator {
       // If there was or could be a value update, we need to track values to revert.
       CorrelationUpdateScope updateScope =
         new CorrelationUpdateScope.Single(scope, context, field, valueToRevert, dirty);
+      if (scope != Scope.NOOP && !sameContext) trackLastContext(traceContext, updateScope);
       return field.flushOnUpdate ? new CorrelationFlushScope(updateScope) : updateScope;
     }
   }
 
   static final class Multiple extends CorrelationScopeDecorator {
     final SingleCorrelationField[] fields;
+    final int skippableFields;
 
-    Multiple(CorrelationContext context, SingleCorrelationField[] fields) {
-      super(context);
+    Multiple(
+      CorrelationContext context, boolean skipUnchangedContexts, SingleCorrelationField[] fields) {
+      super(context, skipUnchangedContexts);
       this.fields = fields;
+      int skippableFields = 0;
+      for (int i = 0; i < fields.length; i++) {
+        if (skippable(fields[i])) skippableFields = setBit(skippableFields, i);
+      }
+      this.skippableFields = skippableFields;
     }
 
     @Override public Scope decorateScope(@Nullable TraceContext traceContext, Scope scope) {
+      // Skip reading the correlation context for fields whose value can't have changed.
+      boolean sameContext = isLastContext(traceContext);
+      int skip = scope == Scope.NOOP || sameContext ? skippableFields : 0;
+
       int dirty = 0;
       boolean flushOnUpdate = false;
 
-      String[] valuesToRevert = new String[fields.length];
+      String[] valuesToRevert = null;
+      Map<String, String> updates = null;
       for (int i = 0; i < fields.length; i++) {
+        if (isSet(skip, i)) continue;
         SingleCorrelationField field = fields[i];
         String valueToRevert = context.getValue(field.name);
         String currentValue = field.baggageField.getValue(traceContext);
 
         if (scope != Scope.NOOP || !field.readOnly) {
           if (!equal(valueToRevert, currentValue)) {
-            context.update(field.name, currentValue);
+            if (context instanceof CorrelationContext.Bulk) {
+              updates = addUpdate(updates, fields.length, field.name, currentValue);
+            } else {
+              context.update(field.name, currentValue);
+            }
             dirty = setBit(dirty, i);
           }
         }
@@ -196,18 +272,30 @@ public abstract class CorrelationScopeDecorator implements ScopeDecorator {
         if (field.dirty) dirty = setBit(dirty, i);
         if (field.flushOnUpdate) flushOnUpdate = true;
 
+        if (valuesToRevert == null) valuesToRevert = new String[fields.length];
         valuesToRevert[i] = valueToRevert;
       }
 
+      if (updates != null) ((CorrelationContext.Bulk) context).updateAll(updates);
+
       if (dirty == 0 && !flushOnUpdate) return scope;
 
       // If there was or could be a value update, we need to track values to revert.
       CorrelationUpdateScope updateScope =
         new CorrelationUpdateScope.Multiple(scope, context, fields, valuesToRevert, dirty);
+      if (scope != Scope.NOOP && !sameContext) trackLastContext(traceContext, updateScope);
       return flushOnUpdate ? new CorrelationFlushScope(updateScope) : updateScope;
     }
   }
 
+  /** Lazily allocates a map for {@link CorrelationContext.Bulk#updateAll(Map)}. */
+  static Map<String, String> addUpdate(
+    @Nullable Map<String, String> updates, int fieldCount, String name, @Nullable String value) {
+    if (updates == null) updates = new LinkedHashMap<String, String>(fieldCount * 2);
+    updates.put(name, value);
+    return updates;
+  }
+
   static int setBit(int bitset, int i) {
     return bitset | (1 << i);
   }
@@ -8,8 +8,11 @@ import brave.baggage.CorrelationScopeConfig.SingleCorrelationField;
 import brave.internal.CorrelationContext;
 import brave.internal.Nullable;
 import brave.propagation.CurrentTraceContext.Scope;
+import brave.propagation.TraceContext;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static brave.baggage.CorrelationScopeDecorator.addUpdate;
 import static brave.baggage.CorrelationScopeDecorator.equal;
 import static brave.baggage.CorrelationScopeDecorator.isSet;
 import static brave.baggage.CorrelationScopeDecorator.setBit;
@@ -17,11 +20,24 @@ import static brave.baggage.CorrelationScopeDecorator.setBit;
 /** Handles reverting potentially late value updates to baggage fields. */
 abstract class CorrelationUpdateScope extends AtomicBoolean implements Scope {
   CorrelationContext context;
+  @Nullable ThreadLocal<TraceContext> lastContext;
+  @Nullable TraceContext lastContextToRevert;
 
   CorrelationUpdateScope(CorrelationContext context) {
     this.context = context;
   }
 
+  /** Called when skipping unchanged contexts, to restore the last context on close. */
+  void revertLastContext(ThreadLocal<TraceContext> lastContext, @Nullable TraceContext toRevert) {
+    this.lastContext = lastContext;
+    this.lastContextToRevert = toRevert;
+  }
+
+  void revertLastContext() {
+    if (lastContext == null) return;
+    CorrelationScopeDecorator.setLastContext(lastContext, lastContextToRevert);
+  }
+
   /**
    * Called to get the name of the field, before it is flushed to the underlying context.
    *
@@ -60,6 +76,7 @@ abstract class CorrelationUpdateScope extends AtomicBoolean implements Scope {
       if (!compareAndSet(false, true)) return;
       delegate.close();
       if (shouldRevert) context.update(field.name, valueToRevert);
+      revertLastContext();
     }
 
     @Override String name(BaggageField field) {
@@ -97,9 +114,17 @@ abstract class CorrelationUpdateScope extends AtomicBoolean implements Scope {
       if (!compareAndSet(false, true)) return;
 
       delegate.close();
+      Map<String, String> reverts = null;
       for (int i = 0; i < fields.length; i++) {
-        if (isSet(shouldRevert, i)) context.update(fields[i].name, valuesToRevert[i]);
+        if (!isSet(shouldRevert, i)) continue;
+        if (context instanceof CorrelationContext.Bulk) {
+          reverts = addUpdate(reverts, fields.length, fields[i].name, valuesToRevert[i]);
+        } else {
+          context.update(fields[i].name, valuesToRevert[i]);
+        }
       }
+      if (reverts != null) ((CorrelationContext.Bulk) context).updateAll(reverts);
+      revertLastContext();
     }
 
     @Override String name(BaggageField field) {
@@ -0,0 +1,393 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Tracing;
+import brave.internal.Nullable;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static brave.internal.Throwables.propagateIfFatal;
+
+/**
+ * Moves {@link #end(TraceContext, MutableSpan, Cause)} callbacks of a delegate off the application
+ * thread. Finished spans are placed on a bounded ring buffer, which a dedicated thread drains in
+ * batches.
+ *
+ * <p>Ex. to keep encoding and I/O of an exporting handler off the request path:
+ * <pre>{@code
+ * asyncHandler = AsyncSpanHandler.newBuilder(exportingHandler)
+ *   .queueSize(8192)
+ *   .overflowStrategy(OverflowStrategy.DROP_OLDEST)
+ *   .build();
+ * tracingBuilder.addSpanHandler(asyncHandler);
+ *
+ * // on shutdown
+ * tracing.close();
+ * asyncHandler.close();
+ * }</pre>
+ *
+ * <h3>Handler ordering</h3>
+ * The {@link MutableSpan} is retained until the delegate processes it, so this should be the last
+ * handler added to {@link Tracing.Builder}. Handlers added afterward must not mutate the span.
+ *
+ * <p>{@link #begin(TraceContext, MutableSpan, TraceContext)} is not deferred: it is invoked on the
+ * calling thread, as it is usually cheap and its result decides whether the span is recorded.
+ *
+ * <p>As the delegate runs later, its {@link #end} result cannot affect other handlers. This always
+ * returns {@code true} from {@link #end}, including when the span was {@linkplain #droppedSpans()
+ * dropped}.
+ *
+ * @since 6.1
+ */
+public final class AsyncSpanHandler extends SpanHandler implements Closeable {
+  /**
+   * What to do when {@link Builder#queueSize(int)} spans are already waiting for the delegate.
+   *
+   * @since 6.1
+   */
+  public enum OverflowStrategy {
+    /** Drops the span being added. This is the default. */
+    DROP_NEWEST,
+    /** Drops the longest waiting span to make room for the one being added. */
+    DROP_OLDEST,
+    /**
+     * Blocks the calling thread up to {@link Builder#blockTimeout(long, TimeUnit)}, then drops the
+     * span being added.
+     */
+    BLOCK
+  }
+
+  /** @since 6.1 */
+  public static Builder newBuilder(SpanHandler delegate) {
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    return new Builder(delegate);
+  }
+
+  public static final class Builder {
+    final SpanHandler delegate;
+    int queueSize = 1024, batchSize = 64;
+    OverflowStrategy overflowStrategy = OverflowStrategy.DROP_NEWEST;
+    long blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    long closeTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+    String threadName = "AsyncSpanHandler";
+
+    Builder(SpanHandler delegate) {
+      this.delegate = delegate;
+    }
+
+    /**
+     * Maximum count of spans waiting for the delegate. This is rounded up to a power of two, no
+     * less than two. Default 1024.
+     */
+    public Builder queueSize(int queueSize) {
+      if (queueSize <= 0) throw new IllegalArgumentException("queueSize <= 0");
+      if (queueSize > 1 << 30) throw new IllegalArgumentException("queueSize > 2^30");
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /** Maximum count of spans drained from the queue before invoking the delegate. Default 64. */
+    public Builder batchSize(int batchSize) {
+      if (batchSize <= 0) throw new IllegalArgumentException("batchSize <= 0");
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /** Defaults to {@link OverflowStrategy#DROP_NEWEST}. */
+    public Builder overflowStrategy(OverflowStrategy overflowStrategy) {
+      if (overflowStrategy == null) throw new NullPointerException("overflowStrategy == null");
+      this.overflowStrategy = overflowStrategy;
+      return this;
+    }
+
+    /** Only used with {@link OverflowStrategy#BLOCK}. Defaults to 10 milliseconds. */
+    public Builder blockTimeout(long timeout, TimeUnit unit) {
+      if (timeout < 0) throw new IllegalArgumentException("timeout < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.blockTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /** How long {@link #close()} waits for queued spans to drain. Defaults to 1 second. */
+    public Builder closeTimeout(long timeout, TimeUnit unit) {
+      if (timeout < 0) throw new IllegalArgumentException("timeout < 0");
+      if (unit == null) throw new NullPointerException("unit == null");
+      this.closeTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /** Name of the daemon thread which invokes the delegate. Defaults to "AsyncSpanHandler". */
+    public Builder threadName(String threadName) {
+      if (threadName == null) throw new NullPointerException("threadName == null");
+      this.threadName = threadName;
+      return this;
+    }
+
+    /** Starts the consumer thread, which runs until {@link AsyncSpanHandler#close()}. */
+    public AsyncSpanHandler build() {
+      AsyncSpanHandler result = new AsyncSpanHandler(this);
+      result.consumer.start();
+      return result;
+    }
+  }
+
+  final SpanHandler delegate;
+  final SpanQueue queue;
+  final OverflowStrategy overflowStrategy;
+  final long blockTimeoutNanos, closeTimeoutNanos;
+  final Thread consumer;
+  final AtomicLong droppedSpans = new AtomicLong();
+  volatile boolean closed, consumerParked;
+
+  AsyncSpanHandler(Builder builder) {
+    delegate = builder.delegate;
+    queue = new SpanQueue(builder.queueSize);
+    overflowStrategy = builder.overflowStrategy;
+    blockTimeoutNanos = builder.blockTimeoutNanos;
+    closeTimeoutNanos = builder.closeTimeoutNanos;
+    consumer = new Thread(new Consumer(builder.batchSize), builder.threadName);
+    consumer.setDaemon(true);
+  }
+
+  /** Count of spans accepted for the delegate since this handler was built. */
+  public long queuedSpans() {
+    return queue.offered();
+  }
+
+  /** Count of spans which were not passed to the delegate due to overflow or being closed. */
+  public long droppedSpans() {
+    return droppedSpans.get();
+  }
+
+  @Override
+  public boolean begin(TraceContext context, MutableSpan span, @Nullable TraceContext parent) {
+    return delegate.begin(context, span, parent);
+  }
+
+  @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    if (closed) {
+      droppedSpans.incrementAndGet();
+      return true;
+    }
+
+    if (!queue.offer(context, span, cause)) {
+      switch (overflowStrategy) {
+        case DROP_OLDEST:
+          offerDroppingOldest(context, span, cause);
+          break;
+        case BLOCK:
+          offerBlocking(context, span, cause);
+          break;
+        default:
+          droppedSpans.incrementAndGet();
+          return true;
+      }
+    }
+
+    if (consumerParked) LockSupport.unpark(consumer);
+    return true;
+  }
+
+  void offerDroppingOldest(TraceContext context, MutableSpan span, Cause cause) {
+    do {
+      if (queue.poll(null, 0)) droppedSpans.incrementAndGet();
+    } while (!queue.offer(context, span, cause));
+  }
+
+  void offerBlocking(TraceContext context, MutableSpan span, Cause cause) {
+    long deadline = System.nanoTime() + blockTimeoutNanos;
+    do {
+      LockSupport.unpark(consumer); // in case the consumer is behind
+      if (deadline - System.nanoTime() <= 0L || closed) {
+        droppedSpans.incrementAndGet();
+        return;
+      }
+      LockSupport.parkNanos(this, 1000L);
+    } while (!queue.offer(context, span, cause));
+  }
+
+  @Override public boolean handlesAbandoned() {
+    return delegate.handlesAbandoned();
+  }
+
+  /**
+   * Stops accepting spans and waits up to {@link Builder#closeTimeout(long, TimeUnit)} for the
+   * delegate to process any queued.
+   */
+  @Override public void close() {
+    if (closed) return;
+    closed = true;
+    LockSupport.unpark(consumer);
+    try {
+      consumer.join(TimeUnit.NANOSECONDS.toMillis(closeTimeoutNanos));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override public String toString() {
+    return "AsyncSpanHandler{" + delegate + "}";
+  }
+
+  final class Consumer implements Runnable {
+    final Batch batch;
+
+    Consumer(int batchSize) {
+      batch = new Batch(batchSize);
+    }
+
+    @Override public void run() {
+      while (true) {
+        int count = queue.drainTo(batch);
+        if (count > 0) {
+          handle(count);
+          continue;
+        }
+        if (closed) return; // only exit once the queue is drained
+
+        consumerParked = true;
+        if (queue.isEmpty() && !closed) LockSupport.park(this);
+        consumerParked = false;
+      }
+    }
+
+    void handle(int count) {
+      for (int i = 0; i < count; i++) {
+        TraceContext context = batch.contexts[i];
+        try {
+          delegate.end(context, batch.spans[i], batch.causes[i]);
+        } catch (Throwable t) {
+          propagateIfFatal(t);
+          Platform.get().log("error handling end {0}", context, t);
+        }
+      }
+      batch.clear(count);
+    }
+  }
+
+  /** Reusable arrays the consumer drains into, so that draining doesn't allocate. */
+  static final class Batch {
+    final TraceContext[] contexts;
+    final MutableSpan[] spans;
+    final Cause[] causes;
+
+    Batch(int size) {
+      contexts = new TraceContext[size];
+      spans = new MutableSpan[size];
+      causes = new Cause[size];
+    }
+
+    void clear(int count) {
+      for (int i = 0; i < count; i++) {
+        contexts[i] = null;
+        spans[i] = null;
+        causes[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Bounded, lock-free ring buffer, based on Dmitry Vyukov's bounded MPMC queue. Each slot has a
+   * sequence number which says whether it is ready to be written or read at a given position. The
+   * consumer thread is the usual reader, but producers also read when {@link
+   * OverflowStrategy#DROP_OLDEST}.
+   *
+   * <p>Slots are stored in parallel arrays to avoid allocating a holder per span. The volatile write
+   * of the slot's sequence publishes the plain array writes before it.
+   */
+  static final class SpanQueue {
+    final int mask;
+    final AtomicLongArray sequences;
+    final TraceContext[] contexts;
+    final MutableSpan[] spans;
+    final Cause[] causes;
+    final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+    SpanQueue(int queueSize) {
+      // sequence numbers can't distinguish full from empty with only one slot
+      int capacity = queueSize <= 2 ? 2 : Integer.highestOneBit(queueSize - 1) << 1;
+      mask = capacity - 1;
+      sequences = new AtomicLongArray(capacity);
+      for (int i = 0; i < capacity; i++) sequences.set(i, i);
+      contexts = new TraceContext[capacity];
+      spans = new MutableSpan[capacity];
+      causes = new Cause[capacity];
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    long offered() {
+      return tail.get();
+    }
+
+    boolean isEmpty() {
+      return head.get() == tail.get();
+    }
+
+    boolean offer(TraceContext context, MutableSpan span, Cause cause) {
+      long position = tail.get();
+      while (true) {
+        int index = (int) position & mask;
+        long difference = sequences.get(index) - position;
+        if (difference == 0L) {
+          if (tail.compareAndSet(position, position + 1)) {
+            contexts[index] = context;
+            spans[index] = span;
+            causes[index] = cause;
+            sequences.set(index, position + 1);
+            return true;
+          }
+          position = tail.get();
+        } else if (difference < 0L) {
+          return false; // full
+        } else {
+          position = tail.get(); // another producer won
+        }
+      }
+    }
+
+    /** Reads the next slot into the batch at the given index, or discards it if batch is null. */
+    boolean poll(@Nullable Batch batch, int batchIndex) {
+      long position = head.get();
+      while (true) {
+        int index = (int) position & mask;
+        long difference = sequences.get(index) - (position + 1);
+        if (difference == 0L) {
+          if (head.compareAndSet(position, position + 1)) {
+            if (batch != null) {
+              batch.contexts[batchIndex] = contexts[index];
+              batch.spans[batchIndex] = spans[index];
+              batch.causes[batchIndex] = causes[index];
+            }
+            contexts[index] = null;
+            spans[index] = null;
+            causes[index] = null;
+            sequences.set(index, position + mask + 1);
+            return true;
+          }
+          position = head.get();
+        } else if (difference < 0L) {
+          return false; // empty
+        } else {
+          position = head.get(); // another reader won
+        }
+      }
+    }
+
+    int drainTo(Batch batch) {
+      int count = 0, max = batch.spans.length;
+      while (count < max && poll(batch, count)) count++;
+      return count;
+    }
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Tags;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends encoded spans to memory-mapped segment files in a local directory, for an exporter to
+ * {@linkplain #drain(SegmentConsumer) drain} later. This turns bursts of spans into sequential
+ * writes, and retains spans across collector outages without growing the heap.
+ *
+ * <p>Ex. to spool spans, and export them on a schedule:
+ * <pre>{@code
+ * spool = FileSpoolSpanHandler.newBuilder(new File("/var/spool/spans"))
+ *   .encoder(MutableSpanBytesEncoder.zipkinProto3(Tags.ERROR))
+ *   .maxBytes(512 * 1024 * 1024)
+ *   .build();
+ * tracingBuilder.addSpanHandler(spool);
+ *
+ * // on the exporter thread
+ * spool.drain(new SegmentConsumer() {
+ *   @Override public boolean accept(List<ByteBuffer> spans) {
+ *     return sender.trySend(spans); // false leaves the segment for a later attempt
+ *   }
+ * });
+ * }</pre>
+ *
+ * <h3>Segments</h3>
+ * Each segment is a file of {@link Builder#segmentSize(int)} bytes, named by an increasing
+ * sequence number. Spans are appended to the active segment until it is full, at which point it is
+ * sealed and a new one is created. Sealed segments are immutable until drained and deleted. The
+ * active segment can be drained, too, without sealing it: the header records the position drained
+ * so far. When {@link Builder#maxBytes(long)} would be exceeded by a new segment, spans are
+ * {@linkplain #droppedSpans() dropped} until a segment is drained.
+ *
+ * <p>Segments are unmapped as soon as they are sealed or drained, as opposed to waiting for
+ * garbage collection, when the {@linkplain Platform#unmap(ByteBuffer) platform supports it}.
+ *
+ * <h3>Recovery</h3>
+ * Each span is written as a length prefix followed by its encoded bytes. The length is written
+ * last, so a span interrupted by a crash reads as the end of the segment. On {@link
+ * Builder#build()}, existing segments are sealed for draining, and new spans go to a new segment.
+ * Segments are forced to disk when sealed, so spans survive a process crash, and all but the active
+ * segment survive an operating system crash.
+ *
+ * <p>Encoding happens on the calling thread while holding a lock. Consider wrapping this in an
+ * {@link AsyncSpanHandler} when that is a concern.
+ *
+ * @since 6.1
+ */
+public final class FileSpoolSpanHandler extends SpanHandler implements Closeable {
+  static final int MAGIC = 0x42535031; // BSP1
+  static final int HEADER_SIZE = 8; // magic, then the position drained so far
+  static final int DRAINED_OFFSET = 4;
+  static final int LENGTH_PREFIX_SIZE = 4;
+  static final String SUFFIX = ".spool";
+
+  /**
+   * Receives the spans of one segment during {@link #drain(SegmentConsumer)}.
+   *
+   * @since 6.1
+   */
+  public interface SegmentConsumer {
+    /**
+     * Each buffer is a read-only view of one encoded span, in the order they were spooled. Spans
+     * are copied out of the segment, so buffers remain valid after this call, for example to send
+     * them asynchronously.
+     *
+     * @return {@code true} to delete the segment. {@code false} leaves it for a later attempt and
+     * stops draining.
+     */
+    boolean accept(List<ByteBuffer> spans);
+  }
+
+  /** @since 6.1 */
+  public static Builder newBuilder(File directory) {
+    if (directory == null) throw new NullPointerException("directory == null");
+    return new Builder(directory);
+  }
+
+  public static final class Builder {
+    final File directory;
+    MutableSpanBytesEncoder encoder = MutableSpanBytesEncoder.zipkinProto3(Tags.ERROR);
+    int segmentSize = 8 * 1024 * 1024;
+    long maxBytes = 1024L * 1024 * 1024;
+
+    Builder(File directory) {
+      this.directory = directory;
+    }
+
+    /** Defaults to {@link MutableSpanBytesEncoder#zipkinProto3(brave.Tag)}. */
+    public Builder encoder(MutableSpanBytesEncoder encoder) {
+      if (encoder == null) throw new NullPointerException("encoder == null");
+      this.encoder = encoder;
+      return this;
+    }
+
+    /** Size of each segment file. Spans larger than this are dropped. Defaults to 8 MiB. */
+    public Builder segmentSize(int segmentSize) {
+      if (segmentSize < 64) throw new IllegalArgumentException("segmentSize < 64");
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Maximum total size of segment files. This is rounded down to a multiple of {@link
+     * #segmentSize(int)}, no less than two segments. Defaults to 1 GiB.
+     */
+    public Builder maxBytes(long maxBytes) {
+      if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes <= 0");
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Creates the directory if needed, seals any segments left from a prior process, and creates
+     * a new active segment.
+     */
+    public FileSpoolSpanHandler build() throws IOException {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        throw new IOException("couldn't create directory " + directory);
+      }
+      FileSpoolSpanHandler result = new FileSpoolSpanHandler(this);
+      result.recover();
+      return result;
+    }
+  }
+
+  final File directory;
+  final MutableSpanBytesEncoder encoder;
+  final int segmentSize, maxSegments;
+  final Object lock = new Object(), drainLock = new Object();
+  final AtomicLong spooledSpans = new AtomicLong(), droppedSpans = new AtomicLong();
+
+  // guarded by lock
+  final ArrayDeque<File> sealed = new ArrayDeque<File>();
+  Segment active;
+  long nextSequence;
+  boolean closed;
+
+  FileSpoolSpanHandler(Builder builder) {
+    directory = builder.directory;
+    encoder = builder.encoder;
+    segmentSize = builder.segmentSize;
+    maxSegments = (int) Math.max(2L, Math.min(builder.maxBytes / segmentSize, Integer.MAX_VALUE));
+  }
+
+  /** Count of spans written to a segment. */
+  public long spooledSpans() {
+    return spooledSpans.get();
+  }
+
+  /** Count of spans not written due to {@link Builder#maxBytes(long)}, size or I/O errors. */
+  public long droppedSpans() {
+    return droppedSpans.get();
+  }
+
+  /** Spans are encoded before this returns. */
+  @Override public boolean referencesSpanAfterEnd() {
+    return false;
+  }
+
+  /** Always returns {@code true}, even when the span was {@linkplain #droppedSpans() dropped}. */
+  @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    boolean spooled;
+    synchronized (lock) {
+      // Don't rotate an empty segment, as the span is larger than a segment.
+      spooled = !closed && (append(span)
+        || ((active == null || active.count > 0) && rotate() && append(span)));
+    }
+    if (spooled) {
+      spooledSpans.incrementAndGet();
+    } else {
+      droppedSpans.incrementAndGet();
+    }
+    return true;
+  }
+
+  /**
+   * Passes each sealed segment to the consumer, oldest first, deleting it when accepted. Then,
+   * passes any spans appended to the active segment since it was last drained, without sealing it.
+   *
+   * @return the count of segments drained, including the active one.
+   */
+  public int drain(SegmentConsumer consumer) throws IOException {
+    if (consumer == null) throw new NullPointerException("consumer == null");
+    synchronized (drainLock) { // segments are read outside the lock, so only drain one at a time
+      int drained = 0;
+      while (true) {
+        File file;
+        synchronized (lock) {
+          file = sealed.peekFirst();
+        }
+        if (file == null) return drainActive(consumer) ? drained + 1 : drained;
+
+        if (!drainSealed(file, consumer)) return drained;
+        synchronized (lock) {
+          sealed.pollFirst();
+        }
+        delete(file);
+        drained++;
+      }
+    }
+  }
+
+  /** Returns {@code true} if the segment was accepted, so should be deleted. */
+  static boolean drainSealed(File file, SegmentConsumer consumer) throws IOException {
+    MappedByteBuffer buffer;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      raf.close(); // the mapping remains valid
+    }
+    try {
+      int limit = buffer.limit();
+      if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC) return true; // unreadable
+      List<ByteBuffer> spans = read(buffer, drainedPosition(buffer, limit), limit);
+      return spans.isEmpty() || consumer.accept(spans);
+    } finally {
+      Platform.get().unmap(buffer);
+    }
+  }
+
+  /**
+   * Passes spans in the active segment that weren't yet drained, returning {@code true} if they
+   * were accepted. This doesn't seal the segment, as that would map a new one.
+   */
+  boolean drainActive(SegmentConsumer consumer) {
+    Segment segment;
+    ByteBuffer buffer;
+    int position, limit;
+    synchronized (lock) {
+      segment = active;
+      if (closed || segment == null || segment.drained == segment.position) return false;
+      segment.draining = true; // defers unmapping, as it is read outside the lock
+      buffer = segment.buffer.duplicate(); // as spans are appended concurrently
+      position = segment.drained;
+      limit = segment.position;
+    }
+    boolean accepted = false;
+    try {
+      List<ByteBuffer> spans = read(buffer, position, limit);
+      accepted = spans.isEmpty() || consumer.accept(spans);
+      return accepted;
+    } finally {
+      synchronized (lock) {
+        segment.draining = false;
+        if (accepted) {
+          segment.drained = limit;
+          segment.buffer.putInt(DRAINED_OFFSET, limit);
+        }
+        if (segment != active || closed) segment.unmap(); // sealed or closed while draining
+      }
+    }
+  }
+
+  /**
+   * Forces the active segment to disk and unmaps it. Spans are dropped after this is called.
+   */
+  @Override public void close() {
+    synchronized (lock) {
+      if (closed) return;
+      closed = true;
+      if (active == null) return;
+      active.buffer.force();
+      if (!active.draining) active.unmap();
+    }
+  }
+
+  /** Returns {@code false} if the span didn't fit in the active segment. */
+  boolean append(MutableSpan span) {
+    Segment segment = active;
+    if (segment == null) return false;
+    MappedByteBuffer buffer = segment.buffer;
+    int position = segment.position;
+    if (buffer.capacity() - position <= LENGTH_PREFIX_SIZE) return false;
+
+    // Casts avoid linking to covariant ByteBuffer methods added in Java 9
+    ((Buffer) buffer).position(position + LENGTH_PREFIX_SIZE);
+    int length;
+    try {
+      length = encoder.encode(span, buffer);
+    } catch (IndexOutOfBoundsException e) {
+      return false;
+    }
+    if (length == 0) return true; // nothing to read back
+    buffer.putInt(position, length); // after the span, so a torn write reads as the end
+    segment.position = position + LENGTH_PREFIX_SIZE + length;
+    segment.count++;
+    return true;
+  }
+
+  /** Seals the active segment and creates the next, unless that would exceed the size limit. */
+  boolean rotate() {
+    if (sealed.size() + 1 >= maxSegments) return false;
+    Segment next;
+    try {
+      next = Segment.create(segmentFile(nextSequence), segmentSize);
+    } catch (IOException e) {
+      Platform.get().log("error creating segment in {0}", directory, e);
+      return false;
+    }
+    nextSequence++;
+    if (active != null) {
+      active.buffer.force();
+      sealed.addLast(active.file);
+      if (!active.draining) active.unmap();
+    }
+    active = next;
+    return true;
+  }
+
+  void recover() throws IOException {
+    String[] names = directory.list(new FilenameFilter() {
+      @Override public boolean accept(File dir, String name) {
+        return name.endsWith(SUFFIX) && parseSequence(name) != -1L;
+      }
+    });
+    if (names == null) throw new IOException("couldn't list directory " + directory);
+    Arrays.sort(names); // sequence numbers are zero padded
+    synchronized (lock) {
+      for (String name : names) {
+        sealed.addLast(new File(directory, name));
+        nextSequence = parseSequence(name) + 1;
+      }
+      // Don't append to an existing segment, as a crash could have left data after its end.
+      if (!rotate()) {
+        // At the size limit, so spans drop until a segment is drained.
+        Platform.get().log("{0} is full: spans will drop until drained", directory, null);
+      }
+    }
+  }
+
+  File segmentFile(long sequence) {
+    String number = Long.toString(sequence);
+    char[] zeros = new char[19 - number.length()]; // Long.MAX_VALUE has 19 digits
+    Arrays.fill(zeros, '0');
+    return new File(directory, new String(zeros) + number + SUFFIX);
+  }
+
+  static long parseSequence(String name) {
+    int end = name.length() - SUFFIX.length();
+    if (end != 19) return -1L;
+    long result = 0;
+    for (int i = 0; i < end; i++) {
+      char c = name.charAt(i);
+      if (c < '0' || c > '9') return -1L;
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  /** Returns where to resume reading, or the first span if the header is invalid. */
+  static int drainedPosition(ByteBuffer buffer, int limit) {
+    int drained = buffer.getInt(DRAINED_OFFSET);
+    return drained < HEADER_SIZE || drained > limit ? HEADER_SIZE : drained;
+  }
+
+  /**
+   * Returns the spans in a segment, stopping at the first incomplete or invalid one.
+   *
+   * <p>Spans are copied to the heap, as reading a view of the segment after it is unmapped would
+   * crash the JVM, as opposed to raising an exception.
+   */
+  static List<ByteBuffer> read(ByteBuffer segment, int position, int limit) {
+    int end = position;
+    while (end + LENGTH_PREFIX_SIZE <= limit) {
+      int length = segment.getInt(end);
+      if (length <= 0 || length > limit - end - LENGTH_PREFIX_SIZE) break; // end, or torn write
+      end += LENGTH_PREFIX_SIZE + length;
+    }
+    if (end == position) return Collections.emptyList();
+
+    // Copy only the readable spans, which is usually much less than the segment size.
+    ByteBuffer source = segment.duplicate();
+    ((Buffer) source).limit(end);
+    ((Buffer) source).position(position);
+    byte[] bytes = new byte[end - position];
+    source.get(bytes);
+
+    List<ByteBuffer> spans = new ArrayList<ByteBuffer>();
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    for (int i = 0; i < bytes.length; ) {
+      int length = buffer.getInt(i);
+      i += LENGTH_PREFIX_SIZE;
+      spans.add(ByteBuffer.wrap(bytes, i, length).slice().asReadOnlyBuffer());
+      i += length;
+    }
+    return spans;
+  }
+
+  void delete(File file) {
+    if (!file.delete() && file.exists()) {
+      Platform.get().log("couldn't delete drained segment {0}", file, null);
+    }
+  }
+
+  @Override public String toString() {
+    return "FileSpoolSpanHandler{directory=" + directory + "}";
+  }
+
+  /** The segment spans are appended to. Guarded by {@link FileSpoolSpanHandler#lock} */
+  static final class Segment {
+    static Segment create(File file, int size) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(size); // zero filled, so unwritten length prefixes read as the end
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(DRAINED_OFFSET, HEADER_SIZE);
+        return new Segment(file, buffer);
+      } finally {
+        raf.close(); // the mapping remains valid
+      }
+    }
+
+    final File file;
+    final MappedByteBuffer buffer;
+    int position = HEADER_SIZE, drained = HEADER_SIZE, count;
+    boolean draining, unmapped;
+
+    Segment(File file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    /** Called once the segment is sealed or closed, and not being drained. */
+    void unmap() {
+      if (unmapped) return;
+      unmapped = true;
+      Platform.get().unmap(buffer);
+    }
+  }
+}
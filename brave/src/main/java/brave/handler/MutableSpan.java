@@ -8,14 +8,18 @@ import brave.Span.Kind;
 import brave.SpanCustomizer;
 import brave.Tags;
 import brave.handler.MutableSpanBytesEncoder.ZipkinJsonV2;
+import brave.internal.InternalMutableSpan;
 import brave.internal.Nullable;
 import brave.internal.RecyclableBuffers;
 import brave.internal.codec.IpLiteral;
 import brave.internal.collect.UnsafeArrayMap;
 import brave.propagation.TraceContext;
 import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import static brave.internal.InternalPropagation.FLAG_DEBUG;
@@ -81,8 +85,23 @@ import static brave.internal.codec.JsonWriter.UTF_8;
  */
 public final class MutableSpan implements Cloneable {
   static final Object[] EMPTY_ARRAY = new Object[0];
+  static final long[] EMPTY_LONG_ARRAY = new long[0];
+  static final String[] EMPTY_STRING_ARRAY = new String[0];
   static final MutableSpan EMPTY = new MutableSpan();
 
+  static {
+    InternalMutableSpan.instance = new InternalMutableSpan() {
+      @Override public MutableSpan newSpan(TraceContext context, MutableSpan defaults,
+        Object[] holder) {
+        return new MutableSpan(context, defaults, holder);
+      }
+
+      @Override public void recycleArrays(MutableSpan span, Object[] holder) {
+        span.recycleArrays(holder);
+      }
+    };
+  }
+
   /** @since 5.4 */
   public interface TagConsumer<T> {
     /** @see brave.SpanCustomizer#tag(String, String) */
@@ -132,9 +151,14 @@ public final class MutableSpan implements Cloneable {
   // (copy-on-write), as this type is externally synchronized. In other words, this isn't
   // copy-on-write. We just grow arrays as we need to similar to how ArrayList does it.
   //
-  // tags [(key, value)] annotations [(timestamp, value)]
-  Object[] tags = EMPTY_ARRAY, annotations = EMPTY_ARRAY;
-  int tagCount, annotationCount;
+  // tags [(key, value)]
+  Object[] tags = EMPTY_ARRAY;
+  int tagCount;
+
+  // Annotations use parallel arrays, so that timestamps needn't be boxed as Long.
+  long[] annotationTimestamps = EMPTY_LONG_ARRAY;
+  String[] annotationValues = EMPTY_STRING_ARRAY;
+  int annotationCount;
 
   /** @since 5.4 */
   public MutableSpan() {
@@ -151,6 +175,25 @@ public final class MutableSpan implements Cloneable {
   public MutableSpan(TraceContext context, @Nullable MutableSpan defaults) {
     this(defaults != null ? defaults : EMPTY);
     if (context == null) throw new NullPointerException("context == null");
+    setContext(context);
+  }
+
+  /** @since 5.12 */
+  public MutableSpan(MutableSpan toCopy) {
+    if (toCopy == null) throw new NullPointerException("toCopy == null");
+    if (toCopy.equals(EMPTY)) return;
+    copyFields(toCopy);
+    // In case this is a default span, don't hold a reference to the same array!
+    tags = copy(toCopy.tags);
+    tagCount = toCopy.tagCount;
+    annotationCount = toCopy.annotationCount;
+    if (annotationCount > 0) {
+      annotationTimestamps = Arrays.copyOf(toCopy.annotationTimestamps, annotationCount);
+      annotationValues = Arrays.copyOf(toCopy.annotationValues, annotationCount);
+    }
+  }
+
+  void setContext(TraceContext context) {
     // We don't call the setters as context.*IdString are well formed
     this.traceId = context.traceIdString();
     this.localRootId = context.localRootIdString();
@@ -161,10 +204,7 @@ public final class MutableSpan implements Cloneable {
     if (context.shared()) setShared();
   }
 
-  /** @since 5.12 */
-  public MutableSpan(MutableSpan toCopy) {
-    if (toCopy == null) throw new NullPointerException("toCopy == null");
-    if (toCopy.equals(EMPTY)) return;
+  void copyFields(MutableSpan toCopy) {
     traceId = toCopy.traceId;
     localRootId = toCopy.localRootId;
     parentId = toCopy.parentId;
@@ -180,14 +220,62 @@ public final class MutableSpan implements Cloneable {
     remoteServiceName = toCopy.remoteServiceName;
     remoteIp = toCopy.remoteIp;
     remotePort = toCopy.remotePort;
-    // In case this is a default span, don't hold a reference to the same array!
-    tags = copy(toCopy.tags);
-    tagCount = toCopy.tagCount;
-    annotations = copy(toCopy.annotations);
-    annotationCount = toCopy.annotationCount;
     error = toCopy.error;
   }
 
+  /**
+   * Same as {@link #MutableSpan(TraceContext, MutableSpan)}, except arrays are taken from the
+   * holder, if present. The holder is left empty.
+   *
+   * @see #recycleArrays(Object[])
+   * @see InternalMutableSpan#newSpan(TraceContext, MutableSpan, Object[])
+   */
+  MutableSpan(TraceContext context, MutableSpan defaults, Object[] holder) {
+    copyFields(defaults);
+    Object[] tags = (Object[]) holder[0];
+    int tagLength = defaults.tagCount * 2;
+    if (tags != null && tags.length >= tagLength) {
+      System.arraycopy(defaults.tags, 0, tags, 0, tagLength);
+      this.tags = tags;
+    } else {
+      this.tags = copy(defaults.tags);
+    }
+    tagCount = defaults.tagCount;
+    if (holder[1] != null) {
+      annotationTimestamps = (long[]) holder[1];
+      annotationValues = (String[]) holder[2];
+    }
+    for (int i = 0; i < defaults.annotationCount; i++) {
+      annotate(defaults.annotationTimestamps[i], defaults.annotationValues[i]);
+    }
+    holder[0] = holder[1] = holder[2] = null;
+    setContext(context);
+  }
+
+  /**
+   * Moves cleared arrays into an empty holder, so that a new span can reuse them. This span is left
+   * without tags or annotations, and later writes to it allocate new arrays. Hence, a late write,
+   * such as a tag added after the span finished, can't reach the span reusing the arrays.
+   *
+   * @see InternalMutableSpan#recycleArrays(MutableSpan, Object[])
+   */
+  void recycleArrays(Object[] holder) {
+    if (tags.length > 0) {
+      Arrays.fill(tags, null); // null keys terminate the tags() view
+      holder[0] = tags;
+    }
+    if (annotationValues.length > 0) {
+      Arrays.fill(annotationValues, null);
+      holder[1] = annotationTimestamps;
+      holder[2] = annotationValues;
+    }
+    tags = EMPTY_ARRAY;
+    tagCount = 0;
+    annotationTimestamps = EMPTY_LONG_ARRAY;
+    annotationValues = EMPTY_STRING_ARRAY;
+    annotationCount = 0;
+  }
+
   /**
    * Returns the {@linkplain TraceContext#traceIdString() trace ID}
    *
@@ -594,7 +682,7 @@ public final class MutableSpan implements Cloneable {
     // IndexOutOfBoundsException(i) is Java 9+
     if (i < 0) throw new IndexOutOfBoundsException("i < 0");
     if (i >= annotationCount) throw new IndexOutOfBoundsException("i >= annotationCount");
-    return (Long) annotations[i * 2];
+    return annotationTimestamps[i];
   }
 
   /**
@@ -609,18 +697,30 @@ public final class MutableSpan implements Cloneable {
     // IndexOutOfBoundsException(i) is Java 9+
     if (i < 0) throw new IndexOutOfBoundsException("i < 0");
     if (i >= annotationCount) throw new IndexOutOfBoundsException("i >= annotationCount");
-    return (String) annotations[i * 2 + 1];
+    return annotationValues[i];
   }
 
   /**
-   * A read-only view of the current annotations as a collection of {@code (epochMicroseconds ->
+   * A read-only copy of the current annotations as a collection of {@code (epochMicroseconds ->
    * value)}.
    *
    * @see #forEachAnnotation(AnnotationConsumer, Object)
    * @since 5.12
    */
   public Collection<Map.Entry<Long, String>> annotations() {
-    return UnsafeArrayMap.<Long, String>newBuilder().build(annotations).entrySet();
+    if (annotationCount == 0) return Collections.emptyList();
+    return new AnnotationsView();
+  }
+
+  /** Reads the parallel arrays on access, so that calling {@link #annotations()} is cheap. */
+  final class AnnotationsView extends AbstractList<Map.Entry<Long, String>> {
+    @Override public Map.Entry<Long, String> get(int i) {
+      return new SimpleImmutableEntry<Long, String>(annotationTimestampAt(i), annotationValueAt(i));
+    }
+
+    @Override public int size() {
+      return annotationCount;
+    }
   }
 
   /**
@@ -642,9 +742,8 @@ public final class MutableSpan implements Cloneable {
    * @since 5.4
    */
   public <T> void forEachAnnotation(AnnotationConsumer<T> annotationConsumer, T target) {
-    for (int i = 0, length = annotationCount * 2; i < length; i += 2) {
-      long timestamp = (Long) annotations[i];
-      annotationConsumer.accept(target, timestamp, annotations[i + 1].toString());
+    for (int i = 0; i < annotationCount; i++) {
+      annotationConsumer.accept(target, annotationTimestamps[i], annotationValues[i]);
     }
   }
 
@@ -665,16 +764,13 @@ public final class MutableSpan implements Cloneable {
    * @since 5.4
    */
   public void forEachAnnotation(AnnotationUpdater annotationUpdater) {
-    for (int i = 0, length = annotationCount * 2; i < length; i += 2) {
-      String value = annotations[i + 1].toString();
-      String newValue = annotationUpdater.update((Long) annotations[i], value);
+    for (int i = 0; i < annotationCount; i++) {
+      String newValue = annotationUpdater.update(annotationTimestamps[i], annotationValues[i]);
       if (newValue != null) {
-        update(annotations, i, newValue);
+        annotationValues[i] = newValue;
       } else {
-        remove(annotations, i);
-        length -= 2;
-        annotationCount--;
-        i -= 2;
+        removeAnnotation(i);
+        i--;
       }
     }
   }
@@ -688,8 +784,8 @@ public final class MutableSpan implements Cloneable {
    */
   public boolean containsAnnotation(String value) {
     if (value == null) throw new NullPointerException("value == null");
-    for (int i = 0, length = annotationCount * 2; i < length; i += 2) {
-      if (value.equals(annotations[i + 1])) return true;
+    for (int i = 0; i < annotationCount; i++) {
+      if (value.equals(annotationValues[i])) return true;
     }
     return false;
   }
@@ -704,11 +800,30 @@ public final class MutableSpan implements Cloneable {
   public void annotate(long timestamp, String value) {
     if (value == null) throw new NullPointerException("value == null");
     if (timestamp == 0L) return; // silently ignore data Zipkin would drop
-    annotations =
-      add(annotations, annotationCount * 2, timestamp, value); // Annotations are always add.
+    int i = annotationCount; // Annotations are always add.
+    if (i == annotationTimestamps.length) {
+      // Grow one at a time while small, as most spans have few annotations, then by half.
+      int newLength = i < 4 ? i + 1 : i + (i >> 1);
+      annotationTimestamps = Arrays.copyOf(annotationTimestamps, newLength);
+      annotationValues = Arrays.copyOf(annotationValues, newLength);
+    }
+    annotationTimestamps[i] = timestamp;
+    annotationValues[i] = value;
     annotationCount++;
   }
 
+  // This shifts down, so that we don't thrash copying arrays when deleting.
+  void removeAnnotation(int i) {
+    int moved = annotationCount - i - 1;
+    if (moved > 0) {
+      System.arraycopy(annotationTimestamps, i + 1, annotationTimestamps, i, moved);
+      System.arraycopy(annotationValues, i + 1, annotationValues, i, moved);
+    }
+    annotationCount--;
+    annotationTimestamps[annotationCount] = 0L;
+    annotationValues[annotationCount] = null;
+  }
+
   /**
    * @see #tagKeyAt(int)
    * @see #tagValueAt(int)
@@ -914,7 +1029,7 @@ public final class MutableSpan implements Cloneable {
     h *= 1000003;
     h ^= entriesHashCode(tags, tagCount);
     h *= 1000003;
-    h ^= entriesHashCode(annotations, annotationCount);
+    h ^= annotationsHashCode(annotationTimestamps, annotationValues, annotationCount);
     h *= 1000003;
     h ^= error == null ? 0 : error.hashCode();
     return h;
@@ -943,7 +1058,7 @@ public final class MutableSpan implements Cloneable {
       && equal(remoteIp, that.remoteIp)
       && remotePort == that.remotePort
       && entriesEqual(tags, tagCount, that.tags, that.tagCount)
-      && entriesEqual(annotations, annotationCount, that.annotations, that.annotationCount)
+      && annotationsEqual(that)
       && equal(error, that.error);
   }
 
@@ -989,6 +1104,27 @@ public final class MutableSpan implements Cloneable {
     return true;
   }
 
+  boolean annotationsEqual(MutableSpan that) {
+    if (annotationCount != that.annotationCount) return false;
+    for (int i = 0; i < annotationCount; i++) {
+      if (annotationTimestamps[i] != that.annotationTimestamps[i]) return false;
+      if (!annotationValues[i].equals(that.annotationValues[i])) return false;
+    }
+    return true;
+  }
+
+  // Same as entriesHashCode of (timestamp, value) pairs, except without boxing
+  static int annotationsHashCode(long[] timestamps, String[] values, int count) {
+    int h = 1000003;
+    for (int i = 0; i < count; i++) {
+      h ^= (int) ((timestamps[i] >>> 32) ^ timestamps[i]);
+      h *= 1000003;
+      h ^= values[i].hashCode();
+      h *= 1000003;
+    }
+    return h;
+  }
+
   static int entriesHashCode(Object[] entries, int count) {
     int h = 1000003;
     for (int i = 0; i < count * 2; i++) {
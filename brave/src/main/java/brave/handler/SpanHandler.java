@@ -120,6 +120,10 @@ public abstract class SpanHandler {
    * @since 5.12
    */
   public static final SpanHandler NOOP = new SpanHandler() {
+    @Override public boolean referencesSpanAfterEnd() {
+      return false;
+    }
+
     @Override public String toString() {
       return "NoopSpanHandler{}";
     }
@@ -176,4 +180,20 @@ public abstract class SpanHandler {
   public boolean handlesAbandoned() {
     return false;
   }
+
+  /**
+   * Returns {@code false} when this handler doesn't reference the {@link MutableSpan} parameter
+   * after {@link #end(TraceContext, MutableSpan, Cause)} returns. For example, a handler that
+   * synchronously encodes the span, or copies fields it needs, can return {@code false}.
+   *
+   * <p>When all handlers return {@code false}, {@link Tracing.Builder#recycleSpans()} can reuse the
+   * span object for a later span. Handlers that queue or store the span, such as {@link
+   * AsyncSpanHandler}, must return {@code true}, which is the default.
+   *
+   * @see Tracing.Builder#recycleSpans()
+   * @since 6.1
+   */
+  public boolean referencesSpanAfterEnd() {
+    return true;
+  }
 }
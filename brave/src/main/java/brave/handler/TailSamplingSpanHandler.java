@@ -0,0 +1,401 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Tracing;
+import brave.internal.Nullable;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static brave.internal.Throwables.propagateIfFatal;
+
+/**
+ * Buffers spans until their {@linkplain TraceContext#localRootId() local root} ends, then passes
+ * the whole local trace to a delegate only if a {@link Policy} keeps it. This allows recording
+ * slow or failed requests without exporting every trace.
+ *
+ * <p>Ex. to keep local traces that took longer than a second, or that failed:
+ * <pre>{@code
+ * tailSampler = TailSamplingSpanHandler.newBuilder(exportingHandler)
+ *   .latencyThreshold(1, TimeUnit.SECONDS)
+ *   .maxBufferedBytes(32 * 1024 * 1024)
+ *   .build();
+ *
+ * tracing = Tracing.newBuilder()
+ *   .sampler(Sampler.NEVER_SAMPLE) // or a low rate, as sampled traces pass through
+ *   .alwaysSampleLocal() // so that unsampled spans are recorded for this handler
+ *   .addSpanHandler(tailSampler)
+ *   .build();
+ * }</pre>
+ *
+ * <h3>Policies</h3>
+ * A local trace is kept when any policy matches: by default, when any span has an {@linkplain
+ * MutableSpan#error() error} or an "error" tag. Spans of traces {@linkplain TraceContext#sampled()
+ * sampled} up front pass through immediately, as other services record them regardless.
+ *
+ * <p>Spans that end after their local root, for example async children, follow the decision made
+ * for it. Decisions of the last {@link Builder#maxDecisions(int)} local roots are remembered.
+ *
+ * <h3>Memory</h3>
+ * The approximate size of buffered spans is accounted. When {@link Builder#maxBufferedBytes(long)}
+ * is exceeded, the local traces buffered longest are {@linkplain #droppedSpans() dropped}.
+ *
+ * <h3>Handler ordering</h3>
+ * The delegate is invoked when the local root ends, possibly long after a buffered span ended.
+ * This returns {@code true} from {@link #end} regardless, so the delegate should only be added
+ * here, not to {@link Tracing.Builder}. Also, the delegate must not skip spans that aren't {@link
+ * TraceContext#sampled() sampled}, such as via a "report only sampled" setting.
+ *
+ * @since 6.1
+ */
+public final class TailSamplingSpanHandler extends SpanHandler {
+  /**
+   * Decides whether to keep a local trace, when its local root ends.
+   *
+   * @since 6.1
+   */
+  public interface Policy {
+    /**
+     * Returns {@code true} to pass the spans to the delegate.
+     *
+     * @param localRoot the span that ended the local trace, also present in {@code spans}.
+     * @param spans spans in the local trace in the order they ended. Do not modify.
+     */
+    boolean keep(MutableSpan localRoot, List<MutableSpan> spans);
+  }
+
+  /** @since 6.1 */
+  public static Builder newBuilder(SpanHandler delegate) {
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    return new Builder(delegate);
+  }
+
+  public static final class Builder {
+    final SpanHandler delegate;
+    final List<Policy> policies = new ArrayList<Policy>();
+    boolean keepErrors = true;
+    long maxBufferedBytes = 16 * 1024 * 1024;
+    int maxDecisions = 1024;
+
+    Builder(SpanHandler delegate) {
+      this.delegate = delegate;
+    }
+
+    /**
+     * Keeps local traces when any span has an {@linkplain MutableSpan#error() error} or an "error"
+     * tag. Defaults to true.
+     */
+    public Builder keepErrors(boolean keepErrors) {
+      this.keepErrors = keepErrors;
+      return this;
+    }
+
+    /** Keeps local traces when the local root's duration is at least the given threshold. */
+    public Builder latencyThreshold(long threshold, TimeUnit unit) {
+      if (unit == null) throw new NullPointerException("unit == null");
+      if (threshold < 0) throw new IllegalArgumentException("threshold < 0");
+      return addPolicy(new LatencyPolicy(unit.toMicros(threshold)));
+    }
+
+    /**
+     * Keeps local traces when any span has a tag named {@code key}, with the given value unless
+     * {@code null}.
+     */
+    public Builder keepTag(String key, @Nullable String value) {
+      if (key == null) throw new NullPointerException("key == null");
+      return addPolicy(new TagPolicy(key, value));
+    }
+
+    /** Adds a policy, which keeps local traces in addition to the others configured. */
+    public Builder addPolicy(Policy policy) {
+      if (policy == null) throw new NullPointerException("policy == null");
+      policies.add(policy);
+      return this;
+    }
+
+    /** Approximate heap used by buffered spans before dropping. Defaults to 16 MiB. */
+    public Builder maxBufferedBytes(long maxBufferedBytes) {
+      if (maxBufferedBytes <= 0) throw new IllegalArgumentException("maxBufferedBytes <= 0");
+      this.maxBufferedBytes = maxBufferedBytes;
+      return this;
+    }
+
+    /** Count of local root decisions remembered for spans that end later. Defaults to 1024. */
+    public Builder maxDecisions(int maxDecisions) {
+      if (maxDecisions < 0) throw new IllegalArgumentException("maxDecisions < 0");
+      this.maxDecisions = maxDecisions;
+      return this;
+    }
+
+    public TailSamplingSpanHandler build() {
+      return new TailSamplingSpanHandler(this);
+    }
+  }
+
+  final SpanHandler delegate;
+  final Policy[] policies;
+  final long maxBufferedBytes;
+  final AtomicLong keptSpans = new AtomicLong(), droppedSpans = new AtomicLong();
+
+  // guarded by this
+  final LinkedHashMap<Long, LocalTrace> buffered = new LinkedHashMap<Long, LocalTrace>();
+  /** Values are a decision, or a {@link LocalTrace} of spans that ended while deciding. */
+  final Map<Long, Object> decisions;
+  long bufferedBytes;
+
+  TailSamplingSpanHandler(Builder builder) {
+    delegate = builder.delegate;
+    List<Policy> policies = new ArrayList<Policy>();
+    if (builder.keepErrors) policies.add(ErrorPolicy.INSTANCE);
+    policies.addAll(builder.policies);
+    this.policies = policies.toArray(new Policy[0]);
+    maxBufferedBytes = builder.maxBufferedBytes;
+    final int maxDecisions = builder.maxDecisions;
+    decisions = new LinkedHashMap<Long, Object>() {
+      @Override protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest) {
+        return size() > maxDecisions;
+      }
+    };
+  }
+
+  /** Count of spans passed to the delegate. */
+  public long keptSpans() {
+    return keptSpans.get();
+  }
+
+  /** Count of spans not kept by a policy, or dropped due to {@link Builder#maxBufferedBytes}. */
+  public long droppedSpans() {
+    return droppedSpans.get();
+  }
+
+  /** Invokes the delegate, as it cannot be deferred. */
+  @Override
+  public boolean begin(TraceContext context, MutableSpan span, @Nullable TraceContext parent) {
+    return delegate.begin(context, span, parent);
+  }
+
+  /** Always returns {@code true}, as the decision is made when the local root ends. */
+  @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    if (Boolean.TRUE.equals(context.sampled())) {
+      invokeDelegate(context, span, cause);
+      return true;
+    }
+
+    long localRootId = context.localRootId();
+    if (localRootId == 0L) { // not from a Tracer, so treat as its own local trace
+      List<Ended> localTrace = Collections.singletonList(new Ended(context, span, cause));
+      finish(localTrace, keep(span, localTrace));
+      return true;
+    }
+
+    List<Ended> localTrace = null;
+    LocalTrace pending = null;
+    Boolean decision = null;
+    List<LocalTrace> evicted = null;
+    synchronized (this) {
+      Long key = localRootId;
+      Object decided = decisions.get(key);
+      if (decided instanceof LocalTrace) { // the local root is being decided: join it
+        ((LocalTrace) decided).spans.add(new Ended(context, span, cause));
+        return true;
+      } else if (decided != null) {
+        decision = (Boolean) decided;
+      } else if (context.isLocalRoot()) {
+        LocalTrace buffer = buffered.remove(key);
+        localTrace = buffer != null ? buffer.spans : new ArrayList<Ended>(1);
+        localTrace.add(new Ended(context, span, cause));
+        if (buffer != null) bufferedBytes -= buffer.bytes;
+        // Until decided, spans that end go here instead of a new buffer.
+        decisions.put(key, pending = new LocalTrace());
+      } else {
+        LocalTrace buffer = buffered.get(key);
+        if (buffer == null) buffered.put(key, buffer = new LocalTrace());
+        long bytes = sizeInBytes(span);
+        buffer.spans.add(new Ended(context, span, cause));
+        buffer.bytes += bytes;
+        bufferedBytes += bytes;
+        if (bufferedBytes > maxBufferedBytes) evicted = evictOldest();
+      }
+    }
+
+    if (evicted != null) {
+      for (LocalTrace trace : evicted) droppedSpans.addAndGet(trace.spans.size());
+    }
+
+    if (decision != null) { // a late span
+      if (decision) {
+        invokeDelegate(context, span, cause);
+      } else {
+        droppedSpans.incrementAndGet();
+      }
+    } else if (localTrace != null) {
+      boolean keep = keep(span, localTrace);
+      List<Ended> late = new ArrayList<Ended>();
+      synchronized (this) { // before invoking the delegate, so that late spans see the decision
+        decisions.put(localRootId, keep);
+        late.addAll(pending.spans);
+        // In case the pending marker was evicted, take any spans buffered meanwhile.
+        LocalTrace buffer = buffered.remove(localRootId);
+        if (buffer != null) {
+          bufferedBytes -= buffer.bytes;
+          late.addAll(buffer.spans);
+        }
+      }
+      finish(localTrace, keep);
+      finish(late, keep);
+    }
+    return true;
+  }
+
+  boolean keep(MutableSpan localRoot, List<Ended> localTrace) {
+    List<MutableSpan> spans = new ArrayList<MutableSpan>(localTrace.size());
+    for (Ended ended : localTrace) spans.add(ended.span);
+    spans = Collections.unmodifiableList(spans);
+
+    for (Policy policy : policies) {
+      try {
+        if (policy.keep(localRoot, spans)) return true;
+      } catch (Throwable t) {
+        propagateIfFatal(t);
+        Platform.get().log("error evaluating policy {0}", policy, t);
+      }
+    }
+    return false;
+  }
+
+  void finish(List<Ended> localTrace, boolean keep) {
+    if (!keep) {
+      droppedSpans.addAndGet(localTrace.size());
+      return;
+    }
+    for (Ended ended : localTrace) invokeDelegate(ended.context, ended.span, ended.cause);
+  }
+
+  void invokeDelegate(TraceContext context, MutableSpan span, Cause cause) {
+    keptSpans.incrementAndGet();
+    try {
+      delegate.end(context, span, cause);
+    } catch (Throwable t) {
+      propagateIfFatal(t);
+      Platform.get().log("error handling span {0}", span, t);
+    }
+  }
+
+  /** Removes the longest buffered local traces until under the limit. Guarded by this */
+  List<LocalTrace> evictOldest() {
+    List<LocalTrace> result = new ArrayList<LocalTrace>();
+    Iterator<Map.Entry<Long, LocalTrace>> i = buffered.entrySet().iterator();
+    while (bufferedBytes > maxBufferedBytes && i.hasNext()) {
+      Map.Entry<Long, LocalTrace> entry = i.next();
+      i.remove();
+      bufferedBytes -= entry.getValue().bytes;
+      result.add(entry.getValue());
+      // Don't buffer later spans of this local trace, as the local root would see a partial trace.
+      decisions.put(entry.getKey(), Boolean.FALSE);
+    }
+    return result;
+  }
+
+  /** Rough heap usage of a span, counting strings as two bytes per character. */
+  static long sizeInBytes(MutableSpan span) {
+    long result = 256; // the span object, its IDs and the buffer entry
+    result += stringSize(span.name());
+    for (int i = 0, length = span.tagCount(); i < length; i++) {
+      result += stringSize(span.tagKeyAt(i)) + stringSize(span.tagValueAt(i));
+    }
+    for (int i = 0, length = span.annotationCount(); i < length; i++) {
+      result += 16 + stringSize(span.annotationValueAt(i));
+    }
+    return result;
+  }
+
+  static long stringSize(@Nullable String string) {
+    return string != null ? 40 + 2L * string.length() : 0;
+  }
+
+  @Override public String toString() {
+    return "TailSamplingSpanHandler{" + delegate + "}";
+  }
+
+  static final class LocalTrace {
+    final List<Ended> spans = new ArrayList<Ended>();
+    long bytes;
+  }
+
+  static final class Ended {
+    final TraceContext context;
+    final MutableSpan span;
+    final Cause cause;
+
+    Ended(TraceContext context, MutableSpan span, Cause cause) {
+      this.context = context;
+      this.span = span;
+      this.cause = cause;
+    }
+  }
+
+  enum ErrorPolicy implements Policy {
+    INSTANCE;
+
+    @Override public boolean keep(MutableSpan localRoot, List<MutableSpan> spans) {
+      for (int i = 0, length = spans.size(); i < length; i++) {
+        MutableSpan span = spans.get(i);
+        if (span.error() != null || span.tag("error") != null) return true;
+      }
+      return false;
+    }
+
+    @Override public String toString() {
+      return "ErrorPolicy";
+    }
+  }
+
+  static final class LatencyPolicy implements Policy {
+    final long thresholdMicros;
+
+    LatencyPolicy(long thresholdMicros) {
+      this.thresholdMicros = thresholdMicros;
+    }
+
+    @Override public boolean keep(MutableSpan localRoot, List<MutableSpan> spans) {
+      long start = localRoot.startTimestamp(), finish = localRoot.finishTimestamp();
+      return start != 0L && finish != 0L && finish - start >= thresholdMicros;
+    }
+
+    @Override public String toString() {
+      return "LatencyPolicy{thresholdMicros=" + thresholdMicros + "}";
+    }
+  }
+
+  static final class TagPolicy implements Policy {
+    final String key;
+    @Nullable final String value;
+
+    TagPolicy(String key, @Nullable String value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override public boolean keep(MutableSpan localRoot, List<MutableSpan> spans) {
+      for (int i = 0, length = spans.size(); i < length; i++) {
+        String tag = spans.get(i).tag(key);
+        if (tag != null && (value == null || value.equals(tag))) return true;
+      }
+      return false;
+    }
+
+    @Override public String toString() {
+      return "TagPolicy{key=" + key + ", value=" + value + "}";
+    }
+  }
+}
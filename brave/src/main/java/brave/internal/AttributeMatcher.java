@@ -0,0 +1,32 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal;
+
+import brave.sampler.Matcher;
+
+/**
+ * Implemented by matchers that compare a string attribute of the input, such as the HTTP path. This
+ * allows {@link brave.sampler.ParameterizedSampler} to look up candidate rules by attribute value,
+ * as opposed to testing each rule in order.
+ *
+ * <p><em>This is internal:</em> All subtypes of {@link AttributeMatcher} are sealed to this
+ * repository until we better understand implications of making this a public type.
+ */
+public interface AttributeMatcher<P> extends Matcher<P> {
+  /**
+   * Identifies the attribute, such as "http.path". Matchers of the same attribute must return the
+   * same {@link #attributeValue(Object) attribute value} for the same input.
+   */
+  String attribute();
+
+  /** Returns the value of the {@link #attribute()} in the input, or null if there is none. */
+  @Nullable String attributeValue(P input);
+
+  /** The value to compare the attribute with. Never empty. */
+  String value();
+
+  /** Returns true if the attribute starts with the {@link #value()}, false if equal to it. */
+  boolean isPrefix();
+}
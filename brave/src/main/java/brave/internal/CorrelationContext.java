@@ -4,6 +4,8 @@
  */
 package brave.internal;
 
+import java.util.Map;
+
 /**
  * Dispatches methods to synchronize fields with a context such as SLF4J MDC.
  *
@@ -20,4 +22,16 @@ public interface CorrelationContext {
   /** Returns false if the update was ignored. */
   // same as BaggageContext#updateValue(BaggageField, TraceContext, String)
   boolean update(String name, @Nullable String value);
+
+  /**
+   * Implemented by contexts that can apply several updates at once, for example when each update
+   * copies the underlying map.
+   */
+  interface Bulk extends CorrelationContext {
+    /**
+     * Like {@link #update(String, String)}, except all entries are applied at once. A null value
+     * removes the name.
+     */
+    void updateAll(Map<String, String> values);
+  }
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal;
+
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+
+/**
+ * Escalate internal APIs in {@code brave.handler} so they can be used from outside packages. The
+ * only implementation is in {@link MutableSpan}.
+ *
+ * <p>Inspired by {@code okhttp3.internal.Internal}.
+ */
+public abstract class InternalMutableSpan {
+  public static InternalMutableSpan instance;
+
+  /**
+   * Same as {@link MutableSpan#MutableSpan(TraceContext, MutableSpan)}, except reusing arrays in
+   * the holder, which is left empty.
+   */
+  public abstract MutableSpan newSpan(TraceContext context, MutableSpan defaults,
+    Object[] holder);
+
+  /** Moves the span's arrays into an empty holder of length 3, leaving the span without any. */
+  public abstract void recycleArrays(MutableSpan span, Object[] holder);
+}
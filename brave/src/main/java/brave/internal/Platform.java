@@ -6,9 +6,12 @@ package brave.internal;
 
 import brave.Clock;
 import brave.Tracer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Enumeration;
 import java.util.Random;
@@ -70,10 +73,72 @@ public abstract class Platform implements Clock {
     throw error;
   }
 
+  /**
+   * Releases the memory of a direct buffer, such as a {@link java.nio.MappedByteBuffer}, now as
+   * opposed to when it is garbage collected. Until then, a mapping holds address space and the
+   * file, which can't be deleted on some operating systems. The buffer, and any views of it, must
+   * not be accessed afterwards, as that can crash the JVM.
+   *
+   * <p>This returns false if the buffer isn't direct, or this platform can't unmap it.
+   */
+  public boolean unmap(ByteBuffer buffer) {
+    if (!buffer.isDirect() || DirectBufferCleaner.CLEANER == null) return false;
+    try {
+      Object cleaner = DirectBufferCleaner.CLEANER.invoke(buffer);
+      if (cleaner == null) return false; // a view, which doesn't own its memory
+      DirectBufferCleaner.CLEAN.invoke(cleaner);
+      return true;
+    } catch (Exception e) {
+      log("error unmapping buffer", e);
+      return false;
+    }
+  }
+
   public static Platform get() {
     return PLATFORM;
   }
 
+  /** Invokes {@code sun.nio.ch.DirectBuffer.cleaner().clean()}, which is Java 8 and earlier. */
+  static final class DirectBufferCleaner {
+    static final Method CLEANER, CLEAN;
+
+    static {
+      Method cleaner = null, clean = null;
+      try {
+        cleaner = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+        cleaner.setAccessible(true);
+        clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        clean.setAccessible(true);
+      } catch (Exception e) {
+        cleaner = clean = null; // not accessible, or JRE 9+
+      }
+      CLEANER = cleaner;
+      CLEAN = clean;
+    }
+  }
+
+  /** Invokes {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)}, which is Java 9 and later. */
+  static final class UnsafeCleaner {
+    static final Object UNSAFE;
+    static final Method INVOKE_CLEANER;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      try {
+        Class<?> type = Class.forName("sun.misc.Unsafe");
+        Field field = type.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        unsafe = field.get(null);
+        invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (Exception e) {
+        unsafe = invokeCleaner = null; // jdk.unsupported isn't available
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+    }
+  }
+
   // Use nested class to ensure logger isn't initialized unless it is accessed once.
   private static final class LoggerHolder {
     static final String LOGGER_NAME = Tracer.class.getName();
@@ -174,6 +239,17 @@ public abstract class Platform implements Clock {
       };
     }
 
+    @Override public boolean unmap(ByteBuffer buffer) {
+      if (!buffer.isDirect() || UnsafeCleaner.INVOKE_CLEANER == null) return false;
+      try {
+        UnsafeCleaner.INVOKE_CLEANER.invoke(UnsafeCleaner.UNSAFE, buffer);
+        return true;
+      } catch (Exception e) { // ex. a view, which doesn't own its memory
+        log("error unmapping buffer", e);
+        return false;
+      }
+    }
+
     @Override public String toString() {
       return "Jre9{}";
     }
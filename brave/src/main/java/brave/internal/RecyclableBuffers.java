@@ -7,6 +7,7 @@ package brave.internal;
 public final class RecyclableBuffers {
 
   private static final ThreadLocal<char[]> PARSE_BUFFER = new ThreadLocal<char[]>();
+  private static final ThreadLocal<byte[]> PARSE_BYTES_BUFFER = new ThreadLocal<byte[]>();
 
   /**
    * Returns a {@link ThreadLocal} reused {@code char[]} for use when decoding bytes into an ID hex
@@ -22,6 +23,20 @@ public final class RecyclableBuffers {
     return idBuffer;
   }
 
+  /**
+   * Like {@link #parseBuffer()}, but for copying ASCII bytes out of a {@link java.nio.ByteBuffer}
+   * that isn't backed by an array. This is one byte larger than the longest ID format, so that the
+   * parser can detect input that is too long.
+   */
+  public static byte[] parseBytesBuffer() {
+    byte[] idBuffer = PARSE_BYTES_BUFFER.get();
+    if (idBuffer == null) {
+      idBuffer = new byte[32 + 1 + 16 + 3 + 16 + 1]; // traceid128-spanid-1-parentid + 1
+      PARSE_BYTES_BUFFER.set(idBuffer);
+    }
+    return idBuffer;
+  }
+
   private RecyclableBuffers() {
   }
 }
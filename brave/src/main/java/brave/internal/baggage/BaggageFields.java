@@ -58,11 +58,78 @@ public final class BaggageFields
     }
   }
 
+  /**
+   * Request values that weren't yet decoded. This is cleared on first use, and until then, {@link
+   * #state} is the initial state.
+   */
+  @Nullable volatile Undecoded undecoded;
+
+  static final class Undecoded {
+    final BaggageCodec[] codecs;
+    final String[] values;
+
+    Undecoded(BaggageCodec[] codecs, String[] values) {
+      this.codecs = codecs;
+      this.values = values;
+    }
+  }
+
   BaggageFields(Factory factory) {
     super(factory);
   }
 
+  /**
+   * Defers {@linkplain BaggageCodec#decode(BaggageField.ValueUpdater, String) decoding} of request
+   * values until they are first used. Call this only on a new instance.
+   *
+   * @param codecs codecs to decode values with
+   * @param values values indexed by codec, where {@code null} means absent
+   */
+  public void decodeLazily(BaggageCodec[] codecs, String[] values) {
+    if (codecs == null) throw new NullPointerException("codecs == null");
+    if (values == null) throw new NullPointerException("values == null");
+    undecoded = new Undecoded(codecs, values);
+  }
+
+  /**
+   * Returns values passed to {@link #decodeLazily(BaggageCodec[], String[])} with the same codecs,
+   * or {@code null} if they were decoded. A non-{@code null} result means nothing changed since
+   * extraction, so the values can be re-injected as-is.
+   */
+  @Nullable public String[] undecodedValues(BaggageCodec[] codecs) {
+    Undecoded undecoded = this.undecoded;
+    return undecoded != null && undecoded.codecs == codecs ? undecoded.values : null;
+  }
+
+  @Override protected void materialize() {
+    if (undecoded == null) return;
+    synchronized (lock) {
+      Undecoded undecoded = this.undecoded;
+      if (undecoded == null) return; // lost race
+
+      // Decode into a separate instance, as updating this one would materialize recursively.
+      BaggageFields decoded = factory.create();
+      for (int i = 0; i < undecoded.values.length; i++) {
+        String value = undecoded.values[i];
+        if (value != null) undecoded.codecs[i].decode(decoded, value);
+      }
+      state = decoded.state;
+      this.undecoded = null; // after state, so readers who see null also see the decoded state
+    }
+  }
+
+  /** Copies values that weren't decoded, so that a child span doesn't decode them needlessly. */
+  @Override protected void copyStateFrom(BaggageFields that) {
+    Undecoded undecoded = that.undecoded;
+    if (undecoded != null) {
+      this.undecoded = undecoded;
+    } else {
+      state = that.state;
+    }
+  }
+
   Object[] state() {
+    materialize();
     return (Object[]) state;
   }
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.codec;
+
+import static brave.internal.codec.JsonWriter.UTF_8;
+
+/**
+ * A view of bytes, such as a binary header value, as ASCII characters. This lets parsers that read
+ * {@link CharSequence} read bytes, without decoding a {@link String} first.
+ *
+ * <p>Non-ASCII bytes read as characters over 0x7f, so they fail parsing of formats such as
+ * lower-hex. {@link #toString()} decodes UTF-8, for logging.
+ */
+public final class AsciiCharSequence implements CharSequence {
+  final byte[] bytes;
+  final int beginIndex, length;
+
+  public AsciiCharSequence(byte[] bytes) {
+    this(bytes, 0, bytes.length);
+  }
+
+  /**
+   * @param beginIndex the inclusive index of the first byte to read.
+   * @param endIndex the exclusive index <em>after</em> the last byte to read.
+   */
+  public AsciiCharSequence(byte[] bytes, int beginIndex, int endIndex) {
+    if (bytes == null) throw new NullPointerException("bytes == null");
+    if (beginIndex < 0 || endIndex > bytes.length || beginIndex > endIndex) {
+      throw new IndexOutOfBoundsException("beginIndex=" + beginIndex + ", endIndex=" + endIndex);
+    }
+    this.bytes = bytes;
+    this.beginIndex = beginIndex;
+    this.length = endIndex - beginIndex;
+  }
+
+  @Override public int length() {
+    return length;
+  }
+
+  @Override public char charAt(int index) {
+    if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index=" + index);
+    return (char) (bytes[beginIndex + index] & 0xff);
+  }
+
+  @Override public CharSequence subSequence(int beginIndex, int endIndex) {
+    if (beginIndex < 0 || endIndex > length || beginIndex > endIndex) {
+      throw new IndexOutOfBoundsException("beginIndex=" + beginIndex + ", endIndex=" + endIndex);
+    }
+    int offset = this.beginIndex;
+    return new AsciiCharSequence(bytes, offset + beginIndex, offset + endIndex);
+  }
+
+  @Override public String toString() {
+    return new String(bytes, beginIndex, length, UTF_8);
+  }
+}
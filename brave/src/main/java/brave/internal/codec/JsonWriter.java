@@ -6,7 +6,9 @@ package brave.internal.codec;
 
 import brave.internal.Platform;
 import brave.internal.codec.WriteBuffer.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.String.format;
@@ -15,6 +17,18 @@ import static java.lang.String.format;
 public final class JsonWriter {
   public static final Charset UTF_8 = Charset.forName("UTF-8");
 
+  static final int INITIAL_SCRATCH_SIZE = 1024;
+  // Above this, we fall back to sizing, to avoid pinning large arrays to threads.
+  static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+  /**
+   * Holds the scratch buffer at index zero, or null while it is in use. This guards against
+   * re-entry, for example a tag function that calls {@code toString()}.
+   *
+   * <p>Only JDK types are held, so that thread pools don't pin this class loader.
+   */
+  static final ThreadLocal<byte[][]> SCRATCH = new ThreadLocal<byte[][]>();
+
   static <T> int sizeInBytes(Writer<T> writer, List<T> value) {
     int length = value.size();
     int sizeInBytes = 2; // []
@@ -55,6 +69,56 @@ public final class JsonWriter {
     return result;
   }
 
+  /**
+   * Like {@link #write(Writer, Object)}, except this writes in a single pass, instead of calling
+   * {@link Writer#sizeInBytes(Object)} first. This writes into a reusable thread-local buffer, and
+   * copies out the result.
+   *
+   * <p>Sizing walks the same fields as writing, including json escaping checks, so this is
+   * cheaper. When the result is larger than {@link #MAX_SCRATCH_SIZE}, this falls back to exact
+   * sizing.
+   */
+  public static <T> byte[] writeSinglePass(Writer<T> writer, T value) {
+    return writeSinglePass(writer, value, null);
+  }
+
+  /** Like {@link #writeSinglePass(Writer, Object)}, except for {@link #writeList(Writer, List)} */
+  public static <T> byte[] writeListSinglePass(Writer<T> writer, List<T> value) {
+    if (value.isEmpty()) return new byte[] {'[', ']'};
+    return writeSinglePass(writer, null, value);
+  }
+
+  static <T> byte[] writeSinglePass(Writer<T> writer, T value, List<T> list) {
+    byte[][] scratch = SCRATCH.get();
+    if (scratch == null) {
+      SCRATCH.set(scratch = new byte[][] {new byte[INITIAL_SCRATCH_SIZE]});
+    }
+    byte[] bytes = scratch[0];
+    if (bytes == null) return list != null ? writeList(writer, list) : write(writer, value);
+    scratch[0] = null; // in use
+    try {
+      while (true) {
+        WriteBuffer b = WriteBuffer.wrap(bytes);
+        try {
+          if (list != null) {
+            writeList(writer, list, b);
+          } else {
+            writer.write(value, b);
+          }
+          return Arrays.copyOf(bytes, b.pos());
+        } catch (RuntimeException e) {
+          // Overflow is the only expected error. Others are bugs, reported via the sizing path.
+          if (!(e instanceof ArrayIndexOutOfBoundsException) || bytes.length >= MAX_SCRATCH_SIZE) {
+            return list != null ? writeList(writer, list) : write(writer, value);
+          }
+          bytes = new byte[bytes.length * 2];
+        }
+      }
+    } finally {
+      scratch[0] = bytes;
+    }
+  }
+
   public static <T> byte[] writeList(Writer<T> writer, List<T> value) {
     if (value.isEmpty()) return new byte[] {'[', ']'};
     byte[] result = new byte[sizeInBytes(writer, value)];
@@ -75,6 +139,30 @@ public final class JsonWriter {
     return result.pos() - initialPos;
   }
 
+  /**
+   * Writes at the {@linkplain ByteBuffer#position() position} of the input, which is advanced past
+   * the bytes written.
+   *
+   * @return the count of bytes written
+   * @throws IndexOutOfBoundsException if the value doesn't fit before the buffer's limit.
+   */
+  public static <T> int write(Writer<T> writer, T value, ByteBuffer out) {
+    int initialPosition = out.position();
+    WriteBuffer b = WriteBuffer.wrap(out);
+    writer.write(value, b);
+    b.syncPosition();
+    return out.position() - initialPosition;
+  }
+
+  /** Like {@link #write(Writer, Object, ByteBuffer)}, except for a list of values. */
+  public static <T> int writeList(Writer<T> writer, List<T> value, ByteBuffer out) {
+    int initialPosition = out.position();
+    WriteBuffer b = WriteBuffer.wrap(out);
+    writeList(writer, value, b);
+    b.syncPosition();
+    return out.position() - initialPosition;
+  }
+
   public static <T> void writeList(Writer<T> writer, List<T> value, WriteBuffer b) {
     b.writeByte('[');
     for (int i = 0, length = value.size(); i < length; ) {
@@ -0,0 +1,72 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.codec;
+
+import brave.internal.codec.WriteBuffer.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Proto3 counterpart to {@link JsonWriter}. Unlike json, a list is encoded by concatenating each
+ * element, as repeated fields have no delimiters. This implies the {@link Writer} includes the
+ * field key and length prefix of each element.
+ */
+public final class Proto3Writer {
+  static <T> int sizeInBytes(Writer<T> writer, List<T> value) {
+    int sizeInBytes = 0;
+    for (int i = 0, length = value.size(); i < length; i++) {
+      sizeInBytes += writer.sizeInBytes(value.get(i));
+    }
+    return sizeInBytes;
+  }
+
+  public static <T> byte[] write(Writer<T> writer, T value) {
+    byte[] result = new byte[writer.sizeInBytes(value)];
+    writer.write(value, WriteBuffer.wrap(result));
+    return result;
+  }
+
+  public static <T> byte[] writeList(Writer<T> writer, List<T> value) {
+    byte[] result = new byte[sizeInBytes(writer, value)];
+    writeList(writer, value, WriteBuffer.wrap(result));
+    return result;
+  }
+
+  public static <T> int writeList(Writer<T> writer, List<T> value, byte[] out, int pos) {
+    WriteBuffer result = WriteBuffer.wrap(out, pos);
+    writeList(writer, value, result);
+    return result.pos() - pos;
+  }
+
+  /**
+   * Writes at the {@linkplain ByteBuffer#position() position} of the input, which is advanced past
+   * the bytes written.
+   *
+   * @return the count of bytes written
+   * @throws IndexOutOfBoundsException if the value doesn't fit before the buffer's limit.
+   */
+  public static <T> int write(Writer<T> writer, T value, ByteBuffer out) {
+    int initialPosition = out.position();
+    WriteBuffer b = WriteBuffer.wrap(out);
+    writer.write(value, b);
+    b.syncPosition();
+    return out.position() - initialPosition;
+  }
+
+  /** Like {@link #write(Writer, Object, ByteBuffer)}, except for a list of values. */
+  public static <T> int writeList(Writer<T> writer, List<T> value, ByteBuffer out) {
+    int initialPosition = out.position();
+    WriteBuffer b = WriteBuffer.wrap(out);
+    writeList(writer, value, b);
+    b.syncPosition();
+    return out.position() - initialPosition;
+  }
+
+  public static <T> void writeList(Writer<T> writer, List<T> value, WriteBuffer b) {
+    for (int i = 0, length = value.size(); i < length; i++) {
+      writer.write(value.get(i), b);
+    }
+  }
+}
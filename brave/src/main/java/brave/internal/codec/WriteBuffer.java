@@ -4,6 +4,9 @@
  */
 package brave.internal.codec;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
 import static brave.internal.codec.HexCodec.HEX_DIGITS;
 import static brave.internal.codec.JsonWriter.UTF_8;
 
@@ -28,16 +31,55 @@ public final class WriteBuffer {
     return new WriteBuffer(bytes, pos);
   }
 
-  final byte[] buf;
+  /**
+   * Writes start at the {@linkplain ByteBuffer#position() position} of the input, and are bounded
+   * by its {@linkplain ByteBuffer#limit() limit}. The position isn't updated until {@link
+   * #syncPosition()}.
+   *
+   * <p>When the input is backed by an array that ends at the limit, writes go directly to that
+   * array. Otherwise, for example a direct or memory-mapped buffer, writes use {@link
+   * ByteBuffer#put(int, byte)}, which checks the limit.
+   */
+  public static WriteBuffer wrap(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() + buffer.limit() == buffer.array().length) {
+      int offset = buffer.arrayOffset();
+      return new WriteBuffer(buffer.array(), buffer, offset, offset + buffer.position());
+    }
+    return new WriteBuffer(null, buffer, 0, buffer.position());
+  }
+
+  final byte[] buf; // null when writing to a ByteBuffer not backed by an array
+  final ByteBuffer byteBuffer; // null unless wrapping a ByteBuffer
+  final int byteBufferOffset; // converts pos to a byteBuffer position
   int pos;
 
   WriteBuffer(byte[] buf, int pos) {
+    this(buf, null, 0, pos);
+  }
+
+  WriteBuffer(byte[] buf, ByteBuffer byteBuffer, int byteBufferOffset, int pos) {
     this.buf = buf;
+    this.byteBuffer = byteBuffer;
+    this.byteBufferOffset = byteBufferOffset;
     this.pos = pos;
   }
 
   public void writeByte(int v) {
-    buf[pos++] = (byte) (v & 0xff);
+    setByte(pos++, v);
+  }
+
+  void setByte(int index, int v) {
+    if (buf != null) {
+      buf[index] = (byte) (v & 0xff);
+    } else {
+      byteBuffer.put(index, (byte) (v & 0xff));
+    }
+  }
+
+  /** Advances the position of the wrapped {@link ByteBuffer} to after the last byte written. */
+  void syncPosition() {
+    // Cast avoids linking to the covariant ByteBuffer.position(int) added in Java 9
+    ((Buffer) byteBuffer).position(pos - byteBufferOffset);
   }
 
   void writeBackwards(long v) {
@@ -45,7 +87,7 @@ public final class WriteBuffer {
     pos = lastPos;
     while (v != 0) {
       int digit = (int) (v % 10);
-      buf[--lastPos] = (byte) HEX_DIGITS[digit];
+      setByte(--lastPos, HEX_DIGITS[digit]);
       v /= 10;
     }
   }
@@ -135,8 +177,40 @@ public final class WriteBuffer {
     writeBackwards(v);
   }
 
+  // Adapted from com.google.protobuf.CodedOutputStream.writeRawVarint32
+  public void writeVarint(int v) {
+    while ((v & ~0x7f) != 0) {
+      writeByte((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    writeByte(v);
+  }
+
+  // Adapted from com.google.protobuf.CodedOutputStream.writeRawVarint64
+  public void writeVarint(long v) {
+    while ((v & ~0x7fL) != 0) {
+      writeByte((int) ((v & 0x7f) | 0x80));
+      v >>>= 7;
+    }
+    writeByte((int) v);
+  }
+
+  public void writeLongLe(long v) {
+    writeByte((int) (v & 0xff));
+    writeByte((int) ((v >> 8) & 0xff));
+    writeByte((int) ((v >> 16) & 0xff));
+    writeByte((int) ((v >> 24) & 0xff));
+    writeByte((int) ((v >> 32) & 0xff));
+    writeByte((int) ((v >> 40) & 0xff));
+    writeByte((int) ((v >> 48) & 0xff));
+    writeByte((int) ((v >> 56) & 0xff));
+  }
+
   @Override public String toString() {
-    return new String(buf, 0, pos, UTF_8);
+    if (buf != null) return new String(buf, 0, pos, UTF_8);
+    byte[] bytes = new byte[pos];
+    for (int i = 0; i < pos; i++) bytes[i] = byteBuffer.get(i);
+    return new String(bytes, UTF_8);
   }
 
   /**
@@ -180,6 +254,33 @@ public final class WriteBuffer {
     return sizeInBytes;
   }
 
+  /**
+   * A base 128 varint encodes 7 bits at a time, this checks for overflow on that basis.
+   *
+   * <p>Adapted from com.google.protobuf.CodedOutputStream.computeRawVarint32Size
+   */
+  public static int varintSizeInBytes(int v) {
+    if ((v & (0xffffffff << 7)) == 0) return 1;
+    if ((v & (0xffffffff << 14)) == 0) return 2;
+    if ((v & (0xffffffff << 21)) == 0) return 3;
+    if ((v & (0xffffffff << 28)) == 0) return 4;
+    return 5;
+  }
+
+  /** Like {@link #varintSizeInBytes(int)}, except for uint64. */
+  public static int varintSizeInBytes(long v) {
+    if ((v & (0xffffffffffffffffL << 7)) == 0) return 1;
+    if ((v & (0xffffffffffffffffL << 14)) == 0) return 2;
+    if ((v & (0xffffffffffffffffL << 21)) == 0) return 3;
+    if ((v & (0xffffffffffffffffL << 28)) == 0) return 4;
+    if ((v & (0xffffffffffffffffL << 35)) == 0) return 5;
+    if ((v & (0xffffffffffffffffL << 42)) == 0) return 6;
+    if ((v & (0xffffffffffffffffL << 49)) == 0) return 7;
+    if ((v & (0xffffffffffffffffL << 56)) == 0) return 8;
+    if ((v & (0xffffffffffffffffL << 63)) == 0) return 9;
+    return 10;
+  }
+
   /**
    * Binary search for character width which favors matching lower numbers.
    *
@@ -0,0 +1,347 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.codec;
+
+import brave.Span.Kind;
+import brave.Tag;
+import brave.handler.MutableSpan;
+import brave.internal.Nullable;
+
+import static brave.internal.codec.WriteBuffer.utf8SizeInBytes;
+import static brave.internal.codec.WriteBuffer.varintSizeInBytes;
+
+/**
+ * Writes a span as a {@code ListOfSpans.spans} field in the Zipkin proto3 format. As repeated
+ * fields are concatenated on the wire, encoding a list of spans is the same as joining the result
+ * of each span.
+ *
+ * <p>See https://github.com/openzipkin/zipkin-api/blob/master/zipkin.proto
+ */
+// @Immutable
+public final class ZipkinProto3Writer implements WriteBuffer.Writer<MutableSpan> {
+  static final int WIRETYPE_VARINT = 0, WIRETYPE_FIXED64 = 1, WIRETYPE_LENGTH_DELIMITED = 2;
+
+  // All field numbers are less than 16, so keys are always a single byte.
+  static final int SPAN_KEY = key(1, WIRETYPE_LENGTH_DELIMITED); // ListOfSpans.spans
+
+  static final int TRACE_ID_KEY = key(1, WIRETYPE_LENGTH_DELIMITED);
+  static final int PARENT_ID_KEY = key(2, WIRETYPE_LENGTH_DELIMITED);
+  static final int ID_KEY = key(3, WIRETYPE_LENGTH_DELIMITED);
+  static final int KIND_KEY = key(4, WIRETYPE_VARINT);
+  static final int NAME_KEY = key(5, WIRETYPE_LENGTH_DELIMITED);
+  static final int TIMESTAMP_KEY = key(6, WIRETYPE_FIXED64);
+  static final int DURATION_KEY = key(7, WIRETYPE_VARINT);
+  static final int LOCAL_ENDPOINT_KEY = key(8, WIRETYPE_LENGTH_DELIMITED);
+  static final int REMOTE_ENDPOINT_KEY = key(9, WIRETYPE_LENGTH_DELIMITED);
+  static final int ANNOTATION_KEY = key(10, WIRETYPE_LENGTH_DELIMITED);
+  static final int TAG_KEY = key(11, WIRETYPE_LENGTH_DELIMITED);
+  static final int DEBUG_KEY = key(12, WIRETYPE_VARINT);
+  static final int SHARED_KEY = key(13, WIRETYPE_VARINT);
+
+  static final int SERVICE_NAME_KEY = key(1, WIRETYPE_LENGTH_DELIMITED);
+  static final int IPV4_KEY = key(2, WIRETYPE_LENGTH_DELIMITED);
+  static final int IPV6_KEY = key(3, WIRETYPE_LENGTH_DELIMITED);
+  static final int PORT_KEY = key(4, WIRETYPE_VARINT);
+
+  static final int ANNOTATION_TIMESTAMP_KEY = key(1, WIRETYPE_FIXED64);
+  static final int ANNOTATION_VALUE_KEY = key(2, WIRETYPE_LENGTH_DELIMITED);
+
+  static final int MAP_KEY_KEY = key(1, WIRETYPE_LENGTH_DELIMITED);
+  static final int MAP_VALUE_KEY = key(2, WIRETYPE_LENGTH_DELIMITED);
+
+  final Tag<Throwable> errorTag;
+
+  public ZipkinProto3Writer(Tag<Throwable> errorTag) {
+    if (errorTag == null) throw new NullPointerException("errorTag == null");
+    this.errorTag = errorTag;
+  }
+
+  @Override public int sizeInBytes(MutableSpan span) {
+    return sizeOfLengthDelimitedField(spanSizeInBytes(span));
+  }
+
+  @Override public void write(MutableSpan span, WriteBuffer b) {
+    b.writeByte(SPAN_KEY);
+    b.writeVarint(spanSizeInBytes(span));
+
+    String traceId = span.traceId();
+    if (traceId != null) {
+      b.writeByte(TRACE_ID_KEY);
+      writeLowerHex(traceId, b);
+    }
+    String parentId = span.parentId();
+    if (parentId != null) {
+      b.writeByte(PARENT_ID_KEY);
+      writeLowerHex(parentId, b);
+    }
+    String id = span.id();
+    if (id != null) {
+      b.writeByte(ID_KEY);
+      writeLowerHex(id, b);
+    }
+    int kind = kindValue(span.kind());
+    if (kind != 0) {
+      b.writeByte(KIND_KEY);
+      b.writeByte(kind);
+    }
+    String name = span.name();
+    if (name != null) writeString(NAME_KEY, name, b);
+    long startTimestamp = span.startTimestamp(), finishTimestamp = span.finishTimestamp();
+    if (startTimestamp != 0L) {
+      b.writeByte(TIMESTAMP_KEY);
+      b.writeLongLe(startTimestamp);
+      long duration = finishTimestamp != 0L ? finishTimestamp - startTimestamp : 0L;
+      if (duration != 0L) {
+        b.writeByte(DURATION_KEY);
+        b.writeVarint(duration);
+      }
+    }
+    writeEndpoint(LOCAL_ENDPOINT_KEY,
+      span.localServiceName(), span.localIp(), span.localPort(), b);
+    writeEndpoint(REMOTE_ENDPOINT_KEY,
+      span.remoteServiceName(), span.remoteIp(), span.remotePort(), b);
+    for (int i = 0, length = span.annotationCount(); i < length; i++) {
+      long timestamp = span.annotationTimestampAt(i);
+      String value = span.annotationValueAt(i);
+      b.writeByte(ANNOTATION_KEY);
+      b.writeVarint(annotationSizeInBytes(value));
+      b.writeByte(ANNOTATION_TIMESTAMP_KEY);
+      b.writeLongLe(timestamp);
+      writeString(ANNOTATION_VALUE_KEY, value, b);
+    }
+    String errorValue = errorTag.value(span.error(), null);
+    String errorTagName = errorValue != null ? errorTag.key() : null;
+    boolean writeError = errorTagName != null;
+    for (int i = 0, length = span.tagCount(); i < length; i++) {
+      String key = span.tagKeyAt(i);
+      if (writeError && key.equals(errorTagName)) writeError = false;
+      writeTag(key, span.tagValueAt(i), b);
+    }
+    if (writeError) writeTag(errorTagName, errorValue, b);
+    if (Boolean.TRUE.equals(span.debug())) {
+      b.writeByte(DEBUG_KEY);
+      b.writeByte(1);
+    }
+    if (Boolean.TRUE.equals(span.shared())) {
+      b.writeByte(SHARED_KEY);
+      b.writeByte(1);
+    }
+  }
+
+  /** Returns the size of the {@code Span} message, excluding its key and length prefix. */
+  int spanSizeInBytes(MutableSpan span) {
+    int sizeInBytes = 0;
+    String traceId = span.traceId();
+    if (traceId != null) sizeInBytes += sizeOfLengthDelimitedField(traceId.length() / 2);
+    if (span.parentId() != null) sizeInBytes += 10; // key, length and 8 bytes
+    if (span.id() != null) sizeInBytes += 10;
+    if (kindValue(span.kind()) != 0) sizeInBytes += 2;
+    String name = span.name();
+    if (name != null) sizeInBytes += sizeOfStringField(name);
+    long startTimestamp = span.startTimestamp(), finishTimestamp = span.finishTimestamp();
+    if (startTimestamp != 0L) {
+      sizeInBytes += 9; // key and fixed64
+      long duration = finishTimestamp != 0L ? finishTimestamp - startTimestamp : 0L;
+      if (duration != 0L) sizeInBytes += 1 + varintSizeInBytes(duration);
+    }
+    sizeInBytes += endpointFieldSizeInBytes(
+      span.localServiceName(), span.localIp(), span.localPort());
+    sizeInBytes += endpointFieldSizeInBytes(
+      span.remoteServiceName(), span.remoteIp(), span.remotePort());
+    for (int i = 0, length = span.annotationCount(); i < length; i++) {
+      sizeInBytes += sizeOfLengthDelimitedField(annotationSizeInBytes(span.annotationValueAt(i)));
+    }
+    String errorValue = errorTag.value(span.error(), null);
+    String errorTagName = errorValue != null ? errorTag.key() : null;
+    boolean writeError = errorTagName != null;
+    for (int i = 0, length = span.tagCount(); i < length; i++) {
+      String key = span.tagKeyAt(i);
+      if (writeError && key.equals(errorTagName)) writeError = false;
+      sizeInBytes += sizeOfLengthDelimitedField(tagSizeInBytes(key, span.tagValueAt(i)));
+    }
+    if (writeError) {
+      sizeInBytes += sizeOfLengthDelimitedField(tagSizeInBytes(errorTagName, errorValue));
+    }
+    if (Boolean.TRUE.equals(span.debug())) sizeInBytes += 2;
+    if (Boolean.TRUE.equals(span.shared())) sizeInBytes += 2;
+    return sizeInBytes;
+  }
+
+  static int key(int fieldNumber, int wireType) {
+    return (fieldNumber << 3) | wireType;
+  }
+
+  static int sizeOfLengthDelimitedField(int sizeInBytes) {
+    return 1 + varintSizeInBytes(sizeInBytes) + sizeInBytes; // key, length and value
+  }
+
+  static int sizeOfStringField(String value) {
+    return sizeOfLengthDelimitedField(utf8SizeInBytes(value));
+  }
+
+  static int annotationSizeInBytes(String value) {
+    return 9 + sizeOfStringField(value); // timestamp key and fixed64, then the value
+  }
+
+  static int tagSizeInBytes(String key, String value) {
+    return sizeOfStringField(key) + sizeOfStringField(value);
+  }
+
+  /** Returns zero when there's no endpoint data to write. */
+  static int endpointFieldSizeInBytes(@Nullable String serviceName, @Nullable String ip, int port) {
+    if (serviceName == null && ip == null) return 0;
+    return sizeOfLengthDelimitedField(endpointSizeInBytes(serviceName, ip, port));
+  }
+
+  static int endpointSizeInBytes(@Nullable String serviceName, @Nullable String ip, int port) {
+    int sizeInBytes = 0;
+    if (serviceName != null) sizeInBytes += sizeOfStringField(serviceName);
+    if (ip != null) {
+      // MutableSpan unwraps any Ipv4 from a mapped or compatability mode IPv6.
+      if (ip.indexOf('.') != -1) {
+        sizeInBytes += 6; // key, length and 4 bytes
+      } else if (isValidIpv6(ip)) {
+        sizeInBytes += 18; // key, length and 16 bytes
+      }
+    }
+    if (port != 0) sizeInBytes += 1 + varintSizeInBytes(port);
+    return sizeInBytes;
+  }
+
+  static int kindValue(@Nullable Kind kind) {
+    if (kind == null) return 0;
+    switch (kind) {
+      case CLIENT:
+        return 1;
+      case SERVER:
+        return 2;
+      case PRODUCER:
+        return 3;
+      case CONSUMER:
+        return 4;
+      default:
+        return 0;
+    }
+  }
+
+  static void writeString(int key, String value, WriteBuffer b) {
+    b.writeByte(key);
+    b.writeVarint(utf8SizeInBytes(value));
+    b.writeUtf8(value);
+  }
+
+  static void writeTag(String key, String value, WriteBuffer b) {
+    b.writeByte(TAG_KEY);
+    b.writeVarint(tagSizeInBytes(key, value));
+    writeString(MAP_KEY_KEY, key, b);
+    writeString(MAP_VALUE_KEY, value, b);
+  }
+
+  static void writeEndpoint(int key,
+    @Nullable String serviceName, @Nullable String ip, int port, WriteBuffer b) {
+    if (serviceName == null && ip == null) return;
+    b.writeByte(key);
+    b.writeVarint(endpointSizeInBytes(serviceName, ip, port));
+    if (serviceName != null) writeString(SERVICE_NAME_KEY, serviceName, b);
+    if (ip != null) {
+      if (ip.indexOf('.') != -1) {
+        b.writeByte(IPV4_KEY);
+        b.writeByte(4);
+        writeIpv4(ip, b);
+      } else if (isValidIpv6(ip)) {
+        b.writeByte(IPV6_KEY);
+        b.writeByte(16);
+        writeIpv6(ip, b);
+      }
+    }
+    if (port != 0) {
+      b.writeByte(PORT_KEY);
+      b.writeVarint(port);
+    }
+  }
+
+  /** Writes the length prefix and bytes of a normalized (even length) lower-hex ID. */
+  static void writeLowerHex(String lowerHex, WriteBuffer b) {
+    int length = lowerHex.length();
+    b.writeByte(length / 2);
+    for (int i = 0; i < length; i += 2) {
+      b.writeByte(hexDigit(lowerHex.charAt(i)) << 4 | hexDigit(lowerHex.charAt(i + 1)));
+    }
+  }
+
+  /** Assumes the input was already validated by {@link IpLiteral#ipOrNull(String)}. */
+  static void writeIpv4(String ip, WriteBuffer b) {
+    int octet = 0;
+    for (int i = 0, length = ip.length(); i < length; i++) {
+      char c = ip.charAt(i);
+      if (c == '.') {
+        b.writeByte(octet);
+        octet = 0;
+      } else {
+        octet = octet * 10 + (c - '0');
+      }
+    }
+    b.writeByte(octet);
+  }
+
+  /**
+   * {@link IpLiteral#detectFamily(String)} only checks characters, so this validates the structure
+   * before writing. Otherwise, a malformed literal could write a different size than computed.
+   */
+  static boolean isValidIpv6(String ip) {
+    int length = ip.length(), doubleColon = ip.indexOf("::");
+    if (doubleColon == -1) return writeHextets(ip, 0, length, null) == 8;
+    if (ip.indexOf("::", doubleColon + 1) != -1) return false; // only one compressed run
+    int head = doubleColon == 0 ? 0 : writeHextets(ip, 0, doubleColon, null);
+    int tail = doubleColon + 2 == length ? 0 : writeHextets(ip, doubleColon + 2, length, null);
+    return head != -1 && tail != -1 && head + tail < 8;
+  }
+
+  /** Expands any compressed run of zeros. Assumes {@link #isValidIpv6(String)}. */
+  static void writeIpv6(String ip, WriteBuffer b) {
+    int length = ip.length(), doubleColon = ip.indexOf("::");
+    if (doubleColon == -1) {
+      writeHextets(ip, 0, length, b);
+      return;
+    }
+    int head = doubleColon == 0 ? 0 : writeHextets(ip, 0, doubleColon, b);
+    int tail = doubleColon + 2 == length ? 0 : writeHextets(ip, doubleColon + 2, length, null);
+    for (int i = 0, zeros = (8 - head - tail) * 2; i < zeros; i++) b.writeByte(0);
+    if (tail != 0) writeHextets(ip, doubleColon + 2, length, b);
+  }
+
+  /**
+   * Returns the count of colon-separated hextets, or -1 if any are malformed. When the buffer is
+   * not null, each hextet is written as two bytes.
+   */
+  static int writeHextets(String ip, int beginIndex, int endIndex, @Nullable WriteBuffer b) {
+    int count = 0, value = 0, digits = 0;
+    for (int i = beginIndex; i <= endIndex; i++) {
+      if (i == endIndex || ip.charAt(i) == ':') {
+        if (digits == 0 || digits > 4) return -1;
+        if (b != null) {
+          b.writeByte(value >> 8);
+          b.writeByte(value & 0xff);
+        }
+        count++;
+        value = 0;
+        digits = 0;
+      } else {
+        int digit = hexDigit(ip.charAt(i));
+        if (digit == -1) return -1;
+        value = (value << 4) | digit;
+        digits++;
+      }
+    }
+    return count;
+  }
+
+  static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+    return -1;
+  }
+}
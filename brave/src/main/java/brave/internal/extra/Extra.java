@@ -63,6 +63,24 @@ public abstract class Extra<E extends Extra<E, F>, F extends ExtraFactory<E, F>>
    */
   protected abstract void mergeStateKeepingOursOnConflict(E that);
 
+  /**
+   * Called before reading {@linkplain #state state}, for implementations that defer it. For
+   * example, request values can be decoded on first use instead of on extraction.
+   *
+   * <p>Implementations must be idempotent and lock on {@link #lock} when assigning state.
+   */
+  protected void materialize() {
+  }
+
+  /**
+   * Called on a newly provisioned instance to take the state of another, such as a parent's. The
+   * default assigns {@linkplain #state state}. Override this to also copy deferred state, so that
+   * it isn't materialized.
+   */
+  protected void copyStateFrom(E that) {
+    state = that.state;
+  }
+
   /** Fields are extracted before a context is created. We need to lazy set the context */
   final boolean tryToClaim(long traceId, long spanId) {
     synchronized (lock) {
@@ -101,14 +119,19 @@ public abstract class Extra<E extends Extra<E, F>, F extends ExtraFactory<E, F>>
     // Extra fields should be equal on exact type, not subtype.
     // Otherwise, consolidation doesn't work
     if (!getClass().isInstance(o)) return false;
-    return stateEquals(((E) o).state);
+    E that = (E) o;
+    materialize();
+    that.materialize();
+    return stateEquals(that.state);
   }
 
   @Override public final int hashCode() {
+    materialize();
     return stateHashCode();
   }
 
   @Override public final String toString() {
+    materialize();
     return getClass().getSimpleName() + "{" + stateString() + "}";
   }
 
@@ -157,11 +157,13 @@ public abstract class ExtraFactory<E extends Extra<E, F>, F extends ExtraFactory
       Object next = context.extra().get(i);
       if (i == existingIndex) {
         E existing = (E) next;
+        claimed.materialize();
         // If the claimed extra instance was new or had no changes, simply assign existing to it
         if (claimed.state == initialState) {
-          claimed.state = existing.state;
-        } else if (existing.state != initialState) {
-          claimed.mergeStateKeepingOursOnConflict(existing);
+          claimed.copyStateFrom(existing);
+        } else {
+          existing.materialize();
+          if (existing.state != initialState) claimed.mergeStateKeepingOursOnConflict(existing);
         }
       } else if (!next.equals(claimed)) {
         builder.addExtra(next);
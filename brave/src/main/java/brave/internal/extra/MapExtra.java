@@ -25,6 +25,7 @@ public class MapExtra<K, V, A extends MapExtra<K, V, A, F>,
   }
 
   Object[] state() {
+    materialize();
     return (Object[]) state;
   }
 
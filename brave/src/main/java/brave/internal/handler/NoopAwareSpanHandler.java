@@ -57,6 +57,10 @@ public final class NoopAwareSpanHandler extends SpanHandler {
     return delegate.handlesAbandoned();
   }
 
+  @Override public boolean referencesSpanAfterEnd() {
+    return delegate.referencesSpanAfterEnd();
+  }
+
   @Override public int hashCode() {
     return delegate.hashCode();
   }
@@ -70,7 +74,7 @@ public final class NoopAwareSpanHandler extends SpanHandler {
   }
 
   static final class CompositeSpanHandler extends SpanHandler {
-    final boolean handlesAbandoned;
+    final boolean handlesAbandoned, referencesSpanAfterEnd;
     final SpanHandler[] handlers;
 
     CompositeSpanHandler(SpanHandler[] handlers) {
@@ -83,6 +87,14 @@ public final class NoopAwareSpanHandler extends SpanHandler {
         }
       }
       this.handlesAbandoned = handlesAbandoned;
+      boolean referencesSpanAfterEnd = false;
+      for (SpanHandler handler : handlers) {
+        if (handler.referencesSpanAfterEnd()) {
+          referencesSpanAfterEnd = true;
+          break;
+        }
+      }
+      this.referencesSpanAfterEnd = referencesSpanAfterEnd;
     }
 
     @Override public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
@@ -105,6 +117,10 @@ public final class NoopAwareSpanHandler extends SpanHandler {
       return handlesAbandoned;
     }
 
+    @Override public boolean referencesSpanAfterEnd() {
+      return referencesSpanAfterEnd;
+    }
+
     @Override public int hashCode() {
       return Arrays.hashCode(handlers);
     }
@@ -0,0 +1,33 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.propagation;
+
+import brave.internal.Nullable;
+import brave.propagation.Propagation.BytesGetter;
+import brave.propagation.Propagation.Getter;
+
+import static brave.internal.codec.JsonWriter.UTF_8;
+
+/**
+ * Adapts a {@link BytesGetter} to code that reads strings, such as baggage or propagation formats
+ * that don't have a byte-oriented extractor.
+ */
+public final class Utf8Getter<R> implements Getter<R, String> {
+  final BytesGetter<R, String> delegate;
+
+  public Utf8Getter(BytesGetter<R, String> delegate) {
+    if (delegate == null) throw new NullPointerException("getter == null");
+    this.delegate = delegate;
+  }
+
+  @Override @Nullable public String get(R request, String key) {
+    byte[] value = delegate.get(request, key);
+    return value != null ? new String(value, UTF_8) : null;
+  }
+
+  @Override public String toString() {
+    return "Utf8Getter{" + delegate + "}";
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.recorder;
+
+import brave.handler.MutableSpan;
+import brave.internal.InternalMutableSpan;
+import brave.propagation.TraceContext;
+
+/**
+ * A few arrays per thread, recycled from ended {@link MutableSpan} objects, used when {@link
+ * brave.Tracing.Builder#recycleSpans()} is in effect.
+ *
+ * <p>Only the arrays of tags and annotations are recycled, not the span itself. Instrumentation can
+ * still reference a span after it ends, for example to add a late tag. As arrays are moved out of
+ * the span under its lock, such writes allocate new arrays instead of reaching an unrelated span.
+ *
+ * <p>Spans are usually finished on the thread that started them, so a few entries are enough to
+ * absorb nesting without retaining much memory per thread. Arrays released on a different thread
+ * simply migrate to that thread's pool.
+ */
+final class MutableSpanPool {
+  static final int MAX_SIZE = 8; // per thread
+
+  /**
+   * Holds arrays of {@link #MAX_SIZE} spans, as {@code [tags, annotationTimestamps,
+   * annotationValues]}. An entry is empty when its arrays were taken.
+   *
+   * <p>Only JDK types are held, so that thread pools don't pin this class loader.
+   */
+  static final ThreadLocal<Object[][]> POOL = new ThreadLocal<Object[][]>();
+
+  /** Same as {@link MutableSpan#MutableSpan(TraceContext, MutableSpan)}, but reuses arrays. */
+  static MutableSpan newSpan(TraceContext context, MutableSpan defaults) {
+    Object[][] pool = POOL.get();
+    if (pool != null) {
+      for (int i = MAX_SIZE - 1; i >= 0; i--) {
+        if (isEmpty(pool[i])) continue;
+        return InternalMutableSpan.instance.newSpan(context, defaults, pool[i]);
+      }
+    }
+    return new MutableSpan(context, defaults);
+  }
+
+  /**
+   * Moves the arrays of an ended span into the pool, unless it is full. This must be called under
+   * the span's lock, as span APIs write under it.
+   */
+  static void release(MutableSpan span) {
+    Object[][] pool = POOL.get();
+    if (pool == null) POOL.set(pool = new Object[MAX_SIZE][3]);
+    for (Object[] holder : pool) {
+      if (!isEmpty(holder)) continue;
+      InternalMutableSpan.instance.recycleArrays(span, holder);
+      return;
+    }
+  }
+
+  static boolean isEmpty(Object[] holder) {
+    return holder[0] == null && holder[1] == null; // annotation arrays are moved together
+  }
+}
@@ -9,11 +9,12 @@ import brave.handler.MutableSpan;
 import brave.internal.InternalPropagation;
 import brave.internal.Nullable;
 import brave.propagation.TraceContext;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 
 /**
- * This is the value of a map entry in {@link PendingSpans}, whose key is a weak reference to {@link
- * #context()}.
+ * This is the value of a map entry in {@link PendingSpans}, and also the weak reference to its key
+ * {@link #context()}. When the key is garbage collected, this is enqueued for orphan reporting.
  *
  * <p>{@link #context()} is cached so that externalized forms of a trace context to be swapped for
  * the one in use. It is a weak reference as otherwise it would prevent the corresponding map key
@@ -24,8 +25,9 @@ public final class PendingSpan extends WeakReference<TraceContext> {
   final TickClock clock;
   final TraceContext handlerContext;
 
-  PendingSpan(TraceContext context, MutableSpan span, TickClock clock) {
-    super(context);
+  PendingSpan(TraceContext context, MutableSpan span, TickClock clock,
+    ReferenceQueue<? super TraceContext> queue) {
+    super(context, queue);
     this.span = span;
     this.clock = clock;
     this.handlerContext = InternalPropagation.instance.shallowCopy(context);
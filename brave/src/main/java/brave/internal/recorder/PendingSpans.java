@@ -11,7 +11,6 @@ import brave.handler.SpanHandler;
 import brave.handler.SpanHandler.Cause;
 import brave.internal.Nullable;
 import brave.internal.Platform;
-import brave.internal.collect.WeakConcurrentMap;
 import brave.propagation.TraceContext;
 import java.lang.ref.Reference;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -23,23 +22,35 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * a check for orphans, invoking any handler that applies.
  *
  * <p>Spans are weakly referenced by their owning context. When the keys are collected, they are
- * transferred to a queue, waiting to be reported. A call to modify any span will implicitly flush
+ * transferred to a queue, waiting to be reported. A call to create any span will implicitly flush
  * orphans to Zipkin. Spans in this state will have a "brave.flush" annotation added to them.
  */
-public final class PendingSpans extends WeakConcurrentMap<TraceContext, PendingSpan> {
+public final class PendingSpans extends StripedPendingSpanMap {
   final MutableSpan defaultSpan;
   final Platform platform;
   final Clock clock;
   final SpanHandler spanHandler;
   final AtomicBoolean noop;
+  final boolean recycleSpans;
 
   public PendingSpans(MutableSpan defaultSpan, Clock clock, SpanHandler spanHandler,
     AtomicBoolean noop) {
+    this(defaultSpan, clock, spanHandler, noop, false);
+  }
+
+  /**
+   * @param recycleSpans when true, span arrays are returned to a per-thread pool after they end,
+   * except when {@linkplain Cause#ORPHANED orphaned}.
+   * @see brave.Tracing.Builder#recycleSpans()
+   */
+  public PendingSpans(MutableSpan defaultSpan, Clock clock, SpanHandler spanHandler,
+    AtomicBoolean noop, boolean recycleSpans) {
     this.platform = Platform.get();
     this.defaultSpan = defaultSpan;
     this.clock = clock;
     this.spanHandler = spanHandler;
     this.noop = noop;
+    this.recycleSpans = recycleSpans;
   }
 
   /**
@@ -58,7 +69,9 @@ public final class PendingSpans extends WeakConcurrentMap<TraceContext, PendingS
     PendingSpan result = get(context);
     if (result != null) return result;
 
-    MutableSpan span = new MutableSpan(context, defaultSpan);
+    MutableSpan span = recycleSpans
+      ? MutableSpanPool.newSpan(context, defaultSpan)
+      : new MutableSpan(context, defaultSpan);
     PendingSpan parentSpan = parent != null ? get(parent) : null;
 
     // save overhead calculating time if the parent is in-progress (usually is)
@@ -74,7 +87,7 @@ public final class PendingSpans extends WeakConcurrentMap<TraceContext, PendingS
       if (start) span.startTimestamp(currentTimeMicroseconds);
     }
 
-    PendingSpan newSpan = new PendingSpan(context, span, clock);
+    PendingSpan newSpan = new PendingSpan(context, span, clock, this);
     // Probably absent because we already checked with get() at the entrance of this method
     PendingSpan previousSpan = putIfProbablyAbsent(context, newSpan);
     if (previousSpan != null) return previousSpan; // lost race
@@ -91,15 +104,19 @@ public final class PendingSpans extends WeakConcurrentMap<TraceContext, PendingS
   /** @see brave.Span#abandon() */
   public void abandon(TraceContext context) {
     PendingSpan last = remove(context);
-    if (last != null && spanHandler.handlesAbandoned()) {
+    if (last == null) return;
+    if (spanHandler.handlesAbandoned()) {
       spanHandler.end(last.handlerContext, last.span, Cause.ABANDONED);
     }
+    release(last);
   }
 
   /** @see brave.Span#flush() */
   public void flush(TraceContext context) {
     PendingSpan last = remove(context);
-    if (last != null) spanHandler.end(last.handlerContext, last.span, Cause.FLUSHED);
+    if (last == null) return;
+    spanHandler.end(last.handlerContext, last.span, Cause.FLUSHED);
+    release(last);
   }
 
   /**
@@ -114,6 +131,15 @@ public final class PendingSpans extends WeakConcurrentMap<TraceContext, PendingS
     if (last == null) return;
     last.span.finishTimestamp(timestamp != 0L ? timestamp : last.clock.currentTimeMicroseconds());
     spanHandler.end(last.handlerContext, last.span, Cause.FINISHED);
+    release(last);
+  }
+
+  void release(PendingSpan last) {
+    if (!recycleSpans) return;
+    // Span APIs write under the span's monitor, so move its arrays under it, too.
+    synchronized (last.span) {
+      MutableSpanPool.release(last.span);
+    }
   }
 
   /** Reports spans orphaned by garbage collection. */
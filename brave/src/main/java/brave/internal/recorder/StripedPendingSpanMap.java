@@ -0,0 +1,246 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.recorder;
+
+import brave.internal.Nullable;
+import brave.internal.collect.WeakConcurrentMap;
+import brave.propagation.TraceContext;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A replacement for {@link WeakConcurrentMap} specialized for {@link PendingSpans}. This avoids
+ * allocating a weak key per span, and avoids {@link java.util.concurrent.ConcurrentHashMap} node
+ * churn.
+ *
+ * <p>This is possible because {@link PendingSpan} is itself the weak reference to its context.
+ * Hence, entries are stored in open addressing tables keyed on the IDs of {@link
+ * PendingSpan#handlerContext}, which is a strong copy of the same identity.
+ *
+ * <p>Tables are striped by hash, so writers only contend with writers of the same stripe. Reads
+ * don't lock. Removal leaves a tombstone, so a concurrent read never misses an entry that remains.
+ *
+ * <p>Stale entries are only expunged when a new entry is added, or when {@link
+ * #expungeStaleEntries()} is called explicitly. This amortizes polling of the {@link
+ * ReferenceQueue} to once per span, instead of on every operation. Until expunged, an entry whose
+ * context was collected doesn't match any key, so a new context with the same IDs never gets it.
+ */
+class StripedPendingSpanMap extends ReferenceQueue<TraceContext> {
+  static final Object TOMBSTONE = new Object();
+  static final int INITIAL_CAPACITY = 16; // per stripe
+
+  final Stripe[] stripes;
+  final int stripeMask;
+
+  StripedPendingSpanMap() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  StripedPendingSpanMap(int minimumStripes) {
+    int stripeCount = minimumStripes <= 1 ? 1 : Integer.highestOneBit(minimumStripes - 1) << 1;
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) stripes[i] = new Stripe();
+    stripeMask = stripeCount - 1;
+  }
+
+  @Nullable public PendingSpan getIfPresent(TraceContext key) {
+    if (key == null) throw new NullPointerException("key == null");
+    long hash = hash(key);
+    return stripe(hash).get(key, (int) hash);
+  }
+
+  /** Adds the value unless there's an existing entry, in which case that's returned. */
+  @Nullable public PendingSpan putIfProbablyAbsent(TraceContext key, PendingSpan value) {
+    if (key == null) throw new NullPointerException("key == null");
+    if (value == null) throw new NullPointerException("value == null");
+    expungeStaleEntries();
+
+    long hash = hash(key);
+    return stripe(hash).putIfAbsent(key, (int) hash, value);
+  }
+
+  /** Removes the entry with the indicated key and returns the old value or {@code null}. */
+  @Nullable public PendingSpan remove(TraceContext key) {
+    if (key == null) throw new NullPointerException("key == null");
+    long hash = hash(key);
+    return stripe(hash).remove(key, (int) hash);
+  }
+
+  /** Cleans all unused references. */
+  protected void expungeStaleEntries() {
+    Reference<?> reference;
+    while ((reference = poll()) != null) {
+      removeStaleEntry(reference);
+    }
+  }
+
+  /** Returns the input if it was still present, or {@code null} if it was already removed. */
+  @Nullable protected PendingSpan removeStaleEntry(Reference<?> reference) {
+    PendingSpan value = (PendingSpan) reference;
+    long hash = hash(value.handlerContext);
+    return stripe(hash).removeIdentity(value, (int) hash) ? value : null;
+  }
+
+  Stripe stripe(long hash) {
+    return stripes[(int) (hash >>> 32) & stripeMask];
+  }
+
+  /** The high bits choose the stripe and the low bits the slot. */
+  static long hash(TraceContext context) {
+    long hash = context.traceIdHigh() ^ context.traceId() * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ context.spanId()) * 0xC2B2AE3D27D4EB4FL;
+    if (context.shared()) hash = ~hash;
+    return hash ^ (hash >>> 29);
+  }
+
+  /**
+   * Same as {@link TraceContext#equals(Object)}, except without type checks, and never matching an
+   * entry whose context was collected. Such entries are left for {@link #expungeStaleEntries()} to
+   * report as orphans.
+   */
+  static boolean matches(PendingSpan entry, TraceContext key) {
+    TraceContext context = entry.handlerContext;
+    return entry.get() != null
+      && context.spanId() == key.spanId()
+      && context.traceId() == key.traceId()
+      && context.traceIdHigh() == key.traceIdHigh()
+      && context.shared() == key.shared();
+  }
+
+  /** Returns the live entries, mainly for {@link #toString()}. */
+  List<PendingSpan> values() {
+    List<PendingSpan> result = new ArrayList<PendingSpan>();
+    for (Stripe stripe : stripes) {
+      AtomicReferenceArray<Object> table = stripe.table;
+      for (int i = 0, length = table.length(); i < length; i++) {
+        Object entry = table.get(i);
+        if (entry != null && entry != TOMBSTONE) result.add((PendingSpan) entry);
+      }
+    }
+    return result;
+  }
+
+  @Override public String toString() {
+    Class<?> thisClass = getClass();
+    while (thisClass.getSimpleName().isEmpty()) {
+      thisClass = thisClass.getSuperclass();
+    }
+    expungeStaleEntries(); // Clean up so that only present references show up (unless race lost)
+    List<TraceContext> keys = new ArrayList<TraceContext>();
+    for (PendingSpan value : values()) {
+      TraceContext key = value.context();
+      if (key != null) keys.add(key);
+    }
+    return thisClass.getSimpleName() + keys;
+  }
+
+  /**
+   * A linear probing table, where writes are guarded by this object's monitor. The table reference
+   * is replaced on resize, so readers never see a partially copied table.
+   */
+  static final class Stripe {
+    volatile AtomicReferenceArray<Object> table =
+      new AtomicReferenceArray<Object>(INITIAL_CAPACITY);
+    int size, tombstones; // guarded by this
+
+    @Nullable PendingSpan get(TraceContext key, int hash) {
+      AtomicReferenceArray<Object> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Object entry = table.get(i);
+        if (entry == null) return null;
+        if (entry != TOMBSTONE && matches((PendingSpan) entry, key)) return (PendingSpan) entry;
+      }
+      return null;
+    }
+
+    synchronized @Nullable PendingSpan putIfAbsent(TraceContext key, int hash, PendingSpan value) {
+      AtomicReferenceArray<Object> table = this.table;
+      int mask = table.length() - 1, tombstone = -1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Object entry = table.get(i);
+        if (entry == null) {
+          if (tombstone != -1) {
+            i = tombstone;
+            tombstones--;
+          }
+          table.set(i, value);
+          if (++size + tombstones > table.length() * 3 / 4) resize();
+          return null;
+        }
+        if (entry == TOMBSTONE) {
+          if (tombstone == -1) tombstone = i;
+        } else if (matches((PendingSpan) entry, key)) {
+          return (PendingSpan) entry;
+        }
+      }
+      // Only tombstones and other keys were found. The load factor ensures we had a tombstone.
+      table.set(tombstone, value);
+      tombstones--;
+      size++;
+      return null;
+    }
+
+    synchronized @Nullable PendingSpan remove(TraceContext key, int hash) {
+      AtomicReferenceArray<Object> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Object entry = table.get(i);
+        if (entry == null) return null;
+        if (entry != TOMBSTONE && matches((PendingSpan) entry, key)) {
+          removeAt(table, i);
+          return (PendingSpan) entry;
+        }
+      }
+      return null;
+    }
+
+    synchronized boolean removeIdentity(PendingSpan value, int hash) {
+      AtomicReferenceArray<Object> table = this.table;
+      int mask = table.length() - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        Object entry = table.get(i);
+        if (entry == null) return false;
+        if (entry == value) {
+          removeAt(table, i);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void removeAt(AtomicReferenceArray<Object> table, int i) {
+      int mask = table.length() - 1;
+      size--;
+      if (table.get((i + 1) & mask) == null) {
+        table.set(i, null); // nothing probes past this slot, so a tombstone isn't needed
+      } else {
+        table.set(i, TOMBSTONE);
+        tombstones++;
+      }
+    }
+
+    /** Grows when mostly live entries, or rebuilds at the same size to clear tombstones. */
+    void resize() {
+      AtomicReferenceArray<Object> oldTable = table;
+      int length = oldTable.length();
+      if (size >= length / 2) length <<= 1;
+      AtomicReferenceArray<Object> newTable = new AtomicReferenceArray<Object>(length);
+      int mask = length - 1;
+      for (int j = 0, oldLength = oldTable.length(); j < oldLength; j++) {
+        Object entry = oldTable.get(j);
+        if (entry == null || entry == TOMBSTONE) continue;
+        int i = (int) hash(((PendingSpan) entry).handlerContext) & mask;
+        while (newTable.get(i) != null) i = (i + 1) & mask;
+        newTable.set(i, entry);
+      }
+      tombstones = 0;
+      table = newTable;
+    }
+  }
+}
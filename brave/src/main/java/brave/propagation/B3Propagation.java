@@ -6,7 +6,9 @@ package brave.propagation;
 
 import brave.Request;
 import brave.Span.Kind;
+import brave.internal.Nullable;
 import brave.internal.Platform;
+import brave.internal.codec.AsciiCharSequence;
 import brave.internal.propagation.InjectorFactory;
 import brave.internal.propagation.InjectorFactory.InjectorFunction;
 import brave.propagation.TraceContext.Extractor;
@@ -225,6 +227,11 @@ public abstract class B3Propagation<K> implements Propagation<K> {
       return new B3Extractor<R>(getter);
     }
 
+    @Override public <R> Extractor<R> bytesExtractor(BytesGetter<R, String> getter) {
+      if (getter == null) throw new NullPointerException("getter == null");
+      return new B3Extractor<R>(getter);
+    }
+
     @Override public int hashCode() {
       return injectorFactory.hashCode();
     }
@@ -242,24 +249,39 @@ public abstract class B3Propagation<K> implements Propagation<K> {
     }
   }
 
+  /** Reads values from exactly one of a {@link Getter} or {@link BytesGetter}. */
   static final class B3Extractor<R> implements Extractor<R> {
-    final Getter<R, String> getter;
+    @Nullable final Getter<R, String> getter;
+    @Nullable final BytesGetter<R, String> bytesGetter;
 
     B3Extractor(Getter<R, String> getter) {
       this.getter = getter;
+      this.bytesGetter = null;
+    }
+
+    B3Extractor(BytesGetter<R, String> bytesGetter) {
+      this.getter = null;
+      this.bytesGetter = bytesGetter;
+    }
+
+    /** Bytes are read as ASCII, so IDs are parsed without decoding a String. */
+    @Nullable CharSequence get(R request, String key) {
+      if (getter != null) return getter.get(request, key);
+      byte[] bytes = bytesGetter.get(request, key);
+      return bytes != null ? new AsciiCharSequence(bytes) : null;
     }
 
     @Override public TraceContextOrSamplingFlags extract(R request) {
       if (request == null) throw new NullPointerException("request == null");
 
       // try to extract single-header format
-      String b3 = getter.get(request, B3);
+      CharSequence b3 = get(request, B3);
       TraceContextOrSamplingFlags extracted = b3 != null ? parseB3SingleFormat(b3) : null;
       if (extracted != null) return extracted;
 
       // Start by looking at the sampled state as this is used regardless
       // Official sampled value is 1, though some old instrumentation send true
-      String sampled = getter.get(request, SAMPLED);
+      CharSequence sampled = get(request, SAMPLED);
       Boolean sampledV;
       if (sampled == null) {
         sampledV = null; // defer decision
@@ -271,23 +293,24 @@ public abstract class B3Propagation<K> implements Propagation<K> {
         } else if (sampledC == '0') {
           sampledV = false;
         } else {
-          Platform.get().log(SAMPLED_MALFORMED, sampled, null);
+          Platform.get().log(SAMPLED_MALFORMED, sampled.toString(), null);
           return TraceContextOrSamplingFlags.EMPTY; // trace context is malformed so return empty
         }
-      } else if (sampled.equalsIgnoreCase("true")) { // old clients
+      } else if (equalsIgnoreCase(sampled, "true")) { // old clients
         sampledV = true;
-      } else if (sampled.equalsIgnoreCase("false")) { // old clients
+      } else if (equalsIgnoreCase(sampled, "false")) { // old clients
         sampledV = false;
       } else {
-        Platform.get().log(SAMPLED_MALFORMED, sampled, null);
+        Platform.get().log(SAMPLED_MALFORMED, sampled.toString(), null);
         return TraceContextOrSamplingFlags.EMPTY; // Restart trace instead of propagating false
       }
 
       // The only flag we action is 1, but it could be that any integer is present.
       // Here, we leniently parse as debug is not a primary consideration of the trace context.
-      boolean debug = "1".equals(getter.get(request, FLAGS));
+      CharSequence flags = get(request, FLAGS);
+      boolean debug = flags != null && flags.length() == 1 && flags.charAt(0) == '1';
 
-      String traceIdString = getter.get(request, TRACE_ID);
+      CharSequence traceIdString = get(request, TRACE_ID);
 
       // It is ok to go without a trace ID, if sampling or debug is set
       if (traceIdString == null) {
@@ -302,14 +325,26 @@ public abstract class B3Propagation<K> implements Propagation<K> {
       // Try to parse the trace IDs into the context
       TraceContext.Builder result = TraceContext.newBuilder();
       if (result.parseTraceId(traceIdString, TRACE_ID)
-          && result.parseSpanId(getter, request, SPAN_ID)
-          && result.parseParentId(getter, request, PARENT_SPAN_ID)) {
+          && result.parseSpanId(get(request, SPAN_ID), SPAN_ID)
+          && result.parseParentId(get(request, PARENT_SPAN_ID), PARENT_SPAN_ID)) {
         if (sampledV != null) result.sampled(sampledV.booleanValue());
         if (debug) result.debug(true);
         return TraceContextOrSamplingFlags.create(result.build());
       }
       return TraceContextOrSamplingFlags.EMPTY; // trace context is malformed so return empty
     }
+
+    /** Compares to a lowercase ASCII string, ignoring case of the input. */
+    static boolean equalsIgnoreCase(CharSequence value, String lowercase) {
+      int length = lowercase.length();
+      if (value.length() != length) return false;
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+        if (c != lowercase.charAt(i)) return false;
+      }
+      return true;
+    }
   }
 
   B3Propagation() { // no instances
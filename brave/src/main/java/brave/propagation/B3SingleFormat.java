@@ -7,6 +7,9 @@ package brave.propagation;
 import brave.internal.Nullable;
 import brave.internal.Platform;
 import brave.internal.RecyclableBuffers;
+import brave.internal.codec.AsciiCharSequence;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 
@@ -63,9 +66,14 @@ public final class B3SingleFormat {
    * with the client.
    */
   public static String writeB3SingleFormatWithoutParentId(TraceContext context) {
-    char[] buffer = RecyclableBuffers.parseBuffer();
-    int length = writeB3SingleFormat(context, 0L, buffer);
-    return new String(buffer, 0, length);
+    String result = context.b3SingleFormatWithoutParentId;
+    if (result == null) {
+      if (context.parentIdAsLong() == 0L) return writeB3SingleFormat(context);
+      char[] buffer = RecyclableBuffers.parseBuffer();
+      int length = writeB3SingleFormat(context, 0L, buffer);
+      result = context.b3SingleFormatWithoutParentId = new String(buffer, 0, length);
+    }
+    return result;
   }
 
   /**
@@ -73,9 +81,23 @@ public final class B3SingleFormat {
    * array or byte buffer values. For example, {@link ByteBuffer#wrap(byte[])} can wrap the result.
    */
   public static byte[] writeB3SingleFormatWithoutParentIdAsBytes(TraceContext context) {
-    char[] buffer = RecyclableBuffers.parseBuffer();
-    int length = writeB3SingleFormat(context, 0L, buffer);
-    return asciiToNewByteArray(buffer, length);
+    return asciiToNewByteArray(writeB3SingleFormatWithoutParentId(context));
+  }
+
+  /**
+   * Like {@link #writeB3SingleFormatWithoutParentIdAsBytes(TraceContext)}, except this writes into
+   * the destination, starting at its position. This avoids allocation when the caller pools or
+   * reuses header buffers, such as in Netty or gRPC.
+   *
+   * <p>On success, the position of the destination advances by the length written.
+   *
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the destination,
+   * which is at most 68 bytes.
+   * @since 6.1
+   */
+  public static void writeB3SingleFormatWithoutParentId(TraceContext context,
+    ByteBuffer destination) {
+    writeAscii(writeB3SingleFormatWithoutParentId(context), destination);
   }
 
   /**
@@ -87,9 +109,13 @@ public final class B3SingleFormat {
    * reuses a client's span ID, prefer {@link #writeB3SingleFormatWithoutParentId(TraceContext)}.
    */
   public static String writeB3SingleFormat(TraceContext context) {
-    char[] buffer = RecyclableBuffers.parseBuffer();
-    int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
-    return new String(buffer, 0, length);
+    String result = context.b3SingleFormat;
+    if (result == null) {
+      char[] buffer = RecyclableBuffers.parseBuffer();
+      int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
+      result = context.b3SingleFormat = new String(buffer, 0, length);
+    }
+    return result;
   }
 
   /**
@@ -97,9 +123,22 @@ public final class B3SingleFormat {
    * buffer values. For example, {@link ByteBuffer#wrap(byte[])} can wrap the result.
    */
   public static byte[] writeB3SingleFormatAsBytes(TraceContext context) {
-    char[] buffer = RecyclableBuffers.parseBuffer();
-    int length = writeB3SingleFormat(context, context.parentIdAsLong(), buffer);
-    return asciiToNewByteArray(buffer, length);
+    return asciiToNewByteArray(writeB3SingleFormat(context));
+  }
+
+  /**
+   * Like {@link #writeB3SingleFormatAsBytes(TraceContext)}, except this writes into the
+   * destination, starting at its position. This avoids allocation when the caller pools or reuses
+   * header buffers, such as in Netty or gRPC.
+   *
+   * <p>On success, the position of the destination advances by the length written.
+   *
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the destination,
+   * which is at most 68 bytes.
+   * @since 6.1
+   */
+  public static void writeB3SingleFormat(TraceContext context, ByteBuffer destination) {
+    writeAscii(writeB3SingleFormat(context), destination);
   }
 
   static int writeB3SingleFormat(TraceContext context, long parentId, char[] result) {
@@ -276,6 +315,50 @@ public final class B3SingleFormat {
     ));
   }
 
+  /**
+   * Like {@link #parseB3SingleFormat(CharSequence)}, but reads ASCII bytes. This avoids decoding a
+   * {@link String} when the carrier holds values as bytes, such as Kafka or gRPC binary headers.
+   *
+   * @since 6.1
+   */
+  @Nullable public static TraceContextOrSamplingFlags parseB3SingleFormat(byte[] b3) {
+    return parseB3SingleFormat(new AsciiCharSequence(b3));
+  }
+
+  /**
+   * Like {@link #parseB3SingleFormat(CharSequence, int, int)}, but reads ASCII bytes.
+   *
+   * @param value the bytes that contain a B3 single formatted trace context
+   * @param beginIndex the inclusive index of the first byte in B3 single format.
+   * @param endIndex the exclusive index <em>after</em> the last byte in B3 single format.
+   * @since 6.1
+   */
+  @Nullable
+  public static TraceContextOrSamplingFlags parseB3SingleFormat(byte[] value, int beginIndex,
+    int endIndex) {
+    return parseB3SingleFormat(new AsciiCharSequence(value, beginIndex, endIndex));
+  }
+
+  /**
+   * Like {@link #parseB3SingleFormat(byte[])}, but reads the {@linkplain ByteBuffer#remaining()
+   * remaining} bytes, without changing the position of the buffer.
+   *
+   * @since 6.1
+   */
+  @Nullable public static TraceContextOrSamplingFlags parseB3SingleFormat(ByteBuffer b3) {
+    int position = b3.position(), length = b3.remaining();
+    if (b3.hasArray()) {
+      int offset = b3.arrayOffset() + position;
+      return parseB3SingleFormat(b3.array(), offset, offset + length);
+    }
+    if (length > FORMAT_MAX_LENGTH) length = FORMAT_MAX_LENGTH + 1; // enough to log "too long"
+    byte[] buffer = RecyclableBuffers.parseBytesBuffer();
+    for (int i = 0; i < length; i++) {
+      buffer[i] = b3.get(position + i);
+    }
+    return parseB3SingleFormat(buffer, 0, length);
+  }
+
   @Nullable static SamplingFlags tryParseSamplingFlags(char sampledChar) {
     switch (sampledChar) {
       case '1':
@@ -327,14 +410,33 @@ public final class B3SingleFormat {
     Platform.get().log(s, field, null);
   }
 
-  static byte[] asciiToNewByteArray(char[] buffer, int length) {
+  static byte[] asciiToNewByteArray(String value) {
+    int length = value.length();
     byte[] result = new byte[length];
     for (int i = 0; i < length; i++) {
-      result[i] = (byte) buffer[i];
+      result[i] = (byte) value.charAt(i);
     }
     return result;
   }
 
+  static void writeAscii(String value, ByteBuffer destination) {
+    if (destination == null) throw new NullPointerException("destination == null");
+    int length = value.length();
+    if (destination.remaining() < length) throw new BufferOverflowException();
+    if (destination.hasArray()) { // write directly to the backing array
+      byte[] array = destination.array();
+      int offset = destination.arrayOffset() + destination.position();
+      for (int i = 0; i < length; i++) {
+        array[offset + i] = (byte) value.charAt(i);
+      }
+      ((Buffer) destination).position(destination.position() + length);
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      destination.put((byte) value.charAt(i));
+    }
+  }
+
   B3SingleFormat() {
   }
 }
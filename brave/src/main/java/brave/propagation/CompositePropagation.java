@@ -0,0 +1,323 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.Propagation.Getter;
+import brave.propagation.Propagation.Setter;
+import brave.propagation.TraceContext.Extractor;
+import brave.propagation.TraceContext.Injector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Combines multiple propagation formats, such as {@link W3CPropagation} and {@link
+ * B3Propagation}.
+ *
+ * <p>Formats are extracted in the order they were added, until one returns a result. When the
+ * getter is a {@link KeysGetter}, formats without a presence key in the request are skipped, after
+ * one pass over the request's keys. Otherwise, presence isn't probed, as that would read the same
+ * keys twice: each format's extractor returns early when its keys are absent.
+ *
+ * <p>Here's an example that reads W3C or B3, but only writes W3C:
+ * <pre>{@code
+ * tracingBuilder.propagationFactory(CompositePropagation.newFactoryBuilder()
+ *   .add(W3CPropagation.FACTORY, "traceparent")
+ *   .add(B3Propagation.FACTORY, "b3", "X-B3-TraceId", "X-B3-Sampled", "X-B3-Flags")
+ *   .injectFormats(W3CPropagation.FACTORY)
+ *   .build());
+ * }</pre>
+ *
+ * <p>When another format is injected with {@link W3CPropagation}, "traceparent" is skipped for
+ * contexts with {@link TraceContext#sampled()} unset. It would otherwise be read downstream as not
+ * sampled, turning a deferred decision into a drop.
+ *
+ * @since 6.1
+ */
+public final class CompositePropagation {
+  /**
+   * A getter that can also list the keys present in a request, for example, header names. This
+   * allows {@linkplain CompositePropagation} to check all formats in one pass.
+   *
+   * <p>Keys are compared to presence keys case-insensitively, as HTTP header names are.
+   *
+   * @param <R> Usually, but not always, an instance of {@link brave.Request}.
+   * @since 6.1
+   */
+  public interface KeysGetter<R> extends Getter<R, String> {
+    /** Returns the keys present in the request. */
+    Iterable<String> keys(R request);
+  }
+
+  public static FactoryBuilder newFactoryBuilder() {
+    return new FactoryBuilder();
+  }
+
+  public static final class FactoryBuilder {
+    /** Formats are tracked in an int bit set. */
+    static final int MAX_FORMATS = 32;
+
+    final List<Propagation.Factory> factories = new ArrayList<Propagation.Factory>();
+    final List<String[]> presenceKeys = new ArrayList<String[]>();
+    Set<Propagation.Factory> injectFactories; // null means all
+
+    /**
+     * Adds a format to extract and inject, which is present when the request has any of its
+     * {@linkplain Propagation#keys() keys}.
+     *
+     * @since 6.1
+     */
+    public FactoryBuilder add(Propagation.Factory factory) {
+      if (factory == null) throw new NullPointerException("factory == null");
+      List<String> keys = factory.get().keys();
+      return add(factory, keys.toArray(new String[0]));
+    }
+
+    /**
+     * Like {@link #add(Propagation.Factory)}, except the format is present only when the request
+     * has any of the given keys. Choose keys that are sent with every request in this format. For
+     * example, B3 sends "b3" or "X-B3-TraceId", but can also send "X-B3-Sampled" alone.
+     *
+     * @since 6.1
+     */
+    public FactoryBuilder add(Propagation.Factory factory, String... presenceKeys) {
+      if (factory == null) throw new NullPointerException("factory == null");
+      if (presenceKeys == null) throw new NullPointerException("presenceKeys == null");
+      if (presenceKeys.length == 0) throw new IllegalArgumentException("presenceKeys are empty");
+      for (String key : presenceKeys) {
+        if (key == null) throw new NullPointerException("presenceKey == null");
+      }
+      if (factories.contains(factory)) {
+        throw new IllegalArgumentException(factory + " already added");
+      }
+      if (factories.size() == MAX_FORMATS) {
+        throw new IllegalArgumentException("over " + MAX_FORMATS + " formats");
+      }
+      factories.add(factory);
+      this.presenceKeys.add(presenceKeys.clone());
+      return this;
+    }
+
+    /**
+     * Limits injection to a subset of the {@linkplain #add(Propagation.Factory) added} formats.
+     * Defaults to all of them.
+     *
+     * @since 6.1
+     */
+    public FactoryBuilder injectFormats(Propagation.Factory... factories) {
+      if (factories == null) throw new NullPointerException("factories == null");
+      Set<Propagation.Factory> injectFactories = new LinkedHashSet<Propagation.Factory>();
+      for (Propagation.Factory factory : factories) {
+        if (factory == null) throw new NullPointerException("factory == null");
+        injectFactories.add(factory);
+      }
+      this.injectFactories = injectFactories;
+      return this;
+    }
+
+    public Propagation.Factory build() {
+      if (factories.isEmpty()) throw new IllegalArgumentException("no formats added");
+      if (injectFactories != null) {
+        for (Propagation.Factory factory : injectFactories) {
+          if (!factories.contains(factory)) {
+            throw new IllegalArgumentException(factory + " wasn't added");
+          }
+        }
+      }
+      return new Factory(this);
+    }
+
+    FactoryBuilder() {
+    }
+  }
+
+  static final class Factory extends Propagation.Factory implements Propagation<String> {
+    final Propagation.Factory[] factories;
+    final Propagation<String>[] propagations;
+    final boolean[] inject;
+    final String[][] presenceKeys;
+    final List<String> keys;
+
+    @SuppressWarnings("unchecked") Factory(FactoryBuilder builder) {
+      int length = builder.factories.size();
+      factories = builder.factories.toArray(new Propagation.Factory[length]);
+      propagations = new Propagation[length];
+      inject = new boolean[length];
+      presenceKeys = builder.presenceKeys.toArray(new String[length][]);
+      Set<String> keys = new LinkedHashSet<String>();
+      for (int i = 0; i < length; i++) {
+        propagations[i] = factories[i].get();
+        inject[i] =
+          builder.injectFactories == null || builder.injectFactories.contains(factories[i]);
+        keys.addAll(propagations[i].keys());
+      }
+      this.keys = Collections.unmodifiableList(new ArrayList<String>(keys));
+    }
+
+    @Override public List<String> keys() {
+      return keys;
+    }
+
+    @Override public Propagation<String> get() {
+      return this;
+    }
+
+    /** Only supports join when all formats do, as any of them could be extracted. */
+    @Override public boolean supportsJoin() {
+      for (Propagation.Factory factory : factories) {
+        if (!factory.supportsJoin()) return false;
+      }
+      return true;
+    }
+
+    @Override public boolean requires128BitTraceId() {
+      for (Propagation.Factory factory : factories) {
+        if (factory.requires128BitTraceId()) return true;
+      }
+      return false;
+    }
+
+    @Override public TraceContext decorate(TraceContext context) {
+      for (Propagation.Factory factory : factories) {
+        context = factory.decorate(context);
+      }
+      return context;
+    }
+
+    @Override public <R> Injector<R> injector(Setter<R, String> setter) {
+      if (setter == null) throw new NullPointerException("setter == null");
+      List<Injector<R>> injectors = new ArrayList<Injector<R>>();
+      List<Injector<R>> deferredInjectors = new ArrayList<Injector<R>>();
+      for (int i = 0; i < propagations.length; i++) {
+        if (!inject[i]) continue;
+        Injector<R> injector = propagations[i].injector(setter);
+        injectors.add(injector);
+        if (!(factories[i] instanceof W3CPropagation.Factory)) deferredInjectors.add(injector);
+      }
+      if (injectors.size() == 1) return injectors.get(0);
+      // Formats that can't defer sampling are only needed when there's a decision to propagate.
+      if (deferredInjectors.isEmpty()) deferredInjectors = injectors;
+      return new CompositeInjector<R>(injectors, deferredInjectors);
+    }
+
+    @Override @SuppressWarnings("unchecked")
+    public <R> Extractor<R> extractor(Getter<R, String> getter) {
+      if (getter == null) throw new NullPointerException("getter == null");
+      Extractor<R>[] extractors = new Extractor[propagations.length];
+      for (int i = 0; i < propagations.length; i++) {
+        extractors[i] = propagations[i].extractor(getter);
+      }
+      return new CompositeExtractor<R>(this, getter, extractors);
+    }
+
+    /** Returns a bit set of formats with any presence key in the input. */
+    int presentFormats(Iterable<String> keys) {
+      int all = (1 << (factories.length - 1) << 1) - 1, result = 0;
+      for (String key : keys) {
+        if (key == null) continue;
+        for (int i = 0; i < presenceKeys.length; i++) {
+          if ((result & (1 << i)) != 0) continue; // already present
+          for (String presenceKey : presenceKeys[i]) {
+            if (presenceKey.length() == key.length() && presenceKey.equalsIgnoreCase(key)) {
+              result |= 1 << i;
+              break;
+            }
+          }
+        }
+        if (result == all) break;
+      }
+      return result;
+    }
+
+    @Override public int hashCode() {
+      int h = 1000003;
+      h ^= Arrays.hashCode(factories);
+      h *= 1000003;
+      h ^= Arrays.deepHashCode(presenceKeys);
+      h *= 1000003;
+      h ^= Arrays.hashCode(inject);
+      return h;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof CompositePropagation.Factory)) return false;
+
+      CompositePropagation.Factory that = (CompositePropagation.Factory) o;
+      return Arrays.equals(factories, that.factories)
+        && Arrays.deepEquals(presenceKeys, that.presenceKeys)
+        && Arrays.equals(inject, that.inject);
+    }
+
+    @Override public String toString() {
+      return "CompositePropagation" + Arrays.toString(factories);
+    }
+  }
+
+  static final class CompositeInjector<R> implements Injector<R> {
+    final Injector<R>[] injectors, deferredInjectors;
+
+    @SuppressWarnings("unchecked")
+    CompositeInjector(List<Injector<R>> injectors, List<Injector<R>> deferredInjectors) {
+      this.injectors = injectors.toArray(new Injector[0]);
+      this.deferredInjectors = deferredInjectors.toArray(new Injector[0]);
+    }
+
+    @Override public void inject(TraceContext context, R request) {
+      for (Injector<R> injector : context.sampled() != null ? injectors : deferredInjectors) {
+        injector.inject(context, request);
+      }
+    }
+
+    @Override public String toString() {
+      return "CompositeInjector" + Arrays.toString(injectors);
+    }
+  }
+
+  static final class CompositeExtractor<R> implements Extractor<R> {
+    final Factory factory;
+    final Getter<R, String> getter;
+    final Extractor<R>[] extractors;
+
+    CompositeExtractor(Factory factory, Getter<R, String> getter, Extractor<R>[] extractors) {
+      this.factory = factory;
+      this.getter = getter;
+      this.extractors = extractors;
+    }
+
+    @Override public TraceContextOrSamplingFlags extract(R request) {
+      if (request == null) throw new NullPointerException("request == null");
+
+      int present = -1; // all formats, unless keys can be listed
+      if (getter instanceof KeysGetter) {
+        present = factory.presentFormats(((KeysGetter<R>) getter).keys(request));
+        if (present == 0) return TraceContextOrSamplingFlags.EMPTY;
+      }
+
+      for (int i = 0; i < extractors.length; i++) {
+        if ((present & (1 << i)) == 0) continue;
+
+        TraceContextOrSamplingFlags result = extractors[i].extract(request);
+        if (!isEmpty(result)) return result;
+      }
+      return TraceContextOrSamplingFlags.EMPTY;
+    }
+
+    @Override public String toString() {
+      return "CompositeExtractor" + Arrays.toString(extractors);
+    }
+  }
+
+  /** Returns true when a format extracted nothing, for example, due to malformed input. */
+  static boolean isEmpty(TraceContextOrSamplingFlags result) {
+    return result.samplingFlags() == SamplingFlags.EMPTY && result.extra().isEmpty();
+  }
+
+  CompositePropagation() {
+  }
+}
@@ -8,6 +8,7 @@ import brave.Request;
 import brave.Span.Kind;
 import brave.baggage.BaggagePropagation;
 import brave.internal.Nullable;
+import brave.internal.propagation.Utf8Getter;
 import java.util.List;
 
 /**
@@ -112,6 +113,19 @@ public interface Propagation<K> {
     public TraceContext decorate(TraceContext context) {
       return context;
     }
+
+    /**
+     * Like {@link Propagation#extractor(Getter)}, except values are read as bytes. Override this
+     * to parse bytes directly. By default, values are decoded as UTF-8 strings.
+     *
+     * @param getter invoked for each propagation key to get.
+     * @param <R> Usually, but not always, an instance of {@link Request}.
+     * @see B3SingleFormat#parseB3SingleFormat(byte[])
+     * @since 6.1
+     */
+    public <R> TraceContext.Extractor<R> bytesExtractor(BytesGetter<R, String> getter) {
+      return get().extractor(new Utf8Getter<R>(getter));
+    }
   }
 
   /**
@@ -211,6 +225,23 @@ public interface Propagation<K> {
     @Nullable String get(R request, K key);
   }
 
+  /**
+   * Like {@link Getter}, but for carriers that hold values as bytes, such as Kafka or gRPC binary
+   * headers. This avoids decoding a string per header when the propagation format can parse bytes.
+   *
+   * @param <R> Usually, but not always, an instance of {@link Request}.
+   * @param <K> Always String, for consistency with {@link Getter}.
+   * @see Factory#bytesExtractor(BytesGetter)
+   * @since 6.1
+   */
+  interface BytesGetter<R, K> {
+    /**
+     * Returns the first value of the given propagation key or {@code null}. The result is not
+     * retained, so it can be a view of a reused array.
+     */
+    @Nullable byte[] get(R request, K key);
+  }
+
   /**
    * Used as an input to {@link Propagation#injector(Setter)} inject the {@linkplain TraceContext
    * trace context} and any {@linkplain BaggagePropagation baggage} as propagated fields.
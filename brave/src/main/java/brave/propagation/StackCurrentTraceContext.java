@@ -0,0 +1,133 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import java.util.Arrays;
+
+/**
+ * In-process trace context propagation backed by a static thread local stack, which doesn't
+ * allocate when opening or closing a scope.
+ *
+ * <h3>Design notes</h3>
+ *
+ * <p>Like {@link ThreadLocalCurrentTraceContext}, the thread local is static, so all tracer
+ * instances see each other's contexts.
+ *
+ * <p>Each thread holds an array of contexts, where the first element is the depth of the stack.
+ * Opening a scope pushes its context. Closing it pops back to the depth before it was opened.
+ * Scopes are shared by depth, as they only need to know how far to pop. Hence, the common pattern
+ * of opening and closing a scope doesn't allocate, even when nested. Scope decorators may still
+ * allocate.
+ *
+ * <p>Closing a scope after an enclosing scope was closed does nothing, as opposed to restoring a
+ * stale context. A scope must not be closed twice, as its depth could have been reused by another.
+ * Consider {@link StrictScopeDecorator} to find bugs like these in instrumentation.
+ *
+ * <p>Only JDK types are held in the thread local, so that pooled threads don't pin this class
+ * loader after their scopes close.
+ *
+ * @since 6.1
+ */
+public final class StackCurrentTraceContext extends CurrentTraceContext {
+  public static CurrentTraceContext create() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Call this to clear the stack when you are sure any residual state is due to a leak. This is
+   * generally only useful in tests.
+   *
+   * @since 6.1
+   */
+  public void clear() {
+    DEFAULT.remove();
+  }
+
+  /** @since 6.1 */ // overridden for covariance
+  public static final class Builder extends CurrentTraceContext.Builder {
+    @Override public Builder addScopeDecorator(ScopeDecorator scopeDecorator) {
+      return (Builder) super.addScopeDecorator(scopeDecorator);
+    }
+
+    @Override public StackCurrentTraceContext build() {
+      return new StackCurrentTraceContext(this);
+    }
+
+    Builder() {
+    }
+  }
+
+  static final int INITIAL_CAPACITY = 8; // depth, then up to 7 contexts before growing
+  static final int SHARED_SCOPES = 32; // deeper than this allocates a scope
+
+  static final PopScope[] POP_SCOPES = new PopScope[SHARED_SCOPES];
+
+  static {
+    for (int i = 0; i < SHARED_SCOPES; i++) {
+      POP_SCOPES[i] = new PopScope(i);
+    }
+  }
+
+  @SuppressWarnings("ThreadLocalUsage") // intentional: to support multiple Tracer instances
+  static final ThreadLocal<Object[]> DEFAULT = new ThreadLocal<Object[]>();
+
+  StackCurrentTraceContext(Builder builder) {
+    super(builder);
+  }
+
+  @Override public TraceContext get() {
+    Object[] stack = DEFAULT.get();
+    if (stack == null) return null;
+    int depth = (Integer) stack[0];
+    return depth != 0 ? (TraceContext) stack[depth] : null;
+  }
+
+  @Override public Scope newScope(@Nullable TraceContext currentSpan) {
+    Object[] stack = DEFAULT.get();
+    if (stack == null) {
+      stack = new Object[INITIAL_CAPACITY];
+      stack[0] = 0;
+      DEFAULT.set(stack);
+    }
+    int depth = (Integer) stack[0];
+    if (depth + 1 == stack.length) {
+      stack = Arrays.copyOf(stack, stack.length * 2);
+      DEFAULT.set(stack);
+    }
+    stack[depth + 1] = currentSpan;
+    stack[0] = depth + 1;
+    Scope result = depth < SHARED_SCOPES ? POP_SCOPES[depth] : new PopScope(depth);
+    return decorateScope(currentSpan, result);
+  }
+
+  /** Pops the stack to the depth before the scope was opened. */
+  static final class PopScope implements Scope {
+    final int depth;
+
+    PopScope(int depth) {
+      this.depth = depth;
+    }
+
+    @Override public void close() {
+      Object[] stack = DEFAULT.get();
+      if (stack == null) return; // cleared
+      int current = (Integer) stack[0];
+      if (current <= depth) return; // an enclosing scope already closed
+      for (int i = depth + 1; i <= current; i++) {
+        stack[i] = null; // don't retain contexts
+      }
+      stack[0] = depth;
+    }
+
+    @Override public String toString() {
+      return "PopScope{depth=" + depth + "}";
+    }
+  }
+}
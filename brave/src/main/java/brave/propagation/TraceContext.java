@@ -250,6 +250,9 @@ public final class TraceContext extends SamplingFlags {
     return r;
   }
 
+  // Lazily initialized and cached by B3SingleFormat, as clients inject the same context repeatedly.
+  volatile String b3SingleFormat, b3SingleFormatWithoutParentId;
+
   /** Returns {@code $traceId/$spanId} */
   @Override public String toString() {
     boolean traceHi = traceIdHigh != 0;
@@ -413,7 +416,7 @@ public final class TraceContext extends SamplingFlags {
      * @return false if the input is null or malformed
      */
     // temporarily package protected until we figure out if this is reusable enough to expose
-    boolean parseTraceId(String traceIdString, Object key) {
+    boolean parseTraceId(@Nullable CharSequence traceIdString, Object key) {
       if (isNull(key, traceIdString)) return false;
       int length = traceIdString.length();
       if (invalidIdLength(key, length, 32)) return false;
@@ -453,7 +456,14 @@ public final class TraceContext extends SamplingFlags {
 
     /** Parses the parent id from the input string. Returns true if the ID was missing or valid. */
     <R, K> boolean parseParentId(Propagation.Getter<R, K> getter, R request, K key) {
-      String parentIdString = getter.get(request, key);
+      return parseParentId(getter.get(request, key), key);
+    }
+
+    /**
+     * Like {@link #parseParentId(Propagation.Getter, Object, Object)}, except the input was already
+     * read, for example from {@linkplain brave.internal.codec.AsciiCharSequence bytes}.
+     */
+    boolean parseParentId(@Nullable CharSequence parentIdString, Object key) {
       if (parentIdString == null) return true; // absent parent is ok
       int length = parentIdString.length();
       if (invalidIdLength(key, length, 16)) return false;
@@ -466,7 +476,14 @@ public final class TraceContext extends SamplingFlags {
 
     /** Parses the span id from the input string. Returns true if the ID is valid. */
     <R, K> boolean parseSpanId(Propagation.Getter<R, K> getter, R request, K key) {
-      String spanIdString = getter.get(request, key);
+      return parseSpanId(getter.get(request, key), key);
+    }
+
+    /**
+     * Like {@link #parseSpanId(Propagation.Getter, Object, Object)}, except the input was already
+     * read, for example from {@linkplain brave.internal.codec.AsciiCharSequence bytes}.
+     */
+    boolean parseSpanId(@Nullable CharSequence spanIdString, Object key) {
       if (isNull(key, spanIdString)) return false;
       int length = spanIdString.length();
       if (invalidIdLength(key, length, 16)) return false;
@@ -494,22 +511,22 @@ public final class TraceContext extends SamplingFlags {
       return true;
     }
 
-    static boolean isNull(Object key, String maybeNull) {
+    static boolean isNull(Object key, @Nullable Object maybeNull) {
       if (maybeNull != null) return false;
       Platform.get().log("{0} was null", key, null);
       return true;
     }
 
     /** Helps differentiate a parse failure from a successful parse of all zeros. */
-    static boolean isAllZeros(String value, int beginIndex, int endIndex) {
+    static boolean isAllZeros(CharSequence value, int beginIndex, int endIndex) {
       for (int i = beginIndex; i < endIndex; i++) {
         if (value.charAt(i) != '0') return false;
       }
       return true;
     }
 
-    static void maybeLogNotLowerHex(String notLowerHex) {
-      Platform.get().log("{0} is not a lower-hex string", notLowerHex, null);
+    static void maybeLogNotLowerHex(CharSequence notLowerHex) {
+      Platform.get().log("{0} is not a lower-hex string", notLowerHex.toString(), null);
     }
 
     /** @throws IllegalArgumentException if missing trace ID or span ID */
@@ -0,0 +1,319 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Wraps a {@link CompletionStage} so that each dependent stage runs its callback with the trace
+ * context captured when the chain was wrapped. Dependent stages are also wrapped, so the context
+ * follows the whole chain, including async stages run on any executor.
+ *
+ * <p>The context is looked up once, on {@link #wrap(CurrentTraceContext, CompletionStage)}, and
+ * shared by all dependent stages. Executors aren't wrapped; only callbacks are.
+ *
+ * <p>Ex.
+ * <pre>{@code
+ * TraceContextCompletionStage.wrap(currentTraceContext, client.sendAsync(request))
+ *   .thenApply(this::parse) // runs in the caller's trace context
+ *   .thenAcceptAsync(this::store, executor); // also runs in the caller's trace context
+ * }</pre>
+ *
+ * <p><em>Note:</em> This type requires Java 8+. {@link #toCompletableFuture()} returns the
+ * unwrapped future, so stages added to it don't restore the context.
+ *
+ * @param <T> the result type of this stage
+ * @since 6.1
+ */
+public final class TraceContextCompletionStage<T> implements CompletionStage<T> {
+  /**
+   * Wraps the input, so that dependent stages run with the {@link CurrentTraceContext#get()
+   * current trace context} at the time of this call.
+   *
+   * @since 6.1
+   */
+  public static <T> CompletionStage<T> wrap(CurrentTraceContext currentTraceContext,
+    CompletionStage<T> delegate) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    return wrap(currentTraceContext, currentTraceContext.get(), delegate);
+  }
+
+  /**
+   * Like {@link #wrap(CurrentTraceContext, CompletionStage)}, except dependent stages run with the
+   * given context.
+   *
+   * @since 6.1
+   */
+  public static <T> CompletionStage<T> wrap(CurrentTraceContext currentTraceContext,
+    @Nullable TraceContext context, CompletionStage<T> delegate) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    if (delegate == null) throw new NullPointerException("delegate == null");
+    if (delegate instanceof TraceContextCompletionStage) {
+      TraceContextCompletionStage<T> stage = (TraceContextCompletionStage<T>) delegate;
+      if (stage.currentTraceContext == currentTraceContext
+        && CurrentTraceContext.equals(stage.context, context)) {
+        return stage;
+      }
+      delegate = stage.delegate;
+    }
+    return new TraceContextCompletionStage<T>(currentTraceContext, context, delegate);
+  }
+
+  final CurrentTraceContext currentTraceContext;
+  @Nullable final TraceContext context;
+  final CompletionStage<T> delegate;
+
+  TraceContextCompletionStage(CurrentTraceContext currentTraceContext,
+    @Nullable TraceContext context, CompletionStage<T> delegate) {
+    this.currentTraceContext = currentTraceContext;
+    this.context = context;
+    this.delegate = delegate;
+  }
+
+  /** Dependent stages share the context, so they don't need to look it up again. */
+  <U> CompletionStage<U> next(CompletionStage<U> stage) {
+    return new TraceContextCompletionStage<U>(currentTraceContext, context, stage);
+  }
+
+  @Override public <U> CompletionStage<U> thenApply(Function<? super T, ? extends U> fn) {
+    return next(delegate.thenApply(wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> thenApplyAsync(Function<? super T, ? extends U> fn) {
+    return next(delegate.thenApplyAsync(wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> thenApplyAsync(Function<? super T, ? extends U> fn,
+    Executor executor) {
+    return next(delegate.thenApplyAsync(wrap(fn), executor));
+  }
+
+  @Override public CompletionStage<Void> thenAccept(Consumer<? super T> action) {
+    return next(delegate.thenAccept(wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> thenAcceptAsync(Consumer<? super T> action) {
+    return next(delegate.thenAcceptAsync(wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> thenAcceptAsync(Consumer<? super T> action,
+    Executor executor) {
+    return next(delegate.thenAcceptAsync(wrap(action), executor));
+  }
+
+  @Override public CompletionStage<Void> thenRun(Runnable action) {
+    return next(delegate.thenRun(wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> thenRunAsync(Runnable action) {
+    return next(delegate.thenRunAsync(wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> thenRunAsync(Runnable action, Executor executor) {
+    return next(delegate.thenRunAsync(wrap(action), executor));
+  }
+
+  @Override public <U, V> CompletionStage<V> thenCombine(CompletionStage<? extends U> other,
+    BiFunction<? super T, ? super U, ? extends V> fn) {
+    return next(delegate.thenCombine(other, wrap(fn)));
+  }
+
+  @Override public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other,
+    BiFunction<? super T, ? super U, ? extends V> fn) {
+    return next(delegate.thenCombineAsync(other, wrap(fn)));
+  }
+
+  @Override public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other,
+    BiFunction<? super T, ? super U, ? extends V> fn, Executor executor) {
+    return next(delegate.thenCombineAsync(other, wrap(fn), executor));
+  }
+
+  @Override public <U> CompletionStage<Void> thenAcceptBoth(CompletionStage<? extends U> other,
+    BiConsumer<? super T, ? super U> action) {
+    return next(delegate.thenAcceptBoth(other, wrap(action)));
+  }
+
+  @Override public <U> CompletionStage<Void> thenAcceptBothAsync(
+    CompletionStage<? extends U> other, BiConsumer<? super T, ? super U> action) {
+    return next(delegate.thenAcceptBothAsync(other, wrap(action)));
+  }
+
+  @Override public <U> CompletionStage<Void> thenAcceptBothAsync(
+    CompletionStage<? extends U> other, BiConsumer<? super T, ? super U> action,
+    Executor executor) {
+    return next(delegate.thenAcceptBothAsync(other, wrap(action), executor));
+  }
+
+  @Override public CompletionStage<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+    return next(delegate.runAfterBoth(other, wrap(action)));
+  }
+
+  @Override
+  public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+    return next(delegate.runAfterBothAsync(other, wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other,
+    Runnable action, Executor executor) {
+    return next(delegate.runAfterBothAsync(other, wrap(action), executor));
+  }
+
+  @Override public <U> CompletionStage<U> applyToEither(CompletionStage<? extends T> other,
+    Function<? super T, U> fn) {
+    return next(delegate.applyToEither(other, wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends T> other,
+    Function<? super T, U> fn) {
+    return next(delegate.applyToEitherAsync(other, wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends T> other,
+    Function<? super T, U> fn, Executor executor) {
+    return next(delegate.applyToEitherAsync(other, wrap(fn), executor));
+  }
+
+  @Override public CompletionStage<Void> acceptEither(CompletionStage<? extends T> other,
+    Consumer<? super T> action) {
+    return next(delegate.acceptEither(other, wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends T> other,
+    Consumer<? super T> action) {
+    return next(delegate.acceptEitherAsync(other, wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends T> other,
+    Consumer<? super T> action, Executor executor) {
+    return next(delegate.acceptEitherAsync(other, wrap(action), executor));
+  }
+
+  @Override
+  public CompletionStage<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+    return next(delegate.runAfterEither(other, wrap(action)));
+  }
+
+  @Override
+  public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+    return next(delegate.runAfterEitherAsync(other, wrap(action)));
+  }
+
+  @Override public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other,
+    Runnable action, Executor executor) {
+    return next(delegate.runAfterEitherAsync(other, wrap(action), executor));
+  }
+
+  @Override public <U> CompletionStage<U> thenCompose(
+    Function<? super T, ? extends CompletionStage<U>> fn) {
+    return next(delegate.thenCompose(wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> thenComposeAsync(
+    Function<? super T, ? extends CompletionStage<U>> fn) {
+    return next(delegate.thenComposeAsync(wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> thenComposeAsync(
+    Function<? super T, ? extends CompletionStage<U>> fn, Executor executor) {
+    return next(delegate.thenComposeAsync(wrap(fn), executor));
+  }
+
+  @Override public CompletionStage<T> exceptionally(Function<Throwable, ? extends T> fn) {
+    return next(delegate.exceptionally(wrap(fn)));
+  }
+
+  @Override
+  public CompletionStage<T> whenComplete(BiConsumer<? super T, ? super Throwable> action) {
+    return next(delegate.whenComplete(wrap(action)));
+  }
+
+  @Override
+  public CompletionStage<T> whenCompleteAsync(BiConsumer<? super T, ? super Throwable> action) {
+    return next(delegate.whenCompleteAsync(wrap(action)));
+  }
+
+  @Override public CompletionStage<T> whenCompleteAsync(
+    BiConsumer<? super T, ? super Throwable> action, Executor executor) {
+    return next(delegate.whenCompleteAsync(wrap(action), executor));
+  }
+
+  @Override
+  public <U> CompletionStage<U> handle(BiFunction<? super T, Throwable, ? extends U> fn) {
+    return next(delegate.handle(wrap(fn)));
+  }
+
+  @Override
+  public <U> CompletionStage<U> handleAsync(BiFunction<? super T, Throwable, ? extends U> fn) {
+    return next(delegate.handleAsync(wrap(fn)));
+  }
+
+  @Override public <U> CompletionStage<U> handleAsync(
+    BiFunction<? super T, Throwable, ? extends U> fn, Executor executor) {
+    return next(delegate.handleAsync(wrap(fn), executor));
+  }
+
+  @Override public CompletableFuture<T> toCompletableFuture() {
+    return delegate.toCompletableFuture();
+  }
+
+  @Override public String toString() {
+    return "TraceContextCompletionStage{context=" + context + ", delegate=" + delegate + "}";
+  }
+
+  Runnable wrap(Runnable action) {
+    if (action == null) throw new NullPointerException("action == null");
+    return currentTraceContext.wrap(context, action);
+  }
+
+  <A, B> Function<A, B> wrap(Function<A, B> fn) {
+    return TraceContextFunctions.function(currentTraceContext, context, fn);
+  }
+
+  <A, B, C> BiFunction<A, B, C> wrap(final BiFunction<A, B, C> fn) {
+    if (fn == null) throw new NullPointerException("fn == null");
+    class TraceContextBiFunction implements BiFunction<A, B, C> {
+      @Override public C apply(A a, B b) {
+        Scope scope = currentTraceContext.maybeScope(context);
+        try {
+          return fn.apply(a, b);
+        } finally {
+          scope.close();
+        }
+      }
+    }
+    return new TraceContextBiFunction();
+  }
+
+  <A> Consumer<A> wrap(Consumer<A> action) {
+    return TraceContextFunctions.consumer(currentTraceContext, context, action);
+  }
+
+  <A, B> BiConsumer<A, B> wrap(final BiConsumer<A, B> action) {
+    if (action == null) throw new NullPointerException("action == null");
+    class TraceContextBiConsumer implements BiConsumer<A, B> {
+      @Override public void accept(A a, B b) {
+        Scope scope = currentTraceContext.maybeScope(context);
+        try {
+          action.accept(a, b);
+        } finally {
+          scope.close();
+        }
+      }
+    }
+    return new TraceContextBiConsumer();
+  }
+}
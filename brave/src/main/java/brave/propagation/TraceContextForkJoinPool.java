@@ -0,0 +1,137 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Decorates a {@link ForkJoinPool} such that the {@link CurrentTraceContext#get() current trace
+ * context} at the time a task is submitted is made current when the task is executed.
+ *
+ * <p>Like {@link CurrentTraceContext#executorService(ExecutorService)}, except this also accepts
+ * a {@link ForkJoinTask}, which is wrapped with {@link TraceContextForkJoinTask}. Subtasks forked
+ * by a running task aren't submitted to the pool, so wrap them with {@link
+ * TraceContextForkJoinTask#wrap(CurrentTraceContext, ForkJoinTask)} if they could be stolen.
+ * Parallel streams fork tasks that can't be wrapped, so use {@link TraceContextFunctions} for them.
+ *
+ * <p><em>Note:</em> This type requires Java 7+.
+ *
+ * @since 6.1
+ */
+public final class TraceContextForkJoinPool implements ExecutorService {
+  /** @since 6.1 */
+  public static TraceContextForkJoinPool wrap(CurrentTraceContext currentTraceContext,
+    ForkJoinPool pool) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    if (pool == null) throw new NullPointerException("pool == null");
+    return new TraceContextForkJoinPool(currentTraceContext, pool);
+  }
+
+  final CurrentTraceContext currentTraceContext;
+  final ForkJoinPool pool;
+  /** Propagates the context to {@link Runnable} and {@link Callable} tasks. */
+  final ExecutorService delegate;
+
+  TraceContextForkJoinPool(CurrentTraceContext currentTraceContext, ForkJoinPool pool) {
+    this.currentTraceContext = currentTraceContext;
+    this.pool = pool;
+    this.delegate = currentTraceContext.executorService(pool);
+  }
+
+  /** Returns the undecorated pool. */
+  public ForkJoinPool pool() {
+    return pool;
+  }
+
+  /** Like {@link ForkJoinPool#invoke(ForkJoinTask)}, but runs in the current trace context. */
+  public <T> T invoke(ForkJoinTask<T> task) {
+    return pool.invoke(TraceContextForkJoinTask.wrap(currentTraceContext, task));
+  }
+
+  /** Like {@link ForkJoinPool#execute(ForkJoinTask)}, but runs in the current trace context. */
+  public void execute(ForkJoinTask<?> task) {
+    pool.execute(TraceContextForkJoinTask.wrap(currentTraceContext, task));
+  }
+
+  /**
+   * Like {@link ForkJoinPool#submit(ForkJoinTask)}, but runs in the current trace context. Join
+   * the returned task, not the input.
+   */
+  public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+    return pool.submit(TraceContextForkJoinTask.wrap(currentTraceContext, task));
+  }
+
+  @Override public void execute(Runnable task) {
+    delegate.execute(task);
+  }
+
+  @Override public <T> Future<T> submit(Callable<T> task) {
+    return delegate.submit(task);
+  }
+
+  @Override public Future<?> submit(Runnable task) {
+    return delegate.submit(task);
+  }
+
+  @Override public <T> Future<T> submit(Runnable task, T result) {
+    return delegate.submit(task, result);
+  }
+
+  @Override public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+    throws InterruptedException {
+    return delegate.invokeAll(tasks);
+  }
+
+  @Override public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks,
+    long timeout, TimeUnit unit) throws InterruptedException {
+    return delegate.invokeAll(tasks, timeout, unit);
+  }
+
+  @Override public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+    throws InterruptedException, ExecutionException {
+    return delegate.invokeAny(tasks);
+  }
+
+  @Override public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout,
+    TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    return delegate.invokeAny(tasks, timeout, unit);
+  }
+
+  @Override public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Override public List<Runnable> shutdownNow() {
+    return pool.shutdownNow();
+  }
+
+  @Override public boolean isShutdown() {
+    return pool.isShutdown();
+  }
+
+  @Override public boolean isTerminated() {
+    return pool.isTerminated();
+  }
+
+  @Override public boolean awaitTermination(long timeout, TimeUnit unit)
+    throws InterruptedException {
+    return pool.awaitTermination(timeout, unit);
+  }
+
+  @Override public String toString() {
+    return "TraceContextForkJoinPool{" + pool + "}";
+  }
+}
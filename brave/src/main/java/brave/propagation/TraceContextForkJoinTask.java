@@ -0,0 +1,103 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decorates a {@link ForkJoinTask}, so that it runs with the trace context captured when it was
+ * wrapped, even if another worker steals it.
+ *
+ * <p>Wrap subtasks before forking them, and join the result of wrapping:
+ * <pre>{@code
+ * ForkJoinTask<Long> left = TraceContextForkJoinTask.wrap(currentTraceContext, new Sum(...));
+ * left.fork();
+ * long right = new Sum(...).compute();
+ * return left.join() + right;
+ * }</pre>
+ *
+ * <p>A subtask that isn't stolen runs on the worker that forked it, where the context is usually
+ * already current. In that case, no scope is opened, so the overhead is the wrapper alone.
+ *
+ * <p><em>Note:</em> This type requires Java 7+. Tasks created internally by libraries, such as
+ * parallel streams, can't be decorated this way.
+ *
+ * @param <V> the type of the result of the task
+ * @see TraceContextForkJoinPool
+ * @since 6.1
+ */
+public final class TraceContextForkJoinTask<V> extends ForkJoinTask<V> {
+  /**
+   * Wraps the input, so that it runs with the {@link CurrentTraceContext#get() current trace
+   * context} at the time of this call.
+   *
+   * @since 6.1
+   */
+  public static <V> ForkJoinTask<V> wrap(CurrentTraceContext currentTraceContext,
+    ForkJoinTask<V> task) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    return wrap(currentTraceContext, currentTraceContext.get(), task);
+  }
+
+  /**
+   * Like {@link #wrap(CurrentTraceContext, ForkJoinTask)}, except the task runs with the given
+   * context.
+   *
+   * @since 6.1
+   */
+  public static <V> ForkJoinTask<V> wrap(CurrentTraceContext currentTraceContext,
+    @Nullable TraceContext context, ForkJoinTask<V> task) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    if (task == null) throw new NullPointerException("task == null");
+    if (task instanceof TraceContextForkJoinTask) {
+      TraceContextForkJoinTask<V> wrapped = (TraceContextForkJoinTask<V>) task;
+      if (wrapped.currentTraceContext == currentTraceContext
+        && CurrentTraceContext.equals(wrapped.context, context)) {
+        return wrapped;
+      }
+      task = wrapped.delegate;
+    }
+    return new TraceContextForkJoinTask<V>(currentTraceContext, context, task);
+  }
+
+  final CurrentTraceContext currentTraceContext;
+  @Nullable final TraceContext context;
+  final ForkJoinTask<V> delegate;
+
+  TraceContextForkJoinTask(CurrentTraceContext currentTraceContext, @Nullable TraceContext context,
+    ForkJoinTask<V> delegate) {
+    this.currentTraceContext = currentTraceContext;
+    this.context = context;
+    this.delegate = delegate;
+  }
+
+  @Override public V getRawResult() {
+    return delegate.getRawResult();
+  }
+
+  /** The result is read from the delegate, so there is nothing to set. */
+  @Override protected void setRawResult(V value) {
+  }
+
+  @Override protected boolean exec() {
+    Scope scope = currentTraceContext.maybeScope(context);
+    try {
+      delegate.invoke(); // rethrows any exception, completing this task exceptionally
+      return true;
+    } finally {
+      scope.close();
+    }
+  }
+
+  @Override public String toString() {
+    return "TraceContextForkJoinTask{context=" + context + ", delegate=" + delegate + "}";
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Wraps functions, so that they run with the trace context captured when they were wrapped. This
+ * is for code that calls functions on other threads, but doesn't accept an executor to decorate.
+ *
+ * <p>For example, parallel streams apply functions to elements on {@link
+ * java.util.concurrent.ForkJoinPool#commonPool()} workers, in tasks that can't be decorated:
+ * <pre>{@code
+ * List<Result> results = requests.parallelStream()
+ *   .map(TraceContextFunctions.function(currentTraceContext, this::fetch))
+ *   .collect(toList());
+ * }</pre>
+ *
+ * <p>Elements processed on the calling thread already have the context, so no scope is opened
+ * for them.
+ *
+ * <p><em>Note:</em> This type requires Java 8+.
+ *
+ * @see TraceContextForkJoinTask
+ * @since 6.1
+ */
+public final class TraceContextFunctions {
+  /**
+   * Wraps the input, so that it runs with the {@link CurrentTraceContext#get() current trace
+   * context} at the time of this call.
+   *
+   * @since 6.1
+   */
+  public static <A, B> Function<A, B> function(CurrentTraceContext currentTraceContext,
+    Function<A, B> fn) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    return function(currentTraceContext, currentTraceContext.get(), fn);
+  }
+
+  /**
+   * Wraps the input, so that it runs with the {@link CurrentTraceContext#get() current trace
+   * context} at the time of this call.
+   *
+   * @since 6.1
+   */
+  public static <A> Consumer<A> consumer(CurrentTraceContext currentTraceContext,
+    Consumer<A> action) {
+    if (currentTraceContext == null) {
+      throw new NullPointerException("currentTraceContext == null");
+    }
+    return consumer(currentTraceContext, currentTraceContext.get(), action);
+  }
+
+  static <A, B> Function<A, B> function(final CurrentTraceContext currentTraceContext,
+    @Nullable final TraceContext context, final Function<A, B> fn) {
+    if (fn == null) throw new NullPointerException("fn == null");
+    class TraceContextFunction implements Function<A, B> {
+      @Override public B apply(A a) {
+        Scope scope = currentTraceContext.maybeScope(context);
+        try {
+          return fn.apply(a);
+        } finally {
+          scope.close();
+        }
+      }
+    }
+    return new TraceContextFunction();
+  }
+
+  static <A> Consumer<A> consumer(final CurrentTraceContext currentTraceContext,
+    @Nullable final TraceContext context, final Consumer<A> action) {
+    if (action == null) throw new NullPointerException("action == null");
+    class TraceContextConsumer implements Consumer<A> {
+      @Override public void accept(A a) {
+        Scope scope = currentTraceContext.maybeScope(context);
+        try {
+          action.accept(a);
+        } finally {
+          scope.close();
+        }
+      }
+    }
+    return new TraceContextConsumer();
+  }
+
+  TraceContextFunctions() {
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import brave.internal.Platform;
+import brave.internal.RecyclableBuffers;
+import java.util.Collections;
+
+import static brave.internal.codec.HexCodec.writeHexLong;
+
+/**
+ * This format corresponds to the <a href="https://www.w3.org/TR/trace-context/#traceparent-header">W3C
+ * traceparent</a> header, which delimits fields in the following manner.
+ *
+ * <pre>{@code
+ * traceparent: {version}-{trace-id}-{parent-id}-{trace-flags}
+ * }</pre>
+ *
+ * <p>For example, a sampled span would look like:
+ * {@code 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01}
+ *
+ * <p>The "parent-id" is the span ID of the caller, so it maps to {@link TraceContext#spanId()}.
+ * Only the sampled bit of "trace-flags" is used. Unlike B3, there is no way to defer the sampling
+ * decision, so a context with {@link TraceContext#sampled()} unset is written as unsampled.
+ *
+ * @since 6.1
+ */
+public final class TraceparentFormat {
+  static final int FORMAT_LENGTH = 2 + 1 + 32 + 1 + 16 + 1 + 2; // version-traceid-spanid-flags
+
+  static final int // instead of enum for smaller bytecode
+    FIELD_VERSION = 1,
+    FIELD_TRACE_ID = 2,
+    FIELD_PARENT_ID = 3,
+    FIELD_TRACE_FLAGS = 4;
+
+  /**
+   * Writes the trace context as a version 00 traceparent value. 64-bit trace IDs are left-padded
+   * with zeros.
+   *
+   * @since 6.1
+   */
+  public static String writeTraceparentFormat(TraceContext context) {
+    char[] buffer = RecyclableBuffers.parseBuffer();
+    writeTraceparentFormat(context, buffer);
+    return new String(buffer, 0, FORMAT_LENGTH);
+  }
+
+  static void writeTraceparentFormat(TraceContext context, char[] result) {
+    result[0] = '0'; // version
+    result[1] = '0';
+    result[2] = '-';
+    writeHexLong(result, 3, context.traceIdHigh());
+    writeHexLong(result, 19, context.traceId());
+    result[35] = '-';
+    writeHexLong(result, 36, context.spanId());
+    result[52] = '-';
+    result[53] = '0'; // trace-flags
+    result[54] = Boolean.TRUE.equals(context.sampled()) ? '1' : '0';
+  }
+
+  /**
+   * Parses a traceparent value in one pass, without allocating intermediate strings. Returns null
+   * and logs when the input is malformed.
+   *
+   * @since 6.1
+   */
+  @Nullable public static TraceContext parseTraceparentFormat(CharSequence traceparent) {
+    return parseTraceparentFormat(traceparent, 0, traceparent.length());
+  }
+
+  /**
+   * Like {@link #parseTraceparentFormat(CharSequence)}, but reads a sub-sequence of the input.
+   *
+   * @param beginIndex the start index, inclusive
+   * @param endIndex the end index, exclusive
+   * @since 6.1
+   */
+  @Nullable public static TraceContext parseTraceparentFormat(CharSequence value, int beginIndex,
+    int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length == 0) {
+      Platform.get().log("Invalid input: empty", null);
+      return null;
+    } else if (length < FORMAT_LENGTH) {
+      Platform.get().log("Invalid input: too short", null);
+      return null;
+    }
+
+    int version = 0, traceFlags = 0;
+    long traceIdHigh = 0L, traceId = 0L, spanId = 0L;
+    for (int i = 0; i < FORMAT_LENGTH; i++) {
+      char c = value.charAt(beginIndex + i);
+      if (i == 2 || i == 35 || i == 52) {
+        if (c != '-') {
+          Platform.get().log("Invalid input: expected a hyphen at index {0}", i, null);
+          return null;
+        }
+        continue;
+      }
+
+      int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'a' && c <= 'f') {
+        digit = c - 'a' + 10;
+      } else {
+        log(fieldAt(i), "Invalid input: only valid characters are lower-hex for {0}");
+        return null;
+      }
+
+      if (i < 2) {
+        version = version << 4 | digit;
+      } else if (i < 19) {
+        traceIdHigh = traceIdHigh << 4 | digit;
+      } else if (i < 35) {
+        traceId = traceId << 4 | digit;
+      } else if (i < 52) {
+        spanId = spanId << 4 | digit;
+      } else {
+        traceFlags = traceFlags << 4 | digit;
+      }
+    }
+
+    if (version == 0xff) {
+      log(FIELD_VERSION, "Invalid input: {0} ff is forbidden");
+      return null;
+    } else if (length > FORMAT_LENGTH) {
+      // Later versions can append fields, but only after a hyphen.
+      if (version == 0 || value.charAt(beginIndex + FORMAT_LENGTH) != '-') {
+        Platform.get().log("Invalid input: too long", null);
+        return null;
+      }
+    }
+
+    // Since we are using a hidden constructor, we need to validate here.
+    if (traceIdHigh == 0L && traceId == 0L) {
+      log(FIELD_TRACE_ID, "Invalid input: read all zeros {0}");
+      return null;
+    } else if (spanId == 0L) {
+      log(FIELD_PARENT_ID, "Invalid input: read all zeros {0}");
+      return null;
+    }
+
+    return new TraceContext(
+      (traceFlags & 1) == 1 ? SamplingFlags.SAMPLED.flags : SamplingFlags.NOT_SAMPLED.flags,
+      traceIdHigh,
+      traceId,
+      0L, // localRootId is the first ID used in process, not necessarily the one extracted
+      0L, // traceparent doesn't propagate the parent of the caller
+      spanId,
+      Collections.emptyList()
+    );
+  }
+
+  static int fieldAt(int index) {
+    if (index < 2) return FIELD_VERSION;
+    if (index < 35) return FIELD_TRACE_ID;
+    if (index < 52) return FIELD_PARENT_ID;
+    return FIELD_TRACE_FLAGS;
+  }
+
+  static void log(int fieldCode, String s) {
+    String field;
+    switch (fieldCode) {
+      case FIELD_VERSION:
+        field = "version";
+        break;
+      case FIELD_TRACE_ID:
+        field = "trace-id";
+        break;
+      case FIELD_PARENT_ID:
+        field = "parent-id";
+        break;
+      case FIELD_TRACE_FLAGS:
+        field = "trace-flags";
+        break;
+      default:
+        throw new AssertionError("field code unmatched: " + fieldCode);
+    }
+    Platform.get().log(s, field, null);
+  }
+
+  TraceparentFormat() {
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+
+/**
+ * In-process trace context propagation suited to tasks that run on their own thread, such as
+ * virtual threads.
+ *
+ * <h3>Design notes</h3>
+ *
+ * <p>This is a multi-release class. On JDK 25+, tasks wrapped by {@link #wrap(Runnable)}, or
+ * by the executors this returns, keep their scopes in a {@code java.lang.ScopedValue} bound for
+ * the task. Such a task never creates a thread local entry, so millions of virtual threads don't
+ * each hold one.
+ *
+ * <p>Otherwise, including on older JDKs, scopes are kept the same way as {@link
+ * StackCurrentTraceContext}, sharing its static thread local. Either way, opening and closing a
+ * scope doesn't allocate, even when nested.
+ *
+ * @since 6.1
+ */
+public final class VirtualThreadCurrentTraceContext extends CurrentTraceContext {
+  public static CurrentTraceContext create() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Call this to clear the stack when you are sure any residual state is due to a leak. This is
+   * generally only useful in tests.
+   *
+   * @since 6.1
+   */
+  public void clear() {
+    threadLocal.clear();
+  }
+
+  /** @since 6.1 */ // overridden for covariance
+  public static final class Builder extends CurrentTraceContext.Builder {
+    @Override public Builder addScopeDecorator(ScopeDecorator scopeDecorator) {
+      return (Builder) super.addScopeDecorator(scopeDecorator);
+    }
+
+    @Override public VirtualThreadCurrentTraceContext build() {
+      return new VirtualThreadCurrentTraceContext(this);
+    }
+
+    Builder() {
+    }
+  }
+
+  /** Undecorated, as scopes are decorated here. */
+  final StackCurrentTraceContext threadLocal = new StackCurrentTraceContext.Builder().build();
+
+  VirtualThreadCurrentTraceContext(Builder builder) {
+    super(builder);
+  }
+
+  @Override public TraceContext get() {
+    return threadLocal.get();
+  }
+
+  @Override public Scope newScope(@Nullable TraceContext currentSpan) {
+    return decorateScope(currentSpan, threadLocal.newScope(currentSpan));
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.codec.EntrySplitter;
+import brave.propagation.Propagation.Getter;
+import brave.propagation.Propagation.Setter;
+import brave.propagation.TraceContext.Extractor;
+import brave.propagation.TraceContext.Injector;
+import java.util.Collections;
+import java.util.List;
+
+import static brave.propagation.TraceparentFormat.parseTraceparentFormat;
+import static brave.propagation.TraceparentFormat.writeTraceparentFormat;
+import static java.util.Arrays.asList;
+
+/**
+ * Implements <a href="https://www.w3.org/TR/trace-context/">W3C Trace Context</a>, which uses the
+ * "traceparent" and "tracestate" headers.
+ *
+ * <p>The "traceparent" header is described in {@link TraceparentFormat}. The "tracestate" header
+ * is validated, then passed through as-is to outgoing requests in the same trace.
+ *
+ * <p>W3C trace IDs are always 128-bit, so this {@linkplain
+ * Propagation.Factory#requires128BitTraceId() requires 128-bit trace IDs}.
+ *
+ * <p><em>Note:</em> "traceparent" can't defer the sampling decision. A context with {@link
+ * TraceContext#sampled()} unset is written with trace-flags 00, which reads as not sampled.
+ *
+ * <h3>Migrating from B3</h3>
+ * Use {@link CompositePropagation} to read B3 headers from callers that haven't yet migrated, and
+ * also write them for callees that haven't. When both are injected, "traceparent" is skipped for
+ * contexts without a sampling decision, so that B3 carries the deferred decision instead.
+ * <pre>{@code
+ * tracingBuilder.propagationFactory(CompositePropagation.newFactoryBuilder()
+ *   .add(W3CPropagation.FACTORY, "traceparent")
+ *   .add(B3Propagation.FACTORY, "b3", "X-B3-TraceId", "X-B3-Sampled", "X-B3-Flags")
+ *   .build());
+ * }</pre>
+ *
+ * @since 6.1
+ */
+public final class W3CPropagation {
+  public static final Propagation.Factory FACTORY = new Factory();
+
+  static final Propagation<String> INSTANCE = FACTORY.get();
+
+  /** Returns a singleton default instance. */
+  public static Propagation<String> get() {
+    return INSTANCE;
+  }
+
+  static final String TRACEPARENT = "traceparent", TRACESTATE = "tracestate";
+
+  /** The maximum count of list-members in "tracestate". */
+  static final int TRACESTATE_MAX_ENTRIES = 32;
+
+  static final EntrySplitter TRACESTATE_SPLITTER = EntrySplitter.newBuilder()
+    .maxEntries(TRACESTATE_MAX_ENTRIES)
+    .entrySeparator(',')
+    .keyValueSeparator('=')
+    .trimOWSAroundKeyValueSeparator(false) // not allowed
+    .shouldThrow(false)
+    .build();
+
+  /** Holds the validated "tracestate" header, which is injected as-is. */
+  static final class Tracestate {
+    final String value;
+
+    Tracestate(String value) {
+      this.value = value;
+    }
+
+    @Override public String toString() {
+      return "Tracestate{" + value + "}";
+    }
+  }
+
+  static final class Factory extends Propagation.Factory implements Propagation<String> {
+    final List<String> keys = Collections.unmodifiableList(asList(TRACEPARENT, TRACESTATE));
+
+    @Override public List<String> keys() {
+      return keys;
+    }
+
+    @Override public Propagation<String> get() {
+      return this;
+    }
+
+    /** The parent of the caller isn't propagated, so joining would lose it. */
+    @Override public boolean supportsJoin() {
+      return false;
+    }
+
+    @Override public boolean requires128BitTraceId() {
+      return true;
+    }
+
+    @Override public <R> Injector<R> injector(Setter<R, String> setter) {
+      if (setter == null) throw new NullPointerException("setter == null");
+      return new W3CInjector<R>(setter);
+    }
+
+    @Override public <R> Extractor<R> extractor(Getter<R, String> getter) {
+      if (getter == null) throw new NullPointerException("getter == null");
+      return new W3CExtractor<R>(getter);
+    }
+
+    @Override public String toString() {
+      return "W3CPropagation";
+    }
+  }
+
+  static final class W3CInjector<R> implements Injector<R> {
+    final Setter<R, String> setter;
+
+    W3CInjector(Setter<R, String> setter) {
+      this.setter = setter;
+    }
+
+    @Override public void inject(TraceContext context, R request) {
+      setter.put(request, TRACEPARENT, writeTraceparentFormat(context));
+      Tracestate tracestate = context.findExtra(Tracestate.class);
+      if (tracestate != null) setter.put(request, TRACESTATE, tracestate.value);
+    }
+
+    @Override public String toString() {
+      return "W3CInjector{setter=" + setter + "}";
+    }
+  }
+
+  static final class W3CExtractor<R> implements Extractor<R> {
+    final Getter<R, String> getter;
+
+    W3CExtractor(Getter<R, String> getter) {
+      this.getter = getter;
+    }
+
+    @Override public TraceContextOrSamplingFlags extract(R request) {
+      if (request == null) throw new NullPointerException("request == null");
+
+      String traceparent = getter.get(request, TRACEPARENT);
+      TraceContext context = traceparent != null ? parseTraceparentFormat(traceparent) : null;
+      if (context == null) { // absent or malformed: tracestate must be ignored
+        return TraceContextOrSamplingFlags.EMPTY;
+      }
+
+      String tracestate = getter.get(request, TRACESTATE);
+      if (tracestate == null || !isValidTracestate(tracestate)) {
+        return TraceContextOrSamplingFlags.create(context);
+      }
+      return TraceContextOrSamplingFlags.newBuilder(context)
+        .addExtra(new Tracestate(tracestate))
+        .build();
+    }
+
+    @Override public String toString() {
+      return "W3CExtractor{getter=" + getter + "}";
+    }
+  }
+
+  /** Returns false when the input has no entries or any entry is malformed. */
+  static boolean isValidTracestate(String tracestate) {
+    return TRACESTATE_SPLITTER.parse(TracestateValidator.INSTANCE, tracestate, tracestate)
+      && hasEntry(tracestate);
+  }
+
+  static boolean hasEntry(String tracestate) {
+    for (int i = 0, length = tracestate.length(); i < length; i++) {
+      char c = tracestate.charAt(i);
+      if (c != ',' && c != ' ' && c != '\t') return true;
+    }
+    return false;
+  }
+
+  /** Stateless, so that validation doesn't allocate. */
+  enum TracestateValidator implements EntrySplitter.Handler<String> {
+    INSTANCE;
+
+    @Override public boolean onEntry(String target, CharSequence input, int beginKey, int endKey,
+      int beginValue, int endValue) {
+      return isValidKey(input, beginKey, endKey) && isValidValue(input, beginValue, endValue);
+    }
+  }
+
+  /**
+   * Validates a simple key, or a multi-tenant key in the form {@code tenant@system}. Each part
+   * starts with a lower-case letter or digit, then includes lower-case letters, digits, '_', '-',
+   * '*' or '/'.
+   */
+  static boolean isValidKey(CharSequence input, int beginIndex, int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length == 0 || length > 256) return false;
+    int partBegin = beginIndex;
+    boolean sawAt = false;
+    for (int i = beginIndex; i < endIndex; i++) {
+      char c = input.charAt(i);
+      if (c == '@') {
+        if (sawAt || i == partBegin || i - beginIndex > 241 || endIndex - i - 1 > 14) return false;
+        sawAt = true;
+        partBegin = i + 1;
+        continue;
+      }
+      boolean isAlphaNum = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+      if (i == partBegin ? !isAlphaNum
+        : !isAlphaNum && c != '_' && c != '-' && c != '*' && c != '/') {
+        return false;
+      }
+    }
+    return partBegin < endIndex; // not ending in '@'
+  }
+
+  /** Values are printable ASCII except ',' and '=', and don't end in a space. */
+  static boolean isValidValue(CharSequence input, int beginIndex, int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length == 0 || length > 256) return false;
+    for (int i = beginIndex; i < endIndex; i++) {
+      char c = input.charAt(i);
+      if (c < 0x20 || c > 0x7e || c == ',' || c == '=') return false;
+    }
+    return input.charAt(endIndex - 1) != ' ';
+  }
+
+  W3CPropagation() {
+  }
+}
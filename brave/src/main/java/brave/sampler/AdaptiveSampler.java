@@ -0,0 +1,231 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adjusts sample probabilities each second to keep the rate of sampled spans near a budget. This
+ * keeps load on the tracing system flat, even when traffic spikes or traces get larger.
+ *
+ * <p>Each {@linkplain #newSampler() sampler} is a key, such as an HTTP route, whose probability is
+ * adjusted separately. To keep rare keys visible, each key samples at least {@linkplain
+ * Builder#minTracesPerSecond(float) some traces per second}, even if that exceeds the budget.
+ *
+ * <p>Ex. Here's an adaptive sampler which keeps near 1000 spans per second, with separate keys for
+ * requests to /foo, /bar and anything else.
+ * <pre>{@code
+ * AdaptiveSampler adaptive = AdaptiveSampler.newBuilder(1000).build();
+ *
+ * tracingBuilder.addSpanHandler(adaptive.spanHandler())
+ *               .sampler(adaptive.newSampler());
+ * httpTracingBuilder.serverSampler(HttpRuleSampler.newBuilder()
+ *   .putRule(pathStartsWith("/foo"), adaptive.newSampler())
+ *   .putRule(pathStartsWith("/bar"), adaptive.newSampler())
+ *   .build());
+ * }</pre>
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>The {@linkplain #spanHandler() span handler} counts sampled spans as they finish, including
+ * those from traces sampled upstream. Once a second, the base probability is scaled by the ratio of
+ * the budget to the observed spans per second, then smoothed exponentially with the last one. Each
+ * key uses the base probability, unless its smoothed request rate needs a higher one to meet the
+ * minimum traces per second.
+ *
+ * <p>Until the first second passes, all requests are sampled.
+ *
+ * @since 6.1
+ */
+public final class AdaptiveSampler {
+  /** @since 6.1 */
+  public static Builder newBuilder(int spansPerSecond) {
+    return new Builder(spansPerSecond);
+  }
+
+  /** @since 6.1 */
+  public static final class Builder {
+    final int spansPerSecond;
+    float minTracesPerSecond = 1.0f, smoothingFactor = 0.5f;
+
+    Builder(int spansPerSecond) {
+      if (spansPerSecond <= 0) throw new IllegalArgumentException("spansPerSecond <= 0");
+      this.spansPerSecond = spansPerSecond;
+    }
+
+    /**
+     * The minimum traces per second to sample for each key, regardless of the budget. Zero means
+     * keys can be starved by others. Defaults to 1.
+     *
+     * @since 6.1
+     */
+    public Builder minTracesPerSecond(float minTracesPerSecond) {
+      if (minTracesPerSecond < 0) throw new IllegalArgumentException("minTracesPerSecond < 0");
+      this.minTracesPerSecond = minTracesPerSecond;
+      return this;
+    }
+
+    /**
+     * The weight of the latest second when smoothing probabilities and request rates. 1 means no
+     * smoothing, while lower values react more slowly to change. Defaults to 0.5.
+     *
+     * @since 6.1
+     */
+    public Builder smoothingFactor(float smoothingFactor) {
+      if (smoothingFactor <= 0 || smoothingFactor > 1) {
+        throw new IllegalArgumentException(
+          "smoothingFactor should be over 0 and up to 1: was " + smoothingFactor);
+      }
+      this.smoothingFactor = smoothingFactor;
+      return this;
+    }
+
+    public AdaptiveSampler build() {
+      return new AdaptiveSampler(Platform.get(), this);
+    }
+  }
+
+  static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  /** The base probability never drops below this, so that it can grow again. */
+  static final double MIN_PROBABILITY = 0.000001;
+
+  final Platform platform;
+  final int spansPerSecond;
+  final float minTracesPerSecond, smoothingFactor;
+  final List<Key> keys = new CopyOnWriteArrayList<Key>();
+  final AtomicLong spans = new AtomicLong(), nextUpdate;
+  final SpanHandler spanHandler = new SpanCounter();
+  // guarded by this
+  long lastUpdate;
+  double baseProbability = 1.0;
+
+  AdaptiveSampler(Platform platform, Builder builder) {
+    this.platform = platform;
+    this.spansPerSecond = builder.spansPerSecond;
+    this.minTracesPerSecond = builder.minTracesPerSecond;
+    this.smoothingFactor = builder.smoothingFactor;
+    this.lastUpdate = platform.nanoTime();
+    this.nextUpdate = new AtomicLong(lastUpdate + NANOS_PER_SECOND);
+  }
+
+  /**
+   * Returns a sampler with its own probability, adjusted based on its request rate. Call this once
+   * per key, for example once per rule of a {@link ParameterizedSampler}.
+   *
+   * @since 6.1
+   */
+  public Sampler newSampler() {
+    Key key = new Key(this);
+    keys.add(key);
+    return key;
+  }
+
+  /**
+   * Returns a handler that counts sampled spans. This must be added to the tracing component, or
+   * probabilities will only ever increase.
+   *
+   * @since 6.1
+   */
+  public SpanHandler spanHandler() {
+    return spanHandler;
+  }
+
+  /** Updates probabilities if a second passed since the last update, in only one thread. */
+  void maybeUpdate(long now) {
+    long next = nextUpdate.get();
+    if (now - next < 0) return; // because nanoTime can be negative
+    if (!nextUpdate.compareAndSet(next, now + NANOS_PER_SECOND)) return; // another thread won
+    update(now);
+  }
+
+  synchronized void update(long now) {
+    double seconds = (double) (now - lastUpdate) / NANOS_PER_SECOND;
+    lastUpdate = now;
+    if (seconds <= 0) return;
+
+    // Scale the base probability by how far the observed span rate is from the budget. When there
+    // were no spans, allow the probability to double, as we can't tell by how much to increase it.
+    double spanRate = spans.getAndSet(0) / seconds;
+    double scaled =
+      spanRate > 0 ? baseProbability * spansPerSecond / spanRate : baseProbability * 2;
+    baseProbability = clamp(smooth(scaled, baseProbability), MIN_PROBABILITY);
+
+    for (Key key : keys) {
+      double requestRate = key.requests.getAndSet(0) / seconds;
+      key.requestRate = key.requestRate < 0 ? requestRate : smooth(requestRate, key.requestRate);
+      key.setProbability(probability(key.requestRate));
+    }
+  }
+
+  /** Returns the base probability, unless more is needed to sample the minimum traces/second. */
+  double probability(double requestRate) {
+    if (requestRate <= minTracesPerSecond) return 1.0;
+    return clamp(Math.max(baseProbability, minTracesPerSecond / requestRate), 0);
+  }
+
+  double smooth(double latest, double previous) {
+    return smoothingFactor * latest + (1 - smoothingFactor) * previous;
+  }
+
+  static double clamp(double probability, double min) {
+    return Math.min(1.0, Math.max(min, probability));
+  }
+
+  static final class Key extends Sampler {
+    final AdaptiveSampler adaptive;
+    final AtomicLong requests = new AtomicLong();
+    // guarded by adaptive
+    double requestRate = -1; // negative until the first update
+    volatile float probability = 1.0f;
+    /** Compared against a random non-negative long, to avoid floating point math per request. */
+    volatile long threshold = Long.MAX_VALUE;
+
+    Key(AdaptiveSampler adaptive) {
+      this.adaptive = adaptive;
+    }
+
+    @Override public boolean isSampled(long ignoredTraceId) {
+      adaptive.maybeUpdate(adaptive.platform.nanoTime());
+      requests.incrementAndGet();
+      long threshold = this.threshold;
+      if (threshold == Long.MAX_VALUE) return true;
+      return (adaptive.platform.randomLong() & Long.MAX_VALUE) < threshold;
+    }
+
+    void setProbability(double probability) {
+      this.probability = (float) probability;
+      this.threshold = probability >= 1.0 ? Long.MAX_VALUE : (long) (probability * Long.MAX_VALUE);
+    }
+
+    @Override public String toString() {
+      return "AdaptiveSampler{probability=" + probability + "}";
+    }
+  }
+
+  final class SpanCounter extends SpanHandler {
+    @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+      // Only count spans that are reported. Orphans can be reported multiple times per span.
+      if (cause == Cause.FINISHED || cause == Cause.FLUSHED) {
+        if (Boolean.TRUE.equals(context.sampled())) spans.incrementAndGet();
+      }
+      return true;
+    }
+
+    @Override public String toString() {
+      return "AdaptiveSampler.SpanCounter{spansPerSecond=" + spansPerSecond + "}";
+    }
+  }
+
+  @Override public String toString() {
+    return "AdaptiveSampler{spansPerSecond=" + spansPerSecond + "}";
+  }
+}
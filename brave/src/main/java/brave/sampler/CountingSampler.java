@@ -17,7 +17,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * <p>This initializes a random bitset of size 100 (corresponding to 1% granularity). This means
  * that it is accurate in units of 100 traces. At runtime, this loops through the bitset, returning
- * the value according to a counter.
+ * the value according to a counter. When the probability isn't a whole percent, the bitset is
+ * instead of size 10,000, so it is accurate in units of 10,000 traces.
  */
 public final class CountingSampler extends Sampler {
 
@@ -35,8 +36,35 @@ public final class CountingSampler extends Sampler {
     return new CountingSampler(probability);
   }
 
+  /**
+   * Like {@link #create(float)}, except decisions are counted separately for stripes of threads,
+   * with up to one stripe per processor. This avoids contending on a shared counter when many
+   * threads start traces.
+   *
+   * <p>Each stripe is accurate in units of 100 (or 10,000) traces. Hence, the overall count of
+   * sampled traces may be off by a few units until each stripe completes a cycle.
+   *
+   * <p>Unlike {@link #create(float)}, this accepts probabilities below 1%, as it is intended for
+   * high-traffic endpoints.
+   *
+   * @param probability probability a request will result in a new trace. 0 means never sample, 1
+   * means always sample. Minimum probability is 0.0001, or 0.01% of traces
+   * @since 6.1
+   */
+  public static Sampler createStriped(float probability) {
+    if (probability == 0) return NEVER_SAMPLE;
+    if (probability == 1.0) return ALWAYS_SAMPLE;
+    if (probability < 0.0001f || probability > 1) {
+      throw new IllegalArgumentException(
+        "probability should be between 0.0001 and 1: was " + probability);
+    }
+    return new StripedCountingSampler(probability, new Random(),
+      RateLimitingSampler.cellCount(Runtime.getRuntime().availableProcessors()));
+  }
+
   private final AtomicInteger counter;
   private final BitSet sampleDecisions;
+  private final int decisionCount;
 
   /** Fills a bitset with decisions according to the supplied probability. */
   CountingSampler(float probability) {
@@ -48,14 +76,14 @@ public final class CountingSampler extends Sampler {
    */
   CountingSampler(float probability, Random random) {
     counter = new AtomicInteger();
-    int outOf100 = (int) (probability * 100.0f);
-    this.sampleDecisions = randomBitSet(100, outOf100, random);
+    this.decisionCount = decisionCount(probability);
+    this.sampleDecisions = sampleDecisions(decisionCount, probability, random);
   }
 
   /** loops over the pre-canned decisions, resetting to zero when it gets to the end. */
   @Override
   public boolean isSampled(long traceIdIgnored) {
-    return sampleDecisions.get(mod(counter.getAndIncrement(), 100));
+    return sampleDecisions.get(mod(counter.getAndIncrement(), decisionCount));
   }
 
   @Override
@@ -63,6 +91,20 @@ public final class CountingSampler extends Sampler {
     return "CountingSampler()";
   }
 
+  /** Returns 100 when the probability is in whole percents, otherwise 10,000. */
+  static int decisionCount(float probability) {
+    return Math.round(probability * 10000.0f) % 100 == 0 ? 100 : 10000;
+  }
+
+  static BitSet sampleDecisions(int decisionCount, float probability, Random random) {
+    // Whole percents truncate as they always have, so that existing configuration samples the same
+    // count. For example, 0.53f is 52 out of 100.
+    int cardinality = decisionCount == 100
+      ? (int) (probability * 100.0f)
+      : Math.round(probability * decisionCount);
+    return randomBitSet(decisionCount, cardinality, random);
+  }
+
   /**
    * Returns a non-negative mod.
    */
@@ -17,6 +17,10 @@ import java.util.Map;
  * If all calls to a java method should have the same sample rate, consider {@link
  * DeclarativeSampler} instead.
  *
+ * <p>When there are many rules, those that compare a request attribute, such as the HTTP method or
+ * path prefix, are looked up by value instead of tested in order. The first matching rule still
+ * wins, regardless of how rules are looked up.
+ *
  * @param <P> The type that encloses parameters associated with a sample rate. For example, this
  * could be a pair of http and method.
  * @see Matcher
@@ -31,6 +35,7 @@ public final class ParameterizedSampler<P> implements SamplerFunction<P> {
   /** @since 5.8 */
   public static final class Builder<P> {
     final Map<Matcher<P>, Sampler> rules = new LinkedHashMap<Matcher<P>, Sampler>();
+    int cacheSize;
 
     /**
      * Adds or replaces all rules in this sampler with those of the input.
@@ -55,6 +60,26 @@ public final class ParameterizedSampler<P> implements SamplerFunction<P> {
       return this;
     }
 
+    /**
+     * Caches the sampler of the first matching rule for up to this count of distinct inputs, so
+     * that repeated inputs skip matching. Defaults to zero, which disables the cache.
+     *
+     * <p>The cache key is the values of attributes compared by rules, such as the HTTP method and
+     * path. Hence, the cache is only used when all rules are made of built-in matchers, such as
+     * those for HTTP method and path, optionally combined with {@link Matchers#and(Matcher[])}.
+     *
+     * <p>Memory is bounded, with recently used inputs retained. Choose a size larger than the
+     * count of frequent distinct inputs. For example, paths with IDs in them are effectively
+     * unique, and defeat the cache.
+     *
+     * @since 6.1
+     */
+    public Builder<P> cacheSize(int cacheSize) {
+      if (cacheSize < 0) throw new IllegalArgumentException("cacheSize < 0");
+      this.cacheSize = cacheSize;
+      return this;
+    }
+
     public ParameterizedSampler<P> build() {
       return new ParameterizedSampler<P>(this);
     }
@@ -74,13 +99,19 @@ public final class ParameterizedSampler<P> implements SamplerFunction<P> {
   }
 
   final R<P>[] rules; // array avoids Map overhead at runtime
+  @Nullable final RuleIndex<P> index; // null when there are too few rules to be worth indexing
+  @Nullable final SamplerCache<P> cache; // null when disabled or rules can't be cached
 
   ParameterizedSampler(Builder<P> builder) {
     this.rules = new R[builder.rules.size()];
+    Matcher<P>[] matchers = new Matcher[rules.length];
     int i = 0;
     for (Map.Entry<Matcher<P>, Sampler> rule : builder.rules.entrySet()) {
+      matchers[i] = rule.getKey();
       rules[i++] = new R<P>(rule.getKey(), rule.getValue());
     }
+    this.index = RuleIndex.create(matchers);
+    this.cache = SamplerCache.create(matchers, builder.cacheSize);
   }
 
   /**
@@ -90,10 +121,31 @@ public final class ParameterizedSampler<P> implements SamplerFunction<P> {
    */
   @Override public @Nullable Boolean trySample(P parameters) {
     if (parameters == null) return null;
-    for (R<P> rule : rules) {
-      if (rule.matcher.matches(parameters)) {
-        return rule.sampler.isSampled(0L); // counting sampler ignores the input
+    Sampler sampler;
+    if (cache != null) {
+      Object key = cache.key(parameters);
+      sampler = cache.get(key);
+      if (sampler == null) {
+        sampler = firstMatch(parameters);
+        cache.put(key, sampler != null ? sampler : SamplerCache.NO_MATCH);
+      } else if (sampler == SamplerCache.NO_MATCH) {
+        sampler = null;
       }
+    } else {
+      sampler = firstMatch(parameters);
+    }
+    if (sampler == null) return null;
+    return sampler.isSampled(0L); // counting sampler ignores the input
+  }
+
+  /** Returns the sampler of the first matching rule or null if none match. */
+  @Nullable Sampler firstMatch(P parameters) {
+    if (index != null) {
+      int i = index.firstMatch(parameters);
+      return i != RuleIndex.NO_MATCH ? rules[i].sampler : null;
+    }
+    for (R<P> rule : rules) {
+      if (rule.matcher.matches(parameters)) return rule.sampler;
     }
     return null;
   }
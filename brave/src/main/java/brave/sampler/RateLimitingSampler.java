@@ -6,8 +6,7 @@ package brave.sampler;
 
 import brave.internal.Platform;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * The rate-limited sampler allows you to choose an amount of traces to accept on a per-second
@@ -33,6 +32,14 @@ import java.util.concurrent.atomic.AtomicLong;
  * <p>The implementation uses {@link System#nanoTime} and tracks how many yes decisions occur
  * across a second window. When the rate is at least 10/s, the yes decisions are equally split over
  * 10 deciseconds, allowing a roll-over of unused yes decisions up until the end of the second.
+ *
+ * <p>Remaining yes decisions are striped across cells, one per processor up to 32, which threads
+ * take from without contending on the same cache line. When a thread's
+ * cell is empty, it takes from the others, so the rate is still exact. New yes decisions are added
+ * to cells once per decisecond, and unused ones are dropped once per second.
+ *
+ * <p>Once a thread finds all cells empty, others reject without scanning them, until yes decisions
+ * are next added.
  */
 public class RateLimitingSampler extends Sampler {
   public static Sampler create(int tracesPerSecond) {
@@ -43,44 +50,89 @@ public class RateLimitingSampler extends Sampler {
 
   static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
   static final long NANOS_PER_DECISECOND = NANOS_PER_SECOND / 10;
+  static final int MAX_CELLS = 32;
+  static final int CELL_PADDING = 16; // ints per cell, so that each is on its own cache line
 
   final Platform platform;
   final MaxFunction maxFunction;
-  final AtomicInteger usage = new AtomicInteger(0);
-  final AtomicLong nextReset;
+  final AtomicIntegerArray cells;
+  final int cellMask;
+  /** Written under lock, only on decisecond boundaries, so threads can share its cache line. */
+  volatile long nextReset;
+  /** Written under lock. How many yes decisions were added to cells since the last reset. */
+  volatile int allowed;
+  /** Written under lock. Incremented after yes decisions are added to cells. */
+  volatile int generation;
+  /** The {@link #generation} all cells were last seen empty in. */
+  volatile int exhaustedGeneration = -1;
 
   RateLimitingSampler(Platform platform, int tracesPerSecond) {
+    this(platform, tracesPerSecond, cellCount(Runtime.getRuntime().availableProcessors()));
+  }
+
+  RateLimitingSampler(Platform platform, int tracesPerSecond, int cellCount) {
     this.platform = platform;
     this.maxFunction =
       tracesPerSecond < 10 ? new LessThan10(tracesPerSecond) : new AtLeast10(tracesPerSecond);
+    this.cells = new AtomicIntegerArray(cellCount * CELL_PADDING);
+    this.cellMask = cellCount - 1;
     long now = platform.nanoTime();
-    this.nextReset = new AtomicLong(now + NANOS_PER_SECOND);
+    this.nextReset = now + NANOS_PER_SECOND;
+  }
+
+  /** Returns the power of two cells, not more than processors or {@link #MAX_CELLS}. */
+  static int cellCount(int processors) {
+    return Integer.highestOneBit(Math.max(1, Math.min(processors, MAX_CELLS)));
   }
 
   @Override public boolean isSampled(long ignoredTraceId) {
-    long now = platform.nanoTime(), updateAt = nextReset.get();
-
-    // First task is to determine if this request is later than the one second sampling window
-    long nanosUntilReset = -(now - updateAt); // because nanoTime can be negative
-    if (nanosUntilReset <= 0) {
-      // Attempt to move into the next sampling interval.
-      // nanosUntilReset is now invalid regardless of race winner, so we can't sample based on it.
-      if (nextReset.compareAndSet(updateAt, now + NANOS_PER_SECOND)) usage.set(0);
-
-      // recurse as it is simpler than resetting all the locals.
-      // reset happens once per second, this code doesn't take a second, so no infinite recursion.
-      return isSampled(ignoredTraceId);
+    long now = platform.nanoTime();
+
+    // First task is to determine if this request is later than the one second sampling window, or
+    // if we crossed into a decisecond that allows more samples. Either means updating the cells.
+    long nanosUntilReset = -(now - nextReset); // because nanoTime can be negative
+    if (nanosUntilReset <= 0 || maxFunction.max(nanosUntilReset) != allowed) update(now);
+
+    // Skip scanning the cells when they were empty, and nothing was added since.
+    int generation = this.generation;
+    if (exhaustedGeneration == generation) return false;
+
+    // Now, take a sample from this thread's cell, or any other cell if that's empty
+    int cell = (int) Thread.currentThread().getId();
+    for (int i = 0; i <= cellMask; i++) {
+      int index = ((cell + i) & cellMask) * CELL_PADDING;
+      for (int remaining; (remaining = cells.get(index)) > 0; ) {
+        if (cells.compareAndSet(index, remaining, remaining - 1)) return true;
+      }
+    }
+    // A stale generation is harmless, as it no longer matches once decisions are added.
+    exhaustedGeneration = generation;
+    return false;
+  }
+
+  /**
+   * Moves into the next sampling interval, if needed, and adds samples allowed so far in it. This
+   * is called by few threads, as only the first one crossing a boundary has anything to add.
+   */
+  synchronized void update(long now) {
+    long nanosUntilReset = -(now - nextReset);
+    if (nanosUntilReset <= 0) { // drop any samples unused in the last interval
+      for (int i = 0; i <= cellMask; i++) cells.set(i * CELL_PADDING, 0);
+      nextReset = now + NANOS_PER_SECOND;
+      nanosUntilReset = NANOS_PER_SECOND;
+      allowed = 0;
     }
 
-    // Now, we determine the amount of samples allowed for this interval, and sample accordingly
-    int max = maxFunction.max(nanosUntilReset);
-    int prev, next;
-    do { // same form as java 8 AtomicLong.getAndUpdate
-      prev = usage.get();
-      next = prev + 1;
-      if (next > max) return false;
-    } while (!usage.compareAndSet(prev, next));
-    return true;
+    int max = maxFunction.max(nanosUntilReset), toAdd = max - allowed;
+    if (toAdd <= 0) return; // another thread already added them
+    allowed = max;
+
+    int cellCount = cellMask + 1, share = toAdd / cellCount, remainder = toAdd % cellCount;
+    for (int i = 0; i < cellCount; i++) {
+      int add = i < remainder ? share + 1 : share;
+      if (add != 0) cells.addAndGet(i * CELL_PADDING, add);
+    }
+    generation++; // after adding, so a thread seeing this generation sees the cells added to
   }
 
   static abstract class MaxFunction {
@@ -0,0 +1,223 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import brave.internal.AttributeMatcher;
+import brave.internal.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Finds the first matching rule of a {@link ParameterizedSampler}, without testing each in order.
+ *
+ * <p>Each rule is indexed by one {@link AttributeMatcher}, either the rule itself or part of an
+ * {@link Matchers#and(Matcher[]) and} rule. Equality rules are looked up in a hash map, and prefix
+ * rules by walking a trie with the attribute value. Only these candidates, and rules that couldn't
+ * be indexed, are tested with their full matcher. Candidates are visited in rule order, skipping
+ * those after a rule that already matched. Hence, the result is the same as testing in order.
+ */
+final class RuleIndex<P> {
+  /** Below this, testing rules in order is cheaper than looking up attribute values. */
+  static final int MIN_RULES = 8;
+  static final int NO_MATCH = Integer.MAX_VALUE;
+  static final int[] EMPTY = new int[0];
+
+  /** Returns null if there are too few rules or nothing to index. */
+  @Nullable static <P> RuleIndex<P> create(Matcher<P>[] matchers) {
+    if (matchers.length < MIN_RULES) return null;
+
+    // Index each rule by its attribute with the most distinct values, as that is most selective.
+    Map<String, Set<String>> distinctValues = new LinkedHashMap<String, Set<String>>();
+    for (Matcher<P> matcher : matchers) {
+      for (AttributeMatcher<P> attribute : attributeMatchers(matcher)) {
+        Set<String> values = distinctValues.get(attribute.attribute());
+        if (values == null) {
+          distinctValues.put(attribute.attribute(), values = new LinkedHashSet<String>());
+        }
+        values.add(attribute.value());
+      }
+    }
+    if (distinctValues.isEmpty()) return null;
+
+    List<Integer> unindexed = new ArrayList<Integer>();
+    Map<String, AttributeIndex.Builder<P>> attributes =
+      new LinkedHashMap<String, AttributeIndex.Builder<P>>();
+    for (int i = 0; i < matchers.length; i++) {
+      AttributeMatcher<P> key = null;
+      for (AttributeMatcher<P> attribute : attributeMatchers(matchers[i])) {
+        if (key == null || distinctValues.get(attribute.attribute()).size()
+          > distinctValues.get(key.attribute()).size()) {
+          key = attribute;
+        }
+      }
+      if (key == null) {
+        unindexed.add(i);
+        continue;
+      }
+      AttributeIndex.Builder<P> builder = attributes.get(key.attribute());
+      if (builder == null) {
+        attributes.put(key.attribute(), builder = new AttributeIndex.Builder<P>(key));
+      }
+      builder.add(key, i);
+    }
+
+    AttributeIndex<P>[] indexes = new AttributeIndex[attributes.size()];
+    int i = 0;
+    for (AttributeIndex.Builder<P> builder : attributes.values()) indexes[i++] = builder.build();
+    return new RuleIndex<P>(matchers, toArray(unindexed), indexes);
+  }
+
+  /** Returns attribute matchers that must match for the input to match. */
+  static <P> List<AttributeMatcher<P>> attributeMatchers(Matcher<P> matcher) {
+    List<AttributeMatcher<P>> result = new ArrayList<AttributeMatcher<P>>();
+    if (matcher instanceof AttributeMatcher) {
+      result.add((AttributeMatcher<P>) matcher);
+    } else if (matcher instanceof Matchers.And) {
+      for (Matcher<P> m : ((Matchers.And<P>) matcher).matchers) {
+        if (m instanceof AttributeMatcher) result.add((AttributeMatcher<P>) m);
+      }
+    }
+    return result;
+  }
+
+  final Matcher<P>[] matchers;
+  final int[] unindexed;
+  final AttributeIndex<P>[] attributes;
+
+  RuleIndex(Matcher<P>[] matchers, int[] unindexed, AttributeIndex<P>[] attributes) {
+    this.matchers = matchers;
+    this.unindexed = unindexed;
+    this.attributes = attributes;
+  }
+
+  /** Returns the position of the first matching rule or {@link #NO_MATCH}. */
+  int firstMatch(P input) {
+    int best = test(unindexed, input, NO_MATCH);
+    for (AttributeIndex<P> attribute : attributes) {
+      String value = attribute.matcher.attributeValue(input);
+      if (value == null) continue;
+
+      int[] equalTo = attribute.equalTo.get(value);
+      if (equalTo != null) best = test(equalTo, input, best);
+
+      PrefixNode node = attribute.prefixes;
+      for (int i = 0; node != null; i++) {
+        if (node.rules != null) best = test(node.rules, input, best);
+        if (i == value.length()) break;
+        node = node.child(value.charAt(i));
+      }
+    }
+    return best;
+  }
+
+  /** Tests candidates in order, until one matches or can't be earlier than the best so far. */
+  int test(int[] candidates, P input, int best) {
+    for (int candidate : candidates) {
+      if (candidate >= best) break;
+      if (matchers[candidate].matches(input)) return candidate;
+    }
+    return best;
+  }
+
+  static final class AttributeIndex<P> {
+    /** Any matcher of this attribute, used to read its value from the input. */
+    final AttributeMatcher<P> matcher;
+    final Map<String, int[]> equalTo;
+    @Nullable final PrefixNode prefixes;
+
+    AttributeIndex(Builder<P> builder) {
+      this.matcher = builder.matcher;
+      this.equalTo = new HashMap<String, int[]>();
+      for (Map.Entry<String, List<Integer>> entry : builder.equalTo.entrySet()) {
+        equalTo.put(entry.getKey(), toArray(entry.getValue()));
+      }
+      this.prefixes = builder.prefixes.isEmpty() ? null : builder.prefixes.build();
+    }
+
+    static final class Builder<P> {
+      final AttributeMatcher<P> matcher;
+      final Map<String, List<Integer>> equalTo = new LinkedHashMap<String, List<Integer>>();
+      final PrefixNode.Builder prefixes = new PrefixNode.Builder();
+
+      Builder(AttributeMatcher<P> matcher) {
+        this.matcher = matcher;
+      }
+
+      void add(AttributeMatcher<P> matcher, int rule) {
+        if (matcher.isPrefix()) {
+          prefixes.add(matcher.value(), rule);
+          return;
+        }
+        List<Integer> rules = equalTo.get(matcher.value());
+        if (rules == null) equalTo.put(matcher.value(), rules = new ArrayList<Integer>());
+        rules.add(rule);
+      }
+
+      AttributeIndex<P> build() {
+        return new AttributeIndex<P>(this);
+      }
+    }
+  }
+
+  /** A trie node, holding rules whose prefix ends here. Children are sorted for binary search. */
+  static final class PrefixNode {
+    final char[] chars;
+    final PrefixNode[] children;
+    @Nullable final int[] rules;
+
+    PrefixNode(Builder builder) {
+      int size = builder.children.size(), i = 0;
+      chars = new char[size];
+      children = new PrefixNode[size];
+      for (Map.Entry<Character, Builder> entry : builder.children.entrySet()) {
+        chars[i] = entry.getKey();
+        children[i++] = entry.getValue().build();
+      }
+      rules = builder.rules.isEmpty() ? null : toArray(builder.rules);
+    }
+
+    @Nullable PrefixNode child(char c) {
+      int i = Arrays.binarySearch(chars, c);
+      return i < 0 ? null : children[i];
+    }
+
+    static final class Builder {
+      final TreeMap<Character, Builder> children = new TreeMap<Character, Builder>();
+      final List<Integer> rules = new ArrayList<Integer>();
+
+      boolean isEmpty() {
+        return children.isEmpty() && rules.isEmpty();
+      }
+
+      void add(String prefix, int rule) {
+        Builder node = this;
+        for (int i = 0; i < prefix.length(); i++) {
+          Builder child = node.children.get(prefix.charAt(i));
+          if (child == null) node.children.put(prefix.charAt(i), child = new Builder());
+          node = child;
+        }
+        node.rules.add(rule); // rules are added in order, so this is sorted
+      }
+
+      PrefixNode build() {
+        return new PrefixNode(this);
+      }
+    }
+  }
+
+  static int[] toArray(List<Integer> list) {
+    if (list.isEmpty()) return EMPTY;
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) result[i] = list.get(i);
+    return result;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import brave.internal.AttributeMatcher;
+import brave.internal.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the sampler of the first matching rule of a {@link ParameterizedSampler}, keyed on the
+ * attribute values of the input, such as the HTTP method and path. This is only possible when all
+ * rules are made of {@link AttributeMatcher}, as otherwise inputs with the same attribute values
+ * could match different rules.
+ *
+ * <p>Unlike {@link DeclarativeSampler}, memory is bounded. Entries are kept in two generations:
+ * when the current one is full, it replaces the previous, which is dropped. Hits in the previous
+ * generation are copied to the current one. This approximates least-recently-used eviction, without
+ * locking on lookup.
+ */
+final class SamplerCache<P> {
+  /** Cached when no rule matched, as {@link ConcurrentMap} doesn't allow null values. */
+  static final Sampler NO_MATCH = new Sampler() {
+    @Override public boolean isSampled(long traceId) {
+      throw new AssertionError();
+    }
+
+    @Override public String toString() {
+      return "NoMatch";
+    }
+  };
+
+  /** Returns null if the cache is disabled or any rule isn't made of attribute matchers. */
+  @Nullable static <P> SamplerCache<P> create(Matcher<P>[] matchers, int maxSize) {
+    if (maxSize == 0 || matchers.length == 0) return null;
+    Map<String, AttributeMatcher<P>> attributes = new LinkedHashMap<String, AttributeMatcher<P>>();
+    for (Matcher<P> matcher : matchers) {
+      List<Matcher<P>> components = new ArrayList<Matcher<P>>();
+      if (matcher instanceof Matchers.And) {
+        components.addAll(Arrays.asList(((Matchers.And<P>) matcher).matchers));
+      } else {
+        components.add(matcher);
+      }
+      for (Matcher<P> component : components) {
+        if (!(component instanceof AttributeMatcher)) return null;
+        AttributeMatcher<P> attribute = (AttributeMatcher<P>) component;
+        if (!attributes.containsKey(attribute.attribute())) {
+          attributes.put(attribute.attribute(), attribute);
+        }
+      }
+    }
+    return new SamplerCache<P>(attributes.values().toArray(new AttributeMatcher[0]), maxSize);
+  }
+
+  /** One matcher per attribute, used to read its value from the input. */
+  final AttributeMatcher<P>[] attributes;
+  final int generationSize;
+  final AtomicInteger currentSize = new AtomicInteger();
+  volatile ConcurrentMap<Object, Sampler> current, previous;
+
+  SamplerCache(AttributeMatcher<P>[] attributes, int maxSize) {
+    this.attributes = attributes;
+    this.generationSize = Math.max(1, maxSize / 2);
+    this.current = new ConcurrentHashMap<Object, Sampler>();
+    this.previous = new ConcurrentHashMap<Object, Sampler>();
+  }
+
+  /**
+   * Returns the attribute values of the input. A missing value is the same as an empty one, as
+   * attribute matchers never match either.
+   */
+  Object key(P input) {
+    if (attributes.length == 1) return attributeValue(attributes[0], input);
+    String[] values = new String[attributes.length];
+    for (int i = 0; i < values.length; i++) values[i] = attributeValue(attributes[i], input);
+    return new Key(values);
+  }
+
+  static <P> String attributeValue(AttributeMatcher<P> attribute, P input) {
+    String value = attribute.attributeValue(input);
+    return value != null ? value : "";
+  }
+
+  /** Returns the cached sampler, {@link #NO_MATCH} or null if not cached. */
+  @Nullable Sampler get(Object key) {
+    Sampler sampler = current.get(key);
+    if (sampler != null) return sampler;
+    sampler = previous.get(key);
+    if (sampler != null) put(key, sampler);
+    return sampler;
+  }
+
+  void put(Object key, Sampler sampler) {
+    if (current.putIfAbsent(key, sampler) != null) return;
+    if (currentSize.incrementAndGet() >= generationSize) rotate();
+  }
+
+  synchronized void rotate() {
+    if (currentSize.get() < generationSize) return; // another thread rotated
+    previous = current;
+    current = new ConcurrentHashMap<Object, Sampler>();
+    currentSize.set(0);
+  }
+
+  static final class Key {
+    final String[] values;
+    final int hashCode;
+
+    Key(String[] values) {
+      this.values = values;
+      this.hashCode = Arrays.hashCode(values);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof Key)) return false;
+      return Arrays.equals(values, ((Key) o).values);
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static brave.sampler.CountingSampler.decisionCount;
+import static brave.sampler.CountingSampler.mod;
+import static brave.sampler.CountingSampler.sampleDecisions;
+import static brave.sampler.RateLimitingSampler.CELL_PADDING;
+
+/**
+ * Like {@link CountingSampler}, except each stripe of threads loops over the decisions with its own
+ * counter. Counters are padded to their own cache line, so that stripes don't contend.
+ *
+ * <p>Stripes start at different offsets of the same decisions, so that they don't sample the same
+ * requests in lockstep.
+ *
+ * @see CountingSampler#createStriped(float)
+ */
+final class StripedCountingSampler extends Sampler {
+  final AtomicIntegerArray counters;
+  final int stripeMask;
+  final BitSet sampleDecisions;
+  final int decisionCount;
+
+  StripedCountingSampler(float probability, Random random, int stripeCount) {
+    this.counters = new AtomicIntegerArray(stripeCount * CELL_PADDING);
+    this.stripeMask = stripeCount - 1;
+    this.decisionCount = decisionCount(probability);
+    this.sampleDecisions = sampleDecisions(decisionCount, probability, random);
+    for (int i = 0; i < stripeCount; i++) {
+      counters.set(i * CELL_PADDING, i * (decisionCount / stripeCount));
+    }
+  }
+
+  /** Loops over the pre-canned decisions, using the counter of the current thread's stripe. */
+  @Override public boolean isSampled(long traceIdIgnored) {
+    int index = ((int) Thread.currentThread().getId() & stripeMask) * CELL_PADDING;
+    return sampleDecisions.get(mod(counters.getAndIncrement(index), decisionCount));
+  }
+
+  @Override public String toString() {
+    return "StripedCountingSampler()";
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * In-process trace context propagation suited to tasks that run on their own thread, such as
+ * virtual threads.
+ *
+ * <h3>Design notes</h3>
+ *
+ * <p>This is a multi-release class. On JDK 25+, tasks wrapped by {@link #wrap(Runnable)}, or
+ * by the executors this returns, keep their scopes in a {@link ScopedValue} bound for the task.
+ * Such a task never creates a thread local entry, so millions of virtual threads don't each hold
+ * one.
+ *
+ * <p>Otherwise, including on older JDKs, scopes are kept the same way as {@link
+ * StackCurrentTraceContext}, sharing its static thread local. Either way, opening and closing a
+ * scope doesn't allocate, even when nested.
+ *
+ * <p>A task's stack is only used by the thread that bound it. Threads which inherit the binding,
+ * such as subtasks forked by a {@code StructuredTaskScope}, use the thread local instead, unless
+ * they were also wrapped.
+ *
+ * @since 6.1
+ */
+public final class VirtualThreadCurrentTraceContext extends CurrentTraceContext {
+  public static CurrentTraceContext create() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Call this to clear the stack when you are sure any residual state is due to a leak. This is
+   * generally only useful in tests.
+   *
+   * @since 6.1
+   */
+  public void clear() {
+    TaskStack task = currentTask();
+    if (task != null) task.popTo(0);
+    threadLocal.clear();
+  }
+
+  /** @since 6.1 */ // overridden for covariance
+  public static final class Builder extends CurrentTraceContext.Builder {
+    @Override public Builder addScopeDecorator(ScopeDecorator scopeDecorator) {
+      return (Builder) super.addScopeDecorator(scopeDecorator);
+    }
+
+    @Override public VirtualThreadCurrentTraceContext build() {
+      return new VirtualThreadCurrentTraceContext(this);
+    }
+
+    Builder() {
+    }
+  }
+
+  /** Bound for the duration of a wrapped task. */
+  static final ScopedValue<TaskStack> TASK = ScopedValue.newInstance();
+
+  static final TaskPopScope[] POP_SCOPES =
+    new TaskPopScope[StackCurrentTraceContext.SHARED_SCOPES];
+
+  static {
+    for (int i = 0; i < POP_SCOPES.length; i++) {
+      POP_SCOPES[i] = new TaskPopScope(i);
+    }
+  }
+
+  /** Undecorated, as scopes are decorated here. */
+  final StackCurrentTraceContext threadLocal = new StackCurrentTraceContext.Builder().build();
+
+  VirtualThreadCurrentTraceContext(Builder builder) {
+    super(builder);
+  }
+
+  @Override public TraceContext get() {
+    TaskStack task = currentTask();
+    if (task != null) return task.contexts[task.depth];
+    return threadLocal.get();
+  }
+
+  @Override public Scope newScope(@Nullable TraceContext currentSpan) {
+    TaskStack task = currentTask();
+    Scope result = task != null ? task.push(currentSpan) : threadLocal.newScope(currentSpan);
+    return decorateScope(currentSpan, result);
+  }
+
+  @Override public <C> Callable<C> wrap(Callable<C> task) {
+    Callable<C> delegate = super.wrap(task);
+    class ScopedValueCallable implements Callable<C> {
+      @Override public C call() throws Exception {
+        return ScopedValue.where(TASK, new TaskStack()).call(delegate::call);
+      }
+    }
+    return new ScopedValueCallable();
+  }
+
+  @Override public Runnable wrap(Runnable task) {
+    Runnable delegate = super.wrap(task);
+    class ScopedValueRunnable implements Runnable {
+      @Override public void run() {
+        ScopedValue.where(TASK, new TaskStack()).run(delegate);
+      }
+    }
+    return new ScopedValueRunnable();
+  }
+
+  /** Returns the stack bound by the task this thread is running, or null if not wrapped. */
+  @Nullable static TaskStack currentTask() {
+    if (!TASK.isBound()) return null;
+    TaskStack task = TASK.get();
+    return task.owner == Thread.currentThread() ? task : null;
+  }
+
+  /** Like the stack in {@link StackCurrentTraceContext}, except held by a task. */
+  static final class TaskStack {
+    final Thread owner = Thread.currentThread();
+    TraceContext[] contexts = new TraceContext[StackCurrentTraceContext.INITIAL_CAPACITY];
+    int depth; // contexts[0] is always null, for when no scope is open
+
+    Scope push(@Nullable TraceContext currentSpan) {
+      if (depth + 1 == contexts.length) contexts = Arrays.copyOf(contexts, contexts.length * 2);
+      contexts[++depth] = currentSpan;
+      int scopeDepth = depth - 1;
+      return scopeDepth < POP_SCOPES.length ? POP_SCOPES[scopeDepth] : new TaskPopScope(scopeDepth);
+    }
+
+    void popTo(int depth) {
+      if (this.depth <= depth) return; // an enclosing scope already closed
+      Arrays.fill(contexts, depth + 1, this.depth + 1, null); // don't retain contexts
+      this.depth = depth;
+    }
+  }
+
+  /** Pops the task's stack to the depth before the scope was opened. */
+  static final class TaskPopScope implements Scope {
+    final int depth;
+
+    TaskPopScope(int depth) {
+      this.depth = depth;
+    }
+
+    @Override public void close() {
+      TaskStack task = currentTask();
+      if (task != null) task.popTo(depth);
+    }
+
+    @Override public String toString() {
+      return "TaskPopScope{depth=" + depth + "}";
+    }
+  }
+}
@@ -15,6 +15,7 @@ import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 /** This class is in a separate test to ensure the trace context is not inheritable. */
@@ -64,4 +65,21 @@ class CurrentTraceContextExecutorTest {
         .containsExactly(context, context);
     }
   }
+
+  @Test void executeAll() throws Exception {
+    final TraceContext[] threadValues = new TraceContext[2];
+
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context)) {
+      currentTraceContext.executeAll(wrappedExecutor, asList(
+        () -> threadValues[0] = currentTraceContext.get(),
+        () -> threadValues[1] = currentTraceContext.get()
+      ));
+    }
+
+    try (CurrentTraceContext.Scope scope = currentTraceContext.newScope(context2)) {
+      shutdownExecutor();
+      assertThat(threadValues)
+        .containsExactly(context, context);
+    }
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave;
+
+import brave.internal.Platform;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdGeneratorTest {
+  @Test void platform() {
+    assertUnique(IdGenerator.platform());
+    assertThat(IdGenerator.platform()).isSameAs(IdGenerator.platform());
+  }
+
+  @Test void splittableRandom() {
+    assertUnique(IdGenerator.splittableRandom());
+  }
+
+  @Test void xorShift() {
+    assertUnique(IdGenerator.xorShift());
+  }
+
+  @Test void timeOrdered() {
+    assertUnique(IdGenerator.timeOrdered());
+  }
+
+  @Test void nextTraceIdHigh_epochSecondsPrefix() {
+    long epochSeconds = Platform.get().currentTimeMicroseconds() / 1000000;
+
+    for (IdGenerator generator : new IdGenerator[] {
+      IdGenerator.platform(), IdGenerator.splittableRandom(), IdGenerator.xorShift()
+    }) {
+      assertThat(generator.nextTraceIdHigh() >>> 32)
+        .describedAs(generator.toString())
+        .isBetween(epochSeconds, epochSeconds + 1);
+    }
+  }
+
+  @Test void timeOrdered_nextTraceIdHigh_epochMillisPrefix() {
+    long epochMillis = Platform.get().currentTimeMicroseconds() / 1000;
+
+    assertThat(IdGenerator.timeOrdered().nextTraceIdHigh() >>> 16)
+      .isBetween(epochMillis, epochMillis + 1000);
+  }
+
+  @Test void timeOrdered_nextTraceIdHigh_sortsByTime() {
+    long earlier = IdGenerator.TimeOrderedIdGenerator.nextTraceIdHigh(1000L, -1L);
+    long later = IdGenerator.TimeOrderedIdGenerator.nextTraceIdHigh(1001L, 0L);
+
+    assertThat(earlier).isEqualTo(1000L << 16 | 0xffffL);
+    assertThat(Long.compareUnsigned(earlier, later)).isNegative();
+  }
+
+  @Test void xorShift_perThread() throws Exception {
+    IdGenerator generator = IdGenerator.xorShift();
+    Set<Long> ids = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < 4; i++) {
+        executor.execute(() -> {
+          for (int j = 0; j < 1000; j++) ids.add(generator.nextSpanId());
+        });
+      }
+    } finally {
+      executor.shutdown();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(ids).hasSize(4000).doesNotContain(0L);
+  }
+
+  static void assertUnique(IdGenerator generator) {
+    Set<Long> ids = new LinkedHashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      ids.add(generator.nextSpanId());
+    }
+    assertThat(ids).hasSize(10000).doesNotContain(0L);
+  }
+}
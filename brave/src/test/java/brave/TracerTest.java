@@ -27,6 +27,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -125,6 +126,35 @@ public class TracerTest {
       .isNotZero();
   }
 
+  @Test void newTrace_idGenerator() {
+    tracer = Tracing.newBuilder().traceId128Bit(true).idGenerator(new IdGenerator() {
+      @Override public long nextSpanId() {
+        return 2L;
+      }
+
+      @Override public long nextTraceIdHigh() {
+        return 1L;
+      }
+    }).build().tracer();
+
+    TraceContext context = tracer.newTrace().context();
+    assertThat(context.traceIdHigh()).isEqualTo(1L);
+    assertThat(context.traceId()).isEqualTo(2L);
+    assertThat(context.spanId()).isEqualTo(2L);
+  }
+
+  @Test void nextId_dodgesZeroFromIdGenerator() {
+    long[] ids = {0L, 0L, 3L};
+    AtomicInteger index = new AtomicInteger();
+    tracer = Tracing.newBuilder().idGenerator(new IdGenerator() {
+      @Override public long nextSpanId() {
+        return ids[index.getAndIncrement()];
+      }
+    }).build().tracer();
+
+    assertThat(tracer.nextId()).isEqualTo(3L);
+  }
+
   /** When we join a sampled request, we are sharing the same trace identifiers. */
   @Test void join_setsShared() {
     TraceContext fromIncomingRequest = tracer.newTrace().context();
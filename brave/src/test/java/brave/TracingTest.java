@@ -127,6 +127,46 @@ class TracingTest {
     }
   }
 
+  @Test void recycleSpans_whenHandlersDontReferenceSpanAfterEnd() {
+    SpanHandler spanHandler = new SpanHandler() {
+      @Override public boolean referencesSpanAfterEnd() {
+        return false;
+      }
+    };
+
+    try (Tracing tracing = Tracing.newBuilder()
+      .addSpanHandler(spanHandler)
+      .recycleSpans()
+      .build()) {
+      assertThat((Object) tracing.tracer().pendingSpans).extracting("recycleSpans")
+        .isEqualTo(true);
+    }
+  }
+
+  @Test void recycleSpans_ignoredWhenAnyHandlerReferencesSpanAfterEnd() {
+    SpanHandler spanHandler = new SpanHandler() {
+      @Override public boolean referencesSpanAfterEnd() {
+        return false;
+      }
+    };
+
+    try (Tracing tracing = Tracing.newBuilder()
+      .addSpanHandler(spanHandler)
+      .addSpanHandler(spans)
+      .recycleSpans()
+      .build()) {
+      assertThat((Object) tracing.tracer().pendingSpans).extracting("recycleSpans")
+        .isEqualTo(false);
+    }
+  }
+
+  @Test void recycleSpans_disabledByDefault() {
+    try (Tracing tracing = Tracing.newBuilder().build()) {
+      assertThat((Object) tracing.tracer().pendingSpans).extracting("recycleSpans")
+        .isEqualTo(false);
+    }
+  }
+
   @Test void alwaysReportSpans_reportsEvenWhenUnsampled() {
     TraceContext sampledLocal =
       TraceContext.newBuilder().traceId(1).spanId(1).sampledLocal(true).build();
@@ -24,6 +24,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static brave.baggage.BaggagePropagation.newFactoryBuilder;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.entry;
@@ -158,6 +159,27 @@ public class BaggagePropagationTest {
       .isEqualTo(awsTraceId);
   }
 
+  @Test void bytesExtractor_baggage() {
+    injector.inject(context, request);
+    request.put(amznTraceId.name(), awsTraceId);
+    request.put(vcapRequestId.name(), "\u00e9t\u00e9"); // not ASCII
+
+    Extractor<Map<String, String>> bytesExtractor =
+      factory.bytesExtractor((request, key) -> {
+        String value = request.get(key);
+        return value != null ? value.getBytes(UTF_8) : null;
+      });
+
+    TraceContextOrSamplingFlags extracted = bytesExtractor.extract(request);
+    assertThat(extracted.context()).isEqualTo(context);
+    assertThat(extracted.context().extra()).hasSize(2);
+
+    assertThat(amznTraceId.getValue(extracted))
+      .isEqualTo(awsTraceId);
+    assertThat(vcapRequestId.getValue(extracted))
+      .isEqualTo("\u00e9t\u00e9");
+  }
+
   @Test void extract_two() {
     injector.inject(context, request);
     request.put(amznTraceId.name(), awsTraceId);
@@ -173,6 +195,67 @@ public class BaggagePropagationTest {
       .isEqualTo(uuid);
   }
 
+  @Test void decodeLazily_decodesOnFirstUse() {
+    BaggagePropagation.Factory factory = lazyFactory();
+    injector.inject(context, request);
+    request.put(amznTraceId.name(), awsTraceId);
+
+    TraceContextOrSamplingFlags extracted =
+      factory.get().extractor(Map<String, String>::get).extract(request);
+    BaggageFields baggage = extracted.context().findExtra(BaggageFields.class);
+    assertThat(baggage.undecodedValues(factory.remoteCodecs)).containsExactly(null, awsTraceId);
+
+    assertThat(amznTraceId.getValue(extracted)).isEqualTo(awsTraceId);
+    assertThat(vcapRequestId.getValue(extracted)).isNull();
+    assertThat(baggage.undecodedValues(factory.remoteCodecs)).isNull();
+  }
+
+  @Test void decodeLazily_childPassesThrough() {
+    BaggagePropagation.Factory factory = lazyFactory();
+    injector.inject(context, request);
+    request.put(amznTraceId.name(), awsTraceId);
+    request.put(vcapRequestId.name(), uuid);
+
+    TraceContext server = factory.decorate(
+      factory.get().extractor(Map<String, String>::get).extract(request).context());
+    TraceContext client =
+      factory.decorate(server.toBuilder().parentId(server.spanId()).spanId(3L).build());
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    factory.get().injector(Map<String, String>::put).inject(client, outgoing);
+
+    assertThat(outgoing)
+      .containsEntry(amznTraceId.name(), awsTraceId)
+      .containsEntry(vcapRequestId.name(), uuid);
+    assertThat(client.findExtra(BaggageFields.class).undecodedValues(factory.remoteCodecs))
+      .containsExactly(uuid, awsTraceId); // not decoded
+  }
+
+  @Test void decodeLazily_childUpdate() {
+    BaggagePropagation.Factory factory = lazyFactory();
+    injector.inject(context, request);
+    request.put(vcapRequestId.name(), uuid);
+
+    TraceContext server = factory.decorate(
+      factory.get().extractor(Map<String, String>::get).extract(request).context());
+    TraceContext client =
+      factory.decorate(server.toBuilder().parentId(server.spanId()).spanId(3L).build());
+    vcapRequestId.updateValue(client, "changed");
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    factory.get().injector(Map<String, String>::put).inject(client, outgoing);
+
+    assertThat(outgoing).containsEntry(vcapRequestId.name(), "changed");
+    assertThat(vcapRequestId.getValue(server)).isEqualTo(uuid);
+  }
+
+  BaggagePropagation.Factory lazyFactory() {
+    return (BaggagePropagation.Factory) newFactoryBuilder(B3Propagation.FACTORY)
+      .add(SingleBaggageField.remote(vcapRequestId))
+      .add(SingleBaggageField.remote(amznTraceId))
+      .decodeLazily(true).build();
+  }
+
   @Test void extract_field_multiple_key_names() {
     // switch to case insensitive as this example is about http :P
     request = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
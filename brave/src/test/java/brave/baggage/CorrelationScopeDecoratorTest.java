@@ -14,7 +14,9 @@ import brave.propagation.CurrentTraceContext.Scope;
 import brave.propagation.CurrentTraceContext.ScopeDecorator;
 import brave.propagation.Propagation;
 import brave.propagation.TraceContext;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +43,7 @@ class CorrelationScopeDecoratorTest {
       .flushOnUpdate()
       .build();
   static final Map<String, String> map = new LinkedHashMap<>();
+  static final List<Map<String, String>> bulkUpdates = new ArrayList<>();
 
   Propagation.Factory baggageFactory = BaggagePropagation.newFactoryBuilder(B3Propagation.FACTORY)
     .add(SingleBaggageField.local(LOCAL_FIELD.baggageField()))
@@ -93,6 +96,7 @@ class CorrelationScopeDecoratorTest {
 
   @BeforeEach void before() {
     map.clear();
+    bulkUpdates.clear();
   }
 
   @AfterEach void assertClear() {
@@ -597,12 +601,101 @@ class CorrelationScopeDecoratorTest {
     }
   }
 
+  @Test void skipUnchangedContexts_sameContext() {
+    ScopeDecorator decorator = new TestBuilder().skipUnchangedContexts(true).build();
+
+    try (Scope scope = decorator.decorateScope(context, mock(Scope.class))) {
+      map.clear(); // shows the correlation context isn't read for the same context
+
+      Scope sameContext = mock(Scope.class);
+      assertThat(decorator.decorateScope(context, sameContext)).isSameAs(sameContext);
+      assertThat(map).isEmpty();
+
+      TraceContext child = context.toBuilder().parentId(3L).spanId(4L).build();
+      try (Scope childScope = decorator.decorateScope(child, mock(Scope.class))) {
+        assertThat(map).containsEntry("spanId", "0000000000000004");
+      }
+    }
+  }
+
+  @Test void skipUnchangedContexts_insideClearedScope() {
+    ScopeDecorator decorator = new TestBuilder().skipUnchangedContexts(true).build();
+
+    try (Scope scope = decorator.decorateScope(context, mock(Scope.class))) {
+      try (Scope cleared = decorator.decorateScope(null, mock(Scope.class))) {
+        assertThat(map).isEmpty();
+
+        try (Scope scope3 = decorator.decorateScope(context, mock(Scope.class))) {
+          assertThat(map).containsEntry("traceId", "0000000000000001");
+        }
+        assertThat(map).isEmpty();
+      }
+      assertThat(map).containsEntry("traceId", "0000000000000001");
+
+      Scope sameContext = mock(Scope.class);
+      assertThat(decorator.decorateScope(context, sameContext)).isSameAs(sameContext);
+    }
+
+    assertThat(((CorrelationScopeDecorator) decorator).lastContext.get()).isNull();
+  }
+
+  @Test void skipUnchangedContexts_stillUpdatesDirtyFields() {
+    ScopeDecorator decorator =
+      new TestBuilder().add(DIRTY_FIELD).skipUnchangedContexts(true).build();
+
+    try (Scope scope = decorator.decorateScope(contextWithBaggage, mock(Scope.class))) {
+      DIRTY_FIELD.baggageField().updateValue(contextWithBaggage, "romeo");
+
+      try (Scope sameContext = decorator.decorateScope(contextWithBaggage, mock(Scope.class))) {
+        assertThat(map).containsEntry(DIRTY_FIELD.name(), "romeo");
+      }
+    }
+  }
+
+  @Test void bulkUpdates() {
+    ScopeDecorator decorator = new BulkTestBuilder().build();
+
+    try (Scope scope = decorator.decorateScope(context, mock(Scope.class))) {
+      assertThat(map).containsOnly(
+        entry("traceId", "0000000000000001"),
+        entry("spanId", "0000000000000003")
+      );
+    }
+
+    assertThat(bulkUpdates).hasSize(2);
+    assertThat(bulkUpdates.get(0)).containsOnlyKeys("traceId", "spanId");
+    assertThat(bulkUpdates.get(1)).containsOnly(entry("traceId", null), entry("spanId", null));
+  }
+
   static final class TestBuilder extends CorrelationScopeDecorator.Builder {
     TestBuilder() {
       super(MapContext.INSTANCE);
     }
   }
 
+  static final class BulkTestBuilder extends CorrelationScopeDecorator.Builder {
+    BulkTestBuilder() {
+      super(BulkMapContext.INSTANCE);
+    }
+  }
+
+  enum BulkMapContext implements CorrelationContext.Bulk {
+    INSTANCE;
+
+    @Override public String getValue(String name) {
+      return MapContext.INSTANCE.getValue(name);
+    }
+
+    @Override public boolean update(String name, @Nullable String value) {
+      return MapContext.INSTANCE.update(name, value);
+    }
+
+    @Override public void updateAll(Map<String, String> values) {
+      bulkUpdates.add(new LinkedHashMap<>(values));
+      values.forEach(this::update);
+    }
+  }
+
   enum MapContext implements CorrelationContext {
     INSTANCE;
 
@@ -0,0 +1,231 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.handler.AsyncSpanHandler.OverflowStrategy;
+import brave.handler.SpanHandler.Cause;
+import brave.propagation.TraceContext;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncSpanHandlerTest {
+  TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true).build();
+  BlockingQueue<MutableSpan> spans = new LinkedBlockingQueue<>();
+  BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+  CountDownLatch release = new CountDownLatch(0);
+
+  SpanHandler delegate = new SpanHandler() {
+    @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+      threads.add(Thread.currentThread());
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if ("crash".equals(span.name())) throw new RuntimeException("crash");
+      spans.add(span);
+      return true;
+    }
+  };
+
+  AsyncSpanHandler handler;
+
+  @AfterEach void close() {
+    release.countDown();
+    if (handler != null) handler.close();
+  }
+
+  @Test void end_invokesDelegateOnConsumerThread() throws Exception {
+    handler = AsyncSpanHandler.newBuilder(delegate).threadName("span-consumer").build();
+
+    MutableSpan span = newSpan("foo");
+    assertThat(handler.end(context, span, Cause.FINISHED)).isTrue();
+
+    assertThat(spans.poll(1, TimeUnit.SECONDS)).isSameAs(span);
+    assertThat(threads.poll().getName()).isEqualTo("span-consumer");
+    assertThat(handler.queuedSpans()).isEqualTo(1);
+    assertThat(handler.droppedSpans()).isZero();
+  }
+
+  @Test void end_delegateErrorDoesntStopConsumer() throws Exception {
+    handler = AsyncSpanHandler.newBuilder(delegate).build();
+
+    handler.end(context, newSpan("crash"), Cause.FINISHED);
+    MutableSpan span = newSpan("foo");
+    handler.end(context, span, Cause.FINISHED);
+
+    assertThat(spans.poll(1, TimeUnit.SECONDS)).isSameAs(span);
+  }
+
+  @Test void begin_isNotDeferred() {
+    SpanHandler rejectsBegin = new SpanHandler() {
+      @Override
+      public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+        return false;
+      }
+    };
+    handler = AsyncSpanHandler.newBuilder(rejectsBegin).build();
+
+    assertThat(handler.begin(context, new MutableSpan(), null)).isFalse();
+  }
+
+  @Test void dropNewest() throws Exception {
+    release = new CountDownLatch(1);
+    handler = AsyncSpanHandler.newBuilder(delegate).queueSize(2).build();
+
+    handler.end(context, newSpan("1"), Cause.FINISHED);
+    threads.poll(1, TimeUnit.SECONDS); // consumer is now blocked on span 1
+    handler.end(context, newSpan("2"), Cause.FINISHED);
+    handler.end(context, newSpan("3"), Cause.FINISHED);
+    handler.end(context, newSpan("4"), Cause.FINISHED);
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+    assertThat(handler.queuedSpans()).isEqualTo(3);
+
+    release.countDown();
+    handler.close();
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("1", "2", "3");
+  }
+
+  @Test void dropOldest() throws Exception {
+    release = new CountDownLatch(1);
+    handler = AsyncSpanHandler.newBuilder(delegate)
+      .queueSize(2)
+      .overflowStrategy(OverflowStrategy.DROP_OLDEST)
+      .build();
+
+    handler.end(context, newSpan("1"), Cause.FINISHED);
+    threads.poll(1, TimeUnit.SECONDS); // consumer is now blocked on span 1
+    handler.end(context, newSpan("2"), Cause.FINISHED);
+    handler.end(context, newSpan("3"), Cause.FINISHED);
+    handler.end(context, newSpan("4"), Cause.FINISHED);
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+    assertThat(handler.queuedSpans()).isEqualTo(4);
+
+    release.countDown();
+    handler.close();
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("1", "3", "4");
+  }
+
+  @Test void block_dropsAfterTimeout() throws Exception {
+    release = new CountDownLatch(1);
+    handler = AsyncSpanHandler.newBuilder(delegate)
+      .queueSize(2)
+      .overflowStrategy(OverflowStrategy.BLOCK)
+      .blockTimeout(10, TimeUnit.MILLISECONDS)
+      .build();
+
+    handler.end(context, newSpan("1"), Cause.FINISHED);
+    threads.poll(1, TimeUnit.SECONDS); // consumer is now blocked on span 1
+    handler.end(context, newSpan("2"), Cause.FINISHED);
+    handler.end(context, newSpan("3"), Cause.FINISHED);
+
+    long start = System.nanoTime();
+    handler.end(context, newSpan("4"), Cause.FINISHED);
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+
+    release.countDown();
+    handler.close();
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("1", "2", "3");
+  }
+
+  @Test void block_waitsForSpace() throws Exception {
+    release = new CountDownLatch(1);
+    handler = AsyncSpanHandler.newBuilder(delegate)
+      .queueSize(2)
+      .overflowStrategy(OverflowStrategy.BLOCK)
+      .blockTimeout(10, TimeUnit.SECONDS)
+      .build();
+
+    handler.end(context, newSpan("1"), Cause.FINISHED);
+    threads.poll(1, TimeUnit.SECONDS); // consumer is now blocked on span 1
+    handler.end(context, newSpan("2"), Cause.FINISHED);
+    handler.end(context, newSpan("3"), Cause.FINISHED);
+
+    new Thread(() -> {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      release.countDown();
+    }).start();
+    handler.end(context, newSpan("4"), Cause.FINISHED);
+
+    handler.close();
+    assertThat(handler.droppedSpans()).isZero();
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("1", "2", "3", "4");
+  }
+
+  @Test void close_drainsQueuedSpans() {
+    handler = AsyncSpanHandler.newBuilder(delegate).batchSize(3).build();
+
+    for (int i = 0; i < 100; i++) {
+      handler.end(context, newSpan(String.valueOf(i)), Cause.FINISHED);
+    }
+    handler.close();
+
+    assertThat(spans).hasSize(100);
+  }
+
+  @Test void end_afterCloseDrops() {
+    handler = AsyncSpanHandler.newBuilder(delegate).build();
+    handler.close();
+
+    handler.end(context, newSpan("foo"), Cause.FINISHED);
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+    assertThat(spans).isEmpty();
+  }
+
+  @Test void manyProducers() throws Exception {
+    handler = AsyncSpanHandler.newBuilder(delegate).queueSize(16).batchSize(4)
+      .overflowStrategy(OverflowStrategy.BLOCK)
+      .blockTimeout(10, TimeUnit.SECONDS)
+      .build();
+
+    Thread[] producers = new Thread[4];
+    for (int p = 0; p < producers.length; p++) {
+      producers[p] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          handler.end(context, newSpan("foo"), Cause.FINISHED);
+        }
+      });
+      producers[p].start();
+    }
+    for (Thread producer : producers) producer.join();
+    handler.close();
+
+    assertThat(handler.droppedSpans()).isZero();
+    assertThat(spans).hasSize(4000);
+  }
+
+  @Test void queueSize_roundsUpToPowerOfTwo() {
+    assertThat(new AsyncSpanHandler.SpanQueue(1).capacity()).isEqualTo(2);
+    assertThat(new AsyncSpanHandler.SpanQueue(2).capacity()).isEqualTo(2);
+    assertThat(new AsyncSpanHandler.SpanQueue(3).capacity()).isEqualTo(4);
+    assertThat(new AsyncSpanHandler.SpanQueue(1000).capacity()).isEqualTo(1024);
+  }
+
+  @Test void queueSize_mustBePositive() {
+    assertThatThrownBy(() -> AsyncSpanHandler.newBuilder(delegate).queueSize(0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  static MutableSpan newSpan(String name) {
+    MutableSpan span = new MutableSpan();
+    span.name(name);
+    return span;
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Tags;
+import brave.handler.SpanHandler.Cause;
+import brave.propagation.TraceContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSpoolSpanHandlerTest {
+  TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true).build();
+  List<List<String>> segments = new ArrayList<>();
+  FileSpoolSpanHandler.SegmentConsumer consumer = spans -> {
+    segments.add(decode(spans));
+    return true;
+  };
+
+  @TempDir File directory;
+  FileSpoolSpanHandler handler;
+
+  @AfterEach void close() {
+    if (handler != null) handler.close();
+  }
+
+  @Test void drain_returnsSpansInOrder() throws IOException {
+    handler = newBuilder().build();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(handler.end(context, newSpan("span" + i), Cause.FINISHED)).isTrue();
+    }
+
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).containsExactly(
+      asList(json("span0"), json("span1"), json("span2"))
+    );
+    assertThat(handler.spooledSpans()).isEqualTo(3);
+    assertThat(handler.droppedSpans()).isZero();
+    assertThat(directory.list()).hasSize(1); // only the new active segment
+
+    // nothing more to drain
+    assertThat(handler.drain(consumer)).isZero();
+  }
+
+  @Test void drain_readsActiveSegmentWithoutSealing() throws IOException {
+    handler = newBuilder().build();
+    String[] files = directory.list();
+
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    handler.end(context, newSpan("span1"), Cause.FINISHED);
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+
+    assertThat(segments).containsExactly(asList(json("span0")), asList(json("span1")));
+    assertThat(directory.list()).containsExactly(files);
+  }
+
+  @Test void drain_sealedWhileDrainingActive() throws IOException {
+    int spanSize = json("span0").length() + FileSpoolSpanHandler.LENGTH_PREFIX_SIZE;
+    handler = newBuilder()
+      .segmentSize(FileSpoolSpanHandler.HEADER_SIZE + spanSize * 2)
+      .build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+
+    assertThat(handler.drain(spans -> {
+      consumer.accept(spans);
+      // fills and seals the segment being drained
+      handler.end(context, newSpan("span1"), Cause.FINISHED);
+      handler.end(context, newSpan("span2"), Cause.FINISHED);
+      return true;
+    })).isEqualTo(1);
+
+    assertThat(handler.drain(consumer)).isEqualTo(2);
+    assertThat(segments).containsExactly(
+      asList(json("span0")),
+      asList(json("span1")),
+      asList(json("span2"))
+    );
+  }
+
+  /** Async senders read spans after the segment was unmapped. */
+  @Test void drain_spansOutliveSegment() throws IOException {
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+    List<ByteBuffer> retained = new ArrayList<>();
+
+    assertThat(handler.drain(retained::addAll)).isEqualTo(1);
+    handler.close(); // unmaps the active segment
+
+    assertThat(decode(retained)).containsExactly(json("span0"));
+    assertThat(retained.get(0).isReadOnly()).isTrue();
+  }
+
+  @Test void drain_doesntSealEmptySegment() throws IOException {
+    handler = newBuilder().build();
+
+    assertThat(handler.drain(consumer)).isZero();
+    assertThat(segments).isEmpty();
+    assertThat(directory.list()).hasSize(1);
+  }
+
+  @Test void end_rotatesWhenSegmentIsFull() throws IOException {
+    int spanSize = json("span0").length() + FileSpoolSpanHandler.LENGTH_PREFIX_SIZE;
+    handler = newBuilder()
+      .segmentSize(FileSpoolSpanHandler.HEADER_SIZE + spanSize * 2)
+      .build();
+
+    for (int i = 0; i < 5; i++) {
+      handler.end(context, newSpan("span" + i), Cause.FINISHED);
+    }
+
+    assertThat(handler.drain(consumer)).isEqualTo(3);
+    assertThat(segments).containsExactly(
+      asList(json("span0"), json("span1")),
+      asList(json("span2"), json("span3")),
+      asList(json("span4"))
+    );
+  }
+
+  @Test void end_dropsWhenMaxBytesExceeded() throws IOException {
+    int spanSize = json("span0").length() + FileSpoolSpanHandler.LENGTH_PREFIX_SIZE;
+    int segmentSize = FileSpoolSpanHandler.HEADER_SIZE + spanSize;
+    handler = newBuilder().segmentSize(segmentSize).maxBytes(segmentSize * 2).build();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(handler.end(context, newSpan("span" + i), Cause.FINISHED)).isTrue();
+    }
+
+    assertThat(handler.spooledSpans()).isEqualTo(2);
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+
+    // draining makes room again
+    assertThat(handler.drain(consumer)).isEqualTo(2);
+    handler.end(context, newSpan("span3"), Cause.FINISHED);
+    assertThat(handler.spooledSpans()).isEqualTo(3);
+  }
+
+  @Test void end_dropsSpanLargerThanSegment() throws IOException {
+    handler = newBuilder().segmentSize(128).build();
+
+    MutableSpan span = newSpan("span0");
+    span.tag("big", new String(new char[200]).replace('\0', 'a'));
+    handler.end(context, span, Cause.FINISHED);
+    handler.end(context, newSpan("span1"), Cause.FINISHED);
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).containsExactly(asList(json("span1")));
+  }
+
+  @Test void end_dropsAfterClose() throws IOException {
+    handler = newBuilder().build();
+    handler.close();
+
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+  }
+
+  @Test void drain_stopsWhenConsumerRejects() throws IOException {
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+
+    assertThat(handler.drain(spans -> false)).isZero();
+
+    // the segment remains for the next attempt
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).containsExactly(asList(json("span0")));
+  }
+
+  @Test void build_recoversSegmentsFromPriorProcess() throws IOException {
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+    handler.end(context, newSpan("span1"), Cause.FINISHED);
+    handler.close();
+
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span2"), Cause.FINISHED);
+
+    assertThat(handler.drain(consumer)).isEqualTo(2);
+    assertThat(segments).containsExactly(
+      asList(json("span0"), json("span1")),
+      asList(json("span2"))
+    );
+  }
+
+  @Test void build_skipsSpansDrainedByPriorProcess() throws IOException {
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+    handler.drain(consumer);
+    handler.end(context, newSpan("span1"), Cause.FINISHED);
+    handler.close();
+
+    handler = newBuilder().build();
+
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).containsExactly(asList(json("span0")), asList(json("span1")));
+  }
+
+  @Test void build_recoveryStopsAtTornWrite() throws IOException {
+    handler = newBuilder().build();
+    handler.end(context, newSpan("span0"), Cause.FINISHED);
+    handler.close();
+
+    // simulate a crash after the span was written, but before its length was
+    File segment = directory.listFiles()[0];
+    int next = FileSpoolSpanHandler.HEADER_SIZE
+      + FileSpoolSpanHandler.LENGTH_PREFIX_SIZE + json("span0").length();
+    try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+      raf.seek(next + FileSpoolSpanHandler.LENGTH_PREFIX_SIZE);
+      raf.write(json("span1").getBytes(StandardCharsets.UTF_8));
+    }
+
+    handler = newBuilder().build();
+
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).containsExactly(asList(json("span0")));
+  }
+
+  @Test void build_deletesUnreadableSegments() throws IOException {
+    assertThat(new File(directory, "0000000000000000000.spool").createNewFile()).isTrue();
+    assertThat(new File(directory, "other.txt").createNewFile()).isTrue();
+
+    handler = newBuilder().build();
+
+    assertThat(handler.drain(consumer)).isEqualTo(1);
+    assertThat(segments).isEmpty(); // nothing to consume
+    assertThat(directory.list())
+      .containsExactlyInAnyOrder("0000000000000000001.spool", "other.txt");
+  }
+
+  @Test void build_createsDirectory() throws IOException {
+    directory = new File(directory, "spool");
+    handler = newBuilder().build();
+
+    assertThat(directory).isDirectory();
+  }
+
+  @Test void builder_validatesArgs() {
+    assertThatThrownBy(() -> FileSpoolSpanHandler.newBuilder(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("directory == null");
+    assertThatThrownBy(() -> newBuilder().encoder(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("encoder == null");
+    assertThatThrownBy(() -> newBuilder().segmentSize(63))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("segmentSize < 64");
+    assertThatThrownBy(() -> newBuilder().maxBytes(0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("maxBytes <= 0");
+  }
+
+  @Test void segmentFile_parseSequence() {
+    handler = new FileSpoolSpanHandler(newBuilder());
+
+    File file = handler.segmentFile(123L);
+    assertThat(file.getName()).isEqualTo("0000000000000000123.spool");
+    assertThat(FileSpoolSpanHandler.parseSequence(file.getName())).isEqualTo(123L);
+    assertThat(handler.segmentFile(Long.MAX_VALUE).getName())
+      .isEqualTo(Long.MAX_VALUE + ".spool");
+    assertThat(FileSpoolSpanHandler.parseSequence("000000000000000012a.spool")).isEqualTo(-1L);
+    assertThat(FileSpoolSpanHandler.parseSequence("123.spool")).isEqualTo(-1L);
+  }
+
+  FileSpoolSpanHandler.Builder newBuilder() {
+    return FileSpoolSpanHandler.newBuilder(directory)
+      .encoder(MutableSpanBytesEncoder.zipkinJsonV2(Tags.ERROR));
+  }
+
+  static MutableSpan newSpan(String name) {
+    MutableSpan span = new MutableSpan();
+    span.traceId("1");
+    span.id("2");
+    span.name(name);
+    return span;
+  }
+
+  static String json(String name) {
+    return newSpan(name).toString();
+  }
+
+  static List<String> asList(String... spans) {
+    List<String> result = new ArrayList<>();
+    for (String span : spans) result.add(span);
+    return result;
+  }
+
+  static List<String> decode(List<ByteBuffer> spans) {
+    List<String> result = new ArrayList<>();
+    for (ByteBuffer span : spans) {
+      byte[] bytes = new byte[span.remaining()];
+      span.get(bytes);
+      result.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+    return result;
+  }
+}
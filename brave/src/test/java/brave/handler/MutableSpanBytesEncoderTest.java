@@ -6,11 +6,16 @@ package brave.handler;
 
 import brave.Span.Kind;
 import brave.Tags;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * This test is intentionally sensitive to ensure our custom encoders do not break in subtle ways.
@@ -25,6 +30,7 @@ class MutableSpanBytesEncoderTest {
       utf8Span = new MutableSpan();
 
   MutableSpanBytesEncoder encoder = MutableSpanBytesEncoder.zipkinJsonV2(Tags.ERROR);
+  MutableSpanBytesEncoder proto3 = MutableSpanBytesEncoder.zipkinProto3(Tags.ERROR);
 
   @BeforeEach void testData() {
     clientSpan.traceId("7180c278b62e8f6a216a2aea45d08fc9");
@@ -173,4 +179,173 @@ class MutableSpanBytesEncoderTest {
         .isEqualTo(
             "{\"traceId\":\"dc955a1d4768875d\",\"id\":\"dc955a1d4768875d\",\"kind\":\"SERVER\",\"name\":\"get\",\"timestamp\":1510256710021866,\"duration\":1117,\"localEndpoint\":{\"serviceName\":\"isao01\",\"ipv4\":\"10.23.14.72\"},\"tags\":{\"http.path\":\"/rs/A\",\"location\":\"T67792\",\"other\":\"A\"},\"shared\":true}");
   }
+
+  @Test void span_minimum_PROTO3() {
+    MutableSpan span = new MutableSpan();
+    span.traceId("7180c278b62e8f6a216a2aea45d08fc9");
+    span.id("5b4185666d50f68b");
+
+    assertThat(hex(proto3.encode(span)))
+        .isEqualTo("0a1c" // ListOfSpans.spans
+            + "0a107180c278b62e8f6a216a2aea45d08fc9" // trace_id
+            + "1a085b4185666d50f68b"); // id
+  }
+
+  @Test void span_allFields_PROTO3() {
+    MutableSpan span = new MutableSpan();
+    span.traceId("7180c278b62e8f6a216a2aea45d08fc9");
+    span.id("5b4185666d50f68b");
+    span.kind(Kind.SERVER);
+    span.name("get");
+    span.startTimestamp(1L);
+    span.finishTimestamp(3L);
+    span.localServiceName("a");
+    span.localIp("1.2.3.4");
+    span.localPort(80);
+    span.annotate(1L, "x");
+    span.tag("k", "v");
+    span.setShared();
+
+    assertThat(hex(proto3.encode(span)))
+        .isEqualTo("0a53" // ListOfSpans.spans
+            + "0a107180c278b62e8f6a216a2aea45d08fc9" // trace_id
+            + "1a085b4185666d50f68b" // id
+            + "2002" // kind
+            + "2a03676574" // name
+            + "310100000000000000" // timestamp
+            + "3802" // duration
+            + "420b" + "0a0161" + "120401020304" + "2050" // local_endpoint
+            + "520c" + "090100000000000000" + "120178" // annotations
+            + "5a06" + "0a016b" + "120176" // tags
+            + "6801"); // shared
+  }
+
+  @Test void ipv6_PROTO3() {
+    MutableSpan span = new MutableSpan();
+    span.remoteIp("2001:db8::c001");
+
+    assertThat(hex(proto3.encode(span)))
+        .isEqualTo("0a14" // ListOfSpans.spans
+            + "4a12" // remote_endpoint
+            + "1a1020010db800000000000000000000c001"); // ipv6
+  }
+
+  @Test void errorTag_PROTO3() {
+    MutableSpan span = new MutableSpan();
+    span.error(new RuntimeException("boom"));
+
+    assertThat(hex(proto3.encode(span)))
+        .isEqualTo("0a0f" // ListOfSpans.spans
+            + "5a0d" + "0a056572726f72" + "1204626f6f6d"); // tags error=boom
+  }
+
+  @Test void sizeInBytes_PROTO3() {
+    for (MutableSpan span : asList(clientSpan, rootServerSpan, localSpan, errorSpan, utf8Span)) {
+      assertThat(proto3.sizeInBytes(span)).isEqualTo(proto3.encode(span).length);
+    }
+  }
+
+  @Test void encodeList_PROTO3() {
+    List<MutableSpan> spans = asList(clientSpan, rootServerSpan, localSpan);
+
+    byte[] expected = concat(
+        proto3.encode(clientSpan), proto3.encode(rootServerSpan), proto3.encode(localSpan));
+    assertThat(proto3.encodeList(spans)).containsExactly(expected);
+
+    byte[] out = new byte[expected.length + 2];
+    assertThat(proto3.encodeList(spans, out, 2)).isEqualTo(expected.length);
+    assertThat(Arrays.copyOfRange(out, 2, out.length)).containsExactly(expected);
+  }
+
+  @Test void encodeList_PROTO3_empty() {
+    assertThat(proto3.encodeList(asList())).isEmpty();
+  }
+
+  @Test void encode_byteBuffer() {
+    for (MutableSpanBytesEncoder encoder : asList(encoder, proto3)) {
+      for (ByteBuffer out : asList(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024))) {
+        out.position(1);
+        int length = encoder.encode(clientSpan, out);
+
+        assertThat(length).isEqualTo(encoder.sizeInBytes(clientSpan));
+        assertThat(out.position()).isEqualTo(1 + length);
+        assertThat(bytes(out, 1, length)).containsExactly(encoder.encode(clientSpan));
+      }
+    }
+  }
+
+  @Test void encodeList_byteBuffer() {
+    List<MutableSpan> spans = asList(clientSpan, rootServerSpan, localSpan);
+    for (MutableSpanBytesEncoder encoder : asList(encoder, proto3)) {
+      for (ByteBuffer out : asList(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024))) {
+        out.position(1);
+        int length = encoder.encodeList(spans, out);
+
+        assertThat(out.position()).isEqualTo(1 + length);
+        assertThat(bytes(out, 1, length)).containsExactly(encoder.encodeList(spans));
+      }
+    }
+  }
+
+  @Test void encode_byteBuffer_overflow() {
+    for (MutableSpanBytesEncoder encoder : asList(encoder, proto3)) {
+      ByteBuffer out = ByteBuffer.allocateDirect(encoder.sizeInBytes(clientSpan) - 1);
+
+      assertThatThrownBy(() -> encoder.encode(clientSpan, out))
+          .isInstanceOf(IndexOutOfBoundsException.class);
+      assertThat(out.position()).isZero();
+    }
+  }
+
+  /** Custom encoders use the default implementation, which copies. */
+  @Test void encode_byteBuffer_default() {
+    MutableSpanBytesEncoder custom = new MutableSpanBytesEncoder() {
+      @Override public int sizeInBytes(MutableSpan input) {
+        return 1;
+      }
+
+      @Override public byte[] encode(MutableSpan input) {
+        return new byte[] {'a'};
+      }
+
+      @Override public byte[] encodeList(List<MutableSpan> input) {
+        return new byte[] {'[', 'a', ']'};
+      }
+
+      @Override public int encodeList(List<MutableSpan> spans, byte[] out, int pos) {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    ByteBuffer out = ByteBuffer.allocate(4);
+    assertThat(custom.encode(clientSpan, out)).isEqualTo(1);
+    assertThat(custom.encodeList(asList(clientSpan), out)).isEqualTo(3);
+    assertThat(out.array()).containsExactly('a', '[', 'a', ']');
+    assertThatThrownBy(() -> custom.encode(clientSpan, out))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  static byte[] bytes(ByteBuffer buffer, int position, int length) {
+    byte[] result = new byte[length];
+    for (int i = 0; i < length; i++) result[i] = buffer.get(position + i);
+    return result;
+  }
+
+  static byte[] concat(byte[]... arrays) {
+    int length = 0;
+    for (byte[] array : arrays) length += array.length;
+    byte[] result = new byte[length];
+    int pos = 0;
+    for (byte[] array : arrays) {
+      System.arraycopy(array, 0, result, pos, array.length);
+      pos += array.length;
+    }
+    return result;
+  }
+
+  static String hex(byte[] bytes) {
+    StringBuilder result = new StringBuilder();
+    for (byte b : bytes) result.append(String.format("%02x", b & 0xff));
+    return result.toString();
+  }
 }
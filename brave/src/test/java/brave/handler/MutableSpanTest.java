@@ -164,9 +164,12 @@ public class MutableSpanTest {
 
     // this shows the copy-constructor copies internal arrays.
     MutableSpan span2 = new MutableSpan(span);
-    assertThat(span2.annotations)
-        .isNotSameAs(span.annotations)
-        .isEqualTo(span.annotations);
+    assertThat(span2.annotationTimestamps)
+        .isNotSameAs(span.annotationTimestamps)
+        .isEqualTo(span.annotationTimestamps);
+    assertThat(span2.annotationValues)
+        .isNotSameAs(span.annotationValues)
+        .isEqualTo(span.annotationValues);
 
     span.annotate(2L, "wr");
     assertThat(span.annotations()).containsExactly(
@@ -203,6 +206,23 @@ public class MutableSpanTest {
     );
   }
 
+  @Test void annotations_growsAndShiftsOnRemove() {
+    MutableSpan span = new MutableSpan();
+    for (int i = 1; i <= 20; i++) {
+      span.annotate(i, String.valueOf(i));
+    }
+    assertThat(span.annotationCount()).isEqualTo(20);
+
+    span.forEachAnnotation((t, v) -> t % 2 == 0 ? v : null);
+
+    assertThat(span.annotationCount()).isEqualTo(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(span.annotationTimestampAt(i)).isEqualTo((i + 1) * 2L);
+      assertThat(span.annotationValueAt(i)).isEqualTo(String.valueOf((i + 1) * 2));
+    }
+    assertThat(span.annotationValues[10]).isNull(); // no leaked references
+  }
+
   /** See {@link #tagValueAt_usageExplained()} */
   @Test void annotationValueAt_usageExplained() {
     TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
@@ -595,7 +615,8 @@ public class MutableSpanTest {
 
     // this shows the copy-constructor copies internal arrays.
     MutableSpan span2 = new MutableSpan(span);
-    assertThat(span2.annotations).isNotSameAs(span.annotations);
+    assertThat(span2.annotationTimestamps).isNotSameAs(span.annotationTimestamps);
+    assertThat(span2.annotationValues).isNotSameAs(span.annotationValues);
     assertThat(span2.tags).isNotSameAs(span.tags);
     assertEqualWithSameHashCode(span, span2);
 
@@ -610,6 +631,65 @@ public class MutableSpanTest {
     assertEqualWithSameHashCode(span, span2);
   }
 
+  @Test void recycleArrays() {
+    for (Supplier<MutableSpan> constructor : PERMUTATIONS) {
+      MutableSpan span = constructor.get();
+      Object[] tags = span.tags;
+      Object[] holder = new Object[3];
+      span.recycleArrays(holder);
+
+      assertThat(span.tags()).isEmpty();
+      assertThat(span.annotations()).isEmpty();
+      if (tags.length > 0) {
+        assertThat(holder[0]).isSameAs(tags);
+        assertThat(tags).containsOnlyNulls();
+      }
+    }
+  }
+
+  /** Ensures a span with recycled arrays is indistinguishable from a new one. */
+  @Test void recycledArraysConstructor() {
+    TraceContext context = TraceContext.newBuilder().traceId(1).spanId(2).debug(true).build();
+    for (Supplier<MutableSpan> defaults : PERMUTATIONS) {
+      MutableSpan span = new MutableSpan();
+      span.name("previous");
+      span.setShared();
+      for (int i = 1; i <= 5; i++) {
+        span.tag("tag" + i, "value");
+        span.annotate(i, "annotation");
+      }
+      Object[] holder = new Object[3];
+      span.recycleArrays(holder);
+
+      MutableSpan recycled = new MutableSpan(context, defaults.get(), holder);
+      assertEqualWithSameHashCode(recycled, new MutableSpan(context, defaults.get()));
+      assertThat(holder).containsOnlyNulls();
+    }
+
+    // this shows the default span's arrays are copied, not shared
+    MutableSpan defaults = new MutableSpan();
+    defaults.tag("env", "prod");
+    MutableSpan span = new MutableSpan(context, defaults, new Object[3]);
+    assertThat(span.tags).isNotSameAs(defaults.tags);
+  }
+
+  /** A late write to a recycled span must not reach the span reusing its arrays. */
+  @Test void recycleArrays_laterWritesAllocate() {
+    TraceContext context = TraceContext.newBuilder().traceId(1).spanId(2).build();
+    MutableSpan span = new MutableSpan();
+    span.tag("foo", "bar");
+    span.annotate(1L, "baz");
+    Object[] holder = new Object[3];
+    span.recycleArrays(holder);
+    MutableSpan recycled = new MutableSpan(context, new MutableSpan(), holder);
+
+    span.tag("late", "tag");
+    span.annotate(2L, "late");
+
+    assertThat(recycled.tags()).isEmpty();
+    assertThat(recycled.annotations()).isEmpty();
+  }
+
   @Test void contextConstructor() {
     TraceContext context = TraceContext.newBuilder().traceId(1).spanId(2).build();
     MutableSpan span = new MutableSpan();
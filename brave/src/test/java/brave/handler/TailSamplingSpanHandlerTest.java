@@ -0,0 +1,331 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.handler.SpanHandler.Cause;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TailSamplingSpanHandlerTest {
+  List<String> spans = new ArrayList<>();
+  SpanHandler delegate = new SpanHandler() {
+    @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+      spans.add(span.name());
+      return true;
+    }
+  };
+
+  TailSamplingSpanHandler handler;
+  Tracing tracing;
+
+  @AfterEach void close() {
+    if (tracing != null) tracing.close();
+  }
+
+  Tracer tracer(TailSamplingSpanHandler.Builder builder) {
+    handler = builder.build();
+    tracing = Tracing.newBuilder()
+      .sampler(Sampler.NEVER_SAMPLE)
+      .alwaysSampleLocal()
+      .addSpanHandler(handler)
+      .build();
+    return tracing.tracer();
+  }
+
+  @Test void keepsLocalTraceWithError() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate));
+
+    Span root = tracer.nextSpan().name("root").start();
+    tracer.newChild(root.context()).name("child1").start().finish();
+    tracer.newChild(root.context()).name("child2").error(new RuntimeException()).start().finish();
+
+    assertThat(spans).isEmpty(); // buffered until the local root ends
+
+    root.finish();
+
+    assertThat(spans).containsExactly("child1", "child2", "root");
+    assertThat(handler.keptSpans()).isEqualTo(3);
+    assertThat(handler.droppedSpans()).isZero();
+  }
+
+  @Test void dropsLocalTraceWithoutMatch() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate));
+
+    Span root = tracer.nextSpan().name("root").start();
+    tracer.newChild(root.context()).name("child").start().finish();
+    root.finish();
+
+    assertThat(spans).isEmpty();
+    assertThat(handler.droppedSpans()).isEqualTo(2);
+  }
+
+  @Test void keepErrors_disabled() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate).keepErrors(false));
+
+    tracer.nextSpan().name("root").error(new RuntimeException()).start().finish();
+
+    assertThat(spans).isEmpty();
+  }
+
+  @Test void latencyThreshold() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .latencyThreshold(1, TimeUnit.SECONDS));
+
+    tracer.nextSpan().name("fast").start(1_000_000L).finish(1_999_999L);
+    tracer.nextSpan().name("slow").start(1_000_000L).finish(2_000_000L);
+
+    assertThat(spans).containsExactly("slow");
+  }
+
+  @Test void keepTag() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .keepTag("http.status_code", "503")
+      .keepTag("debug.user", null));
+
+    Span root = tracer.nextSpan().name("matchesValue").start();
+    tracer.newChild(root.context()).name("child").tag("http.status_code", "503").start().finish();
+    root.finish();
+    tracer.nextSpan().name("wrongValue").tag("http.status_code", "200").start().finish();
+    tracer.nextSpan().name("anyValue").tag("debug.user", "alice").start().finish();
+
+    assertThat(spans).containsExactly("child", "matchesValue", "anyValue");
+  }
+
+  @Test void addPolicy() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .addPolicy((localRoot, spans) -> spans.size() > 1));
+
+    Span root = tracer.nextSpan().name("root").start();
+    tracer.newChild(root.context()).name("child").start().finish();
+    root.finish();
+    tracer.nextSpan().name("alone").start().finish();
+
+    assertThat(spans).containsExactly("child", "root");
+  }
+
+  @Test void policyErrorDoesntKeep() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .addPolicy((localRoot, spans) -> {
+        throw new IllegalStateException();
+      })
+      .keepTag("foo", null));
+
+    tracer.nextSpan().name("root").tag("foo", "bar").start().finish();
+
+    assertThat(spans).containsExactly("root");
+  }
+
+  @Test void lateSpansFollowLocalRootDecision() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate).keepTag("keep", null));
+
+    Span kept = tracer.nextSpan().name("kept").tag("keep", "").start();
+    Span keptChild = tracer.newChild(kept.context()).name("keptChild").start();
+    Span dropped = tracer.nextSpan().name("dropped").start();
+    Span droppedChild = tracer.newChild(dropped.context()).name("droppedChild").start();
+    kept.finish();
+    dropped.finish();
+
+    keptChild.finish();
+    droppedChild.finish();
+
+    assertThat(spans).containsExactly("kept", "keptChild");
+    assertThat(handler.droppedSpans()).isEqualTo(2);
+  }
+
+  /** Spans ending while the local root is decided must not start a new, never flushed buffer. */
+  @Test void spansEndingWhileDecidingFollowDecision() {
+    Span[] child = new Span[1];
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .addPolicy((localRoot, spans) -> {
+        Thread thread = new Thread(() -> child[0].finish());
+        thread.start();
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return true;
+      }));
+
+    Span root = tracer.nextSpan().name("root").start();
+    child[0] = tracer.newChild(root.context()).name("child").start();
+    root.finish();
+
+    assertThat(spans).containsExactly("root", "child");
+    assertThat(handler.buffered).isEmpty();
+    assertThat(handler.keptSpans()).isEqualTo(2);
+  }
+
+  @Test void spansEndingConcurrentlyWithLocalRoot() throws Exception {
+    List<String> names = Collections.synchronizedList(new ArrayList<>());
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(new SpanHandler() {
+      @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        names.add(span.name());
+        return true;
+      }
+    }).keepTag("keep", null));
+
+    int traces = 200, childrenPerTrace = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(childrenPerTrace);
+    try {
+      for (int i = 0; i < traces; i++) {
+        Span root = tracer.nextSpan().name("root").tag("keep", "").start();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> children = new ArrayList<>();
+        for (int j = 0; j < childrenPerTrace; j++) {
+          Span child = tracer.newChild(root.context()).name("child").start();
+          children.add(executor.submit(() -> {
+            start.await();
+            child.finish();
+            return null;
+          }));
+        }
+        start.countDown();
+        root.finish();
+        for (Future<?> future : children) future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(names).hasSize(traces * (1 + childrenPerTrace));
+    assertThat(handler.droppedSpans()).isZero();
+    assertThat(handler.buffered).isEmpty();
+  }
+
+  @Test void sampledSpansPassThrough() {
+    handler = TailSamplingSpanHandler.newBuilder(delegate).build();
+    tracing = Tracing.newBuilder().addSpanHandler(handler).build();
+
+    Span root = tracing.tracer().nextSpan().name("root").start();
+    tracing.tracer().newChild(root.context()).name("child").start().finish();
+
+    assertThat(spans).containsExactly("child");
+  }
+
+  @Test void maxBufferedBytes_dropsOldestLocalTraces() {
+    MutableSpan child = new MutableSpan();
+    child.name("child");
+    long childSize = TailSamplingSpanHandler.sizeInBytes(child);
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .keepTag("keep", null)
+      .maxBufferedBytes(childSize * 2));
+
+    Span oldest = tracer.nextSpan().name("oldest").tag("keep", "").start();
+    tracer.newChild(oldest.context()).name("child").start().finish();
+    Span newest = tracer.nextSpan().name("newest").tag("keep", "").start();
+    tracer.newChild(newest.context()).name("child").start().finish();
+    tracer.newChild(newest.context()).name("child").start().finish();
+
+    assertThat(handler.droppedSpans()).isEqualTo(1);
+    assertThat(handler.bufferedBytes).isEqualTo(childSize * 2);
+
+    oldest.finish(); // dropped, as the local trace would be partial
+    newest.finish();
+
+    assertThat(spans).containsExactly("child", "child", "newest");
+    assertThat(handler.droppedSpans()).isEqualTo(2);
+    assertThat(handler.bufferedBytes).isZero();
+  }
+
+  @Test void maxDecisions() {
+    Tracer tracer = tracer(TailSamplingSpanHandler.newBuilder(delegate)
+      .keepTag("keep", null)
+      .maxDecisions(1));
+
+    Span first = tracer.nextSpan().name("first").tag("keep", "").start();
+    Span firstChild = tracer.newChild(first.context()).name("firstChild").start();
+    first.finish();
+    tracer.nextSpan().name("second").start().finish();
+
+    firstChild.finish(); // the decision is forgotten, so this is buffered
+
+    assertThat(spans).containsExactly("first");
+    assertThat(handler.buffered).hasSize(1);
+  }
+
+  @Test void delegateErrorDoesntBreakLocalTrace() {
+    List<String> names = new ArrayList<>();
+    handler = TailSamplingSpanHandler.newBuilder(new SpanHandler() {
+      @Override public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        names.add(span.name());
+        throw new IllegalStateException();
+      }
+    }).keepTag("keep", null).build();
+    tracing = Tracing.newBuilder()
+      .sampler(Sampler.NEVER_SAMPLE)
+      .alwaysSampleLocal()
+      .addSpanHandler(handler)
+      .build();
+
+    Span root = tracing.tracer().nextSpan().name("root").tag("keep", "").start();
+    tracing.tracer().newChild(root.context()).name("child").start().finish();
+    root.finish();
+
+    assertThat(names).containsExactly("child", "root");
+  }
+
+  @Test void notFromTracer_isItsOwnLocalTrace() {
+    handler = TailSamplingSpanHandler.newBuilder(delegate).build();
+    TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+    MutableSpan span = new MutableSpan(context, null);
+    span.name("external");
+    span.error(new RuntimeException());
+
+    assertThat(handler.end(context, span, Cause.FINISHED)).isTrue();
+
+    assertThat(spans).containsExactly("external");
+  }
+
+  @Test void sizeInBytes_countsStrings() {
+    MutableSpan span = new MutableSpan();
+    long empty = TailSamplingSpanHandler.sizeInBytes(span);
+
+    span.name("abc");
+    span.tag("k", "v");
+    span.annotate(1L, "a");
+
+    assertThat(TailSamplingSpanHandler.sizeInBytes(span))
+      .isEqualTo(empty + (40 + 6) + (40 + 2) * 2 + 16 + (40 + 2));
+  }
+
+  @Test void builder_validatesArgs() {
+    assertThatThrownBy(() -> TailSamplingSpanHandler.newBuilder(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("delegate == null");
+    TailSamplingSpanHandler.Builder builder = TailSamplingSpanHandler.newBuilder(delegate);
+    assertThatThrownBy(() -> builder.latencyThreshold(-1, TimeUnit.SECONDS))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("threshold < 0");
+    assertThatThrownBy(() -> builder.keepTag(null, "v"))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("key == null");
+    assertThatThrownBy(() -> builder.addPolicy(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("policy == null");
+    assertThatThrownBy(() -> builder.maxBufferedBytes(0))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("maxBufferedBytes <= 0");
+    assertThatThrownBy(() -> builder.maxDecisions(-1))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("maxDecisions < 0");
+  }
+}
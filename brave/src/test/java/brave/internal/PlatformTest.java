@@ -10,6 +10,7 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -43,6 +44,14 @@ class PlatformTest {
     assertThat(platform.clock()).hasToString("Clock.systemUTC().instant()");
   }
 
+  @Test void unmap() {
+    Platform platform = Platform.get();
+
+    assertThat(platform.unmap(ByteBuffer.allocateDirect(16))).isTrue();
+    assertThat(platform.unmap(ByteBuffer.allocateDirect(16).duplicate())).isFalse();
+    assertThat(platform.unmap(ByteBuffer.allocate(16))).isFalse();
+  }
+
   // example from X-Amzn-Trace-Id: Root=1-5759e988-bd862e3fe1be46a994272793;Sampled=1
   @Test void randomLong_epochSecondsPlusRandom() {
     Platform platform = new Platform.Jre7() {
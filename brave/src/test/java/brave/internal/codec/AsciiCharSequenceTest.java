@@ -0,0 +1,38 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.codec;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsciiCharSequenceTest {
+  byte[] bytes = "b3=1-2".getBytes(UTF_8);
+
+  @Test void readsRange() {
+    AsciiCharSequence value = new AsciiCharSequence(bytes, 3, bytes.length);
+
+    assertThat(value.length()).isEqualTo(3);
+    assertThat(value.charAt(0)).isEqualTo('1');
+    assertThat(value.subSequence(2, 3)).hasToString("2");
+    assertThat(value).hasToString("1-2");
+  }
+
+  @Test void nonAscii_isntLetterOrDigit() {
+    AsciiCharSequence value = new AsciiCharSequence("é".getBytes(UTF_8));
+
+    assertThat(value.charAt(0)).isGreaterThan('\u007f');
+    assertThat(value).hasToString("é"); // decoded for logging
+  }
+
+  @Test void checksBounds() {
+    assertThatThrownBy(() -> new AsciiCharSequence(bytes, 3, bytes.length + 1))
+      .isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> new AsciiCharSequence(bytes, 3, 6).charAt(3))
+      .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+}
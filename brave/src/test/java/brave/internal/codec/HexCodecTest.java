@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import static brave.internal.codec.HexCodec.lenientLowerHexToUnsignedLong;
 import static brave.internal.codec.HexCodec.lowerHexToUnsignedLong;
 import static brave.internal.codec.HexCodec.toLowerHex;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
@@ -33,6 +34,20 @@ class HexCodecTest {
     assertThat(lenientLowerHexToUnsignedLong(sequence, 2, 2 + encoded.length()))
       .isEqualTo(lowerHexToUnsignedLong(encoded))
       .isEqualTo(Long.parseUnsignedLong(encoded, 16));
+    assertThat(lenientLowerHexToUnsignedLong(ascii(sequence), 2, 2 + encoded.length()))
+      .isEqualTo(Long.parseUnsignedLong(encoded, 16));
+  }
+
+  @Test void lenientLowerHexToUnsignedLong_ascii_invalid() {
+    assertThat(lenientLowerHexToUnsignedLong(ascii("123G"), 0, 4)).isZero();
+    assertThat(lenientLowerHexToUnsignedLong(ascii("123A"), 0, 4)).isZero();
+    assertThat(lenientLowerHexToUnsignedLong(ascii("12/3"), 0, 4)).isZero();
+    assertThat(lenientLowerHexToUnsignedLong(new AsciiCharSequence(new byte[] {'1', (byte) 0xc3}),
+      0, 2)).isZero();
+  }
+
+  static CharSequence ascii(String value) {
+    return new AsciiCharSequence(value.getBytes(UTF_8));
   }
 
   @Test void lowerHexToUnsignedLongTest() {
@@ -4,9 +4,12 @@
  */
 package brave.internal.codec;
 
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.jupiter.api.Test;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class JsonWriterTest {
@@ -59,4 +62,97 @@ class JsonWriterTest {
         .isInstanceOf(AssertionError.class)
         .hasMessage("Bug found using FooWriter to write Foo as json. Wrote 2/2 bytes: ab");
   }
+
+  /** Writes the input string, but fails if asked to size it. */
+  static final WriteBuffer.Writer<String> UNSIZED_WRITER = new WriteBuffer.Writer<String>() {
+    @Override public int sizeInBytes(String value) {
+      if (value.length() < JsonWriter.MAX_SCRATCH_SIZE) throw new AssertionError("sized!");
+      return value.length();
+    }
+
+    @Override public void write(String value, WriteBuffer buffer) {
+      buffer.writeAscii(value);
+    }
+  };
+
+  @Test void writeSinglePass() {
+    assertThat(JsonWriter.writeSinglePass(UNSIZED_WRITER, "foo"))
+        .containsExactly('f', 'o', 'o');
+  }
+
+  @Test void writeSinglePass_grows() {
+    String large = repeat('a', JsonWriter.INITIAL_SCRATCH_SIZE * 4 + 1);
+
+    assertThat(new String(JsonWriter.writeSinglePass(UNSIZED_WRITER, large), UTF_8))
+        .isEqualTo(large);
+    assertThat(JsonWriter.SCRATCH.get()[0]).hasSize(JsonWriter.INITIAL_SCRATCH_SIZE * 8);
+  }
+
+  @Test void writeSinglePass_fallsBackToSizingWhenTooLarge() {
+    String huge = repeat('a', JsonWriter.MAX_SCRATCH_SIZE + 1);
+
+    assertThat(new String(JsonWriter.writeSinglePass(UNSIZED_WRITER, huge), UTF_8))
+        .isEqualTo(huge);
+    assertThat(JsonWriter.SCRATCH.get()[0]).hasSize(JsonWriter.MAX_SCRATCH_SIZE);
+  }
+
+  @Test void writeListSinglePass() {
+    assertThat(new String(
+        JsonWriter.writeListSinglePass(UNSIZED_WRITER, Arrays.asList("\"a\"", "\"b\"")), UTF_8))
+        .isEqualTo("[\"a\",\"b\"]");
+    assertThat(JsonWriter.writeListSinglePass(UNSIZED_WRITER, Collections.emptyList()))
+        .containsExactly('[', ']');
+  }
+
+  /**
+   * Ensures a writer that calls toString on the same thread doesn't corrupt the buffer. The nested
+   * call falls back to sizing.
+   */
+  @Test void writeSinglePass_reentrant() {
+    WriteBuffer.Writer<String> sized = new WriteBuffer.Writer<String>() {
+      @Override public int sizeInBytes(String value) {
+        return value.length();
+      }
+
+      @Override public void write(String value, WriteBuffer buffer) {
+        buffer.writeAscii(value);
+      }
+    };
+    WriteBuffer.Writer<String> nested = new WriteBuffer.Writer<String>() {
+      @Override public int sizeInBytes(String value) {
+        throw new AssertionError("sized!");
+      }
+
+      @Override public void write(String value, WriteBuffer buffer) {
+        buffer.writeAscii(new String(JsonWriter.writeSinglePass(sized, "inner"), UTF_8));
+        buffer.writeAscii(value);
+      }
+    };
+
+    assertThat(new String(JsonWriter.writeSinglePass(nested, "outer"), UTF_8))
+        .isEqualTo("innerouter");
+  }
+
+  @Test void writeSinglePass_reportsBugsViaSizing() {
+    class FooWriter implements WriteBuffer.Writer<Object> {
+      @Override public int sizeInBytes(Object value) {
+        return 2;
+      }
+
+      @Override public void write(Object value, WriteBuffer buffer) {
+        buffer.writeByte('a');
+        throw new RuntimeException("buggy");
+      }
+    }
+
+    assertThatThrownBy(() -> JsonWriter.writeSinglePass(new FooWriter(), "foo"))
+        .isInstanceOf(AssertionError.class)
+        .hasMessage("Bug found using FooWriter to write String as json. Wrote 1/2 bytes: a");
+  }
+
+  static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
 }
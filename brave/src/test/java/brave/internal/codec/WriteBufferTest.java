@@ -4,11 +4,13 @@
  */
 package brave.internal.codec;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 // Originally a subset of zipkin2.internal.WriteBuffer
 class WriteBufferTest {
@@ -143,4 +145,71 @@ class WriteBufferTest {
     WriteBuffer.wrap(bytes).writeAscii(string);
     assertThat(new String(bytes, UTF_8)).isEqualTo(string);
   }
+
+  @Test void writeVarint() {
+    for (long v : Arrays.asList(0L, 1L, 127L, 128L, 16383L, 16384L, Long.MAX_VALUE, -1L)) {
+      byte[] bytes = new byte[10];
+      WriteBuffer buffer = WriteBuffer.wrap(bytes);
+      buffer.writeVarint(v);
+      assertThat(buffer.pos()).isEqualTo(WriteBuffer.varintSizeInBytes(v));
+    }
+    for (int v : Arrays.asList(0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE)) {
+      byte[] bytes = new byte[5];
+      WriteBuffer buffer = WriteBuffer.wrap(bytes);
+      buffer.writeVarint(v);
+      assertThat(buffer.pos()).isEqualTo(WriteBuffer.varintSizeInBytes(v));
+    }
+
+    byte[] bytes = new byte[2];
+    WriteBuffer.wrap(bytes).writeVarint(300);
+    assertThat(bytes).containsExactly(0xac, 0x02);
+  }
+
+  @Test void writeLongLe() {
+    byte[] bytes = new byte[8];
+    WriteBuffer.wrap(bytes).writeLongLe(0x0102030405060708L);
+    assertThat(bytes).containsExactly(0x08, 0x07, 0x06, 0x05, 0x04, 0x03, 0x02, 0x01);
+  }
+
+  @Test void wrapByteBuffer_heap() {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.position(2);
+    ByteBuffer slice = buffer.slice(); // non-zero array offset
+
+    WriteBuffer b = WriteBuffer.wrap(slice);
+    assertThat(b.buf).isSameAs(buffer.array());
+    b.writeAscii(1234L);
+    b.syncPosition();
+
+    assertThat(slice.position()).isEqualTo(4);
+    assertThat(Arrays.copyOfRange(buffer.array(), 2, 6)).containsExactly('1', '2', '3', '4');
+  }
+
+  @Test void wrapByteBuffer_direct() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+    buffer.position(2);
+
+    WriteBuffer b = WriteBuffer.wrap(buffer);
+    assertThat(b.buf).isNull();
+    b.writeAscii(1234L);
+    b.syncPosition();
+
+    assertThat(buffer.position()).isEqualTo(6);
+    buffer.flip().position(2);
+    byte[] bytes = new byte[4];
+    buffer.get(bytes);
+    assertThat(bytes).containsExactly('1', '2', '3', '4');
+  }
+
+  /** The array can't be written directly when that could write past the limit. */
+  @Test void wrapByteBuffer_heapRespectsLimit() {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.limit(2);
+
+    WriteBuffer b = WriteBuffer.wrap(buffer);
+    assertThat(b.buf).isNull();
+    b.writeByte('a');
+    b.writeByte('b');
+    assertThatThrownBy(() -> b.writeByte('c')).isInstanceOf(IndexOutOfBoundsException.class);
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.codec;
+
+import brave.Tags;
+import brave.handler.MutableSpan;
+import brave.handler.MutableSpanTest;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZipkinProto3WriterTest {
+  ZipkinProto3Writer writer = new ZipkinProto3Writer(Tags.ERROR);
+
+  @Test void sizeInBytes_matchesWrite() {
+    for (Supplier<MutableSpan> constructor : MutableSpanTest.PERMUTATIONS) {
+      MutableSpan span = constructor.get();
+      byte[] bytes = new byte[writer.sizeInBytes(span)];
+      WriteBuffer buffer = WriteBuffer.wrap(bytes);
+      writer.write(span, buffer);
+      assertThat(buffer.pos()).isEqualTo(bytes.length);
+    }
+  }
+
+  @Test void isValidIpv6() {
+    assertThat(ZipkinProto3Writer.isValidIpv6("2001:db8::c001")).isTrue();
+    assertThat(ZipkinProto3Writer.isValidIpv6("::1")).isTrue();
+    assertThat(ZipkinProto3Writer.isValidIpv6("::")).isTrue();
+    assertThat(ZipkinProto3Writer.isValidIpv6("fe80::")).isTrue();
+    assertThat(ZipkinProto3Writer.isValidIpv6("1:2:3:4:5:6:7:8")).isTrue();
+    assertThat(ZipkinProto3Writer.isValidIpv6("1:2:3:4:5:6:7")).isFalse();
+    assertThat(ZipkinProto3Writer.isValidIpv6("1:2:3:4::5:6:7:8")).isFalse();
+    assertThat(ZipkinProto3Writer.isValidIpv6("1::2::3")).isFalse();
+    assertThat(ZipkinProto3Writer.isValidIpv6(":::1")).isFalse();
+    assertThat(ZipkinProto3Writer.isValidIpv6("12345::")).isFalse();
+  }
+
+  @Test void writeIpv6() {
+    assertThat(ipv6("::1")).containsExactly(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+    assertThat(ipv6("FE80::"))
+      .containsExactly(0xfe, 0x80, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    assertThat(ipv6("1:2:3:4:5:6:7:8"))
+      .containsExactly(0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0, 7, 0, 8);
+  }
+
+  static byte[] ipv6(String ip) {
+    byte[] bytes = new byte[16];
+    WriteBuffer buffer = WriteBuffer.wrap(bytes);
+    ZipkinProto3Writer.writeIpv6(ip, buffer);
+    assertThat(buffer.pos()).isEqualTo(16);
+    return bytes;
+  }
+}
@@ -113,6 +113,19 @@ class NoopAwareSpanHandlerTest {
     verify(three, never()).end(context, span, Cause.FINISHED);
   }
 
+  @Test void multiple_referencesSpanAfterEnd() {
+    SpanHandler[] handlers = new SpanHandler[3];
+    handlers[0] = one;
+    handlers[1] = two;
+    handlers[2] = three;
+
+    assertThat(NoopAwareSpanHandler.create(handlers, noop).referencesSpanAfterEnd()).isFalse();
+
+    when(two.referencesSpanAfterEnd()).thenReturn(true);
+
+    assertThat(NoopAwareSpanHandler.create(handlers, noop).referencesSpanAfterEnd()).isTrue();
+  }
+
   @Test void doesntCrashOnNonFatalThrowable() {
     Throwable[] toThrow = new Throwable[1];
     SpanHandler handler =
@@ -0,0 +1,138 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.recorder;
+
+import brave.GarbageCollectors;
+import brave.handler.MutableSpan;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedPendingSpanMapTest {
+  StripedPendingSpanMap map = new StripedPendingSpanMap(2);
+  TickClock clock = new TickClock(Platform.get(), 1L, 0L);
+
+  @Test void putIfProbablyAbsent_returnsExisting() {
+    TraceContext context = newContext(1L, 2L);
+    PendingSpan value = newPendingSpan(context);
+
+    assertThat(map.putIfProbablyAbsent(context, value)).isNull();
+    assertThat(map.putIfProbablyAbsent(context, newPendingSpan(context))).isSameAs(value);
+  }
+
+  @Test void getIfPresent_usesIdsNotIdentity() {
+    TraceContext context = newContext(1L, 2L);
+    PendingSpan value = newPendingSpan(context);
+    map.putIfProbablyAbsent(context, value);
+
+    assertThat(map.getIfPresent(context.toBuilder().build())).isSameAs(value);
+    assertThat(map.getIfPresent(context.toBuilder().shared(true).build())).isNull();
+    assertThat(map.getIfPresent(newContext(1L, 3L))).isNull();
+  }
+
+  @Test void remove() {
+    TraceContext context = newContext(1L, 2L);
+    PendingSpan value = newPendingSpan(context);
+    map.putIfProbablyAbsent(context, value);
+
+    assertThat(map.remove(context)).isSameAs(value);
+    assertThat(map.remove(context)).isNull();
+    assertThat(map.getIfPresent(context)).isNull();
+  }
+
+  @Test void remove_okWhenDoesntExist() {
+    assertThat(map.remove(newContext(1L, 2L))).isNull();
+  }
+
+  /** Exercises resize, tombstones and probing past removed entries. */
+  @Test void manyEntries() {
+    List<TraceContext> contexts = new ArrayList<>();
+    for (int i = 1; i <= 1000; i++) {
+      TraceContext context = newContext(1L, i);
+      contexts.add(context);
+      map.putIfProbablyAbsent(context, newPendingSpan(context));
+    }
+
+    for (int i = 0; i < contexts.size(); i += 2) {
+      assertThat(map.remove(contexts.get(i))).isNotNull();
+    }
+
+    for (int i = 0; i < contexts.size(); i++) {
+      PendingSpan value = map.getIfPresent(contexts.get(i));
+      if (i % 2 == 0) {
+        assertThat(value).isNull();
+      } else {
+        assertThat(value.context()).isSameAs(contexts.get(i));
+      }
+    }
+    assertThat(map.values()).hasSize(500);
+
+    // re-adding reuses tombstones
+    for (int i = 0; i < contexts.size(); i += 2) {
+      TraceContext context = contexts.get(i);
+      assertThat(map.putIfProbablyAbsent(context, newPendingSpan(context))).isNull();
+    }
+    assertThat(map.values()).hasSize(1000);
+  }
+
+  @Test void expungeStaleEntries_removesOrphans() {
+    TraceContext context = newContext(1L, 2L);
+    map.putIfProbablyAbsent(context, newPendingSpan(context));
+    TraceContext context2 = newContext(1L, 3L);
+    map.putIfProbablyAbsent(context2, newPendingSpan(context2));
+
+    context = null; // orphan the first context
+    GarbageCollectors.blockOnGC();
+    map.expungeStaleEntries();
+
+    assertThat(map.values()).extracting(PendingSpan::context).containsExactly(context2);
+  }
+
+  /** Entries aren't expunged on read, so a collected entry must not match the same IDs. */
+  @Test void collectedEntry_doesntMatchBeforeExpunged() {
+    TraceContext context = newContext(1L, 2L);
+    map.putIfProbablyAbsent(context, newPendingSpan(context));
+
+    context = null; // orphan the context
+    GarbageCollectors.blockOnGC();
+
+    TraceContext sameIds = newContext(1L, 2L);
+    assertThat(map.getIfPresent(sameIds)).isNull();
+    assertThat(map.remove(sameIds)).isNull();
+
+    PendingSpan value = newPendingSpan(sameIds);
+    assertThat(map.putIfProbablyAbsent(sameIds, value)).isNull();
+    assertThat(map.getIfPresent(sameIds)).isSameAs(value);
+  }
+
+  @Test void removeStaleEntry_returnsNullWhenAlreadyRemoved() {
+    TraceContext context = newContext(1L, 2L);
+    PendingSpan value = newPendingSpan(context);
+    map.putIfProbablyAbsent(context, value);
+
+    assertThat(map.removeStaleEntry(value)).isSameAs(value);
+    assertThat(map.removeStaleEntry(value)).isNull();
+  }
+
+  @Test void toStringIsKeys() {
+    TraceContext context = newContext(1L, 2L);
+    map.putIfProbablyAbsent(context, newPendingSpan(context));
+
+    assertThat(map).hasToString(
+      "StripedPendingSpanMap[0000000000000001/0000000000000002]");
+  }
+
+  PendingSpan newPendingSpan(TraceContext context) {
+    return new PendingSpan(context, new MutableSpan(), clock, map);
+  }
+
+  static TraceContext newContext(long traceId, long spanId) {
+    return TraceContext.newBuilder().traceId(traceId).spanId(spanId).build();
+  }
+}
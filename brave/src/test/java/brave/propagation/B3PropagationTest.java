@@ -20,6 +20,7 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mockStatic;
@@ -380,7 +381,86 @@ class B3PropagationTest {
     assertThat(factory.hashCode()).isNotEqualTo(B3Propagation.FACTORY.hashCode());
   }
 
+  @Test void bytesExtractor_sameAsExtractor() {
+    Stream.<Map<String, String>>of(
+      headers("b3", traceId + "-" + spanId + "-1-" + parentId),
+      headers("b3", "d"),
+      headers("X-B3-TraceId", traceIdHigh + traceId, "X-B3-SpanId", spanId),
+      headers("X-B3-TraceId", traceId, "X-B3-SpanId", spanId, "X-B3-ParentSpanId", parentId,
+        "X-B3-Sampled", "0"),
+      headers("X-B3-TraceId", traceId, "X-B3-SpanId", spanId, "X-B3-Sampled", "TRUE"),
+      headers("X-B3-TraceId", traceId, "X-B3-SpanId", spanId, "X-B3-Sampled", "False"),
+      headers("X-B3-TraceId", traceId, "X-B3-SpanId", spanId, "X-B3-Flags", "1"),
+      headers("X-B3-Sampled", "1"),
+      headers("X-B3-Flags", "1"),
+      headers()
+    ).forEach(headers -> assertThat(extractBytes(headers))
+      .describedAs(headers.toString())
+      .isEqualTo(extract(headers)));
+  }
+
+  @Test void bytesExtractor_zeros_spanId() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      Map<String, String> headers =
+        headers("X-B3-TraceId", traceId, "X-B3-SpanId", "0000000000000000");
+
+      assertThat(extractBytes(headers)).isSameAs(TraceContextOrSamplingFlags.EMPTY);
+
+      verify(platform).log("Invalid input: spanId was all zeros", null);
+    }
+  }
+
+  @Test void bytesExtractor_notLowerHex() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      Map<String, String> headers =
+        headers("X-B3-TraceId", traceId, "X-B3-SpanId", "000000000000000A");
+
+      assertThat(extractBytes(headers)).isSameAs(TraceContextOrSamplingFlags.EMPTY);
+
+      verify(platform).log("{0} is not a lower-hex string", "000000000000000A", null);
+    }
+  }
+
+  @Test void bytesExtractor_sampledCorrupt() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      Map<String, String> headers = headers("X-B3-TraceId", traceId, "X-B3-SpanId", spanId);
+
+      Stream.of("", "d", "💩", "hello").forEach(sampled -> {
+        headers.put("X-B3-Sampled", sampled);
+        assertThat(extractBytes(headers)).isSameAs(TraceContextOrSamplingFlags.EMPTY);
+
+        verify(platform).log("Invalid input: expected 0 or 1 for X-B3-Sampled, but found '{0}'",
+          sampled, null);
+      });
+    }
+  }
+
+  @Test void bytesExtractor_nullGetter() {
+    assertThatThrownBy(() -> B3Propagation.FACTORY.bytesExtractor(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("getter == null");
+  }
+
+  static Map<String, String> headers(String... keyValues) {
+    Map<String, String> result = new LinkedHashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) result.put(keyValues[i], keyValues[i + 1]);
+    return result;
+  }
+
   TraceContextOrSamplingFlags extract(Map<String, String> headers) {
     return propagation.<Map<String, String>>extractor(Map::get).extract(headers);
   }
+
+  TraceContextOrSamplingFlags extractBytes(Map<String, String> headers) {
+    return B3Propagation.FACTORY.<Map<String, String>>bytesExtractor((request, key) -> {
+      String value = request.get(key);
+      return value != null ? value.getBytes(UTF_8) : null;
+    }).extract(headers);
+  }
 }
@@ -5,6 +5,8 @@
 package brave.propagation;
 
 import brave.internal.Platform;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,6 +20,7 @@ import static brave.propagation.B3SingleFormat.writeB3SingleFormatWithoutParentI
 import static brave.propagation.B3SingleFormat.writeB3SingleFormatWithoutParentIdAsBytes;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.verify;
@@ -115,6 +118,93 @@ class B3SingleFormatTest {
       .isEqualTo(new String(writeB3SingleFormatAsBytes(context), UTF_8));
   }
 
+  @Test void writeB3SingleFormat_cached() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .parentId(Long.parseUnsignedLong(parentId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(true).build();
+
+    assertThat(writeB3SingleFormat(context))
+      .isSameAs(writeB3SingleFormat(context));
+    assertThat(writeB3SingleFormatWithoutParentId(context))
+      .isEqualTo(traceId + "-" + spanId + "-1")
+      .isSameAs(writeB3SingleFormatWithoutParentId(context));
+  }
+
+  @Test void writeB3SingleFormatWithoutParentId_noParent_sharesCache() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(true).build();
+
+    assertThat(writeB3SingleFormatWithoutParentId(context))
+      .isSameAs(writeB3SingleFormat(context));
+  }
+
+  @Test void writeB3SingleFormatAsBytes_notShared() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16)).build();
+
+    byte[] bytes = writeB3SingleFormatAsBytes(context);
+    bytes[0] = 'x';
+
+    assertThat(writeB3SingleFormatAsBytes(context)).isNotSameAs(bytes)
+      .isEqualTo((traceId + "-" + spanId).getBytes(UTF_8));
+  }
+
+  @Test void writeB3SingleFormat_byteBuffer() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(Long.parseUnsignedLong(traceIdHigh, 16))
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .parentId(Long.parseUnsignedLong(parentId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(true).build();
+    String expected = traceIdHigh + traceId + "-" + spanId + "-1-" + parentId;
+
+    for (ByteBuffer buffer : new ByteBuffer[] {
+      ByteBuffer.allocate(B3SingleFormat.FORMAT_MAX_LENGTH + 2),
+      ByteBuffer.allocateDirect(B3SingleFormat.FORMAT_MAX_LENGTH + 2)
+    }) {
+      buffer.put((byte) '[');
+      writeB3SingleFormat(context, buffer);
+      buffer.put((byte) ']');
+      buffer.flip();
+
+      byte[] written = new byte[buffer.remaining()];
+      buffer.get(written);
+      assertThat(new String(written, UTF_8)).isEqualTo("[" + expected + "]");
+    }
+  }
+
+  @Test void writeB3SingleFormatWithoutParentId_byteBuffer_slice() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .parentId(Long.parseUnsignedLong(parentId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(false).build();
+
+    byte[] array = new byte[64];
+    ByteBuffer buffer = ByteBuffer.wrap(array, 10, 54).slice();
+    writeB3SingleFormatWithoutParentId(context, buffer);
+
+    String expected = traceId + "-" + spanId + "-0";
+    assertThat(buffer.position()).isEqualTo(expected.length());
+    assertThat(new String(array, 10, expected.length(), UTF_8)).isEqualTo(expected);
+  }
+
+  @Test void writeB3SingleFormat_byteBuffer_tooSmall() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16)).build();
+
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    assertThatThrownBy(() -> writeB3SingleFormat(context, buffer))
+      .isInstanceOf(BufferOverflowException.class);
+    assertThat(buffer.position()).isZero(); // nothing partially written
+  }
+
   @Test void parseB3SingleFormat_largest() {
     assertThat(
       parseB3SingleFormat(traceIdHigh + traceId + "-" + spanId + "-1-" + parentId).context()
@@ -601,4 +691,62 @@ class B3SingleFormatTest {
       verify(platform).log("Invalid input: {0} is too long", "parent ID", null);
     }
   }
+
+  @Test void parseB3SingleFormat_bytes() {
+    String b3 = traceIdHigh + traceId + "-" + spanId + "-1-" + parentId;
+
+    assertThat(parseB3SingleFormat(b3.getBytes(UTF_8)))
+      .isEqualTo(parseB3SingleFormat(b3));
+    assertThat(parseB3SingleFormat("d".getBytes(UTF_8)).samplingFlags())
+      .isSameAs(SamplingFlags.DEBUG);
+  }
+
+  @Test void parseB3SingleFormat_bytes_middleOfArray() {
+    byte[] input = ("b3=" + traceId + "-" + spanId + "-0,").getBytes(UTF_8);
+
+    assertThat(parseB3SingleFormat(input, 3, input.length - 1))
+      .isEqualTo(parseB3SingleFormat(traceId + "-" + spanId + "-0"));
+  }
+
+  @Test void parseB3SingleFormat_bytes_malformed_notAscii() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      assertThat(parseB3SingleFormat(
+        (traceId + "-" + spanId.substring(0, 15) + "\u00e9").getBytes(UTF_8)))
+        .isNull(); // instead of crashing
+
+      verify(platform)
+        .log("Invalid input: only valid characters are lower-hex for {0}", "span ID", null);
+    }
+  }
+
+  @Test void parseB3SingleFormat_byteBuffer() {
+    String b3 = traceId + "-" + spanId + "-1";
+    ByteBuffer heap = ByteBuffer.wrap(("b3=" + b3).getBytes(UTF_8));
+    heap.position(3);
+    ByteBuffer direct = ByteBuffer.allocateDirect(b3.length());
+    direct.put(b3.getBytes(UTF_8)).flip();
+
+    assertThat(parseB3SingleFormat(heap.slice()))
+      .isEqualTo(parseB3SingleFormat(heap))
+      .isEqualTo(parseB3SingleFormat(direct))
+      .isEqualTo(parseB3SingleFormat(b3));
+    assertThat(heap.position()).isEqualTo(3);
+    assertThat(direct.position()).isZero();
+  }
+
+  @Test void parseB3SingleFormat_byteBuffer_direct_tooLong() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      String b3 = traceIdHigh + traceId + "-" + spanId + "-1-" + parentId + "0000";
+      ByteBuffer direct = ByteBuffer.allocateDirect(b3.length());
+      direct.put(b3.getBytes(UTF_8)).flip();
+
+      assertThat(parseB3SingleFormat(direct)).isNull();
+
+      verify(platform).log("Invalid input: too long", null);
+    }
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CompositePropagation.KeysGetter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class CompositePropagationTest {
+  static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+  static final String B3 = "0000000000000001-0000000000000002-1";
+
+  Map<String, String> request = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  List<String> gets = new ArrayList<>();
+
+  Propagation.Getter<Map<String, String>, String> getter = (request, key) -> {
+    gets.add(key);
+    return request.get(key);
+  };
+
+  KeysGetter<Map<String, String>> keysGetter = new KeysGetter<Map<String, String>>() {
+    @Override public Iterable<String> keys(Map<String, String> request) {
+      return request.keySet();
+    }
+
+    @Override public String get(Map<String, String> request, String key) {
+      return getter.get(request, key);
+    }
+  };
+
+  Propagation<String> propagation = CompositePropagation.newFactoryBuilder()
+    .add(W3CPropagation.FACTORY, "traceparent")
+    .add(B3Propagation.FACTORY, "b3", "X-B3-TraceId", "X-B3-Sampled", "X-B3-Flags")
+    .build().get();
+
+  @Test void keys_union() {
+    assertThat(propagation.keys()).containsExactly(
+      "traceparent",
+      "tracestate",
+      "b3",
+      "X-B3-TraceId",
+      "X-B3-SpanId",
+      "X-B3-ParentSpanId",
+      "X-B3-Sampled",
+      "X-B3-Flags"
+    );
+  }
+
+  @Test void factory_combinesFormats() {
+    Propagation.Factory factory = CompositePropagation.newFactoryBuilder()
+      .add(W3CPropagation.FACTORY)
+      .add(B3Propagation.FACTORY)
+      .build();
+
+    assertThat(factory.requires128BitTraceId()).isTrue();
+    assertThat(factory.supportsJoin()).isFalse();
+    assertThat(factory).isEqualTo(CompositePropagation.newFactoryBuilder()
+      .add(W3CPropagation.FACTORY)
+      .add(B3Propagation.FACTORY)
+      .build());
+  }
+
+  @Test void extract_probesInOrder() {
+    request.put("b3", B3);
+
+    TraceContextOrSamplingFlags extracted =
+      propagation.extractor(getter).extract(request);
+
+    assertThat(extracted.context().spanIdString()).isEqualTo("0000000000000002");
+    assertThat(gets).startsWith("traceparent", "b3");
+  }
+
+  @Test void extract_readsEachKeyOnce() {
+    request.put("b3", B3);
+
+    propagation.extractor(getter).extract(request);
+
+    assertThat(gets).doesNotHaveDuplicates();
+  }
+
+  @Test void extract_shortCircuitsOnFirstPresentFormat() {
+    request.put("traceparent", TRACEPARENT);
+    request.put("b3", B3);
+
+    TraceContextOrSamplingFlags extracted =
+      propagation.extractor(getter).extract(request);
+
+    assertThat(extracted.context().spanIdString()).isEqualTo("00f067aa0ba902b7");
+    assertThat(gets).doesNotContain("b3");
+  }
+
+  @Test void extract_nextFormatWhenMalformed() {
+    request.put("traceparent", "00-00000000000000000000000000000000-00f067aa0ba902b7-01");
+    request.put("b3", B3);
+
+    assertThat(propagation.extractor(getter).extract(request).context().spanIdString())
+      .isEqualTo("0000000000000002");
+  }
+
+  @Test void extract_nothing() {
+    assertThat(propagation.extractor(getter).extract(request))
+      .isSameAs(TraceContextOrSamplingFlags.EMPTY);
+  }
+
+  @Test void extract_keysGetter_onePass() {
+    request.put("Accept", "*/*");
+    request.put("X-B3-TraceId", "0000000000000001");
+    request.put("X-B3-SpanId", "0000000000000002");
+
+    TraceContextOrSamplingFlags extracted =
+      propagation.extractor(keysGetter).extract(request);
+
+    assertThat(extracted.context().spanIdString()).isEqualTo("0000000000000002");
+    assertThat(gets).doesNotContain("traceparent"); // absent, so not probed
+  }
+
+  @Test void extract_keysGetter_caseInsensitive() {
+    request.put("X-B3-SAMPLED", "0");
+
+    assertThat(propagation.extractor(keysGetter).extract(request))
+      .isSameAs(TraceContextOrSamplingFlags.NOT_SAMPLED);
+  }
+
+  @Test void extract_keysGetter_nothing() {
+    request.put("Accept", "*/*");
+
+    assertThat(propagation.extractor(keysGetter).extract(request))
+      .isSameAs(TraceContextOrSamplingFlags.EMPTY);
+    assertThat(gets).isEmpty();
+  }
+
+  @Test void presentFormats() {
+    CompositePropagation.Factory factory = (CompositePropagation.Factory) propagation;
+
+    assertThat(factory.presentFormats(asList("accept", "TRACEPARENT"))).isEqualTo(0b01);
+    assertThat(factory.presentFormats(asList("b3"))).isEqualTo(0b10);
+    assertThat(factory.presentFormats(asList("b3", null, "traceparent"))).isEqualTo(0b11);
+    assertThat(factory.presentFormats(asList("X-B3-SpanId"))).isZero();
+  }
+
+  @Test void inject_all() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(1L).traceId(2L).spanId(3L).sampled(true).build();
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    propagation.injector(Map<String, String>::put).inject(context, outgoing);
+
+    assertThat(outgoing).containsKeys("traceparent", "X-B3-TraceId", "X-B3-SpanId");
+  }
+
+  /** traceparent can't defer sampling, so B3 carries the context alone. */
+  @Test void inject_sampledUnset_skipsTraceparent() {
+    TraceContext context = TraceContext.newBuilder().traceIdHigh(1L).traceId(2L).spanId(3L).build();
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    propagation.injector(Map<String, String>::put).inject(context, outgoing);
+
+    assertThat(outgoing)
+      .doesNotContainKey("traceparent")
+      .containsKeys("X-B3-TraceId", "X-B3-SpanId")
+      .doesNotContainKey("X-B3-Sampled");
+  }
+
+  @Test void inject_sampledUnset_onlyTraceparent() {
+    propagation = CompositePropagation.newFactoryBuilder()
+      .add(W3CPropagation.FACTORY, "traceparent")
+      .add(B3Propagation.FACTORY)
+      .injectFormats(W3CPropagation.FACTORY)
+      .build().get();
+    TraceContext context = TraceContext.newBuilder().traceIdHigh(1L).traceId(2L).spanId(3L).build();
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    propagation.injector(Map<String, String>::put).inject(context, outgoing);
+
+    assertThat(outgoing).containsOnlyKeys("traceparent");
+  }
+
+  @Test void injectFormats_subset() {
+    propagation = CompositePropagation.newFactoryBuilder()
+      .add(W3CPropagation.FACTORY, "traceparent")
+      .add(B3Propagation.FACTORY)
+      .injectFormats(W3CPropagation.FACTORY)
+      .build().get();
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(1L).traceId(2L).spanId(3L).sampled(true).build();
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    propagation.injector(Map<String, String>::put).inject(context, outgoing);
+
+    assertThat(outgoing).containsExactly(
+      entry("traceparent", "00-00000000000000010000000000000002-0000000000000003-01")
+    );
+  }
+
+  @Test void builder_validatesArgs() {
+    CompositePropagation.FactoryBuilder builder = CompositePropagation.newFactoryBuilder();
+
+    assertThatThrownBy(builder::build)
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("no formats added");
+    assertThatThrownBy(() -> builder.add(null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("factory == null");
+    assertThatThrownBy(() -> builder.add(B3Propagation.FACTORY, new String[0]))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("presenceKeys are empty");
+
+    builder.add(B3Propagation.FACTORY);
+    assertThatThrownBy(() -> builder.add(B3Propagation.FACTORY))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("B3Propagation already added");
+
+    builder.injectFormats(W3CPropagation.FACTORY);
+    assertThatThrownBy(builder::build)
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("W3CPropagation wasn't added");
+  }
+}
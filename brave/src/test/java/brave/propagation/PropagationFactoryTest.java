@@ -4,8 +4,11 @@
  */
 package brave.propagation;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class PropagationFactoryTest {
@@ -34,4 +37,17 @@ class PropagationFactoryTest {
     assertThat(factory.decorate(context))
       .isSameAs(context);
   }
+
+  @Test void bytesExtractor_defaultsToDecodingStrings() {
+    Propagation.Factory factory = new Propagation.Factory() {
+      @Override public Propagation<String> get() {
+        return B3Propagation.get();
+      }
+    };
+    Map<String, byte[]> headers = new LinkedHashMap<>();
+    headers.put("b3", "0000000000000001-0000000000000002-1".getBytes(UTF_8));
+
+    assertThat(factory.<Map<String, byte[]>>bytesExtractor(Map::get).extract(headers))
+      .isEqualTo(B3SingleFormat.parseB3SingleFormat("0000000000000001-0000000000000002-1"));
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TraceContextCompletionStageTest {
+  ExecutorService executor = Executors.newSingleThreadExecutor();
+  CurrentTraceContext currentTraceContext = StrictCurrentTraceContext.create();
+  TraceContext context = TraceContext.newBuilder().traceId(1).spanId(1).build();
+  TraceContext context2 = TraceContext.newBuilder().traceId(2).spanId(1).build();
+
+  @AfterEach void shutdownExecutor() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+    ((StrictCurrentTraceContext) currentTraceContext).close();
+  }
+
+  @Test void dependentStages_restoreContext() throws Exception {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    CompletionStage<String> stage;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      stage = TraceContextCompletionStage.wrap(currentTraceContext, future);
+    }
+
+    CompletionStage<TraceContext[]> result = stage
+      .thenApply(s -> new TraceContext[] {currentTraceContext.get(), null, null})
+      .thenApplyAsync(a -> {
+        a[1] = currentTraceContext.get();
+        return a;
+      }, executor)
+      .thenCompose(a -> CompletableFuture.supplyAsync(() -> a, executor))
+      .whenComplete((a, error) -> a[2] = currentTraceContext.get());
+
+    try (Scope scope = currentTraceContext.newScope(context2)) {
+      future.complete("foo"); // completes on a thread with a different context
+    }
+
+    assertThat(result.toCompletableFuture().get(1, TimeUnit.SECONDS))
+      .containsExactly(context, context, context);
+    assertThat((Object) result).isInstanceOf(TraceContextCompletionStage.class);
+  }
+
+  @Test void exceptionally_restoresContext() throws Exception {
+    CompletableFuture<TraceContext> future = new CompletableFuture<>();
+    CompletionStage<TraceContext> result =
+      TraceContextCompletionStage.wrap(currentTraceContext, context, future)
+        .exceptionally(error -> currentTraceContext.get());
+
+    future.completeExceptionally(new IllegalStateException());
+
+    assertThat(result.toCompletableFuture().get(1, TimeUnit.SECONDS)).isSameAs(context);
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test void thenCombine_restoresContext() throws Exception {
+    CompletableFuture<String> future = CompletableFuture.completedFuture("foo");
+    CompletionStage<TraceContext> result =
+      TraceContextCompletionStage.wrap(currentTraceContext, context, future)
+        .thenCombineAsync(CompletableFuture.completedFuture("bar"),
+          (a, b) -> currentTraceContext.get(), executor);
+
+    assertThat(result.toCompletableFuture().get(1, TimeUnit.SECONDS)).isSameAs(context);
+  }
+
+  @Test void wrap_sameContext_doesntRewrap() {
+    CompletionStage<String> stage = TraceContextCompletionStage.wrap(currentTraceContext, context,
+      CompletableFuture.completedFuture("foo"));
+
+    assertThat((Object) TraceContextCompletionStage.wrap(currentTraceContext, context, stage))
+      .isSameAs(stage);
+    TraceContextCompletionStage<String> rewrapped = (TraceContextCompletionStage<String>)
+      TraceContextCompletionStage.wrap(currentTraceContext, context2, stage);
+    assertThat(rewrapped.context).isSameAs(context2);
+    assertThat(rewrapped.delegate).isSameAs(((TraceContextCompletionStage<?>) stage).delegate);
+  }
+
+  @Test void wrap_validatesArgs() {
+    assertThatThrownBy(() -> TraceContextCompletionStage.wrap(null, new CompletableFuture<>()))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("currentTraceContext == null");
+    assertThatThrownBy(() -> TraceContextCompletionStage.wrap(currentTraceContext, null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("delegate == null");
+  }
+}
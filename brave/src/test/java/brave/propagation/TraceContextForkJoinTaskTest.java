@@ -0,0 +1,116 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TraceContextForkJoinTaskTest {
+  ForkJoinPool pool = new ForkJoinPool(4);
+  StrictCurrentTraceContext currentTraceContext = StrictCurrentTraceContext.create();
+  TraceContext context = TraceContext.newBuilder().traceId(1).spanId(1).build();
+  Set<Object> contexts = ConcurrentHashMap.newKeySet();
+
+  @AfterEach void shutdownPool() throws InterruptedException {
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.SECONDS);
+    currentTraceContext.close();
+  }
+
+  /** Splits until the range is a single element, recording the context of each leaf. */
+  class Sum extends RecursiveTask<Long> {
+    final int from, to;
+
+    Sum(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected Long compute() {
+      if (to - from == 1) {
+        TraceContext current = currentTraceContext.get();
+        contexts.add(current != null ? current : "null");
+        return (long) from;
+      }
+      int mid = (from + to) >>> 1;
+      ForkJoinTask<Long> left =
+        TraceContextForkJoinTask.wrap(currentTraceContext, new Sum(from, mid));
+      left.fork();
+      long right = new Sum(mid, to).compute();
+      return left.join() + right;
+    }
+  }
+
+  @Test void forkedSubtasks_haveContext() {
+    TraceContextForkJoinPool tracingPool = TraceContextForkJoinPool.wrap(currentTraceContext, pool);
+
+    long sum;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      sum = tracingPool.invoke(new Sum(0, 10_000));
+    }
+
+    assertThat(sum).isEqualTo(49_995_000L);
+    assertThat(contexts).containsExactly(context);
+  }
+
+  @Test void unwrappedPool_losesContext() {
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      pool.invoke(new Sum(0, 100));
+    }
+
+    assertThat(contexts).containsExactly("null");
+  }
+
+  @Test void submit_joinsResult() {
+    TraceContextForkJoinPool tracingPool = TraceContextForkJoinPool.wrap(currentTraceContext, pool);
+
+    ForkJoinTask<Long> task;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      task = tracingPool.submit(new Sum(0, 4));
+    }
+
+    assertThat(task.join()).isEqualTo(6L);
+    assertThat(contexts).containsExactly(context);
+  }
+
+  @Test void submitRunnable_hasContext() throws Exception {
+    TraceContextForkJoinPool tracingPool = TraceContextForkJoinPool.wrap(currentTraceContext, pool);
+
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      tracingPool.submit(() -> contexts.add(currentTraceContext.get())).get();
+    }
+
+    assertThat(contexts).containsExactly(context);
+  }
+
+  @Test void exec_propagatesException() {
+    ForkJoinTask<Object> task = TraceContextForkJoinTask.wrap(currentTraceContext, context,
+      ForkJoinTask.adapt(() -> {
+        throw new IllegalStateException("boom");
+      }));
+
+    assertThatThrownBy(() -> pool.invoke(task))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessageContaining("boom");
+    assertThat(task.isCompletedAbnormally()).isTrue();
+  }
+
+  @Test void wrap_sameContext_doesntRewrap() {
+    ForkJoinTask<Long> task = TraceContextForkJoinTask.wrap(currentTraceContext, context,
+      new Sum(0, 1));
+
+    assertThat(TraceContextForkJoinTask.wrap(currentTraceContext, context, task)).isSameAs(task);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TraceContextFunctionsTest {
+  ForkJoinPool pool = new ForkJoinPool(4);
+  StrictCurrentTraceContext currentTraceContext = StrictCurrentTraceContext.create();
+  TraceContext context = TraceContext.newBuilder().traceId(1).spanId(1).build();
+  Set<Object> contexts = ConcurrentHashMap.newKeySet();
+
+  @AfterEach void shutdownPool() throws InterruptedException {
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.SECONDS);
+    currentTraceContext.close();
+  }
+
+  /** Parallel streams run in the pool of the worker that calls them. */
+  @Test void function_parallelStream() throws Exception {
+    Function<Integer, Integer> function;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      function = TraceContextFunctions.function(currentTraceContext, i -> {
+        contexts.add(String.valueOf(currentTraceContext.get()));
+        return i * 2;
+      });
+    }
+
+    List<Integer> result = pool.submit(() -> IntStream.range(0, 1000).boxed().parallel()
+      .map(function)
+      .collect(Collectors.toList())).get();
+
+    assertThat(result).hasSize(1000).startsWith(0, 2, 4);
+    assertThat(contexts).containsExactly(context.toString());
+    assertThat(currentTraceContext.get()).isNull();
+  }
+
+  @Test void consumer_parallelStream() throws Exception {
+    Consumer<Integer> consumer;
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      consumer = TraceContextFunctions.consumer(currentTraceContext,
+        i -> contexts.add(String.valueOf(currentTraceContext.get())));
+    }
+
+    pool.submit(() -> IntStream.range(0, 1000).boxed().parallel().forEach(consumer)).get();
+
+    assertThat(contexts).containsExactly(context.toString());
+  }
+
+  @Test void validatesArgs() {
+    assertThatThrownBy(() -> TraceContextFunctions.function(null, i -> i))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("currentTraceContext == null");
+    assertThatThrownBy(() -> TraceContextFunctions.function(currentTraceContext, null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("fn == null");
+    assertThatThrownBy(() -> TraceContextFunctions.consumer(currentTraceContext, null))
+      .isInstanceOf(NullPointerException.class)
+      .hasMessage("action == null");
+  }
+}
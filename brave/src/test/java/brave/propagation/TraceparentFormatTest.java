@@ -0,0 +1,178 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.Platform;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import static brave.propagation.TraceparentFormat.parseTraceparentFormat;
+import static brave.propagation.TraceparentFormat.writeTraceparentFormat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class TraceparentFormatTest {
+  String traceIdHigh = "4bf92f3577b34da6";
+  String traceId = "a3ce929d0e0e4736";
+  String spanId = "00f067aa0ba902b7";
+  Platform platform = mock(Platform.class);
+
+  /** Either we asserted on the log messages or there weren't any */
+  @AfterEach void ensureNothingLogged() {
+    verifyNoMoreInteractions(platform);
+  }
+
+  @Test void writeTraceparentFormat_sampled() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(Long.parseUnsignedLong(traceIdHigh, 16))
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .parentId(1L) // not propagated
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(true).build();
+
+    assertThat(writeTraceparentFormat(context))
+      .isEqualTo("00-" + traceIdHigh + traceId + "-" + spanId + "-01");
+  }
+
+  @Test void writeTraceparentFormat_64BitTraceId() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(false).build();
+
+    assertThat(writeTraceparentFormat(context))
+      .isEqualTo("00-0000000000000000" + traceId + "-" + spanId + "-00");
+  }
+
+  @Test void writeTraceparentFormat_notYetSampled() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16)).build();
+
+    assertThat(writeTraceparentFormat(context)).endsWith("-00");
+  }
+
+  @Test void writeTraceparentFormat_debug() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .debug(true).build();
+
+    assertThat(writeTraceparentFormat(context)).endsWith("-01");
+  }
+
+  @Test void parseTraceparentFormat_sampled() {
+    TraceContext context =
+      parseTraceparentFormat("00-" + traceIdHigh + traceId + "-" + spanId + "-01");
+
+    assertThat(context).usingRecursiveComparison().isEqualTo(TraceContext.newBuilder()
+      .traceIdHigh(Long.parseUnsignedLong(traceIdHigh, 16))
+      .traceId(Long.parseUnsignedLong(traceId, 16))
+      .spanId(Long.parseUnsignedLong(spanId, 16))
+      .sampled(true).build());
+  }
+
+  @Test void parseTraceparentFormat_notSampled() {
+    assertThat(parseTraceparentFormat("00-" + traceIdHigh + traceId + "-" + spanId + "-00")
+      .sampled()).isFalse();
+  }
+
+  @Test void parseTraceparentFormat_onlySampledBitRead() {
+    assertThat(parseTraceparentFormat("00-" + traceIdHigh + traceId + "-" + spanId + "-03")
+      .sampled()).isTrue();
+  }
+
+  @Test void parseTraceparentFormat_middleOfString() {
+    String input = "foo,traceparent=00-" + traceIdHigh + traceId + "-" + spanId + "-01,bar";
+    int beginIndex = input.indexOf("00-");
+
+    assertThat(parseTraceparentFormat(input, beginIndex, beginIndex + 55).spanIdString())
+      .isEqualTo(spanId);
+  }
+
+  @Test void parseTraceparentFormat_laterVersion_ignoresExtraFields() {
+    assertThat(parseTraceparentFormat("cc-" + traceIdHigh + traceId + "-" + spanId + "-01-what"))
+      .isNotNull();
+  }
+
+  @Test void parseTraceparentFormat_malformed_tooShort() {
+    assertMalformed("00-" + traceIdHigh + traceId + "-" + spanId + "-0",
+      "Invalid input: too short");
+  }
+
+  @Test void parseTraceparentFormat_malformed_empty() {
+    assertMalformed("", "Invalid input: empty");
+  }
+
+  @Test void parseTraceparentFormat_malformed_version00TooLong() {
+    assertMalformed("00-" + traceIdHigh + traceId + "-" + spanId + "-01-what",
+      "Invalid input: too long");
+  }
+
+  @Test void parseTraceparentFormat_malformed_laterVersionNoHyphen() {
+    assertMalformed("cc-" + traceIdHigh + traceId + "-" + spanId + "-01what",
+      "Invalid input: too long");
+  }
+
+  @Test void parseTraceparentFormat_malformed_versionFF() {
+    assertMalformed("ff-" + traceIdHigh + traceId + "-" + spanId + "-01",
+      "Invalid input: {0} ff is forbidden", "version");
+  }
+
+  @Test void parseTraceparentFormat_malformed_upperHex() {
+    assertMalformed("00-" + traceIdHigh.toUpperCase() + traceId + "-" + spanId + "-01",
+      "Invalid input: only valid characters are lower-hex for {0}", "trace-id");
+  }
+
+  @Test void parseTraceparentFormat_malformed_flags() {
+    assertMalformed("00-" + traceIdHigh + traceId + "-" + spanId + "-0x",
+      "Invalid input: only valid characters are lower-hex for {0}", "trace-flags");
+  }
+
+  @Test void parseTraceparentFormat_malformed_missingHyphen() {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      assertThat(parseTraceparentFormat("00-" + traceIdHigh + traceId + "_" + spanId + "-01"))
+        .isNull();
+
+      verify(platform).log("Invalid input: expected a hyphen at index {0}", 35, null);
+    }
+  }
+
+  @Test void parseTraceparentFormat_malformed_zeroTraceId() {
+    assertMalformed("00-00000000000000000000000000000000-" + spanId + "-01",
+      "Invalid input: read all zeros {0}", "trace-id");
+  }
+
+  @Test void parseTraceparentFormat_malformed_zeroParentId() {
+    assertMalformed("00-" + traceIdHigh + traceId + "-0000000000000000-01",
+      "Invalid input: read all zeros {0}", "parent-id");
+  }
+
+  void assertMalformed(String input, String message) {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      assertThat(parseTraceparentFormat(input)).isNull();
+
+      verify(platform).log(message, null);
+    }
+  }
+
+  void assertMalformed(String input, String message, String field) {
+    try (MockedStatic<Platform> mb = mockStatic(Platform.class)) {
+      mb.when(Platform::get).thenReturn(platform);
+
+      assertThat(parseTraceparentFormat(input)).isNull();
+
+      verify(platform).log(message, field, null);
+    }
+  }
+}
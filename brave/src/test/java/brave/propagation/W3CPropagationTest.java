@@ -0,0 +1,146 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.W3CPropagation.Tracestate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static brave.propagation.W3CPropagation.isValidTracestate;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class W3CPropagationTest {
+  static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  Map<String, String> request = new LinkedHashMap<>();
+  Propagation<String> propagation = W3CPropagation.get();
+
+  @Test void keys() {
+    assertThat(propagation.keys()).containsExactly("traceparent", "tracestate");
+  }
+
+  @Test void factory() {
+    assertThat(W3CPropagation.FACTORY.requires128BitTraceId()).isTrue();
+    assertThat(W3CPropagation.FACTORY.supportsJoin()).isFalse();
+    assertThat(W3CPropagation.get()).isSameAs(W3CPropagation.FACTORY.get());
+  }
+
+  @Test void extract_traceparent() {
+    request.put("traceparent", TRACEPARENT);
+
+    TraceContextOrSamplingFlags extracted =
+      propagation.extractor(Map<String, String>::get).extract(request);
+
+    assertThat(extracted.context().traceIdString())
+      .isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+    assertThat(extracted.context().spanIdString()).isEqualTo("00f067aa0ba902b7");
+    assertThat(extracted.sampled()).isTrue();
+    assertThat(extracted.context().extra()).isEmpty();
+  }
+
+  @Test void extract_nothing() {
+    assertThat(propagation.extractor(Map<String, String>::get).extract(request))
+      .isSameAs(TraceContextOrSamplingFlags.EMPTY);
+  }
+
+  @Test void extract_malformed() {
+    request.put("traceparent", "00-00000000000000000000000000000000-00f067aa0ba902b7-01");
+    request.put("tracestate", "congo=t61rcWkgMzE");
+
+    assertThat(propagation.extractor(Map<String, String>::get).extract(request))
+      .isSameAs(TraceContextOrSamplingFlags.EMPTY);
+  }
+
+  @Test void extract_tracestate() {
+    request.put("traceparent", TRACEPARENT);
+    request.put("tracestate", "rojo=00f067aa0ba902b7,congo=t61rcWkgMzE");
+
+    TraceContextOrSamplingFlags extracted =
+      propagation.extractor(Map<String, String>::get).extract(request);
+
+    assertThat(extracted.context().findExtra(Tracestate.class).value)
+      .isEqualTo("rojo=00f067aa0ba902b7,congo=t61rcWkgMzE");
+  }
+
+  @Test void extract_tracestate_invalidIgnored() {
+    request.put("traceparent", TRACEPARENT);
+    request.put("tracestate", "Rojo=00f067aa0ba902b7");
+
+    assertThat(propagation.extractor(Map<String, String>::get).extract(request).context().extra())
+      .isEmpty();
+  }
+
+  @Test void inject() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(1L).traceId(2L).spanId(3L).sampled(true).build();
+
+    propagation.injector(Map<String, String>::put).inject(context, request);
+
+    assertThat(request).containsExactly(
+      entry("traceparent", "00-00000000000000010000000000000002-0000000000000003-01")
+    );
+  }
+
+  /**
+   * traceparent can't defer the sampling decision, so an unset decision is written as unsampled.
+   * {@link CompositePropagation} skips traceparent in this case, when B3 is also injected.
+   */
+  @Test void inject_sampledUnset_readsAsNotSampled() {
+    TraceContext context = TraceContext.newBuilder()
+      .traceIdHigh(1L).traceId(2L).spanId(3L).build();
+
+    propagation.injector(Map<String, String>::put).inject(context, request);
+
+    assertThat(request).containsExactly(
+      entry("traceparent", "00-00000000000000010000000000000002-0000000000000003-00")
+    );
+    assertThat(propagation.extractor(Map<String, String>::get).extract(request).sampled())
+      .isFalse();
+  }
+
+  @Test void inject_tracestate_roundTrip() {
+    request.put("traceparent", TRACEPARENT);
+    request.put("tracestate", "rojo=00f067aa0ba902b7");
+    TraceContext context =
+      propagation.extractor(Map<String, String>::get).extract(request).context();
+
+    Map<String, String> outgoing = new LinkedHashMap<>();
+    propagation.injector(Map<String, String>::put).inject(context, outgoing);
+
+    assertThat(outgoing).isEqualTo(request);
+  }
+
+  @Test void isValidTracestate_valid() {
+    assertThat(isValidTracestate("congo=t61rcWkgMzE")).isTrue();
+    assertThat(isValidTracestate("rojo=00f067aa0ba902b7, congo=t61rcWkgMzE")).isTrue();
+    assertThat(isValidTracestate("tenant@vendor=value")).isTrue();
+    assertThat(isValidTracestate("a_b-c*d/e=v,,")).isTrue();
+    assertThat(isValidTracestate("key=trailing OWS ")).isTrue();
+  }
+
+  @Test void isValidTracestate_invalid() {
+    assertThat(isValidTracestate("")).isFalse();
+    assertThat(isValidTracestate(" , ")).isFalse();
+    assertThat(isValidTracestate("UPPER=value")).isFalse();
+    assertThat(isValidTracestate("_leading=value")).isFalse();
+    assertThat(isValidTracestate("key=")).isFalse();
+    assertThat(isValidTracestate("key=a=b")).isFalse();
+    assertThat(isValidTracestate("key=trailing\u0001")).isFalse();
+    assertThat(isValidTracestate("tenant@=value")).isFalse();
+    assertThat(isValidTracestate("tenant@vendor@x=value")).isFalse();
+    assertThat(isValidTracestate("tenant@thisvendoristoolong=value")).isFalse();
+  }
+
+  @Test void isValidTracestate_maxEntries() {
+    StringBuilder tracestate = new StringBuilder("k0=v");
+    for (int i = 1; i < 32; i++) tracestate.append(",k").append(i).append("=v");
+    assertThat(isValidTracestate(tracestate.toString())).isTrue();
+
+    tracestate.append(",k32=v");
+    assertThat(isValidTracestate(tracestate.toString())).isFalse();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler.Cause;
+import brave.internal.Platform;
+import brave.propagation.TraceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static brave.sampler.AdaptiveSampler.NANOS_PER_SECOND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveSamplerTest {
+  @Mock Platform platform;
+  TraceContext sampled = TraceContext.newBuilder().traceId(1L).spanId(2L).sampled(true).build();
+  MutableSpan span = new MutableSpan();
+
+  AdaptiveSampler adaptive;
+  AdaptiveSampler.Key busy, quiet;
+
+  @BeforeEach void setup() {
+    when(platform.nanoTime()).thenReturn(0L);
+    lenient().when(platform.randomLong()).thenReturn(0L);
+    adaptive = new AdaptiveSampler(platform, AdaptiveSampler.newBuilder(100)
+      .minTracesPerSecond(1)
+      .smoothingFactor(1)); // no smoothing, so that results are easy to assert
+    busy = (AdaptiveSampler.Key) adaptive.newSampler();
+    quiet = (AdaptiveSampler.Key) adaptive.newSampler();
+  }
+
+  @Test void samplesEverythingAtFirst() {
+    for (int i = 0; i < 1000; i++) {
+      assertThat(busy.isSampled(0L)).isTrue();
+    }
+  }
+
+  @Test void reducesProbabilityToMeetBudget() {
+    secondPasses(1000, 10, 400); // 4x the budget
+
+    assertThat(adaptive.baseProbability).isEqualTo(0.25);
+    assertThat(busy.probability).isEqualTo(0.25f);
+  }
+
+  @Test void increasesProbabilityUnderBudget() {
+    secondPasses(1000, 10, 400);
+    secondPasses(1000, 10, 50); // half the budget
+
+    assertThat(adaptive.baseProbability).isEqualTo(0.5);
+  }
+
+  @Test void doublesProbabilityWithoutSpans() {
+    secondPasses(1000, 10, 400);
+    secondPasses(0, 0, 0);
+
+    assertThat(adaptive.baseProbability).isEqualTo(0.5);
+  }
+
+  @Test void keepsMinimumTracesPerSecond() {
+    secondPasses(1000, 10, 100_000); // way over budget
+
+    assertThat(busy.probability).isEqualTo(0.001f); // 1 trace per second
+    assertThat(quiet.probability).isEqualTo(0.1f);
+  }
+
+  @Test void neverStarvesRareKeys() {
+    secondPasses(1000, 0, 400);
+
+    assertThat(quiet.probability).isEqualTo(1.0f);
+  }
+
+  @Test void smoothsProbability() {
+    adaptive = new AdaptiveSampler(platform, AdaptiveSampler.newBuilder(100).smoothingFactor(0.5f));
+    busy = (AdaptiveSampler.Key) adaptive.newSampler();
+
+    secondPasses(1000, 0, 400);
+
+    assertThat(adaptive.baseProbability).isCloseTo(0.625, within(0.0001)); // (0.25 + 1) / 2
+  }
+
+  @Test void samplesAccordingToProbability() {
+    secondPasses(1000, 10, 200);
+
+    when(platform.randomLong()).thenReturn(Long.MAX_VALUE / 2 - 1);
+    assertThat(busy.isSampled(0L)).isTrue();
+    when(platform.randomLong()).thenReturn(Long.MAX_VALUE / 2 + 1);
+    assertThat(busy.isSampled(0L)).isFalse();
+    when(platform.randomLong()).thenReturn(-1L); // sign is ignored
+    assertThat(busy.isSampled(0L)).isFalse();
+  }
+
+  @Test void spanHandler_countsOnlyReportedSampledSpans() {
+    TraceContext sampledLocal = sampled.toBuilder().sampled(false).sampledLocal(true).build();
+
+    adaptive.spanHandler().end(sampled, span, Cause.FINISHED);
+    adaptive.spanHandler().end(sampled, span, Cause.FLUSHED);
+    adaptive.spanHandler().end(sampled, span, Cause.ABANDONED);
+    adaptive.spanHandler().end(sampled, span, Cause.ORPHANED);
+    adaptive.spanHandler().end(sampledLocal, span, Cause.FINISHED);
+
+    assertThat(adaptive.spans.get()).isEqualTo(2);
+  }
+
+  @Test void builder_validatesInput() {
+    assertThatThrownBy(() -> AdaptiveSampler.newBuilder(0))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> AdaptiveSampler.newBuilder(1).minTracesPerSecond(-1))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> AdaptiveSampler.newBuilder(1).smoothingFactor(0))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> AdaptiveSampler.newBuilder(1).smoothingFactor(1.1f))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Simulates a second of requests to each key and finished spans, then triggers an update. */
+  void secondPasses(int busyRequests, int quietRequests, int finishedSpans) {
+    for (int i = 0; i < busyRequests; i++) busy.isSampled(0L);
+    for (int i = 0; i < quietRequests; i++) quiet.isSampled(0L);
+    for (int i = 0; i < finishedSpans; i++) {
+      adaptive.spanHandler().end(sampled, span, Cause.FINISHED);
+    }
+
+    adaptive.maybeUpdate(adaptive.lastUpdate + NANOS_PER_SECOND);
+  }
+}
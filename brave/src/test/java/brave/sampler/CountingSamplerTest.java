@@ -4,9 +4,11 @@
  */
 package brave.sampler;
 
+import java.util.Random;
 import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Percentage.withPercentage;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -24,4 +26,26 @@ class CountingSamplerTest extends SamplerTest {
       newSampler(0.0001f);
     });
   }
+
+  @Test void decisionCount() {
+    assertThat(CountingSampler.decisionCount(0.01f)).isEqualTo(100);
+    assertThat(CountingSampler.decisionCount(0.29f)).isEqualTo(100);
+    assertThat(CountingSampler.decisionCount(0.255f)).isEqualTo(10000);
+    assertThat(CountingSampler.decisionCount(0.0001f)).isEqualTo(10000);
+  }
+
+  /** Whole percents must sample the same count as before finer probabilities were supported. */
+  @Test void sampleDecisions_truncatesWholePercents() {
+    assertThat(CountingSampler.sampleDecisions(100, 0.53f, new Random()).cardinality())
+      .isEqualTo(52); // 0.53f * 100 is slightly less than 53
+    assertThat(CountingSampler.sampleDecisions(10000, 0.255f, new Random()).cardinality())
+      .isEqualTo(2550);
+  }
+
+  @Test void retainsFinerThanWholePercent() {
+    Sampler sampler = newSampler(0.255f);
+
+    assertThat(new Random().longs(INPUT_SIZE).parallel().filter(sampler::isSampled).count())
+      .isEqualTo(INPUT_SIZE * 255 / 1000);
+  }
 }
@@ -174,6 +174,52 @@ class RateLimitingSamplerTest {
     }
   }
 
+  @Test void takesFromOtherCells() {
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND);
+    Sampler sampler = new RateLimitingSampler(platform, 101, 8);
+
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND + NANOS_PER_DECISECOND * 9);
+    for (int i = 0; i < 101; i++) {
+      assertThat(sampler.isSampled(0L))
+        .withFailMessage("failed after " + (i + 1))
+        .isTrue();
+    }
+    assertThat(sampler.isSampled(0L)).isFalse();
+  }
+
+  @Test void dropsUnusedSamplesFromAllCells() {
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND);
+    Sampler sampler = new RateLimitingSampler(platform, 100, 8);
+    assertThat(sampler.isSampled(0L)).isTrue(); // adds the first decisecond
+
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND * 2);
+    for (int i = 0; i < 10; i++) {
+      assertThat(sampler.isSampled(0L)).isTrue();
+    }
+    assertThat(sampler.isSampled(0L)).isFalse(); // 9 unused weren't rolled into the next second
+  }
+
+  @Test void exhaustedUntilDecisionsAreAdded() {
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND);
+    RateLimitingSampler sampler = new RateLimitingSampler(platform, 100, 8);
+    for (int i = 0; i < 10; i++) sampler.isSampled(0L);
+
+    assertThat(sampler.isSampled(0L)).isFalse();
+    assertThat(sampler.exhaustedGeneration).isEqualTo(sampler.generation);
+    assertThat(sampler.isSampled(0L)).isFalse(); // without scanning cells
+
+    when(platform.nanoTime()).thenReturn(NANOS_PER_SECOND + NANOS_PER_DECISECOND);
+    assertThat(sampler.isSampled(0L)).isTrue();
+    assertThat(sampler.exhaustedGeneration).isNotEqualTo(sampler.generation);
+  }
+
+  @Test void cellCount() {
+    assertThat(RateLimitingSampler.cellCount(0)).isEqualTo(1);
+    assertThat(RateLimitingSampler.cellCount(1)).isEqualTo(1);
+    assertThat(RateLimitingSampler.cellCount(6)).isEqualTo(4);
+    assertThat(RateLimitingSampler.cellCount(96)).isEqualTo(32);
+  }
+
   @Test void zeroMeansDropAllTraces() {
     assertThat(RateLimitingSampler.create(0)).isSameAs(Sampler.NEVER_SAMPLE);
   }
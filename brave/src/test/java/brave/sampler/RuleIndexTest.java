@@ -0,0 +1,188 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import brave.internal.AttributeMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static brave.sampler.Matchers.and;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleIndexTest {
+  List<Matcher<Map<String, String>>> rules = new ArrayList<>();
+
+  @Test void create_nullOnFewRules() {
+    for (int i = 0; i < RuleIndex.MIN_RULES - 1; i++) rules.add(equalTo("method", "GET" + i));
+
+    assertThat(RuleIndex.create(matchers())).isNull();
+  }
+
+  @Test void create_nullOnNoAttributeMatchers() {
+    for (int i = 0; i < RuleIndex.MIN_RULES; i++) rules.add(input -> true);
+
+    assertThat(RuleIndex.create(matchers())).isNull();
+  }
+
+  @Test void firstMatch_equalTo() {
+    addPadding();
+    rules.add(equalTo("method", "GET"));
+    rules.add(equalTo("method", "POST"));
+
+    RuleIndex<Map<String, String>> index = RuleIndex.create(matchers());
+    assertThat(index.firstMatch(request("GET", "/"))).isEqualTo(rules.size() - 2);
+    assertThat(index.firstMatch(request("POST", "/"))).isEqualTo(rules.size() - 1);
+    assertThat(index.firstMatch(request("PUT", "/"))).isEqualTo(RuleIndex.NO_MATCH);
+  }
+
+  @Test void firstMatch_missingAttribute() {
+    addPadding();
+    rules.add(equalTo("method", "GET"));
+    rules.add(startsWith("path", "/"));
+
+    assertThat(RuleIndex.create(matchers()).firstMatch(new LinkedHashMap<>()))
+      .isEqualTo(RuleIndex.NO_MATCH);
+  }
+
+  @Test void firstMatch_nestedPrefixesInRuleOrder() {
+    addPadding();
+    int foo = rules.size();
+    rules.add(startsWith("path", "/foo"));
+    rules.add(startsWith("path", "/foo/bar")); // shadowed by the less specific rule above
+    int bar = rules.size();
+    rules.add(startsWith("path", "/bar/baz"));
+    rules.add(startsWith("path", "/bar"));
+
+    RuleIndex<Map<String, String>> index = RuleIndex.create(matchers());
+    assertThat(index.firstMatch(request("GET", "/foo/bar"))).isEqualTo(foo);
+    assertThat(index.firstMatch(request("GET", "/bar/baz"))).isEqualTo(bar);
+    assertThat(index.firstMatch(request("GET", "/bar/qux"))).isEqualTo(bar + 1);
+    assertThat(index.firstMatch(request("GET", "/ba"))).isEqualTo(RuleIndex.NO_MATCH);
+  }
+
+  @Test void firstMatch_unindexedRuleFirst() {
+    rules.add(input -> "/health".equals(input.get("path")));
+    addPadding();
+    rules.add(startsWith("path", "/"));
+
+    RuleIndex<Map<String, String>> index = RuleIndex.create(matchers());
+    assertThat(index.unindexed).containsExactly(0);
+    assertThat(index.firstMatch(request("GET", "/health"))).isZero();
+    assertThat(index.firstMatch(request("GET", "/foo"))).isEqualTo(rules.size() - 1);
+  }
+
+  /** An and rule is indexed by its most selective attribute, but must match entirely. */
+  @Test void firstMatch_and() {
+    addPadding();
+    int getFoo = rules.size();
+    rules.add(and(equalTo("method", "GET"), startsWith("path", "/foo")));
+    rules.add(equalTo("method", "POST"));
+
+    RuleIndex<Map<String, String>> index = RuleIndex.create(matchers());
+    assertThat(index.firstMatch(request("GET", "/foo"))).isEqualTo(getFoo);
+    assertThat(index.firstMatch(request("POST", "/foo"))).isEqualTo(getFoo + 1);
+    assertThat(index.firstMatch(request("GET", "/bar"))).isEqualTo(RuleIndex.NO_MATCH);
+  }
+
+  @Test void firstMatch_sameAsTestingInOrder() {
+    Random random = new Random(1234L);
+    String[] methods = {"GET", "POST", "PUT"};
+    String[] paths = {"/", "/a", "/ab", "/abc", "/b", "/ba", "/bab"};
+    for (int i = 0; i < 100; i++) {
+      String method = methods[random.nextInt(methods.length)];
+      String path = paths[random.nextInt(paths.length)];
+      switch (random.nextInt(4)) {
+        case 0:
+          rules.add(equalTo("method", method));
+          break;
+        case 1:
+          rules.add(startsWith("path", path));
+          break;
+        case 2:
+          rules.add(and(equalTo("method", method), startsWith("path", path)));
+          break;
+        default:
+          rules.add(input -> path.equals(input.get("path")));
+      }
+    }
+
+    Matcher<Map<String, String>>[] matchers = matchers();
+    RuleIndex<Map<String, String>> index = RuleIndex.create(matchers);
+    for (String method : methods) {
+      for (String path : paths) {
+        Map<String, String> request = request(method, path + "x");
+        int expected = RuleIndex.NO_MATCH;
+        for (int i = 0; i < matchers.length; i++) {
+          if (matchers[i].matches(request)) {
+            expected = i;
+            break;
+          }
+        }
+        assertThat(index.firstMatch(request)).isEqualTo(expected);
+      }
+    }
+  }
+
+  /** Ensures an index is created, without matching any request in these tests. */
+  void addPadding() {
+    for (int i = 0; i < RuleIndex.MIN_RULES; i++) rules.add(equalTo("method", "PADDING" + i));
+  }
+
+  Matcher<Map<String, String>>[] matchers() {
+    return rules.toArray(new Matcher[0]);
+  }
+
+  static Map<String, String> request(String method, String path) {
+    Map<String, String> request = new LinkedHashMap<>();
+    request.put("method", method);
+    request.put("path", path);
+    return request;
+  }
+
+  static Matcher<Map<String, String>> equalTo(String attribute, String value) {
+    return new TestAttributeMatcher(attribute, value, false);
+  }
+
+  static Matcher<Map<String, String>> startsWith(String attribute, String value) {
+    return new TestAttributeMatcher(attribute, value, true);
+  }
+
+  static class TestAttributeMatcher implements AttributeMatcher<Map<String, String>> {
+    final String attribute, value;
+    final boolean isPrefix;
+
+    TestAttributeMatcher(String attribute, String value, boolean isPrefix) {
+      this.attribute = attribute;
+      this.value = value;
+      this.isPrefix = isPrefix;
+    }
+
+    @Override public boolean matches(Map<String, String> input) {
+      String attributeValue = attributeValue(input);
+      if (attributeValue == null) return false;
+      return isPrefix ? attributeValue.startsWith(value) : attributeValue.equals(value);
+    }
+
+    @Override public String attribute() {
+      return attribute;
+    }
+
+    @Override public String attributeValue(Map<String, String> input) {
+      return input.get(attribute);
+    }
+
+    @Override public String value() {
+      return value;
+    }
+
+    @Override public boolean isPrefix() {
+      return isPrefix;
+    }
+  }
+}
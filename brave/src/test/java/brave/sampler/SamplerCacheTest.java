@@ -0,0 +1,103 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static brave.sampler.Matchers.and;
+import static brave.sampler.RuleIndexTest.equalTo;
+import static brave.sampler.RuleIndexTest.request;
+import static brave.sampler.RuleIndexTest.startsWith;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SamplerCacheTest {
+  Matcher<Map<String, String>> getFoo = and(equalTo("method", "GET"), startsWith("path", "/foo"));
+  Matcher<Map<String, String>> post = equalTo("method", "POST");
+
+  @Test void create_nullWhenDisabled() {
+    assertThat(SamplerCache.create(new Matcher[] {getFoo}, 0)).isNull();
+  }
+
+  @Test void create_nullOnCustomMatcher() {
+    Matcher<Map<String, String>> custom = input -> input.containsKey("country");
+
+    assertThat(SamplerCache.create(new Matcher[] {getFoo, custom}, 10)).isNull();
+    assertThat(SamplerCache.create(new Matcher[] {and(post, custom)}, 10)).isNull();
+  }
+
+  @Test void key_distinctAttributes() {
+    SamplerCache<Map<String, String>> cache =
+      SamplerCache.create(new Matcher[] {getFoo, post}, 10);
+
+    assertThat(cache.attributes).extracting("attribute").containsExactly("method", "path");
+    assertThat(cache.key(request("GET", "/foo")))
+      .isEqualTo(cache.key(request("GET", "/foo")))
+      .isNotEqualTo(cache.key(request("GET", "/bar")))
+      .isNotEqualTo(cache.key(request("POST", "/foo")));
+  }
+
+  @Test void key_missingIsEmpty() {
+    SamplerCache<Map<String, String>> cache = SamplerCache.create(new Matcher[] {post}, 10);
+
+    assertThat(cache.key(new LinkedHashMap<>())).isEqualTo("");
+  }
+
+  @Test void get_promotesFromPreviousGeneration() {
+    SamplerCache<Map<String, String>> cache = SamplerCache.create(new Matcher[] {post}, 4);
+    cache.put("a", Sampler.ALWAYS_SAMPLE);
+    cache.put("b", Sampler.ALWAYS_SAMPLE); // rotates: a and b are now previous
+
+    assertThat(cache.current).isEmpty();
+    assertThat(cache.get("a")).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(cache.current).containsOnlyKeys("a");
+
+    cache.put("c", Sampler.ALWAYS_SAMPLE); // rotates: b is dropped
+
+    assertThat(cache.get("a")).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(cache.get("b")).isNull();
+  }
+
+  @Test void sizeIsBounded() {
+    SamplerCache<Map<String, String>> cache = SamplerCache.create(new Matcher[] {post}, 10);
+    for (int i = 0; i < 1000; i++) cache.put("/" + i, Sampler.ALWAYS_SAMPLE);
+
+    assertThat(cache.current.size() + cache.previous.size()).isLessThanOrEqualTo(10);
+    assertThat(cache.get("/999")).isSameAs(Sampler.ALWAYS_SAMPLE);
+  }
+
+  @Test void parameterizedSampler_skipsMatchersWhenCached() {
+    AtomicInteger matches = new AtomicInteger();
+    Matcher<Map<String, String>> countingPost = new RuleIndexTest.TestAttributeMatcher(
+      "method", "POST", false) {
+      @Override public boolean matches(Map<String, String> input) {
+        matches.incrementAndGet();
+        return super.matches(input);
+      }
+    };
+    ParameterizedSampler<Map<String, String>> sampler =
+      ParameterizedSampler.<Map<String, String>>newBuilder()
+        .putRule(getFoo, Sampler.NEVER_SAMPLE)
+        .putRule(countingPost, Sampler.ALWAYS_SAMPLE)
+        .cacheSize(10)
+        .build();
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(sampler.trySample(request("POST", "/foo"))).isTrue();
+      assertThat(sampler.trySample(request("GET", "/foo"))).isFalse();
+      assertThat(sampler.trySample(request("PUT", "/foo"))).isNull();
+    }
+    assertThat(matches).hasValue(2); // POST and PUT
+  }
+
+  @Test void parameterizedSampler_cacheSizeNegative() {
+    assertThatThrownBy(() -> ParameterizedSampler.newBuilder().cacheSize(-1))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("cacheSize < 0");
+  }
+}
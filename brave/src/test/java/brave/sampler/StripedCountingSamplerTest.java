@@ -0,0 +1,66 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.sampler;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+class StripedCountingSamplerTest extends SamplerTest {
+  @Override Sampler newSampler(float probability) {
+    return CountingSampler.createStriped(probability);
+  }
+
+  /** Each stripe may be off by its incomplete cycle. */
+  @Override Percentage expectedErrorProbability() {
+    return withPercentage(5);
+  }
+
+  @Test void eachStripeRetainsExactly() throws Exception {
+    Sampler sampler = new StripedCountingSampler(0.1f, new Random(), 4);
+
+    ExecutorService service = Executors.newFixedThreadPool(4);
+    try {
+      Future<Long>[] futures = new Future[4];
+      for (int i = 0; i < 4; i++) { // each thread completes its stripe's cycle 10 times
+        futures[i] =
+          service.submit(() -> new Random().longs(1000).filter(sampler::isSampled).count());
+      }
+
+      long passed = 0;
+      for (Future<Long> future : futures) passed += future.get();
+      assertThat(passed).isEqualTo(400);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test void retainsFinerThanOnePercent() {
+    Sampler sampler = new StripedCountingSampler(0.0001f, new Random(), 1);
+
+    assertThat(new Random().longs(INPUT_SIZE).filter(sampler::isSampled).count())
+      .isEqualTo(INPUT_SIZE / 10000);
+  }
+
+  @Test void probabilityMinimumOneHundredthOfAPercent() {
+    assertThatThrownBy(() -> newSampler(0.00001f))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test void stripesStartAtDifferentOffsets() {
+    StripedCountingSampler sampler = new StripedCountingSampler(0.5f, new Random(), 4);
+
+    assertThat(sampler.counters.get(0)).isZero();
+    assertThat(sampler.counters.get(RateLimitingSampler.CELL_PADDING)).isEqualTo(25);
+    assertThat(sampler.counters.get(RateLimitingSampler.CELL_PADDING * 3)).isEqualTo(75);
+  }
+}
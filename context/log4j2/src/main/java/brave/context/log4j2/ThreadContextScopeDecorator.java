@@ -9,6 +9,10 @@ import brave.baggage.CorrelationScopeDecorator;
 import brave.internal.CorrelationContext;
 import brave.internal.Nullable;
 import brave.propagation.CurrentTraceContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.logging.log4j.ThreadContext;
 
 /**
@@ -53,7 +57,21 @@ public final class ThreadContextScopeDecorator {
 
   static final class Builder extends CorrelationScopeDecorator.Builder {
     Builder() {
-      super(ThreadContextCorrelationContext.INSTANCE);
+      super(BULK_UPDATES ? BulkThreadContextCorrelationContext.INSTANCE
+        : ThreadContextCorrelationContext.INSTANCE);
+    }
+  }
+
+  static final boolean BULK_UPDATES = hasBulkUpdates();
+
+  /** {@link ThreadContext#putAll(Map)} is since 2.7 and {@code removeAll} since 2.8. */
+  static boolean hasBulkUpdates() {
+    try {
+      ThreadContext.class.getMethod("putAll", Map.class);
+      ThreadContext.class.getMethod("removeAll", Iterable.class);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
     }
   }
 
@@ -77,4 +95,36 @@ public final class ThreadContextScopeDecorator {
       return true;
     }
   }
+
+  /**
+   * The default thread context map copies on write, so this applies several updates with one copy
+   * each for puts and removes.
+   */
+  enum BulkThreadContextCorrelationContext implements CorrelationContext.Bulk {
+    INSTANCE;
+
+    @Override public String getValue(String name) {
+      return ThreadContext.get(name);
+    }
+
+    @Override public boolean update(String name, @Nullable String value) {
+      return ThreadContextCorrelationContext.INSTANCE.update(name, value);
+    }
+
+    @Override public void updateAll(Map<String, String> values) {
+      Map<String, String> toPut = values;
+      List<String> toRemove = null;
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        if (entry.getValue() != null) continue;
+        if (toRemove == null) {
+          toRemove = new ArrayList<String>();
+          toPut = new LinkedHashMap<String, String>(values);
+        }
+        toRemove.add(entry.getKey());
+        toPut.remove(entry.getKey());
+      }
+      if (!toPut.isEmpty()) ThreadContext.putAll(toPut);
+      if (toRemove != null) ThreadContext.removeAll(toRemove);
+    }
+  }
 }
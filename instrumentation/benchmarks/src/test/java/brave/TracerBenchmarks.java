@@ -62,6 +62,9 @@ public class TracerBenchmarks {
 
   Tracer tracer;
   Tracer tracerBaggage;
+  Tracer tracerRecycleSpans;
+  Tracer tracerSplittableRandom, tracerXorShift;
+  Tracer tracer128Bit, tracer128BitTimeOrdered;
 
   @Setup(Level.Trial) public void init() {
     tracer = Tracing.newBuilder()
@@ -74,6 +77,28 @@ public class TracerBenchmarks {
         // anonymous subtype prevents all recording from being no-op
       })
       .build().tracer();
+    tracerRecycleSpans = Tracing.newBuilder()
+      .addSpanHandler(new SpanHandler() {
+        @Override public boolean referencesSpanAfterEnd() {
+          return false;
+        }
+      })
+      .recycleSpans()
+      .build().tracer();
+    tracerSplittableRandom = newTracer(IdGenerator.splittableRandom(), false);
+    tracerXorShift = newTracer(IdGenerator.xorShift(), false);
+    tracer128Bit = newTracer(IdGenerator.platform(), true);
+    tracer128BitTimeOrdered = newTracer(IdGenerator.timeOrdered(), true);
+  }
+
+  static Tracer newTracer(IdGenerator idGenerator, boolean traceId128Bit) {
+    return Tracing.newBuilder()
+      .idGenerator(idGenerator)
+      .traceId128Bit(traceId128Bit)
+      .addSpanHandler(new SpanHandler() {
+        // anonymous subtype prevents all recording from being no-op
+      })
+      .build().tracer();
   }
 
   @TearDown(Level.Trial) public void close() {
@@ -84,6 +109,10 @@ public class TracerBenchmarks {
     startScopedSpanWithParent(tracer, context);
   }
 
+  @Benchmark public void startScopedSpanWithParent_recycleSpans() {
+    startScopedSpanWithParent(tracerRecycleSpans, context);
+  }
+
   @Benchmark public void startScopedSpanWithParent_baggage() {
     startScopedSpanWithParent(tracerBaggage, contextBaggage);
   }
@@ -118,6 +147,10 @@ public class TracerBenchmarks {
     newChildWithSpanInScope(tracer, context);
   }
 
+  @Benchmark public void newChildWithSpanInScope_recycleSpans() {
+    newChildWithSpanInScope(tracerRecycleSpans, context);
+  }
+
   @Benchmark public void newChildWithSpanInScope_baggage() {
     newChildWithSpanInScope(tracerBaggage, contextBaggage);
   }
@@ -227,6 +260,32 @@ public class TracerBenchmarks {
     }
   }
 
+  @Benchmark public long nextId() {
+    return tracer.nextId();
+  }
+
+  @Benchmark public long nextId_splittableRandom() {
+    return tracerSplittableRandom.nextId();
+  }
+
+  @Benchmark public long nextId_xorShift() {
+    return tracerXorShift.nextId();
+  }
+
+  @Benchmark public TraceContext newTrace_traceId128Bit() {
+    return newTrace(tracer128Bit);
+  }
+
+  @Benchmark public TraceContext newTrace_traceId128Bit_timeOrdered() {
+    return newTrace(tracer128BitTimeOrdered);
+  }
+
+  TraceContext newTrace(Tracer tracer) {
+    Span span = tracer.newTrace();
+    span.abandon();
+    return span.context();
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws Exception {
     Options opt = new OptionsBuilder()
@@ -42,6 +42,13 @@ public class BaggagePropagationBenchmarks {
   static final Propagation<String> propagation = factory.get();
   static final Injector<Map<String, String>> injector = propagation.injector(Map::put);
   static final Extractor<Map<String, String>> extractor = propagation.extractor(Map::get);
+  static final Propagation.Factory lazyFactory =
+    BaggagePropagation.newFactoryBuilder(B3Propagation.FACTORY)
+      .add(SingleBaggageField.remote(BAGGAGE_FIELD)).decodeLazily(true).build();
+  static final Propagation<String> lazyPropagation = lazyFactory.get();
+  static final Injector<Map<String, String>> lazyInjector = lazyPropagation.injector(Map::put);
+  static final Extractor<Map<String, String>> lazyExtractor =
+    lazyPropagation.extractor(Map::get);
 
   static final TraceContext context = TraceContext.newBuilder()
     .traceIdHigh(HexCodec.lowerHexToUnsignedLong("67891233abcdef01"))
@@ -92,6 +99,21 @@ public class BaggagePropagationBenchmarks {
     return extractor.extract(incomingNoBaggage);
   }
 
+  @Benchmark public TraceContextOrSamplingFlags extract_lazy() {
+    return lazyExtractor.extract(incoming);
+  }
+
+  /** Models a proxy, which forwards baggage without reading it. */
+  @Benchmark public void extract_inject() {
+    TraceContext extracted = factory.decorate(extractor.extract(incoming).context());
+    injector.inject(extracted, new LinkedHashMap<>());
+  }
+
+  @Benchmark public void extract_inject_lazy() {
+    TraceContext extracted = lazyFactory.decorate(lazyExtractor.extract(incoming).context());
+    lazyInjector.inject(extracted, new LinkedHashMap<>());
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
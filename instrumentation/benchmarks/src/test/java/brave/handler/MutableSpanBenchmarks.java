@@ -75,6 +75,23 @@ public class MutableSpanBenchmarks {
     return span;
   }
 
+  /** Per-retry or per-chunk annotations shouldn't allocate a boxed timestamp each. */
+  @Benchmark public MutableSpan makeAnnotatedSpan() {
+    return newAnnotatedMutableSpan();
+  }
+
+  public static MutableSpan newAnnotatedMutableSpan() {
+    MutableSpan span = new MutableSpan();
+    span.name("upload");
+    span.kind(Span.Kind.CLIENT);
+    span.startTimestamp(1533706251750057L);
+    for (int i = 0; i < 20; i++) {
+      span.annotate(1533706251750057L + i * 1000L, "chunk");
+    }
+    span.finishTimestamp(1533706251935296L);
+    return span;
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
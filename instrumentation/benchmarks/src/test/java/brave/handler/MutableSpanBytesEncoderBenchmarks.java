@@ -0,0 +1,91 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.handler;
+
+import brave.Tags;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static brave.handler.MutableSpanBenchmarks.newBigClientMutableSpan;
+import static brave.handler.MutableSpanBenchmarks.newServerMutableSpan;
+
+/**
+ * Compares encoding a batch into a direct {@link ByteBuffer}, as done before writing to a channel,
+ * with encoding to a byte array and then copying.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class MutableSpanBytesEncoderBenchmarks {
+  static final MutableSpanBytesEncoder json = MutableSpanBytesEncoder.zipkinJsonV2(Tags.ERROR);
+  static final MutableSpanBytesEncoder proto3 = MutableSpanBytesEncoder.zipkinProto3(Tags.ERROR);
+  static final List<MutableSpan> spans = new ArrayList<>();
+
+  static {
+    for (int i = 0; i < 50; i++) {
+      spans.add(newServerMutableSpan());
+      spans.add(newBigClientMutableSpan());
+    }
+  }
+
+  final ByteBuffer directBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+
+  @Benchmark public ByteBuffer encodeList_json_copy() {
+    return copy(json);
+  }
+
+  @Benchmark public ByteBuffer encodeList_json_byteBuffer() {
+    return encode(json);
+  }
+
+  @Benchmark public ByteBuffer encodeList_proto3_copy() {
+    return copy(proto3);
+  }
+
+  @Benchmark public ByteBuffer encodeList_proto3_byteBuffer() {
+    return encode(proto3);
+  }
+
+  ByteBuffer copy(MutableSpanBytesEncoder encoder) {
+    directBuffer.clear();
+    return directBuffer.put(encoder.encodeList(spans));
+  }
+
+  ByteBuffer encode(MutableSpanBytesEncoder encoder) {
+    directBuffer.clear();
+    encoder.encodeList(spans, directBuffer);
+    return directBuffer;
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .addProfiler("gc")
+      .include(".*" + MutableSpanBytesEncoderBenchmarks.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.http;
+
+import brave.sampler.Matcher;
+import brave.sampler.Sampler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static brave.http.HttpRequestMatchers.methodEquals;
+import static brave.http.HttpRequestMatchers.pathStartsWith;
+import static brave.sampler.Matchers.and;
+
+/**
+ * Compares indexed rules against testing each rule in order, as the count of rules grows. Each rule
+ * is a method and path prefix, and the request matches only the last rule, which is the worst case
+ * when testing in order. The cached variant skips matching, as the same requests repeat.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class HttpRuleSamplerBenchmarks {
+  @Param({"10", "100", "1000"})
+  int ruleCount;
+
+  HttpRuleSampler indexed, inOrder, cached;
+  HttpRequest lastRule = new FakeRequest("GET", "/api/v1/last/items/1"),
+    noRule = new FakeRequest("GET", "/static/app.js");
+
+  @Setup public void setup() {
+    HttpRuleSampler.Builder indexed = HttpRuleSampler.newBuilder();
+    HttpRuleSampler.Builder inOrder = HttpRuleSampler.newBuilder();
+    HttpRuleSampler.Builder cached = HttpRuleSampler.newBuilder().cacheSize(100);
+    for (int i = 0; i < ruleCount; i++) {
+      String path = i == ruleCount - 1 ? "/api/v1/last" : "/api/v1/resource" + i;
+      Matcher<HttpRequest> matcher = and(methodEquals(i % 2 == 0 ? "GET" : "POST"),
+        pathStartsWith(path));
+      indexed.putRule(matcher, Sampler.ALWAYS_SAMPLE);
+      cached.putRule(matcher, Sampler.ALWAYS_SAMPLE);
+      // Hiding the matcher type disables indexing
+      inOrder.putRule(matcher::matches, Sampler.ALWAYS_SAMPLE);
+    }
+    this.indexed = indexed.build();
+    this.inOrder = inOrder.build();
+    this.cached = cached.build();
+  }
+
+  @Benchmark public Boolean trySample_lastRule_indexed() {
+    return indexed.trySample(lastRule);
+  }
+
+  @Benchmark public Boolean trySample_lastRule_inOrder() {
+    return inOrder.trySample(lastRule);
+  }
+
+  @Benchmark public Boolean trySample_lastRule_cached() {
+    return cached.trySample(lastRule);
+  }
+
+  @Benchmark public Boolean trySample_noRule_indexed() {
+    return indexed.trySample(noRule);
+  }
+
+  @Benchmark public Boolean trySample_noRule_inOrder() {
+    return inOrder.trySample(noRule);
+  }
+
+  @Benchmark public Boolean trySample_noRule_cached() {
+    return cached.trySample(noRule);
+  }
+
+  static final class FakeRequest extends HttpServerRequest {
+    final String method, path;
+
+    FakeRequest(String method, String path) {
+      this.method = method;
+      this.path = path;
+    }
+
+    @Override public Object unwrap() {
+      return this;
+    }
+
+    @Override public String method() {
+      return method;
+    }
+
+    @Override public String path() {
+      return path;
+    }
+
+    @Override public String url() {
+      return "http://localhost" + path;
+    }
+
+    @Override public String header(String name) {
+      return null;
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(".*" + HttpRuleSamplerBenchmarks.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
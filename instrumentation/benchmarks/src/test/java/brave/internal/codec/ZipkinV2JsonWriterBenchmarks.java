@@ -57,6 +57,14 @@ public class ZipkinV2JsonWriterBenchmarks {
     writer.write(bigClientSpan, new WriteBuffer(buffer, 0));
   }
 
+  @Benchmark public byte[] encode_bigClientSpan_sized() {
+    return JsonWriter.write(writer, bigClientSpan);
+  }
+
+  @Benchmark public byte[] encode_bigClientSpan_singlePass() {
+    return JsonWriter.writeSinglePass(writer, bigClientSpan);
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
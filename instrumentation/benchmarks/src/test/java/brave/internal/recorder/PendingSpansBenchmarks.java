@@ -0,0 +1,103 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.internal.recorder;
+
+import brave.handler.MutableSpan;
+import brave.internal.Platform;
+import brave.internal.collect.WeakConcurrentMap;
+import brave.propagation.TraceContext;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the span lifecycle (add, lookup, remove) of {@link StripedPendingSpanMap} with the
+ * {@link WeakConcurrentMap} {@link PendingSpans} formerly extended.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PendingSpansBenchmarks {
+  final TickClock clock = new TickClock(Platform.get(), 1L, 0L);
+  final StripedPendingSpanMap striped = new StripedPendingSpanMap();
+  final WeakConcurrentMap<TraceContext, PendingSpan> weakConcurrentMap =
+    new WeakConcurrentMap<TraceContext, PendingSpan>();
+
+  @Benchmark @Group("no_contention") @GroupThreads(1)
+  public PendingSpan no_contention_striped() {
+    return lifecycle(striped);
+  }
+
+  @Benchmark @Group("mild_contention") @GroupThreads(2)
+  public PendingSpan mild_contention_striped() {
+    return lifecycle(striped);
+  }
+
+  @Benchmark @Group("high_contention") @GroupThreads(8)
+  public PendingSpan high_contention_striped() {
+    return lifecycle(striped);
+  }
+
+  @Benchmark @Group("no_contention") @GroupThreads(1)
+  public PendingSpan no_contention_weakConcurrentMap() {
+    return lifecycle(weakConcurrentMap);
+  }
+
+  @Benchmark @Group("mild_contention") @GroupThreads(2)
+  public PendingSpan mild_contention_weakConcurrentMap() {
+    return lifecycle(weakConcurrentMap);
+  }
+
+  @Benchmark @Group("high_contention") @GroupThreads(8)
+  public PendingSpan high_contention_weakConcurrentMap() {
+    return lifecycle(weakConcurrentMap);
+  }
+
+  PendingSpan lifecycle(StripedPendingSpanMap map) {
+    TraceContext context = newContext();
+    map.putIfProbablyAbsent(context, new PendingSpan(context, new MutableSpan(), clock, map));
+    map.getIfPresent(context);
+    return map.remove(context);
+  }
+
+  PendingSpan lifecycle(WeakConcurrentMap<TraceContext, PendingSpan> map) {
+    TraceContext context = newContext();
+    map.putIfProbablyAbsent(context, new PendingSpan(context, new MutableSpan(), clock, null));
+    map.getIfPresent(context);
+    return map.remove(context);
+  }
+
+  static TraceContext newContext() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return TraceContext.newBuilder().traceId(random.nextLong()).spanId(random.nextLong()).build();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .addProfiler("gc")
+      .include(".*" + PendingSpansBenchmarks.class.getSimpleName() + ".*")
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -7,6 +7,7 @@ package brave.propagation;
 import brave.internal.codec.HexCodec;
 import brave.propagation.TraceContext.Extractor;
 import brave.propagation.TraceContext.Injector;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -32,6 +33,8 @@ public class B3PropagationBenchmarks {
   static final Propagation<String> b3 = Propagation.B3_STRING;
   static final Injector<Map<String, String>> b3Injector = b3.injector(Map::put);
   static final Extractor<Map<String, String>> b3Extractor = b3.extractor(Map::get);
+  static final Extractor<Map<String, byte[]>> b3BytesExtractor =
+    B3Propagation.FACTORY.bytesExtractor(Map::get);
 
   static final TraceContext context = TraceContext.newBuilder()
     .traceIdHigh(HexCodec.lowerHexToUnsignedLong("67891233abcdef01"))
@@ -61,17 +64,40 @@ public class B3PropagationBenchmarks {
     }
   };
 
+  static final Map<String, byte[]> incomingBytes = new LinkedHashMap<String, byte[]>() {
+    {
+      for (Map.Entry<String, String> entry : incoming.entrySet()) {
+        put(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  };
+
   static final Map<String, String> nothingIncoming = Collections.emptyMap();
 
+  static final ThreadLocal<Map<String, String>> reusedRequest =
+    ThreadLocal.withInitial(LinkedHashMap::new);
+
   @Benchmark public void inject() {
     Map<String, String> request = new LinkedHashMap<>();
     b3Injector.inject(context, request);
   }
 
+  /** Shows overhead of injecting headers, as opposed to allocating the request. */
+  @Benchmark public Map<String, String> inject_reusedRequest() {
+    Map<String, String> request = reusedRequest.get();
+    request.clear();
+    b3Injector.inject(context, request);
+    return request;
+  }
+
   @Benchmark public TraceContextOrSamplingFlags extract() {
     return b3Extractor.extract(incoming);
   }
 
+  @Benchmark public TraceContextOrSamplingFlags extract_bytes() {
+    return b3BytesExtractor.extract(incomingBytes);
+  }
+
   @Benchmark public TraceContextOrSamplingFlags extract_nothing() {
     return b3Extractor.extract(nothingIncoming);
   }
@@ -7,6 +7,8 @@ package brave.propagation;
 import brave.internal.codec.HexCodec;
 import brave.propagation.TraceContext.Extractor;
 import brave.propagation.TraceContext.Injector;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -46,6 +48,9 @@ public class B3SinglePropagationBenchmarks {
     }
   };
 
+  static final byte[] incoming128Bytes =
+    incoming128.get("b3").getBytes(StandardCharsets.UTF_8);
+
   static final Map<String, String> incoming64 = new LinkedHashMap<String, String>() {
     {
       put("b3", "2345678912345678-463ac35c9f6413ad-1");
@@ -72,15 +77,47 @@ public class B3SinglePropagationBenchmarks {
 
   static final Map<String, String> nothingIncoming = Collections.emptyMap();
 
+  static final ThreadLocal<ByteBuffer> reusedBuffer =
+    ThreadLocal.withInitial(() -> ByteBuffer.allocate(B3SingleFormat.FORMAT_MAX_LENGTH));
+  static final ThreadLocal<ByteBuffer> reusedDirectBuffer =
+    ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(B3SingleFormat.FORMAT_MAX_LENGTH));
+
   @Benchmark public void inject() {
     Map<String, String> request = new LinkedHashMap<>();
     b3Injector.inject(context, request);
   }
 
+  @Benchmark public String writeB3SingleFormat() {
+    return B3SingleFormat.writeB3SingleFormat(context);
+  }
+
+  /** Shows the cost without the value cached on the context. */
+  @Benchmark public String writeB3SingleFormat_uncached() {
+    return B3SingleFormat.writeB3SingleFormat(context.toBuilder().build());
+  }
+
+  @Benchmark public ByteBuffer writeB3SingleFormat_byteBuffer() {
+    ByteBuffer buffer = reusedBuffer.get();
+    buffer.clear();
+    B3SingleFormat.writeB3SingleFormat(context, buffer);
+    return buffer;
+  }
+
+  @Benchmark public ByteBuffer writeB3SingleFormat_directByteBuffer() {
+    ByteBuffer buffer = reusedDirectBuffer.get();
+    buffer.clear();
+    B3SingleFormat.writeB3SingleFormat(context, buffer);
+    return buffer;
+  }
+
   @Benchmark public TraceContextOrSamplingFlags extract_128() {
     return b3Extractor.extract(incoming128);
   }
 
+  @Benchmark public TraceContextOrSamplingFlags parse_128_bytes() {
+    return B3SingleFormat.parseB3SingleFormat(incoming128Bytes);
+  }
+
   @Benchmark public TraceContextOrSamplingFlags extract_64() {
     return b3Extractor.extract(incoming64);
   }
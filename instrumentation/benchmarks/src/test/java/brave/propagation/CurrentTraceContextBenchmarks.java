@@ -10,6 +10,12 @@ import brave.baggage.BaggagePropagationConfig;
 import brave.baggage.CorrelationScopeConfig.SingleCorrelationField;
 import brave.context.log4j2.ThreadContextScopeDecorator;
 import brave.propagation.CurrentTraceContext.Scope;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -17,6 +23,8 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
@@ -34,6 +42,8 @@ import static brave.baggage.BaggagePropagationBenchmarks.BAGGAGE_FIELD;
 @State(org.openjdk.jmh.annotations.Scope.Thread)
 public class CurrentTraceContextBenchmarks {
   static final CurrentTraceContext base = ThreadLocalCurrentTraceContext.create();
+  static final CurrentTraceContext stack = StackCurrentTraceContext.create();
+  static final CurrentTraceContext virtualThread = VirtualThreadCurrentTraceContext.create();
   static final CurrentTraceContext log4j2OnlyTraceId = ThreadLocalCurrentTraceContext.newBuilder()
     .addScopeDecorator(ThreadContextScopeDecorator.newBuilder()
       .clear()
@@ -49,6 +59,11 @@ public class CurrentTraceContextBenchmarks {
   static final CurrentTraceContext log4j2 = ThreadLocalCurrentTraceContext.newBuilder()
     .addScopeDecorator(ThreadContextScopeDecorator.get())
     .build();
+  static final CurrentTraceContext log4j2SkipUnchanged = ThreadLocalCurrentTraceContext.newBuilder()
+    .addScopeDecorator(ThreadContextScopeDecorator.newBuilder()
+      .skipUnchangedContexts(true)
+      .build())
+    .build();
 
   static final Propagation.Factory baggageFactory =
     BaggagePropagation.newFactoryBuilder(B3Propagation.FACTORY)
@@ -70,10 +85,19 @@ public class CurrentTraceContextBenchmarks {
     BAGGAGE_FIELD.updateValue(context, "romeo");
   }
 
+  static final Executor directExecutor = Runnable::run;
+  static final Runnable noop = () -> {
+  };
+  static final List<Runnable> tasks = Arrays.asList(noop, noop, noop, noop, noop, noop, noop, noop);
+  static final Executor wrappedExecutor = base.executor(directExecutor);
+
+  // opened first, so that it writes the thread context and remembers this context
+  final Scope log4j2SkipUnchangedScope = log4j2SkipUnchanged.newScope(context);
   final Scope log4j2Scope = log4j2.newScope(context);
 
   @TearDown public void closeScope() {
     log4j2Scope.close();
+    log4j2SkipUnchangedScope.close();
   }
 
   @Benchmark public void newScope_default() {
@@ -81,6 +105,99 @@ public class CurrentTraceContextBenchmarks {
     }
   }
 
+  @Benchmark public void newScope_stack() {
+    try (Scope scope = stack.newScope(context)) {
+    }
+  }
+
+  @Benchmark public void newScope_virtualThread() {
+    try (Scope scope = virtualThread.newScope(context)) {
+    }
+  }
+
+  @Benchmark public void newScope_nested_default() {
+    nestedScopes(base);
+  }
+
+  @Benchmark public void newScope_nested_stack() {
+    nestedScopes(stack);
+  }
+
+  @Benchmark public void newScope_nested_virtualThread() {
+    nestedScopes(virtualThread);
+  }
+
+  /** Compares a request's scopes on a new thread. Virtual threads require JDK 21+. */
+  @State(org.openjdk.jmh.annotations.Scope.Benchmark)
+  public static class Threads {
+    @Param({"platform", "virtual"})
+    public String type;
+
+    ThreadFactory threadFactory;
+
+    @Setup public void setup() throws Exception {
+      if (type.equals("platform")) {
+        threadFactory = Executors.defaultThreadFactory();
+        return;
+      }
+      // Reflective, as benchmarks compile against an older JDK.
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      threadFactory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+        .getMethod("factory").invoke(builder);
+    }
+  }
+
+  @Benchmark public void newThread_nested_default(Threads threads) throws Exception {
+    runOnNewThread(threads, base);
+  }
+
+  @Benchmark public void newThread_nested_stack(Threads threads) throws Exception {
+    runOnNewThread(threads, stack);
+  }
+
+  @Benchmark public void newThread_nested_virtualThread(Threads threads) throws Exception {
+    runOnNewThread(threads, virtualThread);
+  }
+
+  static void runOnNewThread(Threads threads, final CurrentTraceContext current)
+    throws InterruptedException {
+    Thread thread = threads.threadFactory.newThread(current.wrap(() -> nestedScopes(current)));
+    thread.start();
+    thread.join();
+  }
+
+  /** Like servlet, then a client call, then a database call. */
+  static void nestedScopes(CurrentTraceContext current) {
+    try (Scope server = current.newScope(context)) {
+      try (Scope client = current.newScope(context)) {
+        try (Scope jdbc = current.newScope(context)) {
+        }
+      }
+    }
+  }
+
+  @Benchmark public void execute_wrappedExecutor() {
+    try (Scope scope = base.newScope(context)) {
+      for (Runnable task : tasks) {
+        wrappedExecutor.execute(task);
+      }
+    }
+  }
+
+  @Benchmark public void executeAll() {
+    try (Scope scope = base.newScope(context)) {
+      base.executeAll(directExecutor, tasks);
+    }
+  }
+
+  @Benchmark public Object completionStage_thenApply() {
+    try (Scope scope = base.newScope(context)) {
+      return TraceContextCompletionStage.wrap(base, CompletableFuture.completedFuture("foo"))
+        .thenApply(String::length)
+        .thenApply(Integer::toHexString);
+    }
+  }
+
   @Benchmark public void newScope_log4j2() {
     try (Scope scope = log4j2.newScope(context)) {
     }
@@ -111,6 +228,11 @@ public class CurrentTraceContextBenchmarks {
     }
   }
 
+  @Benchmark public void newScope_redundant_log4j2_skipUnchanged() {
+    try (Scope scope = log4j2SkipUnchanged.newScope(context)) {
+    }
+  }
+
   @Benchmark public void newScope_clear_default() {
     try (Scope scope = base.newScope(null)) {
     }
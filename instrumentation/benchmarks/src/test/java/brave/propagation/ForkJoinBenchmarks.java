@@ -0,0 +1,91 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares fork/join with and without {@link TraceContextForkJoinTask}. Results are per forked
+ * task, some of which are stolen by other workers.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class ForkJoinBenchmarks {
+  static final int TASKS = 1 << 12; // leaves; there are TASKS - 1 forks
+  static final CurrentTraceContext currentTraceContext = ThreadLocalCurrentTraceContext.create();
+  static final TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+
+  final ForkJoinPool pool = new ForkJoinPool(4);
+  final TraceContextForkJoinPool tracingPool =
+    TraceContextForkJoinPool.wrap(currentTraceContext, pool);
+
+  @TearDown public void shutdown() {
+    pool.shutdown();
+  }
+
+  static final class Count extends RecursiveTask<Integer> {
+    final int from, to;
+    final boolean traced;
+
+    Count(int from, int to, boolean traced) {
+      this.from = from;
+      this.to = to;
+      this.traced = traced;
+    }
+
+    @Override protected Integer compute() {
+      if (to - from == 1) return currentTraceContext.get() != null ? 1 : 0;
+      int mid = (from + to) >>> 1;
+      ForkJoinTask<Integer> left = new Count(from, mid, traced);
+      if (traced) left = TraceContextForkJoinTask.wrap(currentTraceContext, left);
+      left.fork();
+      int right = new Count(mid, to, traced).compute();
+      return left.join() + right;
+    }
+  }
+
+  @Benchmark @OperationsPerInvocation(TASKS - 1) public int fork_untraced() {
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      return pool.invoke(new Count(0, TASKS, false));
+    }
+  }
+
+  @Benchmark @OperationsPerInvocation(TASKS - 1) public int fork_traced() {
+    try (Scope scope = currentTraceContext.newScope(context)) {
+      return tracingPool.invoke(new Count(0, TASKS, true));
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws Exception {
+    Options opt = new OptionsBuilder()
+      .addProfiler("gc")
+      .include(".*" + ForkJoinBenchmarks.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
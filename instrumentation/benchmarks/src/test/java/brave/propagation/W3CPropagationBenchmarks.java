@@ -0,0 +1,116 @@
+/*
+ * Copyright The OpenZipkin Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package brave.propagation;
+
+import brave.internal.codec.HexCodec;
+import brave.propagation.TraceContext.Extractor;
+import brave.propagation.TraceContext.Injector;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class W3CPropagationBenchmarks {
+  static final Propagation<String> w3c = W3CPropagation.get();
+  static final Injector<Map<String, String>> w3cInjector = w3c.injector(Map::put);
+  static final Extractor<Map<String, String>> w3cExtractor = w3c.extractor(Map::get);
+
+  static final Propagation<String> w3cOrB3 = CompositePropagation.newFactoryBuilder()
+    .add(W3CPropagation.FACTORY, "traceparent")
+    .add(B3Propagation.FACTORY, "b3", "X-B3-TraceId", "X-B3-Sampled", "X-B3-Flags")
+    .build().get();
+  static final Extractor<Map<String, String>> w3cOrB3Extractor = w3cOrB3.extractor(Map::get);
+
+  static final TraceContext context = TraceContext.newBuilder()
+    .traceIdHigh(HexCodec.lowerHexToUnsignedLong("67891233abcdef01"))
+    .traceId(HexCodec.lowerHexToUnsignedLong("2345678912345678"))
+    .spanId(HexCodec.lowerHexToUnsignedLong("463ac35c9f6413ad"))
+    .sampled(true)
+    .build();
+
+  static final Map<String, String> incoming = new LinkedHashMap<String, String>() {
+    {
+      w3cInjector.inject(context, this);
+    }
+  };
+
+  static final Map<String, String> incomingTracestate = new LinkedHashMap<String, String>() {
+    {
+      putAll(incoming);
+      put("tracestate", "rojo=00f067aa0ba902b7,congo=t61rcWkgMzE");
+    }
+  };
+
+  static final Map<String, String> incomingB3 = new LinkedHashMap<String, String>() {
+    {
+      B3Propagation.get().<Map<String, String>>injector(Map::put).inject(context, this);
+    }
+  };
+
+  static final Map<String, String> incomingMalformed = new LinkedHashMap<String, String>() {
+    {
+      put("traceparent", "00-67891233abcdef012345678912345678-463ac35c9f6413ad-0x"); // not ok
+      put("tracestate", "rojo=00f067aa0ba902b7"); // ok, but ignored
+    }
+  };
+
+  static final Map<String, String> nothingIncoming = Collections.emptyMap();
+
+  @Benchmark public void inject() {
+    Map<String, String> request = new LinkedHashMap<>();
+    w3cInjector.inject(context, request);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract() {
+    return w3cExtractor.extract(incoming);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_tracestate() {
+    return w3cExtractor.extract(incomingTracestate);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_nothing() {
+    return w3cExtractor.extract(nothingIncoming);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_malformed() {
+    return w3cExtractor.extract(incomingMalformed);
+  }
+
+  /** Shows the cost of the fallback when traceparent is present: it should be close to extract */
+  @Benchmark public TraceContextOrSamplingFlags extract_fallback_w3c() {
+    return w3cOrB3Extractor.extract(incoming);
+  }
+
+  @Benchmark public TraceContextOrSamplingFlags extract_fallback_b3() {
+    return w3cOrB3Extractor.extract(incomingB3);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .addProfiler("gc")
+      .include(".*" + W3CPropagationBenchmarks.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -4,6 +4,7 @@
  */
 package brave.sampler;
 
+import brave.internal.Platform;
 import com.amazonaws.xray.strategy.sampling.reservoir.Reservoir;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -98,6 +99,33 @@ public class SamplerBenchmarks {
   // Use fixed-seed Random so performance of runs can be compared.
   static final Sampler SAMPLER_RATE = new CountingSampler(SAMPLE_PROBABILITY, new Random(1000));
 
+  @Benchmark @Threads(1) public boolean sampler_counting_1thread(Args args) {
+    return SAMPLER_RATE.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(8) public boolean sampler_counting_8threads(Args args) {
+    return SAMPLER_RATE.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(64) public boolean sampler_counting_64threads(Args args) {
+    return SAMPLER_RATE.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(1) public boolean sampler_counting_striped_1thread(Args args) {
+    return SAMPLER_RATE_STRIPED.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(8) public boolean sampler_counting_striped_8threads(Args args) {
+    return SAMPLER_RATE_STRIPED.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(64) public boolean sampler_counting_striped_64threads(Args args) {
+    return SAMPLER_RATE_STRIPED.isSampled(args.traceId);
+  }
+
+  static final Sampler SAMPLER_RATE_STRIPED = new StripedCountingSampler(SAMPLE_PROBABILITY,
+    new Random(1000), RateLimitingSampler.cellCount(Runtime.getRuntime().availableProcessors()));
+
   @Benchmark public boolean sampler_rateLimited_1(Args args) {
     return SAMPLER_RATE_LIMITED.isSampled(args.traceId);
   }
@@ -110,6 +138,48 @@ public class SamplerBenchmarks {
 
   static final Sampler SAMPLER_RATE_LIMITED_100 = RateLimitingSampler.create(100);
 
+  // The below compare contention on a shared sampler as the number of threads grows
+
+  @Benchmark @Threads(1) public boolean sampler_rateLimited_100_1thread(Args args) {
+    return SAMPLER_RATE_LIMITED_100.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(8) public boolean sampler_rateLimited_100_8threads(Args args) {
+    return SAMPLER_RATE_LIMITED_100.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(64) public boolean sampler_rateLimited_100_64threads(Args args) {
+    return SAMPLER_RATE_LIMITED_100.isSampled(args.traceId);
+  }
+
+  /** As many cells as the most processors, to show the cost of rejecting when all are empty. */
+  static final Sampler SAMPLER_RATE_LIMITED_100_32CELLS =
+    new RateLimitingSampler(Platform.get(), 100, RateLimitingSampler.MAX_CELLS);
+
+  @Benchmark @Threads(1) public boolean sampler_rateLimited_100_32cells_1thread(Args args) {
+    return SAMPLER_RATE_LIMITED_100_32CELLS.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(8) public boolean sampler_rateLimited_100_32cells_8threads(Args args) {
+    return SAMPLER_RATE_LIMITED_100_32CELLS.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(64) public boolean sampler_rateLimited_100_32cells_64threads(Args args) {
+    return SAMPLER_RATE_LIMITED_100_32CELLS.isSampled(args.traceId);
+  }
+
+  @Benchmark @Threads(1) public boolean sampler_rateLimited_100_xray_1thread(Args args) {
+    return RESERVOIR_RATE_LIMITED_100.take();
+  }
+
+  @Benchmark @Threads(8) public boolean sampler_rateLimited_100_xray_8threads(Args args) {
+    return RESERVOIR_RATE_LIMITED_100.take();
+  }
+
+  @Benchmark @Threads(64) public boolean sampler_rateLimited_100_xray_64threads(Args args) {
+    return RESERVOIR_RATE_LIMITED_100.take();
+  }
+
   @Benchmark public boolean sampler_rateLimited_1_xray(Args args) {
     return RESERVOIR_RATE_LIMITED.take();
   }
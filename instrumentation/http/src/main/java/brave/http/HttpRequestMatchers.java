@@ -4,6 +4,8 @@
  */
 package brave.http;
 
+import brave.internal.AttributeMatcher;
+import brave.internal.Nullable;
 import brave.sampler.Matcher;
 import brave.sampler.Matchers;
 
@@ -22,7 +24,7 @@ public final class HttpRequestMatchers {
     return new MethodEquals(method);
   }
 
-  static final class MethodEquals implements Matcher<HttpRequest> {
+  static final class MethodEquals implements AttributeMatcher<HttpRequest> {
     final String method;
 
     MethodEquals(String method) {
@@ -33,6 +35,22 @@ public final class HttpRequestMatchers {
       return method.equals(request.method());
     }
 
+    @Override public String attribute() {
+      return "http.method";
+    }
+
+    @Override public @Nullable String attributeValue(HttpRequest request) {
+      return request.method();
+    }
+
+    @Override public String value() {
+      return method;
+    }
+
+    @Override public boolean isPrefix() {
+      return false;
+    }
+
     @Override public boolean equals(Object o) {
       if (o == this) return true;
       if (!(o instanceof MethodEquals)) return false;
@@ -55,7 +73,7 @@ public final class HttpRequestMatchers {
     return new PathStartsWith(pathPrefix);
   }
 
-  static final class PathStartsWith implements Matcher<HttpRequest> {
+  static final class PathStartsWith implements AttributeMatcher<HttpRequest> {
     final String pathPrefix;
 
     PathStartsWith(String pathPrefix) {
@@ -67,6 +85,22 @@ public final class HttpRequestMatchers {
       return requestPath != null && requestPath.startsWith(pathPrefix);
     }
 
+    @Override public String attribute() {
+      return "http.path";
+    }
+
+    @Override public @Nullable String attributeValue(HttpRequest request) {
+      return request.path();
+    }
+
+    @Override public String value() {
+      return pathPrefix;
+    }
+
+    @Override public boolean isPrefix() {
+      return true;
+    }
+
     @Override public boolean equals(Object o) {
       if (o == this) return true;
       if (!(o instanceof PathStartsWith)) return false;
@@ -6,6 +6,7 @@ package brave.http;
 
 import brave.Tracing;
 import brave.sampler.Matcher;
+import brave.sampler.Matchers;
 import brave.sampler.ParameterizedSampler;
 import brave.sampler.Sampler;
 import brave.sampler.SamplerFunction;
@@ -85,6 +86,22 @@ public final class HttpRuleSampler implements SamplerFunction<HttpRequest> {
       return this;
     }
 
+    /**
+     * Caches the sampler of the first matching rule for up to this count of distinct requests,
+     * keyed on attributes such as method and path. Defaults to zero, which disables the cache.
+     *
+     * <p>The cache is only used when all rules are made of {@link HttpRequestMatchers}, optionally
+     * combined with {@link Matchers#and(Matcher[])}. Paths with IDs in them are effectively
+     * unique, so choose rules and a size that cover the frequent paths.
+     *
+     * @see ParameterizedSampler.Builder#cacheSize(int)
+     * @since 6.1
+     */
+    public Builder cacheSize(int cacheSize) {
+      delegate.cacheSize(cacheSize);
+      return this;
+    }
+
     public HttpRuleSampler build() {
       return new HttpRuleSampler(delegate.build());
     }
@@ -75,6 +75,56 @@ public class HttpRuleSamplerTest {
       .isNull();
   }
 
+  /** Many rules are indexed by method and path prefix, but the first matching rule still wins. */
+  @Test void manyRules_firstMatchWins() {
+    HttpRuleSampler.Builder builder = HttpRuleSampler.newBuilder();
+    for (int i = 0; i < 10; i++) {
+      builder.putRule(pathStartsWith("/api/" + i), Sampler.ALWAYS_SAMPLE);
+    }
+    HttpRuleSampler ruleSampler = builder
+      .putRule(and(methodEquals("GET"), pathStartsWith("/foo")), Sampler.NEVER_SAMPLE)
+      .putRule(pathStartsWith("/foo/bar"), Sampler.ALWAYS_SAMPLE) // shadowed for GET
+      .putRule(methodEquals("POST"), Sampler.NEVER_SAMPLE)
+      .build();
+
+    when(httpServerRequest.method()).thenReturn("GET");
+    when(httpServerRequest.path()).thenReturn("/foo/bar");
+    assertThat(ruleSampler.trySample(httpServerRequest))
+      .isFalse();
+
+    when(httpServerRequest.method()).thenReturn("POST");
+    assertThat(ruleSampler.trySample(httpServerRequest))
+      .isTrue();
+
+    when(httpServerRequest.path()).thenReturn("/baz");
+    assertThat(ruleSampler.trySample(httpServerRequest))
+      .isFalse();
+
+    when(httpServerRequest.method()).thenReturn("PUT");
+    assertThat(ruleSampler.trySample(httpServerRequest))
+      .isNull();
+  }
+
+  @Test void cacheSize() {
+    HttpRuleSampler ruleSampler = HttpRuleSampler.newBuilder()
+      .putRule(and(methodEquals("GET"), pathStartsWith("/foo")), Sampler.NEVER_SAMPLE)
+      .putRule(pathStartsWith("/foo"), Sampler.ALWAYS_SAMPLE)
+      .cacheSize(10)
+      .build();
+
+    when(httpServerRequest.path()).thenReturn("/foo");
+
+    for (int i = 0; i < 2; i++) { // second time is cached
+      when(httpServerRequest.method()).thenReturn("GET");
+      assertThat(ruleSampler.trySample(httpServerRequest))
+        .isFalse();
+
+      when(httpServerRequest.method()).thenReturn("POST");
+      assertThat(ruleSampler.trySample(httpServerRequest))
+        .isTrue();
+    }
+  }
+
   @Test void exampleCustomMatcher() {
     Matcher<HttpRequest> playInTheUSA = request -> {
       if (!"/play".equals(request.path())) return false;
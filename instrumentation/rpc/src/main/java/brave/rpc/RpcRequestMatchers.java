@@ -4,6 +4,8 @@
  */
 package brave.rpc;
 
+import brave.internal.AttributeMatcher;
+import brave.internal.Nullable;
 import brave.sampler.Matcher;
 import brave.sampler.Matchers;
 
@@ -27,7 +29,7 @@ public final class RpcRequestMatchers {
     return new RpcMethodEquals<Req>(method);
   }
 
-  static final class RpcMethodEquals<Req extends RpcRequest> implements Matcher<Req> {
+  static final class RpcMethodEquals<Req extends RpcRequest> implements AttributeMatcher<Req> {
     final String method;
 
     RpcMethodEquals(String method) {
@@ -38,6 +40,22 @@ public final class RpcRequestMatchers {
       return method.equals(request.method());
     }
 
+    @Override public String attribute() {
+      return "rpc.method";
+    }
+
+    @Override public @Nullable String attributeValue(Req request) {
+      return request.method();
+    }
+
+    @Override public String value() {
+      return method;
+    }
+
+    @Override public boolean isPrefix() {
+      return false;
+    }
+
     @Override public boolean equals(Object o) {
       if (o == this) return true;
       if (!(o instanceof RpcMethodEquals)) return false;
@@ -66,7 +84,7 @@ public final class RpcRequestMatchers {
     return new RpcServiceEquals<Req>(service);
   }
 
-  static final class RpcServiceEquals<Req extends RpcRequest> implements Matcher<Req> {
+  static final class RpcServiceEquals<Req extends RpcRequest> implements AttributeMatcher<Req> {
     final String service;
 
     RpcServiceEquals(String service) {
@@ -77,6 +95,22 @@ public final class RpcRequestMatchers {
       return service.equals(request.service());
     }
 
+    @Override public String attribute() {
+      return "rpc.service";
+    }
+
+    @Override public @Nullable String attributeValue(Req request) {
+      return request.service();
+    }
+
+    @Override public String value() {
+      return service;
+    }
+
+    @Override public boolean isPrefix() {
+      return false;
+    }
+
     @Override public boolean equals(Object o) {
       if (o == this) return true;
       if (!(o instanceof RpcServiceEquals)) return false;